@@ -24,13 +24,21 @@ import static org.apache.usergrid.java.client.utils.UrlUtils.addQueryParams;
 import static org.apache.usergrid.java.client.utils.UrlUtils.encodeParams;
 import static org.apache.usergrid.java.client.utils.UrlUtils.path;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import org.slf4j.Logger;
@@ -40,6 +48,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.apache.usergrid.java.client.entities.Activity;
@@ -85,7 +94,19 @@ public class Client {
 
     private String currentOrganization = null;
 
-    static RestTemplate restTemplate = new RestTemplate();
+    private boolean smile = false;
+
+    // number of threads of the executor shared by clients without their own,
+    // use setExecutor for a different size
+    public static final int DEFAULT_ASYNC_THREADS = 16;
+
+    private static ExecutorService defaultExecutor = null;
+
+    static RestTemplate defaultRestTemplate = newRestTemplate(null);
+
+    private RestTemplate restTemplate = defaultRestTemplate;
+
+    private ExecutorService executor = null;
 
     /**
      * Default constructor for instantiating a client.
@@ -288,6 +309,123 @@ public class Client {
         this.currentOrganization = currentOrganization;
     }
 
+    /**
+     * @return true if requests and responses are sent as Smile binary JSON
+     *         rather than JSON text
+     */
+    public boolean isSmile() {
+        return smile;
+    }
+
+    /**
+     * @param smile
+     *            true to send requests and accept responses as Smile binary
+     *            JSON, which saves the text encoding for service clients
+     */
+    public void setSmile(boolean smile) {
+        this.smile = smile;
+    }
+
+    /**
+     * @param smile
+     *            true to send requests and accept responses as Smile binary
+     *            JSON, which saves the text encoding for service clients
+     * @return Client object for method call chaining
+     */
+    public Client withSmile(boolean smile) {
+        this.smile = smile;
+        return this;
+    }
+
+    /**
+     * @param requestFactory
+     *            the transport for requests to the API, such as a
+     *            {@link PooledHttpRequestFactory}, or null for the default
+     *            transport shared by all clients
+     */
+    public void setRequestFactory(ClientHttpRequestFactory requestFactory) {
+        if (requestFactory == null) {
+            restTemplate = defaultRestTemplate;
+        } else {
+            restTemplate = newRestTemplate(requestFactory);
+        }
+    }
+
+    /**
+     * @param requestFactory
+     *            the transport for requests to the API, such as a
+     *            {@link PooledHttpRequestFactory}, or null for the default
+     *            transport shared by all clients
+     * @return Client object for method call chaining
+     */
+    public Client withRequestFactory(ClientHttpRequestFactory requestFactory) {
+        setRequestFactory(requestFactory);
+        return this;
+    }
+
+    /**
+     * @return the transport for requests to the API
+     */
+    public ClientHttpRequestFactory getRequestFactory() {
+        return restTemplate.getRequestFactory();
+    }
+
+    /**
+     * @return the executor running the asynchronous requests of this client
+     */
+    public ExecutorService getExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+        return getDefaultExecutor();
+    }
+
+    /**
+     * @param executor
+     *            the executor running the asynchronous requests of this
+     *            client, or null for the executor shared by all clients
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param executor
+     *            the executor running the asynchronous requests of this
+     *            client, or null for the executor shared by all clients
+     * @return Client object for method call chaining
+     */
+    public Client withExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    private static RestTemplate newRestTemplate(
+            ClientHttpRequestFactory requestFactory) {
+        RestTemplate template = requestFactory != null ? new RestTemplate(
+                requestFactory) : new RestTemplate();
+        template.getMessageConverters().add(new SmileHttpMessageConverter());
+        return template;
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newFixedThreadPool(
+                    DEFAULT_ASYNC_THREADS, new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "usergrid-client-"
+                                    + count.incrementAndGet());
+                            // don't keep applications from exiting
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return defaultExecutor;
+    }
+
     /**
      * Low-level HTTP request method. Synchronous, blocks till response or
      * timeout.
@@ -307,8 +445,15 @@ public class Client {
     public <T> T httpRequest(HttpMethod method, Class<T> cls,
             Map<String, Object> params, Object data, String... segments) {
         HttpHeaders requestHeaders = new HttpHeaders();
-        requestHeaders.setAccept(Collections
-                .singletonList(MediaType.APPLICATION_JSON));
+        if (smile) {
+            // errors are still returned as JSON text
+            requestHeaders.setAccept(Arrays.asList(
+                    SmileHttpMessageConverter.APPLICATION_SMILE,
+                    MediaType.APPLICATION_JSON));
+        } else {
+            requestHeaders.setAccept(Collections
+                    .singletonList(MediaType.APPLICATION_JSON));
+        }
         if (accessToken != null) {
             String auth = "Bearer " + accessToken;
             requestHeaders.set("Authorization", auth);
@@ -316,7 +461,8 @@ public class Client {
         }
         String url = path(apiUrl, segments);
 
-        MediaType contentType = MediaType.APPLICATION_JSON;
+        MediaType contentType = smile ? SmileHttpMessageConverter.APPLICATION_SMILE
+                : MediaType.APPLICATION_JSON;
         if (method.equals(HttpMethod.POST) && isEmpty(data) && !isEmpty(params)) {
             data = encodeParams(params);
             contentType = MediaType.APPLICATION_FORM_URLENCODED;
@@ -374,6 +520,26 @@ public class Client {
         return response;
     }
 
+    /**
+     * High-level Usergrid API request that runs on the executor of the client
+     * and returns immediately.
+     *
+     * @param method
+     * @param params
+     * @param data
+     * @param segments
+     * @return a future for the response of the request
+     */
+    public Future<ApiResponse> apiRequestAsync(final HttpMethod method,
+            final Map<String, Object> params, final Object data,
+            final String... segments) {
+        return getExecutor().submit(new Callable<ApiResponse>() {
+            public ApiResponse call() {
+                return apiRequest(method, params, data, segments);
+            }
+        });
+    }
+
     protected void assertValidApplicationId() {
         if (isEmpty(applicationId)) {
             throw new IllegalArgumentException("No application id specified");
@@ -619,6 +785,36 @@ public class Client {
         return response;
     }
 
+    /**
+     * Create a new entity on the server without waiting for the response.
+     *
+     * @param entity
+     * @return a future for the ApiResponse with the new entity in it.
+     */
+    public Future<ApiResponse> createEntityAsync(final Entity entity) {
+        return getExecutor().submit(new Callable<ApiResponse>() {
+            public ApiResponse call() {
+                return createEntity(entity);
+            }
+        });
+    }
+
+    /**
+     * Create a new entity on the server from a set of properties without
+     * waiting for the response. Properties must include a "type" property.
+     *
+     * @param properties
+     * @return a future for the ApiResponse with the new entity in it.
+     */
+    public Future<ApiResponse> createEntityAsync(
+            final Map<String, Object> properties) {
+        return getExecutor().submit(new Callable<ApiResponse>() {
+            public ApiResponse call() {
+                return createEntity(properties);
+            }
+        });
+    }
+
     /**
      * Creates a user.
      *
@@ -824,6 +1020,49 @@ public class Client {
         return new EntityQuery(response, method, params, data, segments);
     }
 
+    /**
+     * Perform a query request on the executor of the client and return
+     * immediately.
+     *
+     * @param method
+     * @param params
+     * @param data
+     * @param segments
+     * @return a future for the query with the first page of results
+     */
+    public Future<Query> queryEntitiesRequestAsync(final HttpMethod method,
+            final Map<String, Object> params, final Object data,
+            final String... segments) {
+        return getExecutor().submit(new Callable<Query>() {
+            public Query call() {
+                return queryEntitiesRequest(method, params, data, segments);
+            }
+        });
+    }
+
+    /**
+     * Iterate all the entities of a query. The first page is requested when
+     * iteration starts and every following page when the previous one is
+     * used up, using the cursor of its response. The iterator throws an
+     * IllegalStateException when a page is an error response.
+     *
+     * @param method
+     * @param params
+     * @param data
+     * @param segments
+     * @return the entities of all the pages of the query
+     */
+    public Iterable<Entity> iterateEntities(final HttpMethod method,
+            final Map<String, Object> params, final Object data,
+            final String... segments) {
+        return new Iterable<Entity>() {
+            public Iterator<Entity> iterator() {
+                return new QueryIterator(queryEntitiesRequest(method, params,
+                        data, segments));
+            }
+        };
+    }
+
     /**
      * Perform a query of the users collection.
      *
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.java.client;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.DecompressingHttpClient;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * A transport for the Client that keeps a pool of persistent connections to
+ * the Usergrid API, for services that make many requests. Set it with
+ * {@link Client#setRequestFactory} and call {@link #destroy()} to close the
+ * pooled connections when the client is no longer used.
+ */
+public class PooledHttpRequestFactory extends
+        HttpComponentsClientHttpRequestFactory {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    /**
+     * Pooled transport with the default pool size and timeouts that accepts
+     * gzipped responses.
+     */
+    public PooledHttpRequestFactory() {
+        this(DEFAULT_MAX_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT,
+                DEFAULT_READ_TIMEOUT, true);
+    }
+
+    /**
+     * @param maxConnections
+     *            the maximum number of open connections to the API
+     * @param connectTimeout
+     *            the connection timeout in milliseconds, 0 for none
+     * @param readTimeout
+     *            the socket read timeout in milliseconds, 0 for none
+     * @param gzip
+     *            true to ask for gzipped responses and decompress them
+     */
+    public PooledHttpRequestFactory(int maxConnections, int connectTimeout,
+            int readTimeout, boolean gzip) {
+        super(createHttpClient(maxConnections, gzip));
+        setConnectTimeout(connectTimeout);
+        setReadTimeout(readTimeout);
+    }
+
+    private static HttpClient createHttpClient(int maxConnections,
+            boolean gzip) {
+        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        // all requests go to the same API host
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        HttpClient httpClient = new DefaultHttpClient(connectionManager);
+        if (gzip) {
+            httpClient = new DecompressingHttpClient(httpClient);
+        }
+        return httpClient;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.java.client;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.usergrid.java.client.Client.Query;
+import org.apache.usergrid.java.client.entities.Entity;
+import org.apache.usergrid.java.client.response.ApiResponse;
+
+/**
+ * Iterates the entities of a query, requesting the next page with the cursor
+ * of the last response whenever the current page is used up. An error
+ * response for a page is thrown as an IllegalStateException.
+ */
+public class QueryIterator implements Iterator<Entity> {
+
+    private Query query;
+    private Iterator<Entity> entities;
+
+    /**
+     * @param query
+     *            the query holding the first page of results
+     * @throws IllegalStateException
+     *             if the first page is an error response
+     */
+    public QueryIterator(Query query) {
+        this.query = query;
+        this.entities = getEntities(query);
+    }
+
+    public boolean hasNext() {
+        while (!entities.hasNext() && (query != null) && query.more()) {
+            query = query.next();
+            entities = getEntities(query);
+        }
+        return entities.hasNext();
+    }
+
+    public Entity next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return entities.next();
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static Iterator<Entity> getEntities(Query query) {
+        if ((query == null) || (query.getResponse() == null)) {
+            return Collections.<Entity> emptyList().iterator();
+        }
+        ApiResponse response = query.getResponse();
+        if (response.getError() != null) {
+            // a failed page would otherwise look like the end of the results
+            throw new IllegalStateException(
+                    "Unable to get the entities of the query: "
+                            + response.getError() + " ("
+                            + response.getErrorDescription() + ")");
+        }
+        if (response.getEntities() == null) {
+            return Collections.<Entity> emptyList().iterator();
+        }
+        return response.getEntities().iterator();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.java.client;
+
+import java.util.Collections;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Reads and writes request and response bodies as Smile, the binary JSON
+ * format the Usergrid API accepts and produces for the
+ * application/x-jackson-smile media type.
+ */
+public class SmileHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType(
+            "application", "x-jackson-smile");
+
+    public SmileHttpMessageConverter() {
+        setObjectMapper(new ObjectMapper(new SmileFactory()));
+        setSupportedMediaTypes(Collections.singletonList(APPLICATION_SMILE));
+    }
+}
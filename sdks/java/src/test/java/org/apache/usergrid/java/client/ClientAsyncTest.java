@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.java.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.usergrid.java.client.Client.Query;
+import org.apache.usergrid.java.client.entities.Entity;
+import org.apache.usergrid.java.client.response.ApiResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+
+/**
+ * Asynchronous requests of a client, run on its executor.
+ */
+public class ClientAsyncTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private TestServer server;
+
+    private ThreadPoolExecutor executor;
+
+    private Client client;
+
+    @Before
+    public void setup() throws Exception {
+        server = new TestServer() {
+            Response respond(String method, URI uri) throws Exception {
+                // hold the response until the test lets it through
+                release.await();
+                if ("POST".equals(method)) {
+                    return page(null, "created");
+                }
+                return page("next", "fred");
+            }
+        };
+
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+
+        client = new Client("test-organization", "test-app").withApiUrl(
+                server.getUrl()).withExecutor(executor);
+    }
+
+    @After
+    public void shutDown() throws Exception {
+        release.countDown();
+        executor.shutdownNow();
+        server.stop();
+    }
+
+    @Test
+    public void apiRequestAsync() throws Exception {
+        Future<ApiResponse> future = client.apiRequestAsync(HttpMethod.GET,
+                null, null, "test-organization", "test-app", "things");
+
+        assertSame(executor, client.getExecutor());
+        assertEquals(1, executor.getTaskCount());
+        assertFalse(future.isDone());
+
+        release.countDown();
+        ApiResponse response = future.get(10, TimeUnit.SECONDS);
+        assertEquals("fred", name(response.getFirstEntity()));
+        assertEquals("/test-organization/test-app/things",
+                server.requests.get(0).getPath());
+    }
+
+    @Test
+    public void createEntityAsync() throws Exception {
+        Entity entity = new Entity("thing");
+        entity.setProperty("name", "created");
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("type", "thing");
+        properties.put("name", "created");
+
+        Future<ApiResponse> first = client.createEntityAsync(entity);
+        Future<ApiResponse> second = client.createEntityAsync(properties);
+        assertFalse(first.isDone());
+
+        release.countDown();
+        assertEquals("created",
+                name(first.get(10, TimeUnit.SECONDS).getFirstEntity()));
+        assertEquals("created",
+                name(second.get(10, TimeUnit.SECONDS).getFirstEntity()));
+
+        assertEquals(2, executor.getTaskCount());
+        assertEquals("/test-organization/test-app/thing", server.requests
+                .get(0).getPath());
+        assertTrue(server.bodies.get(0).contains("\"name\":\"created\""));
+        assertTrue(server.bodies.get(1).contains("\"name\":\"created\""));
+    }
+
+    @Test
+    public void queryEntitiesRequestAsync() throws Exception {
+        Future<Query> future = client.queryEntitiesRequestAsync(
+                HttpMethod.GET, null, null, "test-organization", "test-app",
+                "things");
+        assertFalse(future.isDone());
+
+        release.countDown();
+        Query query = future.get(10, TimeUnit.SECONDS);
+        assertEquals("fred", name(query.getResponse().getFirstEntity()));
+        assertTrue(query.more());
+    }
+
+    @Test
+    public void defaultExecutor() throws Exception {
+        client.setExecutor(null);
+        assertSame(new Client().getExecutor(), client.getExecutor());
+
+        // the shared threads don't keep applications from exiting
+        boolean daemon = client.getExecutor().submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return Thread.currentThread().isDaemon();
+            }
+        }).get(10, TimeUnit.SECONDS);
+        assertTrue(daemon);
+
+        release.countDown();
+        ApiResponse response = client.apiRequestAsync(HttpMethod.GET, null,
+                null, "things").get(10, TimeUnit.SECONDS);
+        assertEquals("fred", name(response.getFirstEntity()));
+        assertEquals(0, executor.getTaskCount());
+    }
+
+    private static String name(Entity entity) {
+        return entity.getProperties().get("name").asText();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.java.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.DecompressingHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.usergrid.java.client.response.ApiResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+
+/**
+ * Requests of a client through the pooled transport.
+ */
+public class PooledHttpRequestFactoryTest {
+
+    private TestServer server;
+
+    private PooledHttpRequestFactory requestFactory;
+
+    @Before
+    public void setup() throws Exception {
+        server = new TestServer() {
+            Response respond(String method, URI uri) {
+                if (uri.getPath().endsWith("/missing")) {
+                    return error(404, "service_resource_not_found",
+                            "missing not found");
+                }
+                return page(null, "fred");
+            }
+        };
+    }
+
+    @After
+    public void shutDown() throws Exception {
+        if (requestFactory != null) {
+            requestFactory.destroy();
+        }
+        server.stop();
+    }
+
+    @Test
+    public void settings() {
+        requestFactory = new PooledHttpRequestFactory(10, 1000, 2000, true);
+
+        HttpClient httpClient = requestFactory.getHttpClient();
+        assertTrue(httpClient instanceof DecompressingHttpClient);
+
+        PoolingClientConnectionManager connectionManager;
+        connectionManager = (PoolingClientConnectionManager) httpClient
+                .getConnectionManager();
+        assertEquals(10, connectionManager.getMaxTotal());
+        assertEquals(10, connectionManager.getDefaultMaxPerRoute());
+
+        assertEquals(1000,
+                HttpConnectionParams.getConnectionTimeout(httpClient
+                        .getParams()));
+        assertEquals(2000,
+                HttpConnectionParams.getSoTimeout(httpClient.getParams()));
+    }
+
+    @Test
+    public void gzippedResponses() {
+        requestFactory = new PooledHttpRequestFactory();
+        Client client = new Client().withApiUrl(server.getUrl())
+                .withRequestFactory(requestFactory);
+        assertSame(requestFactory, client.getRequestFactory());
+
+        for (int i = 0; i < 2; i++) {
+            ApiResponse response = client.apiRequest(HttpMethod.GET, null,
+                    null, "things");
+            assertEquals("fred", response.getFirstEntity().getProperties()
+                    .get("name").asText());
+        }
+
+        assertEquals(2, server.requests.size());
+        assertEquals(2, server.gzipped.get());
+    }
+
+    @Test
+    public void uncompressedResponses() {
+        requestFactory = new PooledHttpRequestFactory(
+                PooledHttpRequestFactory.DEFAULT_MAX_CONNECTIONS,
+                PooledHttpRequestFactory.DEFAULT_CONNECT_TIMEOUT,
+                PooledHttpRequestFactory.DEFAULT_READ_TIMEOUT, false);
+        Client client = new Client().withApiUrl(server.getUrl())
+                .withRequestFactory(requestFactory);
+
+        ApiResponse response = client.apiRequest(HttpMethod.GET, null, null,
+                "things");
+        assertEquals("fred", response.getFirstEntity().getProperties()
+                .get("name").asText());
+        assertEquals(0, server.gzipped.get());
+    }
+
+    @Test
+    public void errorResponses() {
+        requestFactory = new PooledHttpRequestFactory();
+        Client client = new Client().withApiUrl(server.getUrl())
+                .withRequestFactory(requestFactory);
+
+        ApiResponse response = client.apiRequest(HttpMethod.GET, null, null,
+                "missing");
+        assertEquals("service_resource_not_found", response.getError());
+        assertNull(response.getEntities());
+    }
+
+    @Test
+    public void defaultTransport() {
+        Client client = new Client().withApiUrl(server.getUrl());
+        assertSame(Client.defaultRestTemplate.getRequestFactory(),
+                client.getRequestFactory());
+
+        requestFactory = new PooledHttpRequestFactory();
+        client.setRequestFactory(requestFactory);
+        assertSame(requestFactory, client.getRequestFactory());
+
+        // back to the transport shared by all clients
+        client.setRequestFactory(null);
+        assertSame(Client.defaultRestTemplate.getRequestFactory(),
+                client.getRequestFactory());
+
+        ApiResponse response = client.apiRequest(HttpMethod.GET, null, null,
+                "things");
+        assertEquals(1, response.getEntities().size());
+    }
+}
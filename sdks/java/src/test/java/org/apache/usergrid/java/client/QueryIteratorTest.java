@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.java.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.usergrid.java.client.Client.Query;
+import org.apache.usergrid.java.client.entities.Entity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+
+/**
+ * Iteration of the pages of a query.
+ */
+public class QueryIteratorTest {
+
+    private TestServer server;
+
+    private Client client;
+
+    @Before
+    public void setup() throws Exception {
+        // three pages of things, the second one empty, and others that
+        // fail on the second page
+        server = new TestServer() {
+            Response respond(String method, URI uri) {
+                String query = uri.getQuery();
+                if (query == null) {
+                    if (uri.getPath().endsWith("/others")) {
+                        return page("expired", "x");
+                    }
+                    return page("c1", "a", "b");
+                } else if (query.contains("cursor=c1")) {
+                    return page("c2");
+                } else if (query.contains("cursor=c2")) {
+                    return page(null, "c");
+                }
+                return error(400, "bad_request", "cursor expired");
+            }
+        };
+
+        client = new Client().withApiUrl(server.getUrl());
+    }
+
+    @After
+    public void shutDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void iteratesAllPages() {
+        Iterable<Entity> entities = client.iterateEntities(HttpMethod.GET,
+                null, null, "things");
+
+        // nothing is requested until iteration starts
+        assertEquals(0, server.requests.size());
+
+        Iterator<Entity> iterator = entities.iterator();
+        assertEquals(1, server.requests.size());
+
+        List<String> names = new ArrayList<String>();
+        while (iterator.hasNext()) {
+            names.add(name(iterator.next()));
+        }
+
+        assertEquals(Arrays.asList("a", "b", "c"), names);
+        assertEquals(3, server.requests.size());
+        assertNull(server.requests.get(0).getQuery());
+        assertEquals("cursor=c1", server.requests.get(1).getQuery());
+        assertEquals("cursor=c2", server.requests.get(2).getQuery());
+
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("iteration should have ended");
+        } catch (NoSuchElementException e) {
+        }
+    }
+
+    @Test
+    public void pagesAreRequestedWhenUsedUp() {
+        Iterator<Entity> iterator = client.iterateEntities(HttpMethod.GET,
+                null, null, "things").iterator();
+
+        assertEquals("a", name(iterator.next()));
+        assertEquals("b", name(iterator.next()));
+        assertEquals(1, server.requests.size());
+
+        assertEquals("c", name(iterator.next()));
+        assertEquals(3, server.requests.size());
+    }
+
+    @Test
+    public void errorOnLaterPage() {
+        Iterator<Entity> iterator = client.iterateEntities(HttpMethod.GET,
+                null, null, "others").iterator();
+
+        assertEquals("x", name(iterator.next()));
+
+        try {
+            iterator.hasNext();
+            fail("the error of the next page should be thrown");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("bad_request"));
+            assertTrue(e.getMessage().contains("cursor expired"));
+        }
+        assertEquals(2, server.requests.size());
+    }
+
+    @Test
+    public void startsFromQuery() {
+        Query query = client.queryEntitiesRequest(HttpMethod.GET, null, null,
+                "things");
+        query = query.next();
+
+        Iterator<Entity> iterator = new QueryIterator(query);
+        assertEquals("c", name(iterator.next()));
+        assertFalse(iterator.hasNext());
+        assertEquals(3, server.requests.size());
+    }
+
+    @Test
+    public void errorOnFirstPage() {
+        Query query = client.queryEntitiesRequest(HttpMethod.GET,
+                Collections.<String, Object> singletonMap("cursor", "expired"),
+                null, "things");
+        assertEquals("bad_request", query.getResponse().getError());
+
+        try {
+            new QueryIterator(query);
+            fail("the error of the first page should be thrown");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("bad_request"));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void remove() {
+        client.iterateEntities(HttpMethod.GET, null, null, "things")
+                .iterator().remove();
+    }
+
+    private static String name(Entity entity) {
+        return entity.getProperties().get("name").asText();
+    }
+}
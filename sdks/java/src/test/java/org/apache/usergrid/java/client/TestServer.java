@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.java.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local API server that answers every request with the JSON of
+ * {@link #respond}, gzipped when the client accepts it.
+ */
+abstract class TestServer implements HttpHandler {
+
+    final List<URI> requests = Collections
+            .synchronizedList(new ArrayList<URI>());
+
+    final List<String> bodies = Collections
+            .synchronizedList(new ArrayList<String>());
+
+    final AtomicInteger gzipped = new AtomicInteger();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    TestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the status and JSON body of the response to a request
+     */
+    abstract Response respond(String method, URI uri) throws Exception;
+
+    String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.add(exchange.getRequestURI());
+            bodies.add(new String(read(exchange.getRequestBody()), "UTF-8"));
+
+            Response response;
+            try {
+                response = respond(exchange.getRequestMethod(),
+                        exchange.getRequestURI());
+            } catch (Exception e) {
+                response = new Response(500, "{\"error\":\"test_error\"}");
+            }
+
+            byte[] body = response.body.getBytes("UTF-8");
+            String encoding = exchange.getRequestHeaders().getFirst(
+                    "Accept-Encoding");
+            if ((encoding != null) && encoding.contains("gzip")) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                gzip.write(body);
+                gzip.close();
+                body = out.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                gzipped.incrementAndGet();
+            }
+            exchange.getResponseHeaders().set("Content-Type",
+                    "application/json");
+            exchange.sendResponseHeaders(response.status, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        for (int n = in.read(chunk); n >= 0; n = in.read(chunk)) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * @return a page of the entities with the given names, with a cursor for
+     *         the next page if there is one
+     */
+    static Response page(String cursor, String... names) {
+        StringBuilder json = new StringBuilder("{\"entities\":[");
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append("{\"type\":\"thing\",\"name\":\"").append(names[i])
+                    .append("\"}");
+        }
+        json.append("]");
+        if (cursor != null) {
+            json.append(",\"cursor\":\"").append(cursor).append("\"");
+        }
+        return new Response(200, json.append("}").toString());
+    }
+
+    static Response error(int status, String error, String description) {
+        return new Response(status, "{\"error\":\"" + error
+                + "\",\"error_description\":\"" + description + "\"}");
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.apache.usergrid.count.common.Count;
+import org.apache.usergrid.count.common.CountSerDeUtils;
+
+
+/**
+ * Aggregation of a batch of counts by counter name the way the counter store does before writing them, and the
+ * transport serialization of a count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CountBenchmark {
+
+    @Param({ "100", "1000" })
+    public int batchSize;
+
+    /** The number of distinct counters in a batch */
+    @Param({ "10", "100" })
+    public int counters;
+
+    private List<Count> batch;
+    private String serialized;
+
+
+    @Setup
+    public void setup() {
+        batch = new ArrayList<Count>( batchSize );
+
+        for ( int i = 0; i < batchSize; i++ ) {
+            batch.add( new Count( "Counters", "application." + ( i % counters ), "hits", 1 ) );
+        }
+
+        serialized = CountSerDeUtils.serialize( batch.get( 0 ) );
+    }
+
+
+    @Benchmark
+    public Map<String, Count> aggregate() {
+        Map<String, Count> countHolder = new HashMap<String, Count>();
+
+        for ( Count count : batch ) {
+            // the counts are applied to a copy so that every invocation starts from the same batch
+            Count c = countHolder.get( count.getCounterName() );
+            if ( c != null ) {
+                c.apply( count );
+            }
+            else {
+                countHolder.put( count.getCounterName(),
+                        new Count( count.getTableName(), count.getKeyName(), count.getColumnName(),
+                                count.getValue() ) );
+            }
+        }
+
+        return countHolder;
+    }
+
+
+    @Benchmark
+    public String serialize() {
+        return CountSerDeUtils.serialize( batch.get( 0 ) );
+    }
+
+
+    @Benchmark
+    public Count deserialize() {
+        return CountSerDeUtils.deserialize( serialized );
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.apache.usergrid.security.shiro.CustomPermission;
+
+
+/** Permission checks of request paths against exact, wildcard and deep wildcard grants */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CustomPermissionBenchmark {
+
+    private static final String APP = "applications:get:00000000-0000-0000-0000-000000000001:";
+
+    private CustomPermission exact;
+    private CustomPermission wildcard;
+    private CustomPermission deepWildcard;
+    private CustomPermission request;
+
+
+    @Setup
+    public void setup() {
+        exact = new CustomPermission( APP + "/users/3b270ee0-a2d7-11e2-b8ac-f14ec968db08/activities" );
+        wildcard = new CustomPermission( APP + "/users/*/activities" );
+        deepWildcard = new CustomPermission( APP + "/users/**" );
+        request = new CustomPermission( APP + "/users/3b270ee0-a2d7-11e2-b8ac-f14ec968db08/activities" );
+    }
+
+
+    @Benchmark
+    public boolean impliesExact() {
+        return exact.implies( request );
+    }
+
+
+    @Benchmark
+    public boolean impliesWildcard() {
+        return wildcard.implies( request );
+    }
+
+
+    @Benchmark
+    public boolean impliesDeepWildcard() {
+        return deepWildcard.implies( request );
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.apache.usergrid.utils.IndexUtils;
+
+
+/** Flattening of entity properties into index entries and the tokenizing of full text values */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IndexUtilsBenchmark {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog while the tortoise, slow and "
+            + "steady, keeps walking towards the finish line. Nobody expects the tortoise to win the race, yet "
+            + "here we are again watching it cross the line first.";
+
+    private Map<String, Object> entity;
+
+
+    @Setup
+    public void setup() {
+        Map<String, Object> address = new HashMap<String, Object>();
+        address.put( "street", "1 Main Street" );
+        address.put( "city", "Springfield" );
+
+        entity = new HashMap<String, Object>();
+        entity.put( "name", "benchmark" );
+        entity.put( "age", 42 );
+        entity.put( "tags", Arrays.asList( "alpha", "bravo", "charlie" ) );
+        entity.put( "address", address );
+        entity.put( "description", TEXT );
+    }
+
+
+    @Benchmark
+    public List<Entry<String, Object>> keyValueList() {
+        return IndexUtils.getKeyValueList( entity, false );
+    }
+
+
+    @Benchmark
+    public List<Entry<String, Object>> keyValueListFulltext() {
+        return IndexUtils.getKeyValueList( entity, true );
+    }
+
+
+    @Benchmark
+    public List<String> keywords() {
+        return IndexUtils.keywords( TEXT );
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteOrder;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONObject;
+import org.bson.types.ObjectId;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.apache.usergrid.mongo.MongoMessageDecoder;
+import org.apache.usergrid.mongo.MongoMessageEncoder;
+import org.apache.usergrid.mongo.protocol.Message;
+import org.apache.usergrid.mongo.protocol.OpInsert;
+import org.apache.usergrid.mongo.protocol.OpQuery;
+import org.apache.usergrid.mongo.protocol.OpReply;
+
+
+/**
+ * The per message cost of the mongo emulator's wire protocol handling. The loopback benchmark runs the emulator's
+ * encoder and decoder in a netty server that answers every query with canned documents, so it measures the pipeline
+ * without Cassandra behind it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MongoEmulatorBenchmark {
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    @Param({ "1", "30", "100" })
+    public int documents;
+
+    private OpReply reply;
+    private ChannelBuffer insert;
+    private byte[] query;
+
+    private ServerBootstrap bootstrap;
+    private Channel server;
+
+
+    @Setup
+    public void setup() throws IOException {
+        reply = new OpReply();
+        OpInsert op = new OpInsert();
+
+        for ( int i = 0; i < documents; i++ ) {
+            reply.addDocument( document( i ) );
+            op.addDocument( document( i ) );
+        }
+
+        insert = op.encode( null );
+
+        OpQuery q = new OpQuery();
+        q.setRequestID( 1 );
+        q.setNumberToReturn( documents );
+        q.setQuery( new BasicBSONObject( "name", "bench" ) );
+
+        ChannelBuffer encoded = q.encode( null );
+        query = new byte[encoded.readableBytes()];
+        encoded.readBytes( query );
+
+        bootstrap = new ServerBootstrap(
+                new NioServerSocketChannelFactory( Executors.newCachedThreadPool(), Executors.newCachedThreadPool() ) );
+        bootstrap.setOption( "child.bufferFactory", HeapChannelBufferFactory.getInstance( ByteOrder.LITTLE_ENDIAN ) );
+        bootstrap.setOption( "child.tcpNoDelay", true );
+        bootstrap.setPipelineFactory( new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline( new MongoMessageEncoder(), new MongoMessageDecoder(), new CannedReplies() );
+            }
+        } );
+
+        server = bootstrap.bind( new InetSocketAddress( InetAddress.getByName( LOOPBACK ), 0 ) );
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        server.close().awaitUninterruptibly();
+        bootstrap.releaseExternalResources();
+    }
+
+
+    private static BSONObject document( int i ) {
+        BSONObject document = new BasicBSONObject();
+        document.put( "_id", new ObjectId() );
+        document.put( "uuid", UUID.randomUUID().toString() );
+        document.put( "type", "band" );
+        document.put( "name", "band" + i );
+        document.put( "founded", 1970 + i );
+        document.put( "created", System.currentTimeMillis() );
+        document.put( "tags", new String[] { "rock", "live" } );
+        return document;
+    }
+
+
+    @Benchmark
+    public Message decodeInsert() throws Exception {
+        return MongoMessageDecoder.decode( insert );
+    }
+
+
+    @Benchmark
+    public ChannelBuffer encodeReply() {
+        return reply.encode( ChannelBuffers.dynamicBuffer( ByteOrder.LITTLE_ENDIAN, 4096 ) );
+    }
+
+
+    @Benchmark
+    public int loopbackQuery( Client client ) throws IOException {
+        return client.roundTrip( query );
+    }
+
+
+    /** A connection to the benchmark server per benchmark thread */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private Socket socket;
+        private OutputStream out;
+        private DataInputStream in;
+        private byte[] response = new byte[1024];
+
+
+        @Setup
+        public void connect( MongoEmulatorBenchmark benchmark ) throws IOException {
+            socket = new Socket( InetAddress.getByName( LOOPBACK ),
+                    ( ( InetSocketAddress ) benchmark.server.getLocalAddress() ).getPort() );
+            socket.setTcpNoDelay( true );
+            out = socket.getOutputStream();
+            in = new DataInputStream( socket.getInputStream() );
+        }
+
+
+        @TearDown
+        public void close() throws IOException {
+            socket.close();
+        }
+
+
+        int roundTrip( byte[] request ) throws IOException {
+            out.write( request );
+            out.flush();
+
+            int length = Integer.reverseBytes( in.readInt() );
+            if ( response.length < length ) {
+                response = new byte[length];
+            }
+
+            in.readFully( response, 0, length - 4 );
+            return length;
+        }
+    }
+
+
+    /** Answers every query with the benchmark's reply documents */
+    private class CannedReplies extends SimpleChannelHandler {
+
+        @Override
+        public void messageReceived( ChannelHandlerContext ctx, MessageEvent e ) {
+            OpReply response = new OpReply( ( Message ) e.getMessage() );
+            response.setDocuments( reply.getDocuments() );
+            e.getChannel().write( response );
+        }
+    }
+}
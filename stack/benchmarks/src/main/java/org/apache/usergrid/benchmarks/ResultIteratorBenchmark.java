@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.apache.usergrid.persistence.DynamicEntity;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.persistence.query.ir.QuerySlice;
+import org.apache.usergrid.persistence.query.ir.result.IntersectionIterator;
+import org.apache.usergrid.persistence.query.ir.result.OrderByIterator;
+import org.apache.usergrid.persistence.query.ir.result.ResultIterator;
+import org.apache.usergrid.persistence.query.ir.result.ScanColumn;
+import org.apache.usergrid.persistence.query.ir.result.SubtractionIterator;
+import org.apache.usergrid.persistence.query.ir.result.UnionIterator;
+
+
+/**
+ * Merges of synthetic index scans through the union, intersection, subtraction and order by iterators. The entities
+ * the order by iterator sorts are served from memory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResultIteratorBenchmark {
+
+    /** The number of columns in each scan */
+    @Param({ "1000", "10000" })
+    public int size;
+
+    @Param({ "100", "1000" })
+    public int pageSize;
+
+    private List<ScanColumn> evens;
+    private List<ScanColumn> thirds;
+    private List<ScanColumn> all;
+
+    private EntityManager em;
+
+
+    @Setup
+    public void setup() {
+        evens = SyntheticIterator.columns( 0, size * 2, 2 );
+        thirds = SyntheticIterator.columns( 0, size * 3, 3 );
+        all = SyntheticIterator.columns( 0, size, 1 );
+
+        final Map<UUID, Entity> entities = new HashMap<UUID, Entity>();
+
+        for ( int i = 0; i < all.size(); i++ ) {
+            UUID id = all.get( i ).getUUID();
+
+            Entity entity = new DynamicEntity( "user", id );
+            entity.setProperty( "age", ( i * 7919 ) % 100 );
+            entities.put( id, entity );
+        }
+
+        em = ( EntityManager ) Proxy.newProxyInstance( EntityManager.class.getClassLoader(),
+                new Class<?>[] { EntityManager.class }, new InvocationHandler() {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args ) {
+                if ( !"getPartialEntities".equals( method.getName() ) ) {
+                    throw new UnsupportedOperationException( method.getName() );
+                }
+
+                List<Entity> results = new ArrayList<Entity>();
+
+                for ( Object id : ( Collection<?> ) args[0] ) {
+                    Entity entity = entities.get( id );
+
+                    if ( entity != null ) {
+                        results.add( entity );
+                    }
+                }
+
+                return results;
+            }
+        } );
+    }
+
+
+    @Benchmark
+    public void union( Blackhole bh ) {
+        UnionIterator union = new UnionIterator( pageSize, 0, null );
+        union.addIterator( new SyntheticIterator( evens, pageSize ) );
+        union.addIterator( new SyntheticIterator( thirds, pageSize ) );
+
+        drain( union, bh );
+    }
+
+
+    @Benchmark
+    public void intersection( Blackhole bh ) {
+        IntersectionIterator intersection = new IntersectionIterator( pageSize );
+        intersection.addIterator( new SyntheticIterator( evens, pageSize ) );
+        intersection.addIterator( new SyntheticIterator( thirds, pageSize ) );
+
+        drain( intersection, bh );
+    }
+
+
+    @Benchmark
+    public void subtraction( Blackhole bh ) {
+        SubtractionIterator subtraction = new SubtractionIterator( pageSize );
+        subtraction.setKeepIterator( new SyntheticIterator( evens, pageSize ) );
+        subtraction.setSubtractIterator( new SyntheticIterator( thirds, pageSize ) );
+
+        drain( subtraction, bh );
+    }
+
+
+    @Benchmark
+    public void orderBy( Blackhole bh ) {
+        OrderByIterator orderBy = new OrderByIterator( new QuerySlice( "age", 0 ),
+                Collections.<Query.SortPredicate>emptyList(), new SyntheticIterator( all, pageSize ), em, pageSize );
+
+        drain( orderBy, bh );
+    }
+
+
+    private static void drain( ResultIterator iterator, Blackhole bh ) {
+        while ( iterator.hasNext() ) {
+            Set<ScanColumn> page = iterator.next();
+            bh.consume( page );
+        }
+    }
+}
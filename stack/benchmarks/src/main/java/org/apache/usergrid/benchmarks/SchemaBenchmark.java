@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.apache.usergrid.persistence.Schema;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.apache.usergrid.persistence.Schema.deserializeEntityProperties;
+import static org.apache.usergrid.persistence.Schema.serializeEntityProperty;
+
+
+/** Serialization of entity properties to and from their column values */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SchemaBenchmark {
+
+    private Map<String, Object> properties;
+    private Map<String, ByteBuffer> columns;
+
+
+    @Setup
+    public void setup() {
+        // loads the entity classes once, outside of the measurements
+        Schema.getDefaultSchema();
+
+        Map<String, Object> address = new HashMap<String, Object>();
+        address.put( "street", "1 Main Street" );
+        address.put( "city", "Springfield" );
+        address.put( "zip", "12345" );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "uuid", UUIDUtils.newTimeUUID() );
+        properties.put( "type", "user" );
+        properties.put( "created", System.currentTimeMillis() );
+        properties.put( "modified", System.currentTimeMillis() );
+        properties.put( "username", "benchmark" );
+        properties.put( "email", "benchmark@usergrid.org" );
+        properties.put( "activated", true );
+        properties.put( "age", 42 );
+        properties.put( "tags", Arrays.asList( "alpha", "bravo", "charlie" ) );
+        properties.put( "address", address );
+
+        columns = serialize();
+    }
+
+
+    @Benchmark
+    public Map<String, ByteBuffer> serialize() {
+        Map<String, ByteBuffer> serialized = new HashMap<String, ByteBuffer>( properties.size() );
+
+        for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+            serialized.put( property.getKey(),
+                    serializeEntityProperty( "user", property.getKey(), property.getValue() ) );
+        }
+
+        return serialized;
+    }
+
+
+    @Benchmark
+    public Map<String, Object> deserialize() {
+        Map<String, ByteBuffer> copy = new HashMap<String, ByteBuffer>( columns.size() );
+
+        // the values are read through, so hand out fresh views of them
+        for ( Map.Entry<String, ByteBuffer> column : columns.entrySet() ) {
+            copy.put( column.getKey(), column.getValue().duplicate() );
+        }
+
+        return deserializeEntityProperties( copy );
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.cassandra.CursorCache;
+import org.apache.usergrid.persistence.query.ir.result.ResultIterator;
+import org.apache.usergrid.persistence.query.ir.result.ScanColumn;
+import org.apache.usergrid.persistence.query.ir.result.UUIDIndexSliceParser;
+import org.apache.usergrid.utils.UUIDUtils;
+
+
+/** Pages through an in memory list of columns in place of an index scan */
+public class SyntheticIterator implements ResultIterator {
+
+    private final List<ScanColumn> columns;
+    private final int pageSize;
+    private int position;
+
+
+    public SyntheticIterator( List<ScanColumn> columns, int pageSize ) {
+        this.columns = columns;
+        this.pageSize = pageSize;
+    }
+
+
+    /** Create the columns of the time uuids from start to finish, stepping by step */
+    public static List<ScanColumn> columns( long start, long finish, long step ) {
+        List<ScanColumn> columns = new ArrayList<ScanColumn>();
+
+        for ( long i = start; i < finish; i += step ) {
+            columns.add( new UUIDIndexSliceParser.UUIDColumn( UUIDUtils.minTimeUUID( i ), ByteBuffer.allocate( 0 ) ) );
+        }
+
+        return columns;
+    }
+
+
+    @Override
+    public void reset() {
+        position = 0;
+    }
+
+
+    @Override
+    public void finalizeCursor( CursorCache cache, UUID lastValue ) {
+        // no cursors to keep
+    }
+
+
+    @Override
+    public Iterator<Set<ScanColumn>> iterator() {
+        return this;
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        return position < columns.size();
+    }
+
+
+    @Override
+    public Set<ScanColumn> next() {
+        int end = Math.min( position + pageSize, columns.size() );
+
+        Set<ScanColumn> page = new LinkedHashSet<ScanColumn>( columns.subList( position, end ) );
+
+        position = end;
+
+        return page;
+    }
+
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException( "Remove is not supported" );
+    }
+}
@@ -254,7 +254,9 @@ equalityop :
 
 //geo location search
 locationop :
-  withinproperty WITHIN<WithinOperand>^ (floatliteral|longliteral) OF! (floatliteral|longliteral) ','! (floatliteral|longliteral);
+  withinproperty WITHIN<WithinOperand>^ (floatliteral|longliteral) OF! (floatliteral|longliteral) ','! (floatliteral|longliteral)
+  //area search, the id names the shape (box or polygon) the coordinates describe
+  | withinproperty WITHIN! ID<WithinShapeOperand>^ (floatliteral|longliteral) (','! (floatliteral|longliteral))+;
   
 //string search
 containsop :
@@ -324,8 +326,15 @@ select_assign
 
 };
 
+select_count
+  : 'count(*)' {
+
+  query.setCountOnly(true);
+
+};
+
 select_expr 
-  : ('*' | select_subject (',' select_subject) * | '{' select_assign (',' select_assign) * '}');  
+  : ('*' | select_count | select_subject (',' select_subject) * | '{' select_assign (',' select_assign) * '}');  
    
 //end select clauses
 
@@ -39,10 +39,20 @@ public class JobDescriptor extends TypedEntity {
     private final JobData data;
     private final JobStat stats;
     private final JobRuntimeService runtime;
+    private final long fireTime;
 
 
     public JobDescriptor( String jobName, UUID jobId, UUID transactionId, JobData data, JobStat stats,
                           JobRuntimeService runtime ) {
+        this( jobName, jobId, transactionId, data, stats, runtime, 0 );
+    }
+
+
+    /**
+     * @param fireTime the time in millis the job was scheduled to fire, or 0 if unknown
+     */
+    public JobDescriptor( String jobName, UUID jobId, UUID transactionId, JobData data, JobStat stats,
+                          JobRuntimeService runtime, long fireTime ) {
         Assert.notNull( jobName, "Job name cannot be null" );
         Assert.notNull( jobId != null, "A JobId is required" );
         Assert.notNull( transactionId != null, "A transactionId is required" );
@@ -56,6 +66,7 @@ public class JobDescriptor extends TypedEntity {
         this.data = data;
         this.stats = stats;
         this.runtime = runtime;
+        this.fireTime = fireTime;
     }
 
 
@@ -93,4 +104,10 @@ public class JobDescriptor extends TypedEntity {
     public JobStat getStats() {
         return stats;
     }
+
+
+    /** @return the time in millis the job was scheduled to fire, or 0 if unknown */
+    public long getFireTime() {
+        return fireTime;
+    }
 }
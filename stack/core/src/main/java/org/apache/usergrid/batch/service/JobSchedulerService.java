@@ -18,7 +18,9 @@ package org.apache.usergrid.batch.service;
 
 
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
@@ -39,6 +41,7 @@ import org.apache.usergrid.batch.repository.JobDescriptor;
 import org.apache.usergrid.metrics.MetricsFactory;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Timer;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.common.util.concurrent.FutureCallback;
@@ -51,22 +54,41 @@ import com.yammer.metrics.annotation.Timed;
 
 
 /**
- * Service that schedules itself, then schedules jobs in the same pool
+ * Service that schedules itself, then schedules jobs in the same pool.
+ * <p/>
+ * Jobs are fetched in batches sized to the free workers plus a small prefetch buffer. Prefetched jobs are started by
+ * the worker callbacks as soon as a worker frees up, so the polling thread never blocks waiting for capacity. While
+ * the last fetch was full the service polls again almost immediately, otherwise, and while every worker and the
+ * prefetch buffer are taken, it waits for the interval.
  */
 public class JobSchedulerService extends AbstractScheduledService {
     protected static final long DEFAULT_DELAY = 1000;
 
+    /** Delay in millis before polling again when the last fetch returned as many jobs as were asked for */
+    protected static final long BACKLOG_DELAY = 10;
+
+    /** Default max time in millis a prefetched job waits for a worker before it's left to time out in the queue */
+    protected static final long DEFAULT_PREFETCH_TIMEOUT = 10000;
+
     private static final Logger LOG = LoggerFactory.getLogger( JobSchedulerService.class );
 
     private long interval = DEFAULT_DELAY;
     private int workerSize = 1;
     private int maxFailCount = 10;
+    private int prefetchSize = 0;
+    private long prefetchTimeout = DEFAULT_PREFETCH_TIMEOUT;
 
     private JobAccessor jobAccessor;
     private JobFactory jobFactory;
 
     private Semaphore capacitySemaphore;
 
+    /** Jobs fetched but not yet started, oldest first */
+    private final Queue<PrefetchedJob> prefetched = new ConcurrentLinkedQueue<PrefetchedJob>();
+
+    /** True if the last fetch was full, more jobs are probably waiting */
+    private volatile boolean backlog;
+
     private ListeningScheduledExecutorService service;
     private JobListener jobListener;
 
@@ -74,6 +96,9 @@ public class JobSchedulerService extends AbstractScheduledService {
     private Counter runCounter;
     private Counter successCounter;
     private Counter failCounter;
+    private Counter prefetchCounter;
+    private Timer fetchTimer;
+    private Histogram queueLag;
 
     //TODO Add meters for throughput of start and stop
 
@@ -88,43 +113,101 @@ public class JobSchedulerService extends AbstractScheduledService {
 
         try {
             LOG.info( "Running one check iteration ..." );
-            List<JobDescriptor> activeJobs;
 
-            // run until there are no more active jobs
-            while ( true ) {
+            // run until there are no more active jobs or no more room for them
+            while ( dispatch() ) {
+                LOG.debug( "Fetch was full, fetching again" );
+            }
+        }
+        catch ( Throwable t ) {
+            LOG.error( "Scheduler run failed, error is", t );
+        }
+    }
 
-                // get the semaphore if we can. This means we have space for at least 1
-                // job
-                if ( LOG.isDebugEnabled() ) {
-                    LOG.debug( "About to acquire semaphore.  Capacity is {}", capacitySemaphore.availablePermits() );
-                }
 
-                capacitySemaphore.acquire();
-                // release the sempaphore we only need to acquire as a way to stop the
-                // loop if there's no capacity
-                capacitySemaphore.release();
+    /**
+     * Start the prefetched jobs there are free workers for, then fetch enough jobs to fill the free workers and the
+     * prefetch buffer.
+     *
+     * @return true if there is still free capacity and the fetch was full, so more jobs are probably waiting
+     */
+    private boolean dispatch() {
+        startPrefetched();
 
-                int capacity = capacitySemaphore.availablePermits();
+        int capacity = capacitySemaphore.availablePermits() + prefetchSize - prefetched.size();
 
-                LOG.debug( "Capacity is {}", capacity );
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "Capacity is {}, {} jobs prefetched", capacity, prefetched.size() );
+        }
 
-                activeJobs = jobAccessor.getJobs( capacity );
+        // every worker is busy and the buffer is full, the callbacks start the buffered jobs. Nothing was fetched, so
+        // poll again at the normal interval rather than spin until a worker frees up
+        if ( capacity <= 0 ) {
+            backlog = false;
+            return false;
+        }
 
-                // nothing to do, we don't have any jobs to run
-                if ( activeJobs.size() == 0 ) {
-                    LOG.debug( "No jobs returned. Exiting run loop" );
-                    return;
-                }
+        List<JobDescriptor> activeJobs;
 
-                for ( JobDescriptor jd : activeJobs ) {
-                    LOG.info( "Submitting work for {}", jd );
-                    submitWork( jd );
-                    LOG.info( "Work submitted for {}", jd );
-                }
-            }
+        final Timer.Context timer = fetchTimer.time();
+
+        try {
+            activeJobs = jobAccessor.getJobs( capacity );
         }
-        catch ( Throwable t ) {
-            LOG.error( "Scheduler run failed, error is", t );
+        finally {
+            timer.stop();
+        }
+
+        backlog = activeJobs.size() >= capacity;
+
+        // nothing to do, we don't have any jobs to run
+        if ( activeJobs.size() == 0 ) {
+            LOG.debug( "No jobs returned. Exiting run loop" );
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+
+        for ( JobDescriptor jd : activeJobs ) {
+            prefetched.offer( new PrefetchedJob( jd, now ) );
+            prefetchCounter.inc();
+        }
+
+        startPrefetched();
+
+        return backlog && capacitySemaphore.availablePermits() > 0;
+    }
+
+
+    /**
+     * Submit prefetched jobs while there are free workers. Called by the polling thread and by the workers as they
+     * finish, never blocks.
+     */
+    private void startPrefetched() {
+        while ( !prefetched.isEmpty() && capacitySemaphore.tryAcquire() ) {
+
+            PrefetchedJob next = prefetched.poll();
+
+            if ( next == null ) {
+                capacitySemaphore.release();
+                return;
+            }
+
+            prefetchCounter.dec();
+
+            /**
+             * Its queue transaction may be close to timing out, in which case another node could pick it up as well.
+             * Leave it, it will be returned from the queue again.
+             */
+            if ( System.currentTimeMillis() - next.fetched > prefetchTimeout ) {
+                LOG.info( "Dropping {}, it waited longer than {} ms for a worker", next.descriptor, prefetchTimeout );
+                capacitySemaphore.release();
+                continue;
+            }
+
+            LOG.info( "Submitting work for {}", next.descriptor );
+            submitWork( next.descriptor );
+            LOG.info( "Work submitted for {}", next.descriptor );
         }
     }
 
@@ -136,12 +219,24 @@ public class JobSchedulerService extends AbstractScheduledService {
      */
     @Override
     protected Scheduler scheduler() {
-        return Scheduler.newFixedDelaySchedule( 0, interval, TimeUnit.MILLISECONDS );
+        return new CustomScheduler() {
+            @Override
+            protected Schedule getNextSchedule() throws Exception {
+                return new Schedule( getNextDelay(), TimeUnit.MILLISECONDS );
+            }
+        };
+    }
+
+
+    /** @return the delay in millis before the next poll, short only while the last fetch came back full */
+    long getNextDelay() {
+        return backlog ? Math.min( BACKLOG_DELAY, interval ) : interval;
     }
 
 
     /**
-     * Use the provided BulkJobFactory to build and submit BulkJob items as ListenableFuture objects
+     * Use the provided BulkJobFactory to build and submit BulkJob items as ListenableFuture objects. The caller must
+     * have acquired a permit from the capacity semaphore, it's released when the job completes.
      */
     @ExceptionMetered( name = "BulkJobScheduledService_submitWork_exceptions", group = "scheduler" )
     private void submitWork( final JobDescriptor jobDescriptor ) {
@@ -152,6 +247,7 @@ public class JobSchedulerService extends AbstractScheduledService {
         }
         catch ( JobNotFoundException e ) {
             LOG.error( "Could not create jobs", e );
+            capacitySemaphore.release();
             return;
         }
 
@@ -165,20 +261,6 @@ public class JobSchedulerService extends AbstractScheduledService {
         // we just need to prevent NPEs from ever occurring
         final JobListener currentListener = this.jobListener;
 
-        /**
-         * Acquire the semaphore before we schedule.  This way we wont' take things from the Q that end up
-         * stuck in the queue for the scheduler and then time out their distributed heartbeat
-         */
-        try {
-            capacitySemaphore.acquire();
-        }
-        catch ( InterruptedException e ) {
-            LOG.error( "Unable to acquire semaphore capacity before submitting job", e );
-            //just return, they'll get picked up again later
-            return;
-        }
-
-
         final Timer.Context timer = jobTimer.time();
 
 
@@ -189,6 +271,10 @@ public class JobSchedulerService extends AbstractScheduledService {
                 LOG.debug( "Starting the job with job id {}", execution.getJobId() );
                 runCounter.inc();
 
+                if ( jobDescriptor.getFireTime() > 0 ) {
+                    queueLag.update( System.currentTimeMillis() - jobDescriptor.getFireTime() );
+                }
+
                 execution.start( maxFailCount );
 
 
@@ -252,6 +338,8 @@ public class JobSchedulerService extends AbstractScheduledService {
                 if ( currentListener != null ) {
                     currentListener.onSuccess( execution );
                 }
+
+                startPrefetched();
             }
 
 
@@ -280,6 +368,8 @@ public class JobSchedulerService extends AbstractScheduledService {
                 if ( currentListener != null ) {
                     currentListener.onFailure( execution );
                 }
+
+                startPrefetched();
             }
         } );
     }
@@ -311,6 +401,33 @@ public class JobSchedulerService extends AbstractScheduledService {
     }
 
 
+    /**
+     * @param prefetchSize the number of jobs to fetch ahead of the free workers, started as soon as a worker finishes
+     */
+    public void setPrefetchSize( int prefetchSize ) {
+        this.prefetchSize = prefetchSize;
+    }
+
+
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+
+    /**
+     * @param milliseconds the max time a prefetched job may wait for a worker. Must be well under the job timeout so
+     * the job's queue transaction is still held when it starts
+     */
+    public void setPrefetchTimeout( long milliseconds ) {
+        this.prefetchTimeout = milliseconds;
+    }
+
+
+    public long getPrefetchTimeout() {
+        return prefetchTimeout;
+    }
+
+
     /**
      * @param jobAccessor the jobAccessor to set
      */
@@ -343,6 +460,9 @@ public class JobSchedulerService extends AbstractScheduledService {
         runCounter = metricsFactory.getCounter( JobSchedulerService.class, "running_workers" );
         successCounter = metricsFactory.getCounter( JobSchedulerService.class, "successful_jobs" );
         failCounter = metricsFactory.getCounter( JobSchedulerService.class, "failed_jobs" );
+        prefetchCounter = metricsFactory.getCounter( JobSchedulerService.class, "prefetched_jobs" );
+        fetchTimer = metricsFactory.getTimer( JobSchedulerService.class, "job_fetch_timer" );
+        queueLag = metricsFactory.getHistogram( JobSchedulerService.class, "job_queue_lag" );
     }
 
 
@@ -405,6 +525,20 @@ public class JobSchedulerService extends AbstractScheduledService {
     }
 
 
+    /** A job fetched from the queue and waiting for a free worker */
+    private static final class PrefetchedJob {
+
+        private final JobDescriptor descriptor;
+        private final long fetched;
+
+
+        private PrefetchedJob( JobDescriptor descriptor, long fetched ) {
+            this.descriptor = descriptor;
+            this.fetched = fetched;
+        }
+    }
+
+
     /**
      * Simple factory for labeling job worker threads for easier debugging
      */
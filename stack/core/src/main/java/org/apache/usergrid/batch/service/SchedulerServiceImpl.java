@@ -19,6 +19,7 @@ package org.apache.usergrid.batch.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.PostConstruct;
@@ -34,10 +35,12 @@ import org.apache.usergrid.mq.QueueManager;
 import org.apache.usergrid.mq.QueueManagerFactory;
 import org.apache.usergrid.mq.QueueQuery;
 import org.apache.usergrid.mq.QueueResults;
+import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
 import org.apache.usergrid.persistence.Query;
 import org.apache.usergrid.persistence.Results;
+import org.apache.usergrid.persistence.Results.Level;
 import org.apache.usergrid.persistence.SimpleEntityRef;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.entities.JobData;
@@ -177,6 +180,32 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
 
         List<JobDescriptor> results = new ArrayList<JobDescriptor>( jobs.size() );
 
+        if ( jobs.size() == 0 ) {
+            return results;
+        }
+
+        // read the data and stats of every job with one multiget each rather than two reads per job
+        List<UUID> jobUuids = new ArrayList<UUID>( jobs.size() );
+        List<UUID> statsUuids = new ArrayList<UUID>( jobs.size() );
+
+        for ( Message job : jobs.getMessages() ) {
+            jobUuids.add( UUID.fromString( job.getStringProperty( JOB_ID ) ) );
+            statsUuids.add( UUID.fromString( job.getStringProperty( STATS_ID ) ) );
+        }
+
+        Map<UUID, Entity> jobDatas;
+        Map<UUID, Entity> jobStats;
+
+        try {
+            jobDatas = em.get( jobUuids, JobData.class, Level.ALL_PROPERTIES ).getEntitiesMap();
+            jobStats = em.get( statsUuids, JobStat.class, Level.ALL_PROPERTIES ).getEntitiesMap();
+        }
+        catch ( Exception e ) {
+            // leave the jobs in the Q, they will be returned again when their transactions time out
+            LOG.error( "Unable to retrieve job data for {} jobs.  Skipping to avoid job loss", jobs.size(), e );
+            return results;
+        }
+
         for ( Message job : jobs.getMessages() ) {
 
             UUID jobUuid = UUID.fromString( job.getStringProperty( JOB_ID ) );
@@ -184,9 +213,9 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
             String jobName = job.getStringProperty( JOB_NAME );
 
             try {
-                JobData data = em.get( jobUuid, JobData.class );
+                JobData data = jobDatas != null ? ( JobData ) jobDatas.get( jobUuid ) : null;
 
-                JobStat stats = em.get( statsUuid, JobStat.class );
+                JobStat stats = jobStats != null ? ( JobStat ) jobStats.get( statsUuid ) : null;
 
                 /**
                  * no job data, which is required even if empty to signal the job should
@@ -208,7 +237,8 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
                     continue;
                 }
 
-                results.add( new JobDescriptor( jobName, job.getUuid(), job.getTransaction(), data, stats, this ) );
+                results.add( new JobDescriptor( jobName, job.getUuid(), job.getTransaction(), data, stats, this,
+                        job.getTimestamp() ) );
             }
             catch ( Exception e ) {
                 // log and skip. This is a catastrophic runtime error if we see an
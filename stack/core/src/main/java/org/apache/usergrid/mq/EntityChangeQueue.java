@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.persistence.EntityChangeEvent;
+import org.apache.usergrid.persistence.EntityChangeListener;
+import org.apache.usergrid.persistence.EntityManagerFactory;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+
+import static org.apache.usergrid.persistence.cassandra.CassandraService.MANAGEMENT_APPLICATION_ID;
+
+
+/**
+ * Carries the entity changes written in this process to other processes, such as the websocket server, through a
+ * queue of the management application. When publishing is enabled every change published by the entity manager
+ * factory is posted to the queue once its write has been executed, and readers take the changes from the queue with
+ * their own consumer, so every reader sees every change.
+ * <p/>
+ * Changes are posted in batches by a background thread so writers never wait on the queue. The changes waiting to be
+ * posted are bounded, a change that arrives while the buffer is full is dropped and counted.
+ */
+public class EntityChangeQueue implements EntityChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger( EntityChangeQueue.class );
+
+    public static final String QUEUE_PATH = "/entity/changes";
+
+    public static final int DEFAULT_READ_LIMIT = 100;
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final EntityManagerFactory emf;
+    private final QueueManagerFactory qmf;
+
+    private final Counter dropped = Metrics.newCounter( EntityChangeQueue.class, "entity_changes_dropped" );
+
+    private boolean publish;
+
+    private int capacity = DEFAULT_CAPACITY;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private BlockingQueue<EntityChangeEvent> pending;
+
+    private Thread poster;
+
+    private volatile boolean running;
+
+
+    public EntityChangeQueue( EntityManagerFactory emf, QueueManagerFactory qmf ) {
+        this.emf = emf;
+        this.qmf = qmf;
+    }
+
+
+    /** @param publish true to post the changes written in this process to the queue */
+    public void setPublish( boolean publish ) {
+        this.publish = publish;
+    }
+
+
+    public boolean isPublish() {
+        return publish;
+    }
+
+
+    /** @param capacity the number of changes waiting to be posted before new changes are dropped */
+    public void setCapacity( int capacity ) {
+        this.capacity = capacity;
+    }
+
+
+    /** @param batchSize the maximum number of changes posted to the queue at once */
+    public void setBatchSize( int batchSize ) {
+        this.batchSize = batchSize;
+    }
+
+
+    /** @return the number of changes dropped because the buffer was full or they couldn't be posted */
+    public long getDropped() {
+        return dropped.count();
+    }
+
+
+    public void init() {
+        if ( !publish ) {
+            return;
+        }
+
+        logger.info( "Publishing entity changes to {}", QUEUE_PATH );
+
+        pending = new ArrayBlockingQueue<EntityChangeEvent>( capacity );
+        running = true;
+
+        poster = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                postChanges();
+            }
+        }, "entity-change-poster" );
+        poster.setDaemon( true );
+        poster.start();
+
+        emf.addEntityChangeListener( this );
+    }
+
+
+    public void destroy() {
+        emf.removeEntityChangeListener( this );
+
+        if ( poster == null ) {
+            return;
+        }
+
+        // the poster posts what's still pending before it stops
+        running = false;
+        try {
+            poster.join( TimeUnit.SECONDS.toMillis( 10 ) );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        poster = null;
+    }
+
+
+    private QueueManager getQueueManager() {
+        return qmf.getQueueManager( MANAGEMENT_APPLICATION_ID );
+    }
+
+
+    @Override
+    public void entityChanged( EntityChangeEvent event ) {
+        if ( ( pending == null ) || !pending.offer( event ) ) {
+            dropped.inc();
+        }
+    }
+
+
+    private void postChanges() {
+        List<EntityChangeEvent> events = new ArrayList<EntityChangeEvent>( batchSize );
+
+        while ( running || !pending.isEmpty() ) {
+            try {
+                EntityChangeEvent event = pending.poll( 1, TimeUnit.SECONDS );
+                if ( event == null ) {
+                    continue;
+                }
+
+                events.add( event );
+                pending.drainTo( events, batchSize - 1 );
+
+                post( events );
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            finally {
+                events.clear();
+            }
+        }
+    }
+
+
+    private void post( List<EntityChangeEvent> events ) {
+        List<Message> messages = new ArrayList<Message>( events.size() );
+        for ( EntityChangeEvent event : events ) {
+            messages.add( new Message( event.toMap() ) );
+        }
+
+        try {
+            getQueueManager().postToQueue( QUEUE_PATH, messages );
+        }
+        catch ( RuntimeException e ) {
+            logger.error( "Unable to post {} entity changes to {}", new Object[] { events.size(), QUEUE_PATH, e } );
+            dropped.inc( events.size() );
+        }
+    }
+
+
+    /**
+     * Read the next changes for a consumer, the position of the consumer is kept in the queue. A consumer that hasn't
+     * read before starts at the oldest change in the queue.
+     *
+     * @param consumer the name of the reader, each reader needs its own
+     * @param limit the maximum number of changes to read
+     *
+     * @return the changes in the order they were posted, empty when the consumer is up to date
+     */
+    public List<EntityChangeEvent> read( String consumer, int limit ) {
+        QueueQuery query = new QueueQuery().withConsumer( consumer );
+        query.setLimit( limit );
+
+        QueueResults results = getQueueManager().getFromQueue( QUEUE_PATH, query );
+
+        List<EntityChangeEvent> events = new ArrayList<EntityChangeEvent>( results.size() );
+
+        for ( Message message : results.getMessages() ) {
+            try {
+                events.add( EntityChangeEvent.fromMap( message.getProperties() ) );
+            }
+            catch ( RuntimeException e ) {
+                logger.error( "Skipping unreadable entity change {}", message.getUuid(), e );
+            }
+        }
+
+        return events;
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.usergrid.mq.cassandra;
 
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -102,6 +103,26 @@ public class MessageIndexUpdate {
     }
 
 
+    /** @return the values the message is indexed under for the property, which may be a nested property path */
+    public List<Object> getIndexedValues( String propertyName ) {
+        List<Object> values = new ArrayList<Object>();
+
+        if ( propertyEntryList == null ) {
+            return values;
+        }
+
+        for ( List<Map.Entry<String, Object>> entries : propertyEntryList.values() ) {
+            for ( Map.Entry<String, Object> indexEntry : entries ) {
+                if ( indexEntry.getKey().equals( propertyName ) && validIndexableValue( indexEntry.getValue() ) ) {
+                    values.add( indexEntry.getValue() );
+                }
+            }
+        }
+
+        return values;
+    }
+
+
     public Message getMessage() {
         return message;
     }
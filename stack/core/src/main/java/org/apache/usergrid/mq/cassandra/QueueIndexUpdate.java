@@ -339,7 +339,7 @@ public class QueueIndexUpdate {
         int c2 = indexValueCode( o2 );
         if ( c1 == c2 ) {
             if ( o1 instanceof UUID ) {
-                UUIDComparator.staticCompare( ( UUID ) o1, ( UUID ) o2 );
+                return UUIDComparator.staticCompare( ( UUID ) o1, ( UUID ) o2 );
             }
             else if ( o1 instanceof Comparable ) {
                 return ( ( Comparable ) o1 ).compareTo( o2 );
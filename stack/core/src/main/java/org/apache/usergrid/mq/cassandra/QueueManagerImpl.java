@@ -183,64 +183,124 @@ public class QueueManagerImpl implements QueueManager {
     public Message batchPostToQueue( Mutator<ByteBuffer> batch, String queuePath, Message message,
                                      MessageIndexUpdate indexUpdate, long timestamp ) {
 
+        if ( indexUpdate == null ) {
+            indexUpdate = new MessageIndexUpdate( message );
+        }
+
+        batchPostToQueue( batch, queuePath, Collections.singletonList( indexUpdate ), timestamp, true );
+
+        return message;
+    }
+
+
+    /**
+     * Add the mutations posting the messages to the queue. The queue's own properties and its message count are
+     * written once for the whole list rather than once per message.
+     *
+     * @param indexUpdates the index updates of the messages to post, in order
+     * @param writeMessages false if the message bodies are already in the batch, as when posting to the subscribers of
+     * a queue. Messages are stored once by id and shared by every queue they are posted to
+     */
+    public void batchPostToQueue( Mutator<ByteBuffer> batch, String queuePath, List<MessageIndexUpdate> indexUpdates,
+                                  long timestamp, boolean writeMessages ) {
+
+        if ( indexUpdates.isEmpty() ) {
+            return;
+        }
+
         queuePath = normalizeQueuePath( queuePath );
         UUID queueId = getQueueId( queuePath );
 
-        message.sync();
+        UUID oldest = null;
+        UUID newest = null;
+
+        for ( MessageIndexUpdate indexUpdate : indexUpdates ) {
+            Message message = indexUpdate.getMessage();
 
-        addMessageToMutator( batch, message, timestamp );
+            if ( writeMessages ) {
+                message.sync();
 
-        long shard_ts = roundLong( message.getTimestamp(), QUEUE_SHARD_INTERVAL );
+                addMessageToMutator( batch, message, timestamp );
+            }
+
+            long shard_ts = roundLong( message.getTimestamp(), QUEUE_SHARD_INTERVAL );
+
+            logger.debug( "Adding message with id '{}' to queue '{}'", message.getUuid(), queueId );
+
+            batch.addInsertion( getQueueShardRowKey( queueId, shard_ts ), QUEUE_INBOX.getColumnFamily(),
+                    createColumn( message.getUuid(), ByteBuffer.allocate( 0 ), timestamp, ue, be ) );
 
-        logger.debug( "Adding message with id '{}' to queue '{}'", message.getUuid(), queueId );
+            indexUpdate.addToMutation( batch, queueId, shard_ts, timestamp );
 
-        batch.addInsertion( getQueueShardRowKey( queueId, shard_ts ), QUEUE_INBOX.getColumnFamily(),
-                createColumn( message.getUuid(), ByteBuffer.allocate( 0 ), timestamp, ue, be ) );
+            counterUtils.addMessageCounterMutations( batch, applicationId, queueId, message, timestamp );
 
-        long oldest_ts = Long.MAX_VALUE - getTimestampInMicros( message.getUuid() );
+            long message_ts = getTimestampInMicros( message.getUuid() );
+
+            if ( oldest == null || message_ts < getTimestampInMicros( oldest ) ) {
+                oldest = message.getUuid();
+            }
+
+            if ( newest == null || message_ts > getTimestampInMicros( newest ) ) {
+                newest = message.getUuid();
+            }
+        }
+
+        long oldest_ts = Long.MAX_VALUE - getTimestampInMicros( oldest );
         batch.addInsertion( bytebuffer( queueId ), QUEUE_PROPERTIES.getColumnFamily(),
-                createColumn( QUEUE_OLDEST, message.getUuid(), oldest_ts, se, ue ) );
+                createColumn( QUEUE_OLDEST, oldest, oldest_ts, se, ue ) );
 
-        long newest_ts = getTimestampInMicros( message.getUuid() );
+        long newest_ts = getTimestampInMicros( newest );
         batch.addInsertion( bytebuffer( queueId ), QUEUE_PROPERTIES.getColumnFamily(),
-                createColumn( QUEUE_NEWEST, message.getUuid(), newest_ts, se, ue ) );
+                createColumn( QUEUE_NEWEST, newest, newest_ts, se, ue ) );
 
         batch.addInsertion( bytebuffer( getQueueId( "/" ) ), QUEUE_SUBSCRIBERS.getColumnFamily(),
                 createColumn( queuePath, queueId, timestamp, se, ue ) );
 
-        counterUtils.batchIncrementQueueCounter( batch, getQueueId( "/" ), queuePath, 1L, timestamp, applicationId );
-
-        if ( indexUpdate == null ) {
-            indexUpdate = new MessageIndexUpdate( message );
-        }
-        indexUpdate.addToMutation( batch, queueId, shard_ts, timestamp );
-
-        counterUtils.addMessageCounterMutations( batch, applicationId, queueId, message, timestamp );
+        counterUtils.batchIncrementQueueCounter( batch, getQueueId( "/" ), queuePath, indexUpdates.size(), timestamp,
+                applicationId );
 
         batch.addInsertion( bytebuffer( queueId ), QUEUE_PROPERTIES.getColumnFamily(),
                 createColumn( QUEUE_CREATED, timestamp / 1000, Long.MAX_VALUE - timestamp, se, le ) );
 
         batch.addInsertion( bytebuffer( queueId ), QUEUE_PROPERTIES.getColumnFamily(),
                 createColumn( QUEUE_MODIFIED, timestamp / 1000, timestamp, se, le ) );
+    }
+
+
+    @Override
+    public Message postToQueue( String queuePath, Message message ) {
+        postToQueue( queuePath, Collections.singletonList( message ) );
 
         return message;
     }
 
 
     @Override
-    public Message postToQueue( String queuePath, Message message ) {
+    public List<Message> postToQueue( String queuePath, List<Message> messages ) {
+
+        if ( messages.isEmpty() ) {
+            return messages;
+        }
+
         long timestamp = cass.createTimestamp();
-        Mutator<ByteBuffer> batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ),
-                be );
 
         queuePath = normalizeQueuePath( queuePath );
 
-        MessageIndexUpdate indexUpdate = new MessageIndexUpdate( message );
+        List<MessageIndexUpdate> indexUpdates = new ArrayList<MessageIndexUpdate>( messages.size() );
 
-        batchPostToQueue( batch, queuePath, message, indexUpdate, timestamp );
+        for ( Message message : messages ) {
+            indexUpdates.add( new MessageIndexUpdate( message ) );
+        }
+
+        // the flushing mutator sends the batch in chunks so a large list doesn't time out
+        Mutator<ByteBuffer> batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ),
+                be );
+
+        batchPostToQueue( batch, queuePath, indexUpdates, timestamp, true );
 
         batchExecute( batch, RETRY_COUNT );
 
+        // the messages are stored, the subscribers only need their inbox and index entries
         String firstSubscriberQueuePath = null;
         while ( true ) {
 
@@ -252,7 +312,7 @@ public class QueueManagerImpl implements QueueManager {
 
             batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ), be );
             for ( QueueInfo q : subscribers.getQueues() ) {
-                batchPostToQueue( batch, q.getPath(), message, indexUpdate, timestamp );
+                batchPostToQueue( batch, q.getPath(), indexUpdates, timestamp, false );
 
                 firstSubscriberQueuePath = q.getPath();
             }
@@ -263,20 +323,6 @@ public class QueueManagerImpl implements QueueManager {
             }
         }
 
-        return message;
-    }
-
-
-    @Override
-    public List<Message> postToQueue( String queuePath, List<Message> messages ) {
-
-        // Can't do this as one big batch operation because it will
-        // time out
-
-        for ( Message message : messages ) {
-            postToQueue( queuePath, message );
-        }
-
         return messages;
     }
 
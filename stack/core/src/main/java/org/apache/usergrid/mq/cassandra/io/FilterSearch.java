@@ -18,7 +18,7 @@ package org.apache.usergrid.mq.cassandra.io;
 
 
 import java.nio.ByteBuffer;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -29,8 +29,10 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.mq.Message;
 import org.apache.usergrid.mq.QueryProcessor;
 import org.apache.usergrid.mq.QueryProcessor.QuerySlice;
+import org.apache.usergrid.mq.QueryProcessor.RangeValue;
 import org.apache.usergrid.mq.QueueQuery;
 import org.apache.usergrid.mq.QueueResults;
+import org.apache.usergrid.mq.cassandra.MessageIndexUpdate;
 
 import com.fasterxml.uuid.UUIDComparator;
 
@@ -39,9 +41,11 @@ import me.prettyprint.hector.api.beans.AbstractComposite.ComponentEquality;
 import me.prettyprint.hector.api.beans.DynamicComposite;
 import me.prettyprint.hector.api.beans.HColumn;
 
+import static me.prettyprint.hector.api.factory.HFactory.createCountQuery;
 import static me.prettyprint.hector.api.factory.HFactory.createSliceQuery;
 import static org.apache.usergrid.mq.Queue.getQueueId;
 import static org.apache.usergrid.mq.cassandra.CassandraMQUtils.getConsumerId;
+import static org.apache.usergrid.mq.cassandra.QueueIndexUpdate.compareIndexedValues;
 import static org.apache.usergrid.mq.cassandra.QueueManagerImpl.DEFAULT_SEARCH_COUNT;
 import static org.apache.usergrid.mq.cassandra.QueueManagerImpl.QUEUE_SHARD_INTERVAL;
 import static org.apache.usergrid.mq.cassandra.QueuesCF.PROPERTY_INDEX;
@@ -54,7 +58,11 @@ import static org.apache.usergrid.utils.UUIDUtils.getTimestampInMillis;
 import static org.apache.usergrid.persistence.cassandra.Serializers.*;
 
 /**
- * Searches in the queue without transactions
+ * Searches in the queue without transactions, returning the messages matching the filters of the query.
+ * <p/>
+ * Only the index of the most selective filter is scanned. The messages it finds are loaded in uuid order and checked
+ * against the other filters, and the scan stops as soon as the limit is reached rather than reading every filter's
+ * index in full and intersecting them.
  *
  * @author tnine
  */
@@ -63,6 +71,9 @@ public class FilterSearch extends NoTransactionSearch
 
     private static final Logger logger = LoggerFactory.getLogger( FilterSearch.class );
 
+    /** The number of messages loaded at once to check the filters against */
+    private static final int LOAD_SIZE = 100;
+
 
     /**
      *
@@ -86,7 +97,7 @@ public class FilterSearch extends NoTransactionSearch
         QueryProcessor qp = new QueryProcessor( query );
         List<QuerySlice> slices = qp.getSlices();
 
-        long limit = query.getLimit();
+        int limit = query.getLimit();
 
         UUID queueId = getQueueId( queuePath );
         UUID consumerId = getConsumerId( queueId, query );
@@ -94,103 +105,213 @@ public class FilterSearch extends NoTransactionSearch
 
         UUIDComparator comparator = query.isReversed() ? new ReverseUUIDComparator() : new UUIDComparator();
 
-        SortedSet<UUID> merged = null;
+        List<Message> messages = new ArrayList<Message>();
 
-        for ( QuerySlice slice : slices )
+        if ( bounds == null )
         {
-            SortedSet<UUID> results =
-                    searchQueueRange( ko, queueId, bounds, slice, query.getLastMessageId(), query.isReversed(),
-                            comparator );
-
-            if ( merged == null )
-            {
-                merged = results;
-            }
-            else
-            {
-                merged.retainAll( results );
-            }
+            logger.error( "Necessary queue bounds not found" );
         }
-
-        // now trim. Not efficient, but when indexing is updated, seeking will
-        // change, so I'm not worried about this.
-        if ( merged.size() > limit )
+        else if ( !slices.isEmpty() )
         {
-            Iterator<UUID> current = merged.iterator();
-            UUID max = null;
+            QueueRange range = new QueueRange( bounds, query.getLastMessageId(), query.isReversed(), comparator );
+
+            QuerySlice scanned = getMostSelectiveSlice( queueId, range, slices );
 
+            List<SlicePredicate> predicates = new ArrayList<SlicePredicate>( slices.size() - 1 );
 
-            for ( int i = 0; i <= limit && current.hasNext(); i++ )
+            for ( QuerySlice slice : slices )
             {
-                max = current.next();
+                if ( slice != scanned )
+                {
+                    predicates.add( new SlicePredicate( slice ) );
+                }
             }
 
-            merged = merged.headSet( max );
+            messages = searchQueueRange( queueId, range, scanned, predicates, limit );
         }
 
-        List<Message> messages = loadMessages( merged, query.isReversed() );
-
         QueueResults results = createResults( messages, queuePath, queueId, consumerId );
 
         return results;
     }
 
 
-    public SortedSet<UUID> searchQueueRange( Keyspace ko, UUID queueId, QueueBounds bounds, QuerySlice slice, UUID last,
-                                             boolean reversed, UUIDComparator comparator )
+    /**
+     * Scan the index of the slice one shard at a time. The ids found in each shard are sorted, then their messages are
+     * loaded and checked against the predicates until the limit is reached.
+     */
+    private List<Message> searchQueueRange( UUID queueId, QueueRange range, QuerySlice slice,
+                                            List<SlicePredicate> predicates, int limit )
     {
 
-        TreeSet<UUID> uuid_set = new TreeSet<UUID>( comparator );
+        List<Message> messages = new ArrayList<Message>( limit );
 
-        if ( bounds == null )
+        if ( range.finish == null )
         {
-            logger.error( "Necessary queue bounds not found" );
-            return uuid_set;
+            logger.error( "No last message in queue" );
+            return messages;
         }
 
-        UUID start_uuid = reversed ? bounds.getNewest() : bounds.getOldest();
+        // without predicates every id matches, only the messages returned are loaded
+        List<UUID> matchedIds = new ArrayList<UUID>( limit );
 
-        UUID finish_uuid = reversed ? bounds.getOldest() : bounds.getNewest();
+        int scannedCount = 0;
 
-        if ( last != null )
+        for ( long shard = range.firstShard; range.contains( shard ) && scannedCount < DEFAULT_SEARCH_COUNT;
+              shard = range.nextShard( shard ) )
         {
-            start_uuid = last;
+
+            SortedSet<UUID> ids = new TreeSet<UUID>( range.comparator );
+
+            for ( UUID uuid : getShardIds( queueId, shard, slice ) )
+            {
+                if ( range.contains( uuid ) )
+                {
+                    ids.add( uuid );
+                }
+            }
+
+            scannedCount += ids.size();
+
+            if ( predicates.isEmpty() )
+            {
+                for ( UUID uuid : ids )
+                {
+                    if ( matchedIds.size() == limit )
+                    {
+                        break;
+                    }
+
+                    matchedIds.add( uuid );
+                }
+
+                if ( matchedIds.size() == limit )
+                {
+                    break;
+                }
+
+                continue;
+            }
+
+            List<UUID> toLoad = new ArrayList<UUID>( ids );
+
+            for ( int i = 0; i < toLoad.size() && messages.size() < limit; i += LOAD_SIZE )
+            {
+                List<UUID> page = toLoad.subList( i, Math.min( i + LOAD_SIZE, toLoad.size() ) );
+
+                for ( Message message : loadMessages( page, range.reversed ) )
+                {
+                    if ( messages.size() < limit && matches( message, predicates ) )
+                    {
+                        messages.add( message );
+                    }
+                }
+            }
+
+            if ( messages.size() == limit )
+            {
+                break;
+            }
+        }
+
+        if ( predicates.isEmpty() && !matchedIds.isEmpty() )
+        {
+            messages = loadMessages( matchedIds, range.reversed );
         }
 
+        return messages;
+    }
+
+
+    /** Read the ids of the messages in the shard's index row for the slice, in index order */
+    private List<UUID> getShardIds( UUID queueId, long shard, QuerySlice slice )
+    {
+        List<UUID> ids = new ArrayList<UUID>();
 
-        if ( finish_uuid == null )
+        ByteBuffer start = getStart( slice );
+        ByteBuffer finish = getFinish( slice );
+
+        while ( true )
         {
-            logger.error( "No last message in queue" );
-            return uuid_set;
+            List<HColumn<ByteBuffer, ByteBuffer>> results =
+                    createSliceQuery( ko, be, be, be ).setColumnFamily( PROPERTY_INDEX.getColumnFamily() )
+                            .setKey( bytebuffer( key( queueId, shard, slice.getPropertyName() ) ) )
+                            .setRange( start, finish, false, DEFAULT_SEARCH_COUNT ).execute().get().getColumns();
+
+            for ( HColumn<ByteBuffer, ByteBuffer> column : results )
+            {
+                DynamicComposite c = DynamicComposite.fromByteBuffer( column.getName().duplicate() );
+                ids.add( c.get( 2, ue ) );
+            }
+
+            if ( results.size() < DEFAULT_SEARCH_COUNT )
+            {
+                break;
+            }
+
+            start = results.get( results.size() - 1 ).getName().duplicate();
         }
 
-        long start_ts_shard = roundLong( getTimestampInMillis( start_uuid ), QUEUE_SHARD_INTERVAL );
+        return ids;
+    }
+
 
-        long finish_ts_shard = roundLong( getTimestampInMillis( finish_uuid ), QUEUE_SHARD_INTERVAL );
+    /**
+     * Estimate which slice matches the fewest messages by counting its index entries in the first shard to be scanned,
+     * capped at the search count
+     */
+    private QuerySlice getMostSelectiveSlice( UUID queueId, QueueRange range, List<QuerySlice> slices )
+    {
+        if ( slices.size() == 1 )
+        {
+            return slices.get( 0 );
+        }
 
-        long current_ts_shard = start_ts_shard;
+        QuerySlice best = null;
+        int bestCount = Integer.MAX_VALUE;
 
-        if ( reversed )
+        for ( QuerySlice slice : slices )
         {
-            current_ts_shard = finish_ts_shard;
+            int count = createCountQuery( ko, be, be ).setColumnFamily( PROPERTY_INDEX.getColumnFamily() )
+                    .setKey( bytebuffer( key( queueId, range.firstShard, slice.getPropertyName() ) ) )
+                    .setRange( getStart( slice ), getFinish( slice ), DEFAULT_SEARCH_COUNT ).execute().get();
+
+            logger.debug( "Slice on {} has about {} entries", slice.getPropertyName(), count );
+
+            if ( count < bestCount )
+            {
+                best = slice;
+                bestCount = count;
+            }
         }
 
-        ByteBuffer start = null;
+        return best;
+    }
+
+
+    private static ByteBuffer getStart( QuerySlice slice )
+    {
         if ( slice.getCursor() != null )
         {
-            start = slice.getCursor();
+            return slice.getCursor();
         }
-        else if ( slice.getStart() != null )
+
+        if ( slice.getStart() != null )
         {
             DynamicComposite s = new DynamicComposite( slice.getStart().getCode(), slice.getStart().getValue() );
             if ( !slice.getStart().isInclusive() )
             {
                 setEqualityFlag( s, ComponentEquality.GREATER_THAN_EQUAL );
             }
-            start = s.serialize();
+            return s.serialize();
         }
 
-        ByteBuffer finish = null;
+        return null;
+    }
+
+
+    private static ByteBuffer getFinish( QuerySlice slice )
+    {
         if ( slice.getFinish() != null )
         {
             DynamicComposite f = new DynamicComposite( slice.getFinish().getCode(), slice.getFinish().getValue() );
@@ -198,48 +319,130 @@ public class FilterSearch extends NoTransactionSearch
             {
                 setEqualityFlag( f, ComponentEquality.GREATER_THAN_EQUAL );
             }
-            finish = f.serialize();
+            return f.serialize();
         }
 
-        while ( ( current_ts_shard >= start_ts_shard ) && ( current_ts_shard <= finish_ts_shard ) && ( uuid_set.size()
-                < DEFAULT_SEARCH_COUNT ) )
-        {
+        return null;
+    }
+
+
+    private static boolean matches( Message message, List<SlicePredicate> predicates )
+    {
+        MessageIndexUpdate indexed = new MessageIndexUpdate( message );
 
-            while ( true )
+        for ( SlicePredicate predicate : predicates )
+        {
+            if ( !predicate.matches( indexed ) )
             {
-                List<HColumn<ByteBuffer, ByteBuffer>> results =
-                        createSliceQuery( ko, be, be, be ).setColumnFamily( PROPERTY_INDEX.getColumnFamily() )
-                                .setKey( bytebuffer( key( queueId, current_ts_shard, slice.getPropertyName() ) ) )
-                                .setRange( start, finish, false, DEFAULT_SEARCH_COUNT ).execute().get().getColumns();
+                return false;
+            }
+        }
 
-                for ( HColumn<ByteBuffer, ByteBuffer> column : results )
-                {
-                    DynamicComposite c = DynamicComposite.fromByteBuffer( column.getName().duplicate() );
-                    UUID uuid = c.get( 2, ue );
+        return true;
+    }
 
-                    uuid_set.add( uuid );
-                }
 
-                if ( results.size() < DEFAULT_SEARCH_COUNT )
+    /** The ids and shards to search, from the oldest to the newest message or the reverse */
+    private static class QueueRange
+    {
+
+        private final UUID start;
+        private final UUID finish;
+        private final boolean reversed;
+        private final UUIDComparator comparator;
+        private final long firstShard;
+        private final long lowShard;
+        private final long highShard;
+
+
+        private QueueRange( QueueBounds bounds, UUID last, boolean reversed, UUIDComparator comparator )
+        {
+            this.start = last != null ? last : ( reversed ? bounds.getNewest() : bounds.getOldest() );
+            this.finish = reversed ? bounds.getOldest() : bounds.getNewest();
+            this.reversed = reversed;
+            this.comparator = comparator;
+
+            long startShard = start != null ? roundLong( getTimestampInMillis( start ), QUEUE_SHARD_INTERVAL ) : 0;
+            long finishShard = finish != null ? roundLong( getTimestampInMillis( finish ), QUEUE_SHARD_INTERVAL ) : 0;
+
+            this.firstShard = startShard;
+            this.lowShard = Math.min( startShard, finishShard );
+            this.highShard = Math.max( startShard, finishShard );
+        }
+
+
+        private boolean contains( long shard )
+        {
+            return shard >= lowShard && shard <= highShard;
+        }
+
+
+        private long nextShard( long shard )
+        {
+            return reversed ? shard - QUEUE_SHARD_INTERVAL : shard + QUEUE_SHARD_INTERVAL;
+        }
+
+
+        private boolean contains( UUID uuid )
+        {
+            return comparator.compare( uuid, start ) >= 0 && comparator.compare( uuid, finish ) < 0;
+        }
+    }
+
+
+    /** A slice's range checked against the indexed values of a loaded message */
+    private static class SlicePredicate
+    {
+
+        private final String propertyName;
+        private final RangeValue start;
+        private final RangeValue finish;
+
+
+        private SlicePredicate( QuerySlice slice )
+        {
+            this.propertyName = slice.getPropertyName();
+            this.start = slice.getStart();
+            this.finish = slice.getFinish();
+        }
+
+
+        private boolean matches( MessageIndexUpdate indexed )
+        {
+            for ( Object value : indexed.getIndexedValues( propertyName ) )
+            {
+                if ( inRange( value ) )
                 {
-                    break;
+                    return true;
                 }
-
-                start = results.get( results.size() - 1 ).getName().duplicate();
             }
 
-            if ( reversed )
+            return false;
+        }
+
+
+        private boolean inRange( Object value )
+        {
+            if ( start != null )
             {
-                current_ts_shard -= QUEUE_SHARD_INTERVAL;
+                int c = compareIndexedValues( value, start.getValue() );
+                if ( c < 0 || ( c == 0 && !start.isInclusive() ) )
+                {
+                    return false;
+                }
             }
-            else
+
+            if ( finish != null )
             {
-                current_ts_shard += QUEUE_SHARD_INTERVAL;
+                int c = compareIndexedValues( value, finish.getValue() );
+                if ( c > 0 || ( c == 0 && !finish.isInclusive() ) )
+                {
+                    return false;
+                }
             }
-        }
 
-        // trim the results
-        return uuid_set.headSet( finish_uuid ).tailSet( start_uuid );
+            return true;
+        }
     }
 
 
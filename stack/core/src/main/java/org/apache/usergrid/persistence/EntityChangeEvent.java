@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.apache.usergrid.utils.ClassUtils.cast;
+import static org.apache.usergrid.utils.ConversionUtils.getLong;
+import static org.apache.usergrid.utils.ConversionUtils.uuid;
+
+
+/**
+ * A change written to an entity of an application, published to the {@link EntityChangeListener}s of the entity
+ * manager factory after the write has been executed.
+ */
+public class EntityChangeEvent {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE, CONNECT, DISCONNECT
+    }
+
+
+    private final Type type;
+    private final UUID applicationId;
+    private final String entityType;
+    private final UUID entityId;
+    private final Map<String, Object> properties;
+    private final String connectionType;
+    private final String connectedEntityType;
+    private final UUID connectedEntityId;
+    private final long timestamp;
+
+
+    private EntityChangeEvent( Type type, UUID applicationId, String entityType, UUID entityId,
+                               Map<String, Object> properties, String connectionType, String connectedEntityType,
+                               UUID connectedEntityId ) {
+        this( type, applicationId, entityType, entityId, properties, connectionType, connectedEntityType,
+                connectedEntityId, System.currentTimeMillis() );
+    }
+
+
+    private EntityChangeEvent( Type type, UUID applicationId, String entityType, UUID entityId,
+                               Map<String, Object> properties, String connectionType, String connectedEntityType,
+                               UUID connectedEntityId, long timestamp ) {
+        this.type = type;
+        this.applicationId = applicationId;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.properties = properties;
+        this.connectionType = connectionType;
+        this.connectedEntityType = connectedEntityType;
+        this.connectedEntityId = connectedEntityId;
+        this.timestamp = timestamp;
+    }
+
+
+    /**
+     * @param properties the properties of the entity after the change, or null if they aren't known
+     */
+    public static EntityChangeEvent entityChange( Type type, UUID applicationId, EntityRef entity,
+                                                  Map<String, Object> properties ) {
+        return new EntityChangeEvent( type, applicationId, entity.getType(), entity.getUuid(), properties, null, null,
+                null );
+    }
+
+
+    public static EntityChangeEvent connectionChange( boolean disconnect, UUID applicationId,
+                                                      EntityRef connectingEntity, String connectionType,
+                                                      EntityRef connectedEntity ) {
+        return new EntityChangeEvent( disconnect ? Type.DISCONNECT : Type.CONNECT, applicationId,
+                connectingEntity.getType(), connectingEntity.getUuid(), null, connectionType,
+                connectedEntity.getType(), connectedEntity.getUuid() );
+    }
+
+
+    /** @return the event read back from the map of {@link #toMap()}, once it has been through json */
+    public static EntityChangeEvent fromMap( Map<String, Object> map ) {
+        Map<String, Object> properties = cast( map.get( "properties" ) );
+
+        return new EntityChangeEvent( Type.valueOf( ( String ) map.get( "change" ) ),
+                uuid( map.get( "application" ), null ), ( String ) map.get( "entity_type" ),
+                uuid( map.get( "entity" ), null ), properties, ( String ) map.get( "connection_type" ),
+                ( String ) map.get( "connected_entity_type" ), uuid( map.get( "connected_entity" ), null ),
+                getLong( map.get( "changed" ) ) );
+    }
+
+
+    /**
+     * Fold a later update of the same entity into this change. The properties of the update are merged over the
+     * properties of this change, and the type of this change is kept, so a create followed by an update is still a
+     * create.
+     *
+     * @return a new event holding both changes
+     */
+    public EntityChangeEvent mergeUpdate( EntityChangeEvent update ) {
+        Map<String, Object> merged = null;
+
+        if ( ( properties != null ) || ( update.getProperties() != null ) ) {
+            merged = new HashMap<String, Object>();
+            if ( properties != null ) {
+                merged.putAll( properties );
+            }
+            if ( update.getProperties() != null ) {
+                merged.putAll( update.getProperties() );
+            }
+        }
+
+        return new EntityChangeEvent( type, applicationId, entityType, entityId, merged, connectionType,
+                connectedEntityType, connectedEntityId, update.getTimestamp() );
+    }
+
+
+    /**
+     * @return the event as a map of json values, to be sent to other processes. The names stay clear of the reserved
+     *         properties of a queue message.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put( "change", type.name() );
+        map.put( "application", applicationId );
+        map.put( "entity_type", entityType );
+        map.put( "entity", entityId );
+        map.put( "changed", timestamp );
+
+        if ( properties != null ) {
+            map.put( "properties", properties );
+        }
+
+        if ( connectionType != null ) {
+            map.put( "connection_type", connectionType );
+            map.put( "connected_entity_type", connectedEntityType );
+            map.put( "connected_entity", connectedEntityId );
+        }
+
+        return map;
+    }
+
+
+    public Type getType() {
+        return type;
+    }
+
+
+    public UUID getApplicationId() {
+        return applicationId;
+    }
+
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+
+    public UUID getEntityId() {
+        return entityId;
+    }
+
+
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+
+    public String getConnectionType() {
+        return connectionType;
+    }
+
+
+    public String getConnectedEntityType() {
+        return connectedEntityType;
+    }
+
+
+    public UUID getConnectedEntityId() {
+        return connectedEntityId;
+    }
+
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+
+    @Override
+    public String toString() {
+        return type + " " + entityType + " " + entityId + ( connectionType != null ?
+                                                            " " + connectionType + " " + connectedEntityId : "" );
+    }
+}
@@ -84,6 +84,21 @@ public interface EntityManager {
      */
     public Entity create( UUID importId, String entityType, Map<String, Object> properties ) throws Exception;
 
+    /**
+     * Creates a batch of entities, writing them through a single flushing mutator instead of executing a mutation per
+     * entity. An entity that fails validation (e.g. a duplicate unique property) is skipped and the rest of the batch
+     * is still written. If an entity's properties contain a uuid, it is used as the import id.
+     *
+     * @param entityType the type of the entities to create, or null to use the type property of each entity.
+     * @param entities the property values of each entity to create.
+     *
+     * @return the errors of the entities that were not created, keyed by their position in the batch.
+     *
+     * @throws Exception the exception
+     */
+    public Map<Integer, Exception> createBatch( String entityType, List<Map<String, Object>> entities )
+            throws Exception;
+
     public void createApplicationCollection( String entityType ) throws Exception;
 
     public EntityRef getAlias( String aliasType, String alias ) throws Exception;
@@ -246,6 +261,23 @@ public interface EntityManager {
      */
     public void updateProperties( EntityRef entityRef, Map<String, Object> properties ) throws Exception;
 
+    /**
+     * Applies the same property updates to a batch of entities, writing them through a single flushing mutator
+     * instead of executing a mutation per entity. Every entity is validated before its writes are added to the batch,
+     * an entity that fails validation (e.g. an invalid value, or a unique property claimed by another entity of the
+     * batch) is skipped and the rest of the batch is still written.
+     *
+     * @param entityRefs the entities to update
+     * @param properties the properties to set on each entity
+     *
+     * @return the errors of the entities that failed validation and were not updated, keyed by their position in the
+     *         batch.
+     *
+     * @throws Exception if writing the batch fails, entities already flushed by the mutator stay written
+     */
+    public Map<Integer, Exception> updateBatch( List<? extends EntityRef> entityRefs, Map<String, Object> properties )
+            throws Exception;
+
     public void deleteProperty( EntityRef entityRef, String propertyName ) throws Exception;
 
     /**
@@ -97,6 +97,14 @@ public interface EntityManagerFactory {
      */
     public abstract Map<String, UUID> getApplications() throws Exception;
 
+    /**
+     * Drops any state cached for the application, such as its entity manager and the name it was looked up by. Call
+     * after an application is renamed or deleted, other nodes pick up the change when their cache entries expire.
+     *
+     * @param applicationId the application id
+     */
+    public abstract void invalidateApplication( UUID applicationId );
+
     public abstract void setup() throws Exception;
 
     public abstract Map<String, String> getServiceProperties();
@@ -106,4 +114,9 @@ public interface EntityManagerFactory {
     public abstract boolean setServiceProperty( String name, String value );
 
     public abstract boolean deleteServiceProperty( String name );
+
+    /** Registers a listener for the changes written through the entity managers of this factory. */
+    public abstract void addEntityChangeListener( EntityChangeListener listener );
+
+    public abstract void removeEntityChangeListener( EntityChangeListener listener );
 }
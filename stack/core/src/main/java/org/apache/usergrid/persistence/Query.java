@@ -84,6 +84,8 @@ public class Query {
     private UUID startResult;
     private String cursor;
     private int limit = 0;
+    private boolean countOnly;
+    private int countLimit;
 
     private Map<String, String> selectAssignments = new LinkedHashMap<String, String>();
     private boolean mergeSelectResults = false;
@@ -113,6 +115,8 @@ public class Query {
             startResult = q.startResult;
             cursor = q.cursor;
             limit = q.limit;
+            countOnly = q.countOnly;
+            countLimit = q.countLimit;
             selectAssignments =
                     q.selectAssignments != null ? new LinkedHashMap<String, String>( q.selectAssignments ) : null;
             mergeSelectResults = q.mergeSelectResults;
@@ -210,6 +214,7 @@ public class Query {
         UUID start = firstUuid( params.get( "start" ) );
         String cursor = first( params.get( "cursor" ) );
         Integer limit = firstInteger( params.get( "limit" ) );
+        Integer countLimit = firstInteger( params.get( "count_limit" ) );
         List<String> permissions = params.get( "permission" );
         Long startTime = firstLong( params.get( "start_time" ) );
         Long finishTime = firstLong( params.get( "end_time" ) );
@@ -290,6 +295,11 @@ public class Query {
             q.setLimit( limit );
         }
 
+        if ( countLimit != null ) {
+            q = newQueryIfNull( q );
+            q.setCountLimit( countLimit );
+        }
+
         if ( startTime != null ) {
             q = newQueryIfNull( q );
             q.setStartTime( startTime );
@@ -846,6 +856,43 @@ public class Query {
     }
 
 
+    /**
+     * @return true if the query only counts its matches, as in "select count(*)". The matches are counted from the
+     *         index scans and never loaded, the limit and sort order don't apply.
+     */
+    public boolean isCountOnly() {
+        return countOnly;
+    }
+
+
+    public void setCountOnly( boolean countOnly ) {
+        this.countOnly = countOnly;
+    }
+
+
+    public Query withCountOnly( boolean countOnly ) {
+        setCountOnly( countOnly );
+        return this;
+    }
+
+
+    /** @return the number of matches after which a count only query stops scanning, 0 to count every match */
+    public int getCountLimit() {
+        return countLimit;
+    }
+
+
+    public void setCountLimit( int countLimit ) {
+        this.countLimit = countLimit;
+    }
+
+
+    public Query withCountLimit( int countLimit ) {
+        setCountLimit( countLimit );
+        return this;
+    }
+
+
     public boolean isReversed() {
         return reversed;
     }
@@ -943,7 +990,10 @@ public class Query {
             return ql;
         }
         StringBuilder s = new StringBuilder( "select " );
-        if ( selectAssignments.isEmpty() ) {
+        if ( countOnly ) {
+            s.append( "count(*)" );
+        }
+        else if ( selectAssignments.isEmpty() ) {
             s.append( "*" );
         }
         else {
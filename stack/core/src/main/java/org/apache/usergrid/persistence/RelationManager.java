@@ -29,6 +29,18 @@ public interface RelationManager {
 
     public Set<String> getCollectionIndexes( String collectionName ) throws Exception;
 
+    /**
+     * Mark the full text posting lists of a collection as complete. Call once every entity of the collection has been
+     * re-saved, contains queries read the keyword index until then.
+     */
+    public void setCollectionTermsBackfilled( String collectionName ) throws Exception;
+
+    /**
+     * Compute the full text term counts of a collection from its keyword index. Writes only count terms once the
+     * collection is backfilled, call this after marking it.
+     */
+    public void rebuildCollectionTermCounts( String collectionName ) throws Exception;
+
     public Map<String, Map<UUID, Set<String>>> getOwners() throws Exception;
 
 
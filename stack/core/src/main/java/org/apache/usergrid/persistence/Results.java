@@ -72,6 +72,9 @@ public class Results implements Iterable<Entity> {
 
     List<AggregateCounterSet> counters;
 
+    Integer count;
+    boolean countApproximate;
+
     Set<String> types;
 
     Map<UUID, Map<String, Object>> metadata;
@@ -115,6 +118,9 @@ public class Results implements Iterable<Entity> {
 
             counters = r.counters;
 
+            count = r.count;
+            countApproximate = r.countApproximate;
+
             types = r.types;
 
             metadata = r.metadata;
@@ -152,6 +158,9 @@ public class Results implements Iterable<Entity> {
 
         counters = null;
 
+        count = null;
+        countApproximate = false;
+
         types = null;
 
         // metadata = null;
@@ -1060,6 +1069,32 @@ public class Results implements Iterable<Entity> {
     }
 
 
+    /** @return the number of matches of a count only query, null for any other query */
+    @JsonSerialize(include = Inclusion.NON_NULL)
+    public Integer getCount() {
+        return count;
+    }
+
+
+    public void setCount( Integer count ) {
+        this.count = count;
+    }
+
+
+    /**
+     * @return true if a count only query stopped at its count limit, the count is then a lower bound and the cursor
+     *         continues counting from where it stopped
+     */
+    public boolean isCountApproximate() {
+        return countApproximate;
+    }
+
+
+    public void setCountApproximate( boolean countApproximate ) {
+        this.countApproximate = countApproximate;
+    }
+
+
     public int size() {
         if ( entities != null ) {
             return entities.size();
@@ -76,7 +76,16 @@ public enum ApplicationCF implements CFEnum {
     APPLICATION_AGGREGATE_COUNTERS( "Application_Aggregate_Counters", "LongType", COUNTERTYPE.getClassName() ),
 
     /** Entity counters */
-    ENTITY_COUNTERS( "Entity_Counters", "BytesType", COUNTERTYPE.getClassName() ),;
+    ENTITY_COUNTERS( "Entity_Counters", "BytesType", COUNTERTYPE.getClassName() ),
+
+    /**
+     * Posting lists of the full text index. Rows are keyed by collection, property, term and index bucket and hold the
+     * UUIDs of the entities whose text contains the term
+     */
+    ENTITY_TERMS( "Entity_Terms", "UUIDType" ),
+
+    /** Term dictionary of the full text index, the number of entities of a collection that contain each term */
+    ENTITY_TERM_COUNTS( "Entity_Term_Counts", "UTF8Type", COUNTERTYPE.getClassName() ),;
     public final static String DEFAULT_DYNAMIC_COMPOSITE_ALIASES =
             "(a=>AsciiType,b=>BytesType,i=>IntegerType,x=>LexicalUUIDType,l=>LongType,t=>TimeUUIDType,s=>UTF8Type," +
                     "u=>UUIDType,A=>AsciiType(reversed=true),B=>BytesType(reversed=true)," +
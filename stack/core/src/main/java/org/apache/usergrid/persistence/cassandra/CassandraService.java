@@ -28,9 +28,17 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +49,13 @@ import org.apache.usergrid.persistence.cassandra.index.IndexBucketScanner;
 import org.apache.usergrid.persistence.cassandra.index.IndexScanner;
 import org.apache.usergrid.persistence.hector.CountingMutator;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+
 import me.prettyprint.cassandra.connection.HConnectionManager;
 import me.prettyprint.cassandra.model.ConfigurableConsistencyLevel;
 import me.prettyprint.cassandra.serializers.ByteBufferSerializer;
@@ -108,6 +123,9 @@ public class CassandraService {
 
     public static final int RETRY_COUNT = 5;
 
+    public static final int DEFAULT_ASYNC_THREADS = 16;
+    public static final int DEFAULT_ASYNC_QUEUE_SIZE = 1000;
+
     public static final String DEFAULT_APPLICATION = "default-app";
     public static final String DEFAULT_ORGANIZATION = "usergrid";
     public static final String MANAGEMENT_APPLICATION = "management";
@@ -134,6 +152,12 @@ public class CassandraService {
 
     private Map<String, String> accessMap;
 
+    private int asyncThreads = DEFAULT_ASYNC_THREADS;
+    private int asyncQueueSize = DEFAULT_ASYNC_QUEUE_SIZE;
+
+    /** The executors serving the asynchronous requests, one per keyspace name */
+    private final ConcurrentMap<String, KeyspaceExecutor> executors = new ConcurrentHashMap<String, KeyspaceExecutor>();
+
     public static final StringSerializer se = new StringSerializer();
     public static final ByteBufferSerializer be = new ByteBufferSerializer();
     public static final UUIDSerializer ue = new UUIDSerializer();
@@ -175,6 +199,8 @@ public class CassandraService {
         final int flushSize = getIntValue( properties, "cassandra.mutation.flushsize", 2000 );
         CountingMutator.MAX_SIZE = flushSize;
 
+        asyncThreads = getIntValue( properties, "cassandra.async.threads", DEFAULT_ASYNC_THREADS );
+        asyncQueueSize = getIntValue( properties, "cassandra.async.queue", DEFAULT_ASYNC_QUEUE_SIZE );
 
     }
 
@@ -1009,6 +1035,164 @@ public class CassandraService {
     }
 
 
+    /**
+     * Gets the columns without blocking the caller.
+     *
+     * @see #getColumns(Keyspace, Object, Object, Object, Object, int, boolean)
+     */
+    public ListenableFuture<List<HColumn<ByteBuffer, ByteBuffer>>> getColumnsAsync( final Keyspace ko,
+                                                                                   final Object columnFamily,
+                                                                                   final Object key, final Object start,
+                                                                                   final Object finish, final int count,
+                                                                                   final boolean reversed ) {
+        return submit( ko, new Callable<List<HColumn<ByteBuffer, ByteBuffer>>>() {
+            @Override
+            public List<HColumn<ByteBuffer, ByteBuffer>> call() throws Exception {
+                return getColumns( ko, columnFamily, key, start, finish, count, reversed );
+            }
+        } );
+    }
+
+
+    /**
+     * Gets the columns of several rows without blocking the caller.
+     *
+     * @see #multiGetColumns(Keyspace, Object, List, Object, Object, int, boolean)
+     */
+    public ListenableFuture<Map<ByteBuffer, List<HColumn<ByteBuffer, ByteBuffer>>>> multiGetColumnsAsync(
+            final Keyspace ko, final Object columnFamily, final List<?> keys, final Object start, final Object finish,
+            final int count, final boolean reversed ) {
+        return submit( ko, new Callable<Map<ByteBuffer, List<HColumn<ByteBuffer, ByteBuffer>>>>() {
+            @Override
+            public Map<ByteBuffer, List<HColumn<ByteBuffer, ByteBuffer>>> call() throws Exception {
+                return multiGetColumns( ko, columnFamily, keys, start, finish, count, reversed );
+            }
+        } );
+    }
+
+
+    /**
+     * Gets the rows without blocking the caller.
+     *
+     * @see #getRows(Keyspace, Object, Collection, Serializer, Serializer, Serializer)
+     */
+    public <K, N, V> ListenableFuture<Rows<K, N, V>> getRowsAsync( final Keyspace ko, final Object columnFamily,
+                                                                   final Collection<K> keys,
+                                                                   final Serializer<K> keySerializer,
+                                                                   final Serializer<N> nameSerializer,
+                                                                   final Serializer<V> valueSerializer ) {
+        return submit( ko, new Callable<Rows<K, N, V>>() {
+            @Override
+            public Rows<K, N, V> call() throws Exception {
+                return getRows( ko, columnFamily, keys, keySerializer, nameSerializer, valueSerializer );
+            }
+        } );
+    }
+
+
+    /**
+     * Gets the named columns of the rows without blocking the caller.
+     *
+     * @see #getRows(Keyspace, Object, Collection, Collection, Serializer, Serializer, Serializer)
+     */
+    public <K, N, V> ListenableFuture<Rows<K, N, V>> getRowsAsync( final Keyspace ko, final Object columnFamily,
+                                                                   final Collection<K> keys,
+                                                                   final Collection<String> columnNames,
+                                                                   final Serializer<K> keySerializer,
+                                                                   final Serializer<N> nameSerializer,
+                                                                   final Serializer<V> valueSerializer ) {
+        return submit( ko, new Callable<Rows<K, N, V>>() {
+            @Override
+            public Rows<K, N, V> call() throws Exception {
+                return getRows( ko, columnFamily, keys, columnNames, keySerializer, nameSerializer, valueSerializer );
+            }
+        } );
+    }
+
+
+    /**
+     * Sets the columns without blocking the caller.
+     *
+     * @see #setColumns(Keyspace, Object, byte[], Map, int)
+     */
+    public ListenableFuture<Void> setColumnsAsync( final Keyspace ko, final Object columnFamily, final byte[] key,
+                                                   final Map<?, ?> map, final int ttl ) {
+        return submit( ko, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                setColumns( ko, columnFamily, key, map, ttl );
+                return null;
+            }
+        } );
+    }
+
+
+    /**
+     * Deletes the row without blocking the caller.
+     *
+     * @see #deleteRow(Keyspace, Object, Object)
+     */
+    public ListenableFuture<Void> deleteRowAsync( final Keyspace ko, final Object columnFamily, final Object key ) {
+        return submit( ko, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                deleteRow( ko, columnFamily, key );
+                return null;
+            }
+        } );
+    }
+
+
+    /**
+     * Run the request on the executor of the keyspace. When the executor's queue is full the request runs on the
+     * caller's thread, so callers are slowed down rather than failed.
+     */
+    public <T> ListenableFuture<T> submit( Keyspace ko, Callable<T> request ) {
+        final KeyspaceExecutor executor = getExecutor( ko.getKeyspaceName() );
+
+        executor.inFlight.incrementAndGet();
+
+        ListenableFuture<T> future;
+
+        try {
+            future = executor.service.submit( request );
+        }
+        catch ( RuntimeException e ) {
+            executor.inFlight.decrementAndGet();
+            throw e;
+        }
+
+        future.addListener( new Runnable() {
+            @Override
+            public void run() {
+                executor.inFlight.decrementAndGet();
+            }
+        }, MoreExecutors.sameThreadExecutor() );
+
+        return future;
+    }
+
+
+    private KeyspaceExecutor getExecutor( String keyspace ) {
+        KeyspaceExecutor executor = executors.get( keyspace );
+
+        if ( executor != null ) {
+            return executor;
+        }
+
+        synchronized ( executors ) {
+            executor = executors.get( keyspace );
+
+            if ( executor == null ) {
+                executor = new KeyspaceExecutor( keyspace, asyncThreads, asyncQueueSize );
+                executors.put( keyspace, executor );
+            }
+        }
+
+        return executor;
+    }
+
+
 
     /**
      * Gets the id list.
@@ -1053,6 +1237,11 @@ public class CassandraService {
 
     
     public void destroy() throws Exception {
+        // the executors are kept, so requests made after this are rejected rather than starting new ones
+        for ( KeyspaceExecutor executor : executors.values() ) {
+            executor.service.shutdown();
+        }
+
     	if (cluster != null) {
     		HConnectionManager connectionManager = cluster.getConnectionManager();
     		if (connectionManager != null) {
@@ -1061,4 +1250,53 @@ public class CassandraService {
     	}
     	cluster = null;
     }
+
+
+    /**
+     * Runs a request the full queue of an executor rejects on the caller's thread, unless the executor has been shut
+     * down, when the request is rejected rather than run against a destroyed service.
+     */
+    static class CallerRunsUnlessShutdown implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution( Runnable r, ThreadPoolExecutor executor ) {
+            if ( executor.isShutdown() ) {
+                throw new RejectedExecutionException( "The cassandra service has been destroyed" );
+            }
+            r.run();
+        }
+    }
+
+
+    /** A bounded pool of threads for the asynchronous requests on one keyspace */
+    private static class KeyspaceExecutor {
+
+        private final ListeningExecutorService service;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+
+        private KeyspaceExecutor( String keyspace, int threads, int queueSize ) {
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>( queueSize ),
+                    new ThreadFactoryBuilder().setNameFormat( "cassandra-" + keyspace + "-%d" ).setDaemon( true )
+                                              .build(), new CallerRunsUnlessShutdown() );
+
+            pool.allowCoreThreadTimeOut( true );
+
+            service = MoreExecutors.listeningDecorator( pool );
+
+            Metrics.newGauge( CassandraService.class, keyspace + "_async_in_flight", new Gauge<Integer>() {
+                @Override
+                public Integer value() {
+                    return inFlight.get();
+                }
+            } );
+            Metrics.newGauge( CassandraService.class, keyspace + "_async_queued", new Gauge<Integer>() {
+                @Override
+                public Integer value() {
+                    return pool.getQueue().size();
+                }
+            } );
+        }
+    }
 }
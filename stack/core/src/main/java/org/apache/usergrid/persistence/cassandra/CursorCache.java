@@ -17,26 +17,58 @@
 package org.apache.usergrid.persistence.cassandra;
 
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import static java.lang.Integer.parseInt;
 
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
 import static org.apache.commons.codec.binary.Base64.encodeBase64URLSafeString;
 import static org.apache.commons.lang.StringUtils.split;
-import static org.apache.usergrid.utils.ConversionUtils.bytes;
 
 
 /**
  * Internal cursor parsing
+ * <p/>
+ * Cursors are written as a single base64 pass over a binary payload: a format byte, the varint count of slices, then
+ * for each slice its zigzag varint hash and its length prefixed cursor bytes. Payloads larger than {@link
+ * #COMPRESS_THRESHOLD} are deflated when that makes them smaller. The older "hash:base64|hash:base64" cursors are still
+ * accepted.
  *
  * @author tnine
  */
 public class CursorCache {
 
+    /** Format byte of an uncompressed binary cursor */
+    private static final byte FORMAT_BINARY = 1;
+
+    /** Format byte of a deflated binary cursor, followed by the varint length of the inflated payload */
+    private static final byte FORMAT_DEFLATED = 2;
+
+    /** Payloads below this size are never worth deflating */
+    private static final int COMPRESS_THRESHOLD = 256;
+
+    /** The deflaters and inflaters hold native memory, so they are reused per thread rather than created per cursor */
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater( Deflater.BEST_SPEED );
+        }
+    };
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
     private Map<Integer, ByteBuffer> cursors = new HashMap<Integer, ByteBuffer>();
 
 
@@ -52,34 +84,29 @@ public class CursorCache {
             return;
         }
 
-        String decoded = new String( decodeBase64( cursorString ) );
+        byte[] decoded = decodeBase64( cursorString );
 
         // nothing to do
-        if ( decoded.indexOf( ':' ) < 0 ) {
+        if ( decoded.length == 0 ) {
             return;
         }
 
-        String[] cursorTokens = split( decoded, '|' );
-
-        for ( String c : cursorTokens ) {
-
-            String[] parts = split( c, ':' );
-
-            if ( parts.length >= 1 ) {
-
-                int hashCode = parseInt( parts[0] );
-
-                ByteBuffer cursorBytes = null;
-
-                if ( parts.length == 2 ) {
-                    cursorBytes = ByteBuffer.wrap( decodeBase64( parts[1] ) );
-                }
-                else {
-                    cursorBytes = ByteBuffer.allocate( 0 );
-                }
-
-                cursors.put( hashCode, cursorBytes );
+        try {
+            if ( decoded[0] == FORMAT_BINARY ) {
+                readCursors( ByteBuffer.wrap( decoded, 1, decoded.length - 1 ) );
+            }
+            else if ( decoded[0] == FORMAT_DEFLATED ) {
+                readCursors( ByteBuffer.wrap( inflate( decoded ) ) );
             }
+            else {
+                readLegacyCursors( new String( decoded ) );
+            }
+        }
+        catch ( BufferUnderflowException e ) {
+            throw new IllegalArgumentException( "Invalid cursor " + cursorString, e );
+        }
+        catch ( IndexOutOfBoundsException e ) {
+            throw new IllegalArgumentException( "Invalid cursor " + cursorString, e );
         }
     }
 
@@ -105,21 +132,16 @@ public class CursorCache {
             return null;
         }
 
-        StringBuffer buff = new StringBuffer();
-
         int nullCount = 0;
-        ByteBuffer value = null;
+        int size = 1 + varIntSize( cursors.size() );
 
         for ( Entry<Integer, ByteBuffer> entry : cursors.entrySet() ) {
-            value = entry.getValue();
+            int length = remaining( entry.getValue() );
 
-            buff.append( entry.getKey() );
-            buff.append( ":" );
-            buff.append( encodeBase64URLSafeString( bytes( value ) ) );
-            buff.append( "|" );
+            size += varIntSize( zigZag( entry.getKey() ) ) + varIntSize( length ) + length;
 
             // this range was empty, mark it as a null
-            if ( value == null || value.remaining() == 0 ) {
+            if ( length == 0 ) {
                 nullCount++;
             }
         }
@@ -129,9 +151,199 @@ public class CursorCache {
             return null;
         }
 
-        // trim off the last pipe
-        buff.setLength( buff.length() - 1 );
+        ByteBuffer buff = ByteBuffer.allocate( size );
+
+        buff.put( FORMAT_BINARY );
+        writeVarInt( buff, cursors.size() );
+
+        for ( Entry<Integer, ByteBuffer> entry : cursors.entrySet() ) {
+            ByteBuffer value = entry.getValue();
+
+            writeVarInt( buff, zigZag( entry.getKey() ) );
+            writeVarInt( buff, remaining( value ) );
+
+            if ( value != null ) {
+                buff.put( value.duplicate() );
+            }
+        }
+
+        byte[] payload = buff.array();
+
+        if ( payload.length > COMPRESS_THRESHOLD ) {
+            payload = deflate( payload );
+        }
+
+        return encodeBase64URLSafeString( payload );
+    }
+
+
+    /** Read the slices of a binary cursor, the cursor bytes are views over the decoded array */
+    private void readCursors( ByteBuffer buff ) {
+        int count = readVarInt( buff );
+
+        for ( int i = 0; i < count; i++ ) {
+            int hashCode = unZigZag( readVarInt( buff ) );
+            int length = readVarInt( buff );
+
+            if ( length > buff.remaining() ) {
+                throw new BufferUnderflowException();
+            }
+
+            ByteBuffer cursorBytes = buff.slice();
+            cursorBytes.limit( length );
+            buff.position( buff.position() + length );
+
+            cursors.put( hashCode, cursorBytes );
+        }
+    }
+
+
+    /** Read a cursor written in the original "hash:base64|hash:base64" format */
+    private void readLegacyCursors( String decoded ) {
+
+        // nothing to do
+        if ( decoded.indexOf( ':' ) < 0 ) {
+            return;
+        }
+
+        String[] cursorTokens = split( decoded, '|' );
+
+        for ( String c : cursorTokens ) {
+
+            String[] parts = split( c, ':' );
+
+            if ( parts.length >= 1 ) {
+
+                int hashCode = parseInt( parts[0] );
+
+                ByteBuffer cursorBytes = null;
+
+                if ( parts.length == 2 ) {
+                    cursorBytes = ByteBuffer.wrap( decodeBase64( parts[1] ) );
+                }
+                else {
+                    cursorBytes = ByteBuffer.allocate( 0 );
+                }
+
+                cursors.put( hashCode, cursorBytes );
+            }
+        }
+    }
+
+
+    /** Deflate the payload, keeping it as is if deflating doesn't make it smaller */
+    private static byte[] deflate( byte[] payload ) {
+        Deflater deflater = deflaters.get();
+
+        // the header is the format byte and the inflated length
+        int headerSize = 1 + varIntSize( payload.length - 1 );
+        byte[] out = new byte[payload.length];
+
+        try {
+            deflater.setInput( payload, 1, payload.length - 1 );
+            deflater.finish();
+
+            int length = deflater.deflate( out, headerSize, out.length - headerSize );
+
+            if ( !deflater.finished() ) {
+                return payload;
+            }
+
+            ByteBuffer header = ByteBuffer.wrap( out );
+            header.put( FORMAT_DEFLATED );
+            writeVarInt( header, payload.length - 1 );
+
+            byte[] deflated = new byte[headerSize + length];
+            System.arraycopy( out, 0, deflated, 0, deflated.length );
+
+            return deflated;
+        }
+        finally {
+            deflater.reset();
+        }
+    }
+
+
+    private static byte[] inflate( byte[] deflated ) {
+        Inflater inflater = inflaters.get();
+
+        ByteBuffer header = ByteBuffer.wrap( deflated, 1, deflated.length - 1 );
+        int length = readVarInt( header );
+
+        if ( length < 0 ) {
+            throw new IllegalArgumentException( "Invalid cursor length " + length );
+        }
+
+        byte[] payload = new byte[length];
+
+        try {
+            inflater.setInput( deflated, header.position(), header.remaining() );
+
+            if ( inflater.inflate( payload ) != length || !inflater.finished() ) {
+                throw new IllegalArgumentException( "Invalid compressed cursor" );
+            }
+
+            return payload;
+        }
+        catch ( DataFormatException e ) {
+            throw new IllegalArgumentException( "Invalid compressed cursor", e );
+        }
+        finally {
+            inflater.reset();
+        }
+    }
+
+
+    private static int remaining( ByteBuffer value ) {
+        return value == null ? 0 : value.remaining();
+    }
+
+
+    private static int zigZag( int value ) {
+        return ( value << 1 ) ^ ( value >> 31 );
+    }
+
+
+    private static int unZigZag( int value ) {
+        return ( value >>> 1 ) ^ -( value & 1 );
+    }
+
+
+    private static int varIntSize( int value ) {
+        int size = 1;
+
+        while ( ( value & ~0x7F ) != 0 ) {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+
+
+    private static void writeVarInt( ByteBuffer buff, int value ) {
+        while ( ( value & ~0x7F ) != 0 ) {
+            buff.put( ( byte ) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+
+        buff.put( ( byte ) value );
+    }
+
+
+    private static int readVarInt( ByteBuffer buff ) {
+        int value = 0;
+
+        for ( int shift = 0; shift < 32; shift += 7 ) {
+            byte b = buff.get();
+
+            value |= ( b & 0x7F ) << shift;
+
+            if ( ( b & 0x80 ) == 0 ) {
+                return value;
+            }
+        }
 
-        return encodeBase64URLSafeString( buff.toString().getBytes() );
+        throw new IllegalArgumentException( "Invalid cursor varint" );
     }
 }
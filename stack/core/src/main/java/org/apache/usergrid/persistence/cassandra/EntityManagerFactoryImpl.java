@@ -18,16 +18,22 @@ package org.apache.usergrid.persistence.cassandra;
 
 
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.apache.usergrid.persistence.DynamicEntity;
+import org.apache.usergrid.persistence.EntityChangeEvent;
+import org.apache.usergrid.persistence.EntityChangeListener;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
 import org.apache.usergrid.persistence.entities.Application;
@@ -37,10 +43,15 @@ import org.apache.usergrid.utils.UUIDUtils;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.yammer.metrics.Metrics;
 import com.yammer.metrics.annotation.Metered;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
 
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.ColumnSlice;
@@ -74,7 +85,7 @@ import static org.apache.usergrid.persistence.cassandra.Serializers.*;
  *
  * @author edanuff
  */
-public class EntityManagerFactoryImpl implements EntityManagerFactory, ApplicationContextAware {
+public class EntityManagerFactoryImpl implements EntityManagerFactory, ApplicationContextAware, BeanNameAware {
 
     private static final Logger logger = LoggerFactory.getLogger( EntityManagerFactoryImpl.class );
 
@@ -82,6 +93,16 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
 
     public static final Class<DynamicEntity> APPLICATION_ENTITY_CLASS = DynamicEntity.class;
 
+    /** The default maximum number of applications whose entity managers and names are cached */
+    public static final int DEFAULT_APPLICATION_CACHE_SIZE = 10000;
+
+    /** The default number of seconds an application stays cached after it was last used */
+    public static final long DEFAULT_APPLICATION_CACHE_TTL = 600;
+
+    public static final String PROPERTIES_APPLICATION_CACHE_SIZE = "usergrid.application.cache.size";
+
+    public static final String PROPERTIES_APPLICATION_CACHE_TTL = "usergrid.application.cache.ttl";
+
 
     ApplicationContext applicationContext;
 
@@ -90,12 +111,13 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
 
     private boolean skipAggregateCounters;
 
-    private LoadingCache<UUID, EntityManager> entityManagers =
-            CacheBuilder.newBuilder().maximumSize( 100 ).build( new CacheLoader<UUID, EntityManager>() {
-                public EntityManager load( UUID appId ) { // no checked exception
-                    return _getEntityManager( appId );
-                }
-            } );
+    private final CopyOnWriteArrayList<EntityChangeListener> changeListeners =
+            new CopyOnWriteArrayList<EntityChangeListener>();
+
+    private final LoadingCache<UUID, EntityManager> entityManagers;
+
+    /** Application ids by lower case name. Only found applications are cached */
+    private final Cache<String, UUID> applicationIds;
 
 
     /**
@@ -104,12 +126,78 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
      * @param cass the cassandraService instance
      */
     public EntityManagerFactoryImpl( CassandraService cass, CounterUtils counterUtils, boolean skipAggregateCounters ) {
+        this( cass, counterUtils, skipAggregateCounters, DEFAULT_APPLICATION_CACHE_SIZE,
+                DEFAULT_APPLICATION_CACHE_TTL );
+    }
+
+
+    /**
+     * @param cass the cassandraService instance
+     * @param applicationCacheSize the maximum number of applications to cache
+     * @param applicationCacheTtl the seconds an application stays cached after it was last used
+     */
+    public EntityManagerFactoryImpl( CassandraService cass, CounterUtils counterUtils, boolean skipAggregateCounters,
+                                     int applicationCacheSize, long applicationCacheTtl ) {
         this.cass = cass;
         this.counterUtils = counterUtils;
         this.skipAggregateCounters = skipAggregateCounters;
         if ( skipAggregateCounters ) {
             logger.warn( "NOTE: Counters have been disabled by configuration..." );
         }
+
+        entityManagers = CacheBuilder.newBuilder().maximumSize( applicationCacheSize )
+                                     .expireAfterAccess( applicationCacheTtl, TimeUnit.SECONDS ).recordStats()
+                                     .build( new CacheLoader<UUID, EntityManager>() {
+                                         public EntityManager load( UUID appId ) { // no checked exception
+                                             return _getEntityManager( appId );
+                                         }
+                                     } );
+
+        applicationIds = CacheBuilder.newBuilder().maximumSize( applicationCacheSize )
+                                     .expireAfterWrite( applicationCacheTtl, TimeUnit.SECONDS ).recordStats().build();
+    }
+
+
+    /** Report the caches under the bean's name, factories created outside of spring aren't reported */
+    @Override
+    public void setBeanName( String name ) {
+        registerCacheGauges( name, "entityManagers", entityManagers );
+        registerCacheGauges( name, "applicationIds", applicationIds );
+    }
+
+
+    private static void registerCacheGauges( String scope, String name, final Cache<?, ?> cache ) {
+        registerGauge( new MetricName( EntityManagerFactoryImpl.class, name + "_size", scope ), new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return cache.size();
+            }
+        } );
+        registerGauge( new MetricName( EntityManagerFactoryImpl.class, name + "_hitRate", scope ),
+                new Gauge<Double>() {
+                    @Override
+                    public Double value() {
+                        return cache.stats().hitRate();
+                    }
+                } );
+        registerGauge( new MetricName( EntityManagerFactoryImpl.class, name + "_evictions", scope ),
+                new Gauge<Long>() {
+                    @Override
+                    public Long value() {
+                        return cache.stats().evictionCount();
+                    }
+                } );
+    }
+
+
+    /**
+     * A factory created again under the same bean name, as in a refreshed context, replaces the gauges of the previous
+     * one so the registry doesn't keep the old factory alive.
+     */
+    private static <T> void registerGauge( MetricName metricName, Gauge<T> gauge ) {
+        MetricsRegistry registry = Metrics.defaultRegistry();
+        registry.removeMetric( metricName );
+        registry.newGauge( metricName, gauge );
     }
 
 
@@ -251,6 +339,10 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
 
         batchExecute( m, RETRY_COUNT );
 
+        // an imported application may reuse the id of one that was cached
+        invalidateApplication( applicationId );
+        applicationIds.put( appName, applicationId );
+
         EntityManager em = getEntityManager( applicationId );
         em.create( TYPE_APPLICATION, APPLICATION_ENTITY_CLASS, properties );
 
@@ -282,15 +374,30 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
     @Metered(group = "core", name = "EntityManagerFactory_lookupApplication_byName")
     public UUID lookupApplication( String name ) throws Exception {
         name = name.toLowerCase();
+
+        UUID applicationId = applicationIds.getIfPresent( name );
+        if ( applicationId != null ) {
+            return applicationId;
+        }
+
         HColumn<String, ByteBuffer> column =
                 cass.getColumn( cass.getSystemKeyspace(), APPLICATIONS_CF, name, PROPERTY_UUID );
         if ( column != null ) {
-            return uuid( column.getValue() );
+            applicationId = uuid( column.getValue() );
+            applicationIds.put( name, applicationId );
+            return applicationId;
         }
         return null;
     }
 
 
+    @Override
+    public void invalidateApplication( UUID applicationId ) {
+        entityManagers.invalidate( applicationId );
+        applicationIds.asMap().values().removeAll( Collections.singleton( applicationId ) );
+    }
+
+
     /**
      * Gets the application.
      *
@@ -302,15 +409,11 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
      */
     @Metered(group = "core", name = "EntityManagerFactory_getApplication")
     public Application getApplication( String name ) throws Exception {
-        name = name.toLowerCase();
-        HColumn<String, ByteBuffer> column =
-                cass.getColumn( cass.getSystemKeyspace(), APPLICATIONS_CF, name, PROPERTY_UUID );
-        if ( column == null ) {
+        UUID applicationId = lookupApplication( name );
+        if ( applicationId == null ) {
             return null;
         }
 
-        UUID applicationId = uuid( column.getValue() );
-
         EntityManager em = getEntityManager( applicationId );
         return ( ( EntityManagerImpl ) em ).getEntity( applicationId, Application.class );
     }
@@ -396,4 +499,35 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
     public void setCounterUtils( CounterUtils counterUtils ) {
         this.counterUtils = counterUtils;
     }
+
+
+    @Override
+    public void addEntityChangeListener( EntityChangeListener listener ) {
+        changeListeners.addIfAbsent( listener );
+    }
+
+
+    @Override
+    public void removeEntityChangeListener( EntityChangeListener listener ) {
+        changeListeners.remove( listener );
+    }
+
+
+    /** @return true if anyone is listening, so writers can skip building change events */
+    public boolean hasEntityChangeListeners() {
+        return !changeListeners.isEmpty();
+    }
+
+
+    /** Publish a change that has been written, a failing listener never fails the write */
+    public void publishEntityChange( EntityChangeEvent event ) {
+        for ( EntityChangeListener listener : changeListeners ) {
+            try {
+                listener.entityChanged( event );
+            }
+            catch ( Exception e ) {
+                logger.error( "Entity change listener failed for {}", event, e );
+            }
+        }
+    }
 }
@@ -51,6 +51,7 @@ import org.apache.usergrid.persistence.ConnectedEntityRef;
 import org.apache.usergrid.persistence.ConnectionRef;
 import org.apache.usergrid.persistence.CounterResolution;
 import org.apache.usergrid.persistence.DynamicEntity;
+import org.apache.usergrid.persistence.EntityChangeEvent;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityFactory;
 import org.apache.usergrid.persistence.EntityManager;
@@ -295,6 +296,14 @@ public class EntityManagerImpl implements EntityManager {
     public Mutator<ByteBuffer> batchSetProperty( Mutator<ByteBuffer> batch, EntityRef entity, String propertyName,
                                                  Object propertyValue, boolean force, boolean noRead,
                                                  UUID timestampUuid ) throws Exception {
+        return batchSetProperty( batch, entity, propertyName, propertyValue, force, noRead, false, timestampUuid );
+    }
+
+
+    /** @param uniqueChecked true if the caller already checked that a unique value isn't taken, it's not read again */
+    private Mutator<ByteBuffer> batchSetProperty( Mutator<ByteBuffer> batch, EntityRef entity, String propertyName,
+                                                  Object propertyValue, boolean force, boolean noRead,
+                                                  boolean uniqueChecked, UUID timestampUuid ) throws Exception {
 
         long timestamp = getTimestampInMicros( timestampUuid );
 
@@ -306,15 +315,7 @@ public class EntityManagerImpl implements EntityManager {
 
         Schema defaultSchema = Schema.getDefaultSchema();
 
-        if ( PROPERTY_TYPE.equalsIgnoreCase( propertyName ) && ( propertyValue != null ) ) {
-            if ( "entity".equalsIgnoreCase( propertyValue.toString() ) || "dynamicentity"
-                    .equalsIgnoreCase( propertyValue.toString() ) ) {
-                String errorMsg =
-                        "Unable to dictionary entity type to " + propertyValue + " because that is not a valid type.";
-                logger.error( errorMsg );
-                throw new IllegalArgumentException( errorMsg );
-            }
-        }
+        validateTypeProperty( propertyName, propertyValue );
 
         if ( entitySchemaHasProperty ) {
 
@@ -342,8 +343,8 @@ public class EntityManagerImpl implements EntityManager {
                 try {
                     lock.lock();
 
-                    if ( !isPropertyValueUniqueForEntity( entity.getUuid(), entity.getType(), propertyName,
-                            propertyValue ) ) {
+                    if ( !uniqueChecked && !isPropertyValueUniqueForEntity( entity.getUuid(), entity.getType(),
+                            propertyName, propertyValue ) ) {
                         throw new DuplicateUniquePropertyExistsException( entity.getType(), propertyName,
                                 propertyValue );
                     }
@@ -405,17 +406,38 @@ public class EntityManagerImpl implements EntityManager {
     public Mutator<ByteBuffer> batchUpdateProperties( Mutator<ByteBuffer> batch, EntityRef entity,
                                                       Map<String, Object> properties, UUID timestampUuid )
             throws Exception {
+        return batchUpdateProperties( batch, entity, properties, false, timestampUuid );
+    }
+
+
+    private Mutator<ByteBuffer> batchUpdateProperties( Mutator<ByteBuffer> batch, EntityRef entity,
+                                                       Map<String, Object> properties, boolean uniqueChecked,
+                                                       UUID timestampUuid ) throws Exception {
 
         for ( String propertyName : properties.keySet() ) {
             Object propertyValue = properties.get( propertyName );
 
-            batch = batchSetProperty( batch, entity, propertyName, propertyValue, timestampUuid );
+            batch = batchSetProperty( batch, entity, propertyName, propertyValue, false, false, uniqueChecked,
+                    timestampUuid );
         }
 
         return batch;
     }
 
 
+    private static void validateTypeProperty( String propertyName, Object propertyValue ) {
+        if ( PROPERTY_TYPE.equalsIgnoreCase( propertyName ) && ( propertyValue != null ) ) {
+            if ( "entity".equalsIgnoreCase( propertyValue.toString() ) || "dynamicentity"
+                    .equalsIgnoreCase( propertyValue.toString() ) ) {
+                String errorMsg =
+                        "Unable to dictionary entity type to " + propertyValue + " because that is not a valid type.";
+                logger.error( errorMsg );
+                throw new IllegalArgumentException( errorMsg );
+            }
+        }
+    }
+
+
     /**
      * Batch update set.
      *
@@ -722,10 +744,115 @@ public class EntityManagerImpl implements EntityManager {
 
         batchExecute( m, CassandraService.RETRY_COUNT );
 
+        if ( entity != null ) {
+            publishEntityChange( EntityChangeEvent.Type.CREATE, entity, entity.getProperties() );
+        }
+
         return entity;
     }
 
 
+    @Override
+    @Metered( group = "core", name = "EntityManager_createBatch" )
+    public Map<Integer, Exception> createBatch( String entityType, List<Map<String, Object>> entities )
+            throws Exception {
+
+        Map<Integer, Exception> errors = new LinkedHashMap<Integer, Exception>();
+
+        // unique values claimed by earlier entities of this batch, they aren't visible to the index reads yet
+        Set<String> batchUniqueValues = new HashSet<String>();
+
+        List<Entity> created = new ArrayList<Entity>( entities.size() );
+
+        Keyspace ko = cass.getApplicationKeyspace( applicationId );
+        Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, be );
+
+        for ( int i = 0; i < entities.size(); i++ ) {
+            Map<String, Object> properties = entities.get( i );
+
+            String type = entityType != null ? entityType : string( properties.get( PROPERTY_TYPE ) );
+            UUID importId = uuid( properties.get( PROPERTY_UUID ), null );
+
+            try {
+                Set<String> claims = validateBatchEntity( type, importId, properties, batchUniqueValues );
+
+                Entity entity = batchCreate( m, type, null, properties, importId, newTimeUUID() );
+
+                // only an entity that made it into the batch holds its unique values
+                batchUniqueValues.addAll( claims );
+
+                if ( entity != null ) {
+                    created.add( entity );
+                }
+            }
+            catch ( Exception e ) {
+                logger.debug( "Unable to create entity {} of batch", i, e );
+                errors.put( i, e );
+            }
+        }
+
+        batchExecute( m, CassandraService.RETRY_COUNT );
+
+        for ( Entity entity : created ) {
+            publishEntityChange( EntityChangeEvent.Type.CREATE, entity, entity.getProperties() );
+        }
+
+        return errors;
+    }
+
+
+    /**
+     * Checks an entity of a batch for the errors batchCreate would otherwise only raise part way through adding it to
+     * the mutator, so a rejected entity never leaves partial writes in the shared batch. Returns the unique values the
+     * entity claims, which the caller adds to the batch once the entity is added.
+     */
+    private Set<String> validateBatchEntity( String entityType, UUID importId, Map<String, Object> properties,
+                                             Set<String> batchUniqueValues ) throws Exception {
+
+        if ( ( entityType == null ) || entityType.startsWith( TYPE_ENTITY ) || entityType.startsWith( "entities" ) ) {
+            throw new IllegalArgumentException( "Invalid entity type" );
+        }
+
+        String eType = Schema.normalizeEntityType( entityType );
+
+        Schema schema = getDefaultSchema();
+
+        Set<String> claims = new HashSet<String>();
+
+        for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+
+            String propertyName = property.getKey();
+
+            if ( property.getValue() == null ) {
+                continue;
+            }
+
+            if ( User.ENTITY_TYPE.equals( entityType ) && "me".equals( propertyName ) ) {
+                throw new DuplicateUniquePropertyExistsException( entityType, propertyName, property.getValue() );
+            }
+
+            Object propertyValue = schema.validateEntityPropertyValue( eType, propertyName, property.getValue() );
+
+            if ( ( propertyValue == null ) || !schema.isPropertyUnique( eType, propertyName ) ) {
+                continue;
+            }
+
+            String claim = eType + ":" + propertyName + ":" + propertyValue;
+
+            boolean unique = !batchUniqueValues.contains( claim )
+                    && isPropertyValueUniqueForEntity( importId, eType, propertyName, propertyValue );
+
+            if ( !unique ) {
+                throw new DuplicateUniquePropertyExistsException( eType, propertyName, propertyValue );
+            }
+
+            claims.add( claim );
+        }
+
+        return claims;
+    }
+
+
     @SuppressWarnings( "unchecked" )
     @Metered( group = "core", name = "EntityManager_batchCreate" )
     public <A extends Entity> A batchCreate( Mutator<ByteBuffer> m, String entityType, Class<A> entityClass,
@@ -906,6 +1033,23 @@ public class EntityManagerImpl implements EntityManager {
     }
 
 
+    /** Publish a change that has been written to the listeners of the factory, if there are any */
+    private void publishEntityChange( EntityChangeEvent.Type type, EntityRef entity, Map<String, Object> properties ) {
+        if ( ( emf != null ) && emf.hasEntityChangeListeners() ) {
+            emf.publishEntityChange( EntityChangeEvent.entityChange( type, applicationId, entity, properties ) );
+        }
+    }
+
+
+    void publishConnectionChange( boolean disconnect, ConnectionRefImpl connection ) {
+        if ( ( emf != null ) && emf.hasEntityChangeListeners() ) {
+            emf.publishEntityChange( EntityChangeEvent
+                    .connectionChange( disconnect, applicationId, connection.getConnectingEntity(),
+                            connection.getConnectionType(), connection.getConnectedEntity() ) );
+        }
+    }
+
+
     private void incrementEntityCollection( String collection_name, long cassandraTimestamp ) {
         try {
             incrementAggregateCounters( null, null, null, APPLICATION_COLLECTION + collection_name,
@@ -1387,6 +1531,109 @@ public class EntityManagerImpl implements EntityManager {
         batchUpdateProperties( m, entity, properties, timestampUuid );
 
         batchExecute( m, CassandraService.RETRY_COUNT );
+
+        publishEntityChange( EntityChangeEvent.Type.UPDATE, entity, properties );
+    }
+
+
+    @Override
+    @Metered( group = "core", name = "EntityManager_updateBatch" )
+    public Map<Integer, Exception> updateBatch( List<? extends EntityRef> entityRefs, Map<String, Object> properties )
+            throws Exception {
+
+        Map<Integer, Exception> errors = new LinkedHashMap<Integer, Exception>();
+
+        // unique values claimed by earlier entities of this batch, they aren't visible to the index reads yet
+        Set<String> batchUniqueValues = new HashSet<String>();
+
+        List<EntityRef> updated = new ArrayList<EntityRef>( entityRefs.size() );
+        List<Map<String, Object>> updatedProperties = new ArrayList<Map<String, Object>>( entityRefs.size() );
+
+        Keyspace ko = cass.getApplicationKeyspace( applicationId );
+        Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, be );
+
+        for ( int i = 0; i < entityRefs.size(); i++ ) {
+            EntityRef entity;
+            Map<String, Object> entityProperties;
+            Set<String> claims;
+
+            try {
+                entity = validate( entityRefs.get( i ) );
+
+                entityProperties = getDefaultSchema()
+                        .cleanUpdatedProperties( entity.getType(), new LinkedHashMap<String, Object>( properties ),
+                                false );
+
+                claims = validateBatchUpdate( entity, entityProperties, batchUniqueValues );
+            }
+            catch ( Exception e ) {
+                logger.debug( "Unable to update entity {} of batch", i, e );
+                errors.put( i, e );
+                continue;
+            }
+
+            // the entity is valid, a failure from here on may leave part of its writes in the batch and fails it
+            UUID timestampUuid = newTimeUUID();
+            entityProperties.put( PROPERTY_MODIFIED, getTimestampInMillis( timestampUuid ) );
+
+            batchUpdateProperties( m, entity, entityProperties, true, timestampUuid );
+
+            // only an entity that made it into the batch holds its unique values
+            batchUniqueValues.addAll( claims );
+
+            updated.add( entity );
+            updatedProperties.add( entityProperties );
+        }
+
+        batchExecute( m, CassandraService.RETRY_COUNT );
+
+        for ( int i = 0; i < updated.size(); i++ ) {
+            publishEntityChange( EntityChangeEvent.Type.UPDATE, updated.get( i ), updatedProperties.get( i ) );
+        }
+
+        return errors;
+    }
+
+
+    /**
+     * Validates every property of an entity of an update batch up front, including its unique values, so a rejected
+     * entity never leaves partial writes in the shared batch. Returns the unique values the entity claims, which the
+     * caller adds to the batch once the update is added.
+     */
+    private Set<String> validateBatchUpdate( EntityRef entity, Map<String, Object> properties,
+                                             Set<String> batchUniqueValues ) throws Exception {
+
+        String eType = Schema.normalizeEntityType( entity.getType() );
+
+        Schema schema = getDefaultSchema();
+
+        Set<String> claims = new HashSet<String>();
+
+        for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+
+            String propertyName = property.getKey();
+
+            Object propertyValue = schema.validateEntityPropertyValue( eType, propertyName, property.getValue() );
+
+            validateTypeProperty( propertyName, propertyValue );
+
+            if ( propertyValue == null || !schema.isPropertyUnique( eType, propertyName ) ) {
+                continue;
+            }
+
+            String claim = eType + ":" + propertyName + ":" + propertyValue;
+
+            boolean unique = !batchUniqueValues.contains( claim )
+                    && isPropertyValueUniqueForEntity( entity.getUuid(), eType, propertyName, propertyValue );
+
+            if ( !unique ) {
+                throw new DuplicateUniquePropertyExistsException( eType, propertyName, propertyValue );
+            }
+
+            claims.add( claim );
+        }
+
+        return claims;
     }
 
 
@@ -1460,6 +1707,8 @@ public class EntityManagerImpl implements EntityManager {
         addDeleteToMutator( m, ENTITY_PROPERTIES, key( entityId ), timestamp );
 
         batchExecute( m, CassandraService.RETRY_COUNT );
+
+        publishEntityChange( EntityChangeEvent.Type.DELETE, entity, null );
     }
 
 
@@ -2021,6 +2270,9 @@ public class EntityManagerImpl implements EntityManager {
         entity.setProperty( propertyName, propertyValue );
         batch = batchSetProperty( batch, entity, propertyName, propertyValue, override, false, timestampUuid );
         batchExecute( batch, CassandraService.RETRY_COUNT );
+
+        publishEntityChange( EntityChangeEvent.Type.UPDATE, entity,
+                Collections.singletonMap( propertyName, propertyValue ) );
     }
 
 
@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 import java.util.UUID;
 
@@ -38,6 +39,10 @@ import org.apache.usergrid.persistence.entities.User;
 import org.apache.usergrid.persistence.exceptions.NoFullTextIndexException;
 import org.apache.usergrid.persistence.exceptions.NoIndexException;
 import org.apache.usergrid.persistence.exceptions.PersistenceException;
+import org.apache.usergrid.persistence.exceptions.QueryParseException;
+import org.apache.usergrid.persistence.geo.model.BoundingBox;
+import org.apache.usergrid.persistence.geo.model.Point;
+import org.apache.usergrid.persistence.geo.model.Polygon;
 import org.apache.usergrid.persistence.query.ir.AllNode;
 import org.apache.usergrid.persistence.query.ir.AndNode;
 import org.apache.usergrid.persistence.query.ir.EmailIdentifierNode;
@@ -49,8 +54,10 @@ import org.apache.usergrid.persistence.query.ir.QueryNode;
 import org.apache.usergrid.persistence.query.ir.QuerySlice;
 import org.apache.usergrid.persistence.query.ir.SearchVisitor;
 import org.apache.usergrid.persistence.query.ir.SliceNode;
+import org.apache.usergrid.persistence.query.ir.TermsNode;
 import org.apache.usergrid.persistence.query.ir.UuidIdentifierNode;
 import org.apache.usergrid.persistence.query.ir.WithinNode;
+import org.apache.usergrid.persistence.query.ir.WithinShapeNode;
 import org.apache.usergrid.persistence.query.ir.result.ResultIterator;
 import org.apache.usergrid.persistence.query.ir.result.ResultsLoader;
 import org.apache.usergrid.persistence.query.ir.result.ResultsLoaderFactory;
@@ -64,13 +71,16 @@ import org.apache.usergrid.persistence.query.tree.GreaterThanEqual;
 import org.apache.usergrid.persistence.query.tree.LessThan;
 import org.apache.usergrid.persistence.query.tree.LessThanEqual;
 import org.apache.usergrid.persistence.query.tree.Literal;
+import org.apache.usergrid.persistence.query.tree.NumericLiteral;
 import org.apache.usergrid.persistence.query.tree.NotOperand;
 import org.apache.usergrid.persistence.query.tree.Operand;
 import org.apache.usergrid.persistence.query.tree.OrOperand;
 import org.apache.usergrid.persistence.query.tree.QueryVisitor;
 import org.apache.usergrid.persistence.query.tree.StringLiteral;
 import org.apache.usergrid.persistence.query.tree.WithinOperand;
+import org.apache.usergrid.persistence.query.tree.WithinShapeOperand;
 import org.apache.usergrid.persistence.schema.CollectionInfo;
+import org.apache.usergrid.utils.IndexUtils;
 
 import me.prettyprint.cassandra.serializers.UUIDSerializer;
 
@@ -115,15 +125,26 @@ public class QueryProcessor {
 
 
     public void setQuery( Query query ) {
-        this.sorts = query.getSortPredicates();
+        // the order of the matches doesn't change their count, so a count never pays for sorting
+        this.sorts = query.isCountOnly() ? new ArrayList<SortPredicate>() : query.getSortPredicates();
         this.cursorCache = new CursorCache( query.getCursor() );
         this.rootOperand = query.getRootOperand();
         this.entityType = query.getEntityType();
-        this.size = query.getLimit();
+        this.size = query.isCountOnly() ? getCountPageSize( query ) : query.getLimit();
         this.query = query;
     }
 
 
+    /** Counts read whole index pages, no larger than the count limit when there is one */
+    private static int getCountPageSize( Query query ) {
+        if ( query.getCountLimit() > 0 ) {
+            return Math.min( query.getCountLimit(), PAGE_SIZE );
+        }
+
+        return PAGE_SIZE;
+    }
+
+
     public CollectionInfo getCollectionInfo() {
         return collectionInfo;
     }
@@ -270,6 +291,10 @@ public class QueryProcessor {
 
         ResultIterator itr = visitor.getResults();
 
+        if ( query.isCountOnly() ) {
+            return getCount( itr, visitor );
+        }
+
         List<ScanColumn> entityIds = new ArrayList<ScanColumn>( Math.min( size, Query.MAX_LIMIT ) );
 
         CursorCache resultsCursor = new CursorCache();
@@ -310,6 +335,51 @@ public class QueryProcessor {
     }
 
 
+    /**
+     * Count the matches page by page as the iterators produce them, without collecting their ids or loading them.
+     * When the query has a count limit the scan stops at the first page that reaches it, the count is then
+     * approximate and the cursor continues counting after the last counted match.
+     */
+    private Results getCount( ResultIterator itr, SearchVisitor visitor ) {
+        int countLimit = query.getCountLimit();
+        int count = 0;
+
+        CursorCache resultsCursor = new CursorCache();
+        boolean stopped = false;
+
+        while ( !stopped && itr.hasNext() ) {
+            Set<ScanColumn> page = itr.next();
+            count += page.size();
+
+            if ( countLimit > 0 && count >= countLimit && !page.isEmpty() ) {
+                ScanColumn last = null;
+
+                for ( ScanColumn column : page ) {
+                    last = column;
+                }
+
+                itr.finalizeCursor( resultsCursor, last.getUUID() );
+                stopped = true;
+            }
+        }
+
+        if ( logger.isDebugEnabled() ) {
+            logger.debug( "Counted {} results for query: [{}]", count, getQuery() );
+        }
+
+        Results results = new Results();
+        results.setCount( count );
+        results.setCountApproximate( stopped );
+        results.setCursor( resultsCursor.asString() );
+
+        results.setQuery( query );
+        results.setQueryProcessor( this );
+        results.setSearchVisitor( visitor );
+
+        return results;
+    }
+
+
     private class TreeEvaluator implements QueryVisitor {
 
         // stack for nodes that will be used to construct the tree and create
@@ -437,6 +507,21 @@ public class QueryProcessor {
 
             String indexName = op.getProperty().getIndexedValue();
 
+            // whole words are matched term by term, only a trailing wildcard needs a prefix range over the keywords
+            if ( string.getValue() != null && !string.isPrefix() ) {
+                List<String> terms = IndexUtils.keywords( string.getValue() );
+
+                if ( !terms.isEmpty() ) {
+                    TermsNode termsNode = getTermsNode( indexName );
+
+                    for ( String term : terms ) {
+                        termsNode.addTerm( term );
+                    }
+
+                    return;
+                }
+            }
+
             SliceNode node = null;
 
             // sdg - if left & right have same field name, we need to create a new
@@ -471,6 +556,59 @@ public class QueryProcessor {
         }
 
 
+        /*
+         * (non-Javadoc)
+         *
+         * @see org.apache.usergrid.persistence.query.tree.QueryVisitor#visit(org.apache.usergrid
+         * .persistence.query.tree.WithinShapeOperand)
+         */
+        @Override
+        public void visit( WithinShapeOperand op ) {
+            String shape = op.getShape();
+            List<NumericLiteral> coordinates = op.getCoordinates();
+
+            if ( coordinates.size() % 2 != 0 ) {
+                throw new QueryParseException( "The coordinates of " + shape + " must be latitude, longitude pairs" );
+            }
+
+            BoundingBox boundingBox;
+            Polygon polygon = null;
+
+            try {
+                if ( WithinShapeOperand.BOX.equals( shape ) ) {
+                    if ( coordinates.size() != 4 ) {
+                        throw new QueryParseException(
+                                "A box must be the latitude and longitude of its south west and north east corners" );
+                    }
+
+                    boundingBox = new BoundingBox( coordinates.get( 2 ).getFloatValue(),
+                            coordinates.get( 3 ).getFloatValue(), coordinates.get( 0 ).getFloatValue(),
+                            coordinates.get( 1 ).getFloatValue() );
+                }
+                else if ( WithinShapeOperand.POLYGON.equals( shape ) ) {
+                    List<Point> vertices = new ArrayList<Point>( coordinates.size() / 2 );
+
+                    for ( int i = 0; i < coordinates.size(); i += 2 ) {
+                        vertices.add( new Point( coordinates.get( i ).getFloatValue(),
+                                coordinates.get( i + 1 ).getFloatValue() ) );
+                    }
+
+                    polygon = new Polygon( vertices );
+                    boundingBox = polygon.getBoundingBox();
+                }
+                else {
+                    throw new QueryParseException( "Unknown shape '" + shape + "', expected box or polygon" );
+                }
+            }
+            catch ( IllegalArgumentException e ) {
+                throw new QueryParseException( e.getMessage(), e );
+            }
+
+            nodes.push( new WithinShapeNode( op.getProperty().getIndexedName(), boundingBox, polygon,
+                    ++contextCount ) );
+        }
+
+
         /*
          * (non-Javadoc)
          *
@@ -595,6 +733,31 @@ public class QueryProcessor {
         }
 
 
+        /**
+         * Return the terms node of the property if it's the current leaf node. Like {@link #getUnionNode}, this
+         * compresses 'contains' operations on the same property that are joined with an 'AND' into a single node.
+         * Otherwise a new node is created and pushed to the stack
+         */
+        private TermsNode getTermsNode( String indexName ) {
+
+            if ( !nodes.isEmpty() && nodes.peek() instanceof TermsNode
+                    && ( ( TermsNode ) nodes.peek() ).getPropertyName().equals( indexName ) ) {
+                return ( TermsNode ) nodes.peek();
+            }
+
+            // an empty slice node was created as the context of this operand, the terms node takes its place
+            if ( !nodes.isEmpty() && nodes.peek() instanceof SliceNode && nodes.peek().getCount() == 0 ) {
+                nodes.pop();
+            }
+
+            TermsNode termsNode = new TermsNode( ++contextCount, indexName );
+
+            nodes.push( termsNode );
+
+            return termsNode;
+        }
+
+
         /**
          * The new slice node
          */
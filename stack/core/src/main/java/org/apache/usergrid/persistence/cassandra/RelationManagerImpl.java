@@ -20,9 +20,14 @@ package org.apache.usergrid.persistence.cassandra;
 import java.nio.ByteBuffer;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,6 +35,8 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,13 +74,17 @@ import org.apache.usergrid.persistence.query.ir.NameIdentifierNode;
 import org.apache.usergrid.persistence.query.ir.QueryNode;
 import org.apache.usergrid.persistence.query.ir.QuerySlice;
 import org.apache.usergrid.persistence.query.ir.SearchVisitor;
+import org.apache.usergrid.persistence.query.ir.TermsNode;
 import org.apache.usergrid.persistence.query.ir.WithinNode;
+import org.apache.usergrid.persistence.query.ir.WithinShapeNode;
 import org.apache.usergrid.persistence.query.ir.result.CollectionResultsLoaderFactory;
 import org.apache.usergrid.persistence.query.ir.result.ConnectionIndexSliceParser;
 import org.apache.usergrid.persistence.query.ir.result.ConnectionResultsLoaderFactory;
 import org.apache.usergrid.persistence.query.ir.result.ConnectionTypesIterator;
 import org.apache.usergrid.persistence.query.ir.result.EmptyIterator;
+import org.apache.usergrid.persistence.query.ir.result.GeoAreaIterator;
 import org.apache.usergrid.persistence.query.ir.result.GeoIterator;
+import org.apache.usergrid.persistence.query.ir.result.IntersectionIterator;
 import org.apache.usergrid.persistence.query.ir.result.SliceIterator;
 import org.apache.usergrid.persistence.query.ir.result.StaticIdIterator;
 import org.apache.usergrid.persistence.query.ir.result.UUIDIndexSliceParser;
@@ -81,6 +92,8 @@ import org.apache.usergrid.persistence.schema.CollectionInfo;
 import org.apache.usergrid.utils.IndexUtils;
 import org.apache.usergrid.utils.MapUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.yammer.metrics.annotation.Metered;
 
 import me.prettyprint.cassandra.serializers.ByteBufferSerializer;
@@ -89,10 +102,14 @@ import me.prettyprint.cassandra.serializers.UUIDSerializer;
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.DynamicComposite;
 import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.beans.HCounterColumn;
 import me.prettyprint.hector.api.mutation.Mutator;
+import me.prettyprint.hector.api.query.SliceCounterQuery;
 
 import static java.lang.String.CASE_INSENSITIVE_ORDER;
 import static java.util.Arrays.asList;
+import static me.prettyprint.hector.api.factory.HFactory.createCounterColumn;
+import static me.prettyprint.hector.api.factory.HFactory.createCounterSliceQuery;
 
 
 import static org.apache.usergrid.persistence.Schema.COLLECTION_ROLES;
@@ -120,6 +137,8 @@ import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_DIC
 import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_ID_SETS;
 import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_INDEX;
 import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_INDEX_ENTRIES;
+import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_TERMS;
+import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_TERM_COUNTS;
 import static org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils.addDeleteToMutator;
 import static org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils.addInsertToMutator;
 import static org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils.batchExecute;
@@ -135,6 +154,7 @@ import static org.apache.usergrid.persistence.cassandra.IndexUpdate.toIndexableV
 import static org.apache.usergrid.persistence.cassandra.IndexUpdate.validIndexableValue;
 import static org.apache.usergrid.utils.ClassUtils.cast;
 import static org.apache.usergrid.utils.CompositeUtils.setGreaterThanEqualityFlag;
+import static org.apache.usergrid.utils.ConversionUtils.bytebuffer;
 import static org.apache.usergrid.utils.ConversionUtils.string;
 import static org.apache.usergrid.utils.InflectionUtils.singularize;
 import static org.apache.usergrid.utils.MapUtils.addMapSet;
@@ -146,6 +166,28 @@ public class RelationManagerImpl implements RelationManager {
 
     private static final Logger logger = LoggerFactory.getLogger( RelationManagerImpl.class );
 
+    /** Dictionary row of a collection that holds the backfill marker of its posting lists */
+    private static final String DICTIONARY_TERMS = "terms";
+
+    private static final String TERMS_BACKFILLED = "backfilled";
+
+    /**
+     * The seconds a missing backfill marker is cached. Writers may not count terms for this long after the marker is
+     * set, so the counts should be rebuilt after it.
+     */
+    public static final int TERMS_MARKER_CACHE_SECONDS = 60;
+
+    /** Page size of the index scan that rebuilds the term counts */
+    private static final int TERM_COUNT_PAGE_SIZE = 1000;
+
+    /** Collections whose backfill marker has been read, keyed by application, owner and collection name */
+    private static final Set<String> BACKFILLED_COLLECTIONS =
+            Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    /** Collections found without a backfill marker, so that writes don't read the marker every time */
+    private static final Cache<String, Boolean> UNFILLED_COLLECTIONS = CacheBuilder.newBuilder().maximumSize( 10000 )
+            .expireAfterWrite( TERMS_MARKER_CACHE_SECONDS, TimeUnit.SECONDS ).build();
+
     private EntityManagerImpl em;
     private CassandraService cass;
     private UUID applicationId;
@@ -253,8 +295,10 @@ public class RelationManagerImpl implements RelationManager {
             }
         }
 
-        if ( ( indexUpdate.getNewEntries().size() > 0 ) && ( !indexUpdate.isMultiValue() || ( indexUpdate.isMultiValue()
-                && !indexUpdate.isRemoveListEntry() ) ) ) {
+        boolean insertNewEntries = ( indexUpdate.getNewEntries().size() > 0 ) && ( !indexUpdate.isMultiValue() || (
+                indexUpdate.isMultiValue() && !indexUpdate.isRemoveListEntry() ) );
+
+        if ( insertNewEntries ) {
 
             for ( IndexEntry indexEntry : indexUpdate.getNewEntries() ) {
 
@@ -281,6 +325,8 @@ public class RelationManagerImpl implements RelationManager {
             }
         }
 
+        batchUpdateCollectionTerms( indexUpdate, owner, collectionName, bucketId, insertNewEntries );
+
         for ( String index : indexUpdate.getIndexesSet() ) {
             addInsertToMutator( indexUpdate.getBatch(), ENTITY_DICTIONARIES,
                     key( owner.getUuid(), collectionName, Schema.DICTIONARY_INDEXES ), index, null,
@@ -291,6 +337,273 @@ public class RelationManagerImpl implements RelationManager {
     }
 
 
+    /**
+     * Update the full text posting lists and term counts of the collection for the keywords of this update. Terms
+     * that are both in the previous and the new entries keep their posting, deleting and inserting the same column
+     * with the same timestamp would delete it. Their count is unchanged as well.
+     * <p/>
+     * Terms are only counted once the collection is backfilled. Before that, entities indexed before the posting
+     * lists existed haven't been counted, and IndexRebuild computes the counts from the keyword index.
+     *
+     * @param indexUpdate The update to apply
+     * @param owner The owner of the collection
+     * @param collectionName The collection name
+     * @param bucketId The index bucket of the updated entity
+     * @param insertNewEntries True if the new entries of the update are inserted
+     */
+    private void batchUpdateCollectionTerms( IndexUpdate indexUpdate, EntityRef owner, String collectionName,
+                                             String bucketId, boolean insertNewEntries ) throws Exception {
+
+        Map<String, Set<String>> prevTerms = getTerms( indexUpdate.getPrevEntries() );
+        Map<String, Set<String>> newTerms =
+                insertNewEntries ? getTerms( indexUpdate.getNewEntries() ) : new HashMap<String, Set<String>>();
+
+        if ( prevTerms.isEmpty() && newTerms.isEmpty() ) {
+            return;
+        }
+
+        boolean counted = isCollectionTermsBackfilled( owner.getUuid(), collectionName );
+
+        Mutator<ByteBuffer> batch = indexUpdate.getBatch();
+        UUID entityId = indexUpdate.getEntity().getUuid();
+        long timestamp = indexUpdate.getTimestamp();
+
+        for ( Entry<String, Set<String>> prev : prevTerms.entrySet() ) {
+            Object termsKey = key( owner.getUuid(), collectionName, prev.getKey() );
+            Set<String> kept = newTerms.get( prev.getKey() );
+
+            for ( String term : prev.getValue() ) {
+                if ( kept != null && kept.contains( term ) ) {
+                    continue;
+                }
+
+                addDeleteToMutator( batch, ENTITY_TERMS, key( termsKey, term, bucketId ), entityId, timestamp );
+
+                if ( counted ) {
+                    batch.addCounter( bytebuffer( termsKey ), ENTITY_TERM_COUNTS.toString(),
+                            createCounterColumn( term, -1L ) );
+                }
+            }
+        }
+
+        for ( Entry<String, Set<String>> entry : newTerms.entrySet() ) {
+            Object termsKey = key( owner.getUuid(), collectionName, entry.getKey() );
+            Set<String> previous = prevTerms.get( entry.getKey() );
+
+            for ( String term : entry.getValue() ) {
+                addInsertToMutator( batch, ENTITY_TERMS, key( termsKey, term, bucketId ), entityId, null, timestamp );
+
+                if ( counted && ( previous == null || !previous.contains( term ) ) ) {
+                    batch.addCounter( bytebuffer( termsKey ), ENTITY_TERM_COUNTS.toString(),
+                            createCounterColumn( term, 1L ) );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * True once IndexRebuild has re-saved every entity of the collection, so that every entity has its postings.
+     * The marker is never removed, found markers are cached for good and missing ones for {@link
+     * #TERMS_MARKER_CACHE_SECONDS}.
+     */
+    private boolean isCollectionTermsBackfilled( UUID ownerId, String collectionName ) throws Exception {
+        String cacheKey = applicationId + "/" + ownerId + "/" + collectionName;
+
+        if ( BACKFILLED_COLLECTIONS.contains( cacheKey ) ) {
+            return true;
+        }
+
+        if ( UNFILLED_COLLECTIONS.getIfPresent( cacheKey ) != null ) {
+            return false;
+        }
+
+        HColumn<String, ByteBuffer> marker =
+                cass.getColumn( cass.getApplicationKeyspace( applicationId ), ENTITY_DICTIONARIES,
+                        key( ownerId, collectionName, DICTIONARY_TERMS ), TERMS_BACKFILLED );
+
+        if ( marker == null ) {
+            UNFILLED_COLLECTIONS.put( cacheKey, Boolean.TRUE );
+            return false;
+        }
+
+        BACKFILLED_COLLECTIONS.add( cacheKey );
+
+        return true;
+    }
+
+
+    @Override
+    public void setCollectionTermsBackfilled( String collectionName ) throws Exception {
+        cass.setColumn( cass.getApplicationKeyspace( applicationId ), ENTITY_DICTIONARIES,
+                key( headEntity.getUuid(), collectionName, DICTIONARY_TERMS ), TERMS_BACKFILLED,
+                System.currentTimeMillis() );
+    }
+
+
+    /**
+     * Count the entities of each term in the keyword index of every full text indexed property of the collection, and
+     * adjust the term counts to match. Writes that count their terms while this runs may leave a count off by a few
+     * entities, the counts only order the posting lists of a search.
+     */
+    @Override
+    public void rebuildCollectionTermCounts( String collectionName ) throws Exception {
+
+        Keyspace ko = cass.getApplicationKeyspace( applicationId );
+
+        List<HColumn<String, ByteBuffer>> indexes = cass.getAllColumns( ko, ENTITY_DICTIONARIES,
+                key( headEntity.getUuid(), collectionName, Schema.DICTIONARY_INDEXES ), Serializers.se,
+                Serializers.be );
+
+        if ( indexes == null ) {
+            return;
+        }
+
+        for ( HColumn<String, ByteBuffer> index : indexes ) {
+            if ( !isKeywordsPath( index.getName() ) ) {
+                continue;
+            }
+
+            Object termsKey = key( headEntity.getUuid(), collectionName, index.getName() );
+            Map<String, Long> indexed = countIndexedTerms( ko, termsKey, collectionName );
+            Map<String, Long> counted = getAllTermCounts( ko, termsKey );
+
+            Set<String> terms = new HashSet<String>( indexed.keySet() );
+            terms.addAll( counted.keySet() );
+
+            Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, Serializers.be );
+
+            for ( String term : terms ) {
+                long delta = ( indexed.containsKey( term ) ? indexed.get( term ) : 0 ) - (
+                        counted.containsKey( term ) ? counted.get( term ) : 0 );
+
+                if ( delta != 0 ) {
+                    m.addCounter( bytebuffer( termsKey ), ENTITY_TERM_COUNTS.toString(),
+                            createCounterColumn( term, delta ) );
+                }
+            }
+
+            batchExecute( m, CassandraService.RETRY_COUNT );
+
+            logger.info( "Rebuilt the counts of {} terms of {}", indexed.size(), termsKey );
+        }
+    }
+
+
+    /**
+     * Count the distinct entities of each term in the keyword index rows of all buckets. The index columns are
+     * composites of the value code, the keyword, the entity id and a timestamp
+     */
+    private Map<String, Long> countIndexedTerms( Keyspace ko, Object indexName, String collectionName )
+            throws Exception {
+
+        Map<String, Set<UUID>> entities = new HashMap<String, Set<UUID>>();
+
+        for ( String bucket : indexBucketLocator.getBuckets( applicationId, IndexType.COLLECTION, collectionName ) ) {
+
+            Object indexKey = key( indexName, bucket );
+            ByteBuffer start = null;
+
+            while ( true ) {
+                List<HColumn<ByteBuffer, ByteBuffer>> columns =
+                        cass.getColumns( ko, ENTITY_INDEX, indexKey, start, null, TERM_COUNT_PAGE_SIZE, false );
+
+                for ( HColumn<ByteBuffer, ByteBuffer> column : columns ) {
+                    // the first column of a following page is the last of the previous one
+                    if ( start != null && start.equals( column.getName() ) ) {
+                        continue;
+                    }
+
+                    DynamicComposite composite = DynamicComposite.fromByteBuffer( column.getName().duplicate() );
+
+                    if ( composite.size() < 3 || !( composite.get( 1 ) instanceof String ) ) {
+                        continue;
+                    }
+
+                    String term = ( String ) composite.get( 1 );
+                    Set<UUID> termEntities = entities.get( term );
+
+                    if ( termEntities == null ) {
+                        termEntities = new HashSet<UUID>();
+                        entities.put( term, termEntities );
+                    }
+
+                    termEntities.add( ( UUID ) composite.get( 2 ) );
+                }
+
+                if ( columns.size() < TERM_COUNT_PAGE_SIZE ) {
+                    break;
+                }
+
+                start = columns.get( columns.size() - 1 ).getName();
+            }
+        }
+
+        Map<String, Long> counts = new HashMap<String, Long>();
+
+        for ( Entry<String, Set<UUID>> entry : entities.entrySet() ) {
+            counts.put( entry.getKey(), ( long ) entry.getValue().size() );
+        }
+
+        return counts;
+    }
+
+
+    /** Read every term count of a property, including those that dropped to zero or below */
+    private Map<String, Long> getAllTermCounts( Keyspace ko, Object termsKey ) throws Exception {
+
+        Map<String, Long> counts = new HashMap<String, Long>();
+        String start = "";
+
+        while ( true ) {
+            SliceCounterQuery<ByteBuffer, String> q = createCounterSliceQuery( ko, Serializers.be, Serializers.se );
+            q.setColumnFamily( ENTITY_TERM_COUNTS.toString() );
+            q.setKey( bytebuffer( termsKey ) );
+            q.setRange( start, "", false, TERM_COUNT_PAGE_SIZE );
+
+            List<HCounterColumn<String>> columns = q.execute().get().getColumns();
+
+            for ( HCounterColumn<String> column : columns ) {
+                counts.put( column.getName(), column.getValue() );
+            }
+
+            if ( columns.size() < TERM_COUNT_PAGE_SIZE ) {
+                return counts;
+            }
+
+            start = columns.get( columns.size() - 1 ).getName();
+        }
+    }
+
+
+    /** Group the distinct keywords of full text indexed entries by their path */
+    private static Map<String, Set<String>> getTerms( List<IndexEntry> entries ) {
+        Map<String, Set<String>> terms = new HashMap<String, Set<String>>();
+
+        for ( IndexEntry entry : entries ) {
+            if ( !isKeywordsPath( entry.getPath() ) || !( entry.getValue() instanceof String ) ) {
+                continue;
+            }
+
+            Set<String> pathTerms = terms.get( entry.getPath() );
+
+            if ( pathTerms == null ) {
+                pathTerms = new LinkedHashSet<String>();
+                terms.put( entry.getPath(), pathTerms );
+            }
+
+            pathTerms.add( ( String ) entry.getValue() );
+        }
+
+        return terms;
+    }
+
+
+    private static boolean isKeywordsPath( String path ) {
+        return path != null && ( path.equals( "keywords" ) || path.endsWith( ".keywords" ) );
+    }
+
+
     @Override
     @Metered(group = "core", name = "RelationManager_getCollectionIndexes")
     public Set<String> getCollectionIndexes( String collectionName ) throws Exception {
@@ -712,8 +1025,10 @@ public class RelationManagerImpl implements RelationManager {
             }
         }
 
-        if ( ( indexUpdate.getNewEntries().size() > 0 ) && ( !indexUpdate.isMultiValue() || ( indexUpdate.isMultiValue()
-                && !indexUpdate.isRemoveListEntry() ) ) ) {
+        boolean insertNewEntries = ( indexUpdate.getNewEntries().size() > 0 ) && ( !indexUpdate.isMultiValue() || (
+                indexUpdate.isMultiValue() && !indexUpdate.isRemoveListEntry() ) );
+
+        if ( insertNewEntries ) {
 
             for ( IndexEntry indexEntry : indexUpdate.getNewEntries() ) {
 
@@ -1076,6 +1391,8 @@ public class RelationManagerImpl implements RelationManager {
         batchUpdateEntityConnection( batch, disconnect, loopback, timestampUuid );
 
         batchExecute( batch, CassandraService.RETRY_COUNT );
+
+        em.publishConnectionChange( disconnect, connection );
     }
 
 
@@ -2062,6 +2379,40 @@ public class RelationManagerImpl implements RelationManager {
     private static final UUIDIndexSliceParser UUID_PARSER = new UUIDIndexSliceParser();
 
 
+    /**
+     * Read the number of entities that contain each term from the term dictionary. Terms that were never counted, or
+     * whose count dropped to zero, are left out
+     */
+    private Map<String, Long> getTermCounts( Object termsKey, Collection<String> terms ) throws Exception {
+
+        SliceCounterQuery<ByteBuffer, String> q =
+                createCounterSliceQuery( cass.getApplicationKeyspace( applicationId ), Serializers.be,
+                        Serializers.se );
+        q.setColumnFamily( ENTITY_TERM_COUNTS.toString() );
+        q.setKey( bytebuffer( termsKey ) );
+        q.setColumnNames( terms.toArray( new String[terms.size()] ) );
+
+        Map<String, Long> counts = new HashMap<String, Long>();
+
+        for ( HCounterColumn<String> column : q.execute().get().getColumns() ) {
+            if ( column.getValue() > 0 ) {
+                counts.put( column.getName(), column.getValue() );
+            }
+        }
+
+        return counts;
+    }
+
+
+    /** Terms without a count are in no entity of the collection and sort first, their empty posting ends the join */
+    private static int compareCounts( Long first, Long second ) {
+        long firstCount = first == null ? 0 : first;
+        long secondCount = second == null ? 0 : second;
+
+        return firstCount < secondCount ? -1 : ( firstCount == secondCount ? 0 : 1 );
+    }
+
+
     /**
      * Simple search visitor that performs all the joining
      *
@@ -2112,6 +2463,67 @@ public class RelationManagerImpl implements RelationManager {
         }
 
 
+        /**
+         * Join the posting lists of the terms, rarest term first. The root of an intersection is scanned once while
+         * the other iterators are scanned again for every page of the root, so the term with the fewest entities
+         * should lead. The counts only order the join. Until IndexRebuild has marked the collection as backfilled,
+         * entities indexed before the posting lists existed have no postings and the keyword index is read instead.
+         */
+        @Override
+        public void visit( TermsNode node ) throws Exception {
+
+            Object termsKey = key( headEntity.getUuid(), collection.getName(), node.getPropertyName() );
+
+            boolean backfilled = isCollectionTermsBackfilled( headEntity.getUuid(), collection.getName() );
+
+            final Map<String, Long> counts =
+                    backfilled ? getTermCounts( termsKey, node.getTerms() ) : new HashMap<String, Long>();
+
+            List<String> terms = new ArrayList<String>( node.getTerms() );
+
+            Collections.sort( terms, new Comparator<String>() {
+                @Override
+                public int compare( String first, String second ) {
+                    return compareCounts( counts.get( first ), counts.get( second ) );
+                }
+            } );
+
+            IntersectionIterator intersections = new IntersectionIterator( queryProcessor.getPageSizeHint( node ) );
+
+            for ( String term : terms ) {
+
+                QuerySlice keywordSlice = node.getSlice( term );
+                QuerySlice postingSlice = node.getPostingSlice( term );
+
+                queryProcessor.applyCursorAndSort( keywordSlice );
+                queryProcessor.applyCursorAndSort( postingSlice );
+
+                // a cursor must continue in the index it was created from, it's kept under the slice of that index
+                boolean postings = postingSlice.hasCursor() || ( !keywordSlice.hasCursor() && backfilled );
+
+                if ( !postings ) {
+                    intersections.addIterator( keywordSliceIterator( node, keywordSlice ) );
+                    continue;
+                }
+
+                IndexScanner scanner;
+
+                if ( postingSlice.isComplete() ) {
+                    scanner = new NoOpIndexScanner();
+                }
+                else {
+                    scanner = new IndexBucketScanner( cass, indexBucketLocator, ENTITY_TERMS, applicationId,
+                            IndexType.COLLECTION, key( termsKey, term ), postingSlice.getCursor(), null, false,
+                            queryProcessor.getPageSizeHint( node ), postingSlice.hasCursor(), collection.getName() );
+                }
+
+                intersections.addIterator( new SliceIterator( postingSlice, scanner, UUID_PARSER ) );
+            }
+
+            results.push( intersections );
+        }
+
+
         public void visit( AllNode node ) throws Exception {
 
             String collectionName = collection.getName();
@@ -2158,6 +2570,27 @@ public class RelationManagerImpl implements RelationManager {
         }
 
 
+        /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.usergrid.persistence.query.ir.NodeVisitor#visit(org.apache.usergrid.
+     * persistence.query.ir.WithinShapeNode)
+     */
+        @Override
+        public void visit( WithinShapeNode node ) throws Exception {
+
+            QuerySlice slice = node.getSlice();
+
+            queryProcessor.applyCursorAndSort( slice );
+
+            GeoAreaIterator itr = new GeoAreaIterator(
+                    new CollectionGeoSearch( em, indexBucketLocator, cass, headEntity, collection.getName() ),
+                    query.getLimit(), slice, node.getPropertyName(), node.getBoundingBox(), node.getPolygon() );
+
+            results.push( itr );
+        }
+
+
         @Override
         public void visit( NameIdentifierNode nameIdentifierNode ) throws Exception {
             EntityRef ref = em.getAlias( headEntity.getUuid(), collection.getType(), nameIdentifierNode.getName() );
@@ -2250,6 +2683,27 @@ public class RelationManagerImpl implements RelationManager {
         }
 
 
+        /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.usergrid.persistence.query.ir.NodeVisitor#visit(org.apache.usergrid.
+     * persistence.query.ir.WithinShapeNode)
+     */
+        @Override
+        public void visit( WithinShapeNode node ) throws Exception {
+
+            QuerySlice slice = node.getSlice();
+
+            queryProcessor.applyCursorAndSort( slice );
+
+            GeoAreaIterator itr = new GeoAreaIterator(
+                    new ConnectionGeoSearch( em, indexBucketLocator, cass, connection.getIndexId() ), query.getLimit(),
+                    slice, node.getPropertyName(), node.getBoundingBox(), node.getPolygon() );
+
+            results.push( itr );
+        }
+
+
         @Override
         public void visit( AllNode node ) throws Exception {
             QuerySlice slice = node.getSlice();
@@ -167,6 +167,11 @@ public class EntityLocationRef implements EntityRef {
     }
 
 
+    public void setDistance( double distance ) {
+        this.distance = distance;
+    }
+
+
     /** Calculate, set and return the distance from this location to the point specified */
     public double calcDistance( Point point ) {
         distance = GeocellUtils.distance( getPoint(), point );
@@ -19,13 +19,15 @@ package org.apache.usergrid.persistence.geo;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
+import java.util.PriorityQueue;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,11 +37,12 @@ import org.apache.usergrid.persistence.IndexBucketLocator.IndexType;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.cassandra.GeoIndexManager;
 import org.apache.usergrid.persistence.cassandra.index.IndexMultiBucketSetLoader;
+import org.apache.usergrid.persistence.geo.model.BoundingBox;
 import org.apache.usergrid.persistence.geo.model.Point;
+import org.apache.usergrid.persistence.geo.model.Polygon;
 import org.apache.usergrid.persistence.geo.model.Tuple;
 
-import org.apache.commons.lang.StringUtils;
-
+import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.AbstractComposite.ComponentEquality;
 import me.prettyprint.hector.api.beans.DynamicComposite;
 import me.prettyprint.hector.api.beans.HColumn;
@@ -56,12 +59,26 @@ public abstract class GeoIndexSearcher {
 
     private static final EntityLocationRefDistanceComparator COMP = new EntityLocationRefDistanceComparator();
 
+    /** Orders the cells waiting to be searched by their distance from the search point */
+    private static final Comparator<Tuple<String, Double>> CELL_COMP = new Comparator<Tuple<String, Double>>() {
+        @Override
+        public int compare( Tuple<String, Double> o1, Tuple<String, Double> o2 ) {
+            return o1.getSecond().compareTo( o2.getSecond() );
+        }
+    };
+
     // The maximum *practical* geocell resolution.
     private static final int MAX_GEOCELL_RESOLUTION = GeoIndexManager.MAX_RESOLUTION;
 
     /** Max number of records to read+parse from cass per tile */
     private static final int MAX_FETCH_SIZE = 1000;
 
+    /** A cell coarser than the max resolution with fewer entries than this is read whole rather than subdivided */
+    private static final int PROBE_SIZE = 100;
+
+    /** Max number of cells fetched concurrently by one search, on the async executor of the cassandra service */
+    private static final int FETCH_CONCURRENCY = 4;
+
     protected final EntityManager em;
     protected final IndexBucketLocator locator;
     protected final CassandraService cass;
@@ -76,243 +93,304 @@ public abstract class GeoIndexSearcher {
     /**
      * Perform a search from the center. The corresponding entities returned must be >= minDistance(inclusive) and <
      * maxDistance (exclusive)
+     * <p/>
+     * This is a best first search: cells are taken from a queue ordered by their distance to the search point, the k
+     * nearest entities found so far are kept in a bounded max heap, and the search stops as soon as the next cell is
+     * farther than the k-th result. A cell coarser than the max resolution that holds many entries is split into its
+     * children instead of being read, so dense areas are only read close to the search point.
      *
-     * @param maxResults The maximum number of results to include
+     * @param minMatch The last entity returned by the previous page, or null
+     * @param geoCells The cells searched by the previous page. Unused, cells entirely closer than the minMatch are
+     * skipped instead, kept for existing cursors
+     * @param searchPoint The center of the search
+     * @param propertyName The indexed property
      * @param minDistance The minimum distance (inclusive)
-     * @param maxDistance The maximum distance (exclusive)
-     * @param entityClass The entity class
-     * @param baseQuery The base query
-     * @param queryEngine The query engine to use
-     * @param maxGeocellResolution The max resolution to use when searching
+     * @param maxDistance The maximum distance (exclusive), 0 for no maximum
+     * @param maxResults The maximum number of results to include
      */
     public final SearchResults proximitySearch( final EntityLocationRef minMatch, final List<String> geoCells,
-                                                Point searchPoint, String propertyName, double minDistance,
-                                                double maxDistance, final int maxResults ) throws Exception {
+                                                final Point searchPoint, final String propertyName,
+                                                double minDistance, double maxDistance, final int maxResults )
+            throws Exception {
 
-        List<EntityLocationRef> entityLocations = new ArrayList<EntityLocationRef>( maxResults );
+        if ( minMatch != null ) {
+            minMatch.calcDistance( searchPoint );
+        }
 
-        List<String> curGeocells = new ArrayList<String>();
-        String curContainingGeocell = null;
+        // the nearest results so far, the farthest of them at the head
+        PriorityQueue<EntityLocationRef> nearest =
+                new PriorityQueue<EntityLocationRef>( maxResults + 1, Collections.reverseOrder( COMP ) );
 
-        // we have some cells used from last time, re-use them
-        if ( geoCells != null && geoCells.size() > 0 ) {
-            curGeocells.addAll( geoCells );
-            curContainingGeocell = geoCells.get( 0 );
-        }
-        // start at the bottom
-        else {
-
-      /*
-       * The currently-being-searched geocells. NOTES: Start with max possible.
-       * Must always be of the same resolution. Must always form a rectangular
-       * region. One of these must be equal to the cur_containing_geocell.
-       */
-            curContainingGeocell = GeocellUtils.compute( searchPoint, MAX_GEOCELL_RESOLUTION );
-            curGeocells.add( curContainingGeocell );
-        }
+        // the cells left to search, nearest first
+        PriorityQueue<Tuple<String, Double>> cells = new PriorityQueue<Tuple<String, Double>>( 64, CELL_COMP );
 
-        if ( minMatch != null ) {
-            minMatch.calcDistance( searchPoint );
+        for ( String cell : getStartCells( searchPoint, maxDistance ) ) {
+            offerCell( cells, cell, searchPoint, minMatch, maxDistance );
         }
-        // Set of already searched cells
-        Set<String> searchedCells = new HashSet<String>();
 
-        List<String> curGeocellsUnique = null;
+        List<String> lastSearchedCells = null;
 
-        double closestPossibleNextResultDist = 0;
+        Keyspace ko = cass.getApplicationKeyspace( em.getApplicationRef().getUuid() );
 
-    /*
-     * Assumes both a and b are lists of (entity, dist) tuples, *sorted by
-     * dist*. NOTE: This is an in-place merge, and there are guaranteed no
-     * duplicates in the resulting list.
-     */
+        while ( maxResults > 0 ) {
+
+            List<String> batch = new ArrayList<String>( FETCH_CONCURRENCY );
+
+            while ( !cells.isEmpty() && batch.size() < FETCH_CONCURRENCY ) {
+                double closestPossible = cells.peek().getSecond();
+
+                // nothing left in the queue can be closer than what we have
+                if ( ( maxDistance > 0 && closestPossible > maxDistance ) || ( nearest.size() == maxResults
+                        && closestPossible > nearest.peek().getDistance() ) ) {
+                    cells.clear();
+                    break;
+                }
 
-        int noDirection[] = { 0, 0 };
-        List<Tuple<int[], Double>> sortedEdgesDistances = Arrays.asList( new Tuple<int[], Double>( noDirection, 0d ) );
-        boolean done = false;
-        UUID lastReturned = null;
+                batch.add( cells.poll().getFirst() );
+            }
 
-        while ( !curGeocells.isEmpty() && entityLocations.size() < maxResults ) {
-            closestPossibleNextResultDist = sortedEdgesDistances.get( 0 ).getSecond();
-            if ( maxDistance > 0 && closestPossibleNextResultDist > maxDistance ) {
+            if ( batch.isEmpty() ) {
                 break;
             }
 
-            Set<String> curTempUnique = new HashSet<String>( curGeocells );
-            curTempUnique.removeAll( searchedCells );
-            curGeocellsUnique = new ArrayList<String>( curTempUnique );
+            List<Future<List<HColumn<ByteBuffer, ByteBuffer>>>> fetches =
+                    new ArrayList<Future<List<HColumn<ByteBuffer, ByteBuffer>>>>( batch.size() );
 
-            Set<HColumn<ByteBuffer, ByteBuffer>> queryResults = null;
+            for ( final String cell : batch ) {
+                fetches.add( cass.submit( ko, new Callable<List<HColumn<ByteBuffer, ByteBuffer>>>() {
+                    @Override
+                    public List<HColumn<ByteBuffer, ByteBuffer>> call() throws Exception {
+                        return fetchCell( cell, searchPoint, propertyName );
+                    }
+                } ) );
+            }
 
-            lastReturned = null;
+            for ( int i = 0; i < batch.size(); i++ ) {
+                List<HColumn<ByteBuffer, ByteBuffer>> columns = getFetched( fetches.get( i ) );
 
-            // we need to keep searching everything in our tiles until we don't get
-            // any more results, then we'll have the closest points and can move on
-            // do the next tiles
-            do {
-                queryResults = doSearch( curGeocellsUnique, lastReturned, searchPoint, propertyName, MAX_FETCH_SIZE );
+                // too many entries to read, search its children instead
+                if ( columns == null ) {
+                    for ( String child : GeocellUtils.children( batch.get( i ) ) ) {
+                        offerCell( cells, child, searchPoint, minMatch, maxDistance );
+                    }
+                    continue;
+                }
 
-                if ( logger.isDebugEnabled() ) {
-                    logger.debug( "fetch complete for: {}", StringUtils.join( curGeocellsUnique, ", " ) );
+                for ( HColumn<ByteBuffer, ByteBuffer> column : columns ) {
+                    collect( nearest, column, searchPoint, minMatch, minDistance, maxDistance, maxResults );
                 }
+            }
 
-                searchedCells.addAll( curGeocells );
+            lastSearchedCells = batch;
 
-                // Begin storing distance from the search result entity to the
-                // search center along with the search result itself, in a tuple.
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "searched {}, {} results found", batch, nearest.size() );
+            }
+        }
 
-                // Merge new_results into results
-                for ( HColumn<ByteBuffer, ByteBuffer> column : queryResults ) {
+        List<EntityLocationRef> entityLocations = new ArrayList<EntityLocationRef>( nearest );
+        Collections.sort( entityLocations, COMP );
 
-                    DynamicComposite composite = DynamicComposite.fromByteBuffer( column.getName() );
+        return new SearchResults( entityLocations, lastSearchedCells );
+    }
 
-                    UUID uuid = composite.get( 0, ue );
 
-                    lastReturned = uuid;
+    /**
+     * Find the entities inside a box, and optionally inside a polygon within that box. The cells covering the box are
+     * read together in pages ordered by entity id, and every entry is checked against the exact shape, so results are
+     * returned in id order.
+     *
+     * @param bbox The box to search
+     * @param polygon The polygon to match, or null to match the whole box
+     * @param startId The last entity returned by the previous page, or null
+     * @param propertyName The indexed property
+     * @param maxResults The maximum number of results to include
+     */
+    public final List<EntityLocationRef> areaSearch( BoundingBox bbox, Polygon polygon, UUID startId,
+                                                     String propertyName, int maxResults ) throws Exception {
 
-                    String type = composite.get( 1, se );
-                    UUID timestampUuid = composite.get( 2, ue );
-                    composite = DynamicComposite.fromByteBuffer( column.getValue() );
-                    Double latitude = composite.get( 0, de );
-                    Double longitude = composite.get( 1, de );
+        List<String> cells = GeocellManager.bestBboxSearchCells( bbox, null );
 
-                    EntityLocationRef entityLocation =
-                            new EntityLocationRef( type, uuid, timestampUuid, latitude, longitude );
+        List<EntityLocationRef> results = new ArrayList<EntityLocationRef>( maxResults );
 
-                    double distance = entityLocation.calcDistance( searchPoint );
+        UUID lastId = startId;
 
-                    // discard, it's too close or too far, of closer than the minimum we
-                    // should match, skip it
-                    if ( distance < minDistance || ( maxDistance != 0 && distance > maxDistance ) || ( minMatch != null
-                            && COMP.compare( entityLocation, minMatch ) <= 0 ) ) {
-                        continue;
-                    }
+        TreeSet<HColumn<ByteBuffer, ByteBuffer>> page;
 
-                    int index = Collections.binarySearch( entityLocations, entityLocation, COMP );
+        do {
+            page = doSearch( cells, lastId, null, propertyName, MAX_FETCH_SIZE );
 
-                    // already in the index
-                    if ( index > -1 ) {
-                        continue;
-                    }
+            for ( HColumn<ByteBuffer, ByteBuffer> column : page ) {
 
-                    // set the insert index
-                    index = ( index + 1 ) * -1;
+                DynamicComposite value = DynamicComposite.fromByteBuffer( column.getValue() );
+                double latitude = value.get( 0, de );
+                double longitude = value.get( 1, de );
 
-                    // no point in adding it
-                    if ( index >= maxResults ) {
-                        continue;
-                    }
+                if ( !bbox.contains( latitude, longitude ) || ( polygon != null && !polygon
+                        .contains( latitude, longitude ) ) ) {
+                    continue;
+                }
 
-                    // results.add(index, entity);
-                    // distances.add(index, distance);
-                    entityLocations.add( index, entityLocation );
+                DynamicComposite name = DynamicComposite.fromByteBuffer( column.getName() );
+                UUID uuid = name.get( 0, ue );
 
-                    /**
-                     * Discard an additional entries as we iterate to avoid holding them
-                     * all in ram
-                     */
-                    while ( entityLocations.size() > maxResults ) {
-                        entityLocations.remove( entityLocations.size() - 1 );
-                    }
+                // pages start inclusively, and an entity may be in more than one of the covering cells
+                if ( uuid.equals( lastId ) ) {
+                    continue;
+                }
+
+                results.add( new EntityLocationRef( name.get( 1, se ), uuid, name.get( 2, ue ), latitude, longitude ) );
+
+                lastId = uuid;
+
+                if ( results.size() == maxResults ) {
+                    return results;
                 }
             }
-            while ( queryResults != null && queryResults.size() == MAX_FETCH_SIZE );
-
-            /**
-             * We've searched everything and have a full set, we want to return the
-             * "current" tiles to search next time for the cursor, since cass could
-             * contain more results
-             */
-            if ( done || entityLocations.size() == maxResults ) {
-                break;
+
+            // continue from the end of the page, whether or not its last entry matched
+            if ( !page.isEmpty() ) {
+                lastId = DynamicComposite.fromByteBuffer( page.last().getName() ).get( 0, ue );
             }
+        }
+        while ( page.size() >= MAX_FETCH_SIZE );
 
-            sortedEdgesDistances = GeocellUtils.distanceSortedEdges( curGeocells, searchPoint );
+        return results;
+    }
 
-            if ( queryResults.size() == 0 || curGeocells.size() == 4 ) {
-        /*
-         * Either no results (in which case we optimize by not looking at
-         * adjacents, go straight to the parent) or we've searched 4 adjacent
-         * geocells, in which case we should now search the parents of those
-         * geocells.
-         */
-                curContainingGeocell =
-                        curContainingGeocell.substring( 0, Math.max( curContainingGeocell.length() - 1, 0 ) );
-                if ( curContainingGeocell.length() == 0 ) {
-                    // final check - top level tiles
-                    curGeocells.clear();
-                    String[] items = "0123456789abcdef".split( "(?!^)" );
-                    Collections.addAll(curGeocells, items);
-                    done = true;
-                }
-                else {
-                    List<String> oldCurGeocells = new ArrayList<String>( curGeocells );
-                    curGeocells.clear();
-                    for ( String cell : oldCurGeocells ) {
-                        if ( cell.length() > 0 ) {
-                            String newCell = cell.substring( 0, cell.length() - 1 );
-                            if ( !curGeocells.contains( newCell ) ) {
-                                curGeocells.add( newCell );
-                            }
-                        }
-                    }
+
+    /** The cells covering maxDistance around the search point, or the top level cells */
+    private static List<String> getStartCells( Point searchPoint, double maxDistance ) {
+        if ( maxDistance > 0 ) {
+            BoundingBox bbox = GeocellUtils.boundingBox( searchPoint, maxDistance );
+
+            if ( bbox != null ) {
+                List<String> cells = GeocellManager.bestBboxSearchCells( bbox, null );
+
+                if ( !cells.isEmpty() && !cells.contains( "" ) ) {
+                    return cells;
                 }
             }
-            else if ( curGeocells.size() == 1 ) {
-                // Get adjacent in one direction.
-                // TODO(romannurik): Watch for +/- 90 degree latitude edge case
-                // geocells.
-                for (Tuple<int[], Double> sortedEdgesDistance : sortedEdgesDistances) {
-
-                    int nearestEdge[] = sortedEdgesDistance.getFirst();
-                    String edge = GeocellUtils.adjacent(curGeocells.get(0), nearestEdge);
-
-                    // we're at the edge of the world, search in a different direction
-                    if (edge == null) {
-                        continue;
-                    }
+        }
 
-                    curGeocells.add(edge);
-                    break;
-                }
+        return GeocellUtils.children( "" );
+    }
+
+
+    private static void offerCell( PriorityQueue<Tuple<String, Double>> cells, String cell, Point searchPoint,
+                                   EntityLocationRef minMatch, double maxDistance ) {
+
+        double distance = GeocellUtils.minDistance( cell, searchPoint );
+
+        if ( maxDistance > 0 && distance > maxDistance ) {
+            return;
+        }
+
+        // everything in this cell was returned by a previous page
+        if ( minMatch != null && GeocellUtils.maxDistance( cell, searchPoint ) < minMatch.getDistance() ) {
+            return;
+        }
+
+        cells.offer( new Tuple<String, Double>( cell, distance ) );
+    }
+
+
+    /**
+     * Read the index entries of a cell. A cell at the max resolution is read whole, a coarser one only if it has fewer
+     * than PROBE_SIZE entries.
+     *
+     * @return the entries, or null if the cell should be subdivided
+     */
+    private List<HColumn<ByteBuffer, ByteBuffer>> fetchCell( String cell, Point searchPoint, String propertyName )
+            throws Exception {
+
+        List<String> cellList = Collections.singletonList( cell );
+
+        if ( cell.length() < MAX_GEOCELL_RESOLUTION ) {
+            TreeSet<HColumn<ByteBuffer, ByteBuffer>> probe =
+                    doSearch( cellList, null, searchPoint, propertyName, PROBE_SIZE );
+            return probe.size() < PROBE_SIZE ? new ArrayList<HColumn<ByteBuffer, ByteBuffer>>( probe ) : null;
+        }
+
+        List<HColumn<ByteBuffer, ByteBuffer>> columns = new ArrayList<HColumn<ByteBuffer, ByteBuffer>>();
+        TreeSet<HColumn<ByteBuffer, ByteBuffer>> page;
+        UUID startId = null;
+
+        do {
+            page = doSearch( cellList, startId, searchPoint, propertyName, MAX_FETCH_SIZE );
+
+            // pages start inclusively at the last entity of the previous page
+            if ( startId != null && !page.isEmpty() && startId
+                    .equals( DynamicComposite.fromByteBuffer( page.first().getName() ).get( 0, ue ) ) ) {
+                page.pollFirst();
             }
-            else if ( curGeocells.size() == 2 ) {
-                // Get adjacents in perpendicular direction.
-                int nearestEdge[] =
-                        GeocellUtils.distanceSortedEdges( Arrays.asList( curContainingGeocell ), searchPoint ).get( 0 )
-                                    .getFirst();
-                int[] perpendicularNearestEdge = { 0, 0 };
-                if ( nearestEdge[0] == 0 ) {
-                    // Was vertical, perpendicular is horizontal.
-                    for ( Tuple<int[], Double> edgeDistance : sortedEdgesDistances ) {
-                        if ( edgeDistance.getFirst()[0] != 0 ) {
-                            perpendicularNearestEdge = edgeDistance.getFirst();
-                            break;
-                        }
-                    }
-                }
-                else {
-                    // Was horizontal, perpendicular is vertical.
-                    for ( Tuple<int[], Double> edgeDistance : sortedEdgesDistances ) {
-                        if ( edgeDistance.getFirst()[0] == 0 ) {
-                            perpendicularNearestEdge = edgeDistance.getFirst();
-                            break;
-                        }
-                    }
-                }
-                List<String> tempCells = new ArrayList<String>();
-                for ( String cell : curGeocells ) {
-                    tempCells.add( GeocellUtils.adjacent( cell, perpendicularNearestEdge ) );
-                }
-                curGeocells.addAll( tempCells );
+
+            if ( page.isEmpty() ) {
+                break;
             }
 
-            logger.debug( "{} results found.", entityLocations.size() );
+            columns.addAll( page );
+            startId = DynamicComposite.fromByteBuffer( page.last().getName() ).get( 0, ue );
+        }
+        while ( page.size() >= MAX_FETCH_SIZE - 1 );
+
+        return columns;
+    }
+
+
+    private static List<HColumn<ByteBuffer, ByteBuffer>> getFetched(
+            Future<List<HColumn<ByteBuffer, ByteBuffer>>> fetch ) throws Exception {
+        try {
+            return fetch.get();
+        }
+        catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof Exception ) {
+                throw ( Exception ) e.getCause();
+            }
+            throw e;
         }
+    }
 
-        // now we have our final sets, construct the results
 
-        return new SearchResults( entityLocations, curGeocells );
+    /**
+     * Add an index entry to the nearest results if it's in range and closer than the current farthest result. The
+     * location is decoded first, the column name only for entries that make it into the results.
+     */
+    private static void collect( PriorityQueue<EntityLocationRef> nearest, HColumn<ByteBuffer, ByteBuffer> column,
+                                 Point searchPoint, EntityLocationRef minMatch, double minDistance, double maxDistance,
+                                 int maxResults ) {
+
+        DynamicComposite value = DynamicComposite.fromByteBuffer( column.getValue() );
+        double latitude = value.get( 0, de );
+        double longitude = value.get( 1, de );
+
+        double distance = GeocellUtils.distance( latitude, longitude, searchPoint.getLat(), searchPoint.getLon() );
+
+        // discard, it's too close or too far, or closer than the minimum we should match
+        if ( distance < minDistance || ( maxDistance != 0 && distance > maxDistance ) || ( minMatch != null
+                && distance < minMatch.getDistance() ) ) {
+            return;
+        }
+
+        if ( nearest.size() == maxResults && distance > nearest.peek().getDistance() ) {
+            return;
+        }
+
+        DynamicComposite name = DynamicComposite.fromByteBuffer( column.getName() );
+
+        EntityLocationRef entityLocation =
+                new EntityLocationRef( name.get( 1, se ), name.get( 0, ue ), name.get( 2, ue ), latitude, longitude );
+        entityLocation.setDistance( distance );
+
+        if ( minMatch != null && COMP.compare( entityLocation, minMatch ) <= 0 ) {
+            return;
+        }
+
+        nearest.offer( entityLocation );
+
+        if ( nearest.size() > maxResults ) {
+            nearest.poll();
+        }
     }
 
 
@@ -348,6 +348,137 @@ public final class GeocellUtils {
     }
 
 
+    /**
+     * Returns the shortest distance between a point and a geocell, which is 0 when the cell contains the point.
+     * <p/>
+     * A point within the cell's longitudes is nearest to the north or south edge along its own meridian. Any other
+     * point is nearest to the west or east edge, and the great circle to that edge leaves the point's latitude
+     * towards the pole, so the distance is measured across track rather than along the parallel.
+     *
+     * @return The shortest distance from the point to any point of the geocell's rectangle, in meters.
+     */
+    public static double minDistance( String cell, Point point ) {
+        BoundingBox bbox = computeBox( cell );
+
+        boolean betweenWE = bbox.getWest() <= point.getLon() && point.getLon() <= bbox.getEast();
+        boolean betweenNS = bbox.getSouth() <= point.getLat() && point.getLat() <= bbox.getNorth();
+
+        if ( betweenWE ) {
+            if ( betweenNS ) {
+                return 0;
+            }
+            return Math.min( distance( point.getLat(), point.getLon(), bbox.getSouth(), point.getLon() ),
+                    distance( point.getLat(), point.getLon(), bbox.getNorth(), point.getLon() ) );
+        }
+
+        return Math.min( meridianDistance( point, bbox.getWest(), bbox.getSouth(), bbox.getNorth() ),
+                meridianDistance( point, bbox.getEast(), bbox.getSouth(), bbox.getNorth() ) );
+    }
+
+
+    /**
+     * Returns the shortest distance between a point and the part of a meridian between two latitudes.
+     *
+     * @return The cross track distance when the foot of the perpendicular falls between the latitudes, otherwise the
+     *         distance to the nearer end, in meters.
+     */
+    private static double meridianDistance( Point point, double lon, double south, double north ) {
+        double lat = Math.toRadians( point.getLat() );
+        double delta = Math.toRadians( point.getLon() - lon );
+
+        // more than a quarter turn away the distance is monotonic along the meridian, the nearest point is an end
+        if ( Math.cos( delta ) >= 0 ) {
+            double foot = Math.toDegrees( Math.atan2( Math.sin( lat ), Math.cos( lat ) * Math.cos( delta ) ) );
+
+            if ( south <= foot && foot <= north ) {
+                return RADIUS * Math.asin( makeDoubleInRange( Math.cos( lat ) * Math.abs( Math.sin( delta ) ) ) );
+            }
+        }
+
+        return Math.min( distance( point.getLat(), point.getLon(), south, lon ),
+                distance( point.getLat(), point.getLon(), north, lon ) );
+    }
+
+
+    /**
+     * Returns an upper bound of the distance between a point and the farthest point of a geocell: the distance to the
+     * cell's center plus the distance from the center to the cell's corners.
+     *
+     * @return No point of the geocell is farther than this from the point, in meters.
+     */
+    public static double maxDistance( String cell, Point point ) {
+        BoundingBox bbox = computeBox( cell );
+
+        double centerLat = ( bbox.getNorth() + bbox.getSouth() ) / 2;
+        double centerLon = ( bbox.getEast() + bbox.getWest() ) / 2;
+
+        double radius = Math.max( Math.max( distance( centerLat, centerLon, bbox.getNorth(), bbox.getEast() ),
+                distance( centerLat, centerLon, bbox.getNorth(), bbox.getWest() ) ),
+                Math.max( distance( centerLat, centerLon, bbox.getSouth(), bbox.getEast() ),
+                        distance( centerLat, centerLon, bbox.getSouth(), bbox.getWest() ) ) );
+
+        return distance( point.getLat(), point.getLon(), centerLat, centerLon ) + radius;
+    }
+
+
+    /**
+     * Returns the bounding box of all points within the given distance of a point.
+     *
+     * @return The bounding box, east may be less than west when it crosses the antimeridian. Null if the box would
+     *         contain a pole or span all longitudes.
+     */
+    public static BoundingBox boundingBox( Point point, double distance ) {
+        double angle = distance / RADIUS;
+
+        if ( angle >= Math.PI / 2 ) {
+            return null;
+        }
+
+        double latDelta = Math.toDegrees( angle );
+        double north = point.getLat() + latDelta;
+        double south = point.getLat() - latDelta;
+
+        if ( north >= MAX_LATITUDE || south <= MIN_LATITUDE ) {
+            return null;
+        }
+
+        double lonDelta =
+                Math.toDegrees( Math.asin( Math.sin( angle ) / Math.cos( Math.toRadians( point.getLat() ) ) ) );
+
+        if ( Double.isNaN( lonDelta ) || lonDelta >= MAX_LONGITUDE ) {
+            return null;
+        }
+
+        double east = point.getLon() + lonDelta;
+        double west = point.getLon() - lonDelta;
+
+        if ( east > MAX_LONGITUDE ) {
+            east -= 360;
+        }
+        if ( west < MIN_LONGITUDE ) {
+            west += 360;
+        }
+
+        return new BoundingBox( north, east, south, west );
+    }
+
+
+    /**
+     * Returns the 16 geocells of the next resolution that subdivide the given cell.
+     *
+     * @param cell : The geocell to subdivide, the empty string for the top level cells.
+     *
+     * @return The child geocells.
+     */
+    public static List<String> children( String cell ) {
+        List<String> children = new ArrayList<String>( GEOCELL_ALPHABET.length() );
+        for ( int i = 0; i < GEOCELL_ALPHABET.length(); i++ ) {
+            children.add( cell + GEOCELL_ALPHABET.charAt( i ) );
+        }
+        return children;
+    }
+
+
     /**
      * Computes the geocell containing the given point to the given resolution.
      * <p/>
@@ -475,10 +606,20 @@ public final class GeocellUtils {
      * @return The 2D great-circle distance between the two given points, in meters.
      */
     public static double distance( Point p1, Point p2 ) {
-        double p1lat = Math.toRadians( p1.getLat() );
-        double p1lon = Math.toRadians( p1.getLon() );
-        double p2lat = Math.toRadians( p2.getLat() );
-        double p2lon = Math.toRadians( p2.getLon() );
+        return distance( p1.getLat(), p1.getLon(), p2.getLat(), p2.getLon() );
+    }
+
+
+    /**
+     * Calculates the great circle distance between two points given in degrees, without allocating points.
+     *
+     * @return The 2D great-circle distance between the two given points, in meters.
+     */
+    public static double distance( double lat1, double lon1, double lat2, double lon2 ) {
+        double p1lat = Math.toRadians( lat1 );
+        double p1lon = Math.toRadians( lon1 );
+        double p2lat = Math.toRadians( lat2 );
+        double p2lon = Math.toRadians( lon2 );
         return RADIUS * Math.acos( makeDoubleInRange(
                 Math.sin( p1lat ) * Math.sin( p2lat ) + Math.cos( p1lat ) * Math.cos( p2lat ) * Math
                         .cos( p2lon - p1lon ) ) );
@@ -71,4 +71,21 @@ public class BoundingBox {
     public Point getSouthWest() {
         return southWest;
     }
+
+
+    /**
+     * @return true if the point is inside this box or on its edge. A box whose east is less than its west crosses the
+     *         antimeridian
+     */
+    public boolean contains( double lat, double lon ) {
+        if ( lat < getSouth() || lat > getNorth() ) {
+            return false;
+        }
+
+        if ( getEast() < getWest() ) {
+            return lon >= getWest() || lon <= getEast();
+        }
+
+        return lon >= getWest() && lon <= getEast();
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.geo.model;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A simple polygon of at least 3 vertices. Edges are straight lines in latitude/longitude space and the polygon may
+ * not cross the antimeridian.
+ */
+public class Polygon {
+
+    private final List<Point> vertices;
+
+
+    public Polygon( List<Point> vertices ) {
+        Validate.isTrue( vertices.size() >= 3, "A polygon must have at least 3 vertices but had ", vertices.size() );
+        this.vertices = Collections.unmodifiableList( new ArrayList<Point>( vertices ) );
+    }
+
+
+    public List<Point> getVertices() {
+        return vertices;
+    }
+
+
+    /** @return The smallest box containing every vertex */
+    public BoundingBox getBoundingBox() {
+        double north = -90;
+        double south = 90;
+        double east = -180;
+        double west = 180;
+
+        for ( Point vertex : vertices ) {
+            north = Math.max( north, vertex.getLat() );
+            south = Math.min( south, vertex.getLat() );
+            east = Math.max( east, vertex.getLon() );
+            west = Math.min( west, vertex.getLon() );
+        }
+
+        return new BoundingBox( north, east, south, west );
+    }
+
+
+    /** @return true if the point is inside the polygon, using the even-odd rule */
+    public boolean contains( double lat, double lon ) {
+        boolean inside = false;
+
+        int size = vertices.size();
+
+        for ( int i = 0, j = size - 1; i < size; j = i++ ) {
+            Point a = vertices.get( i );
+            Point b = vertices.get( j );
+
+            // the edge spans the latitude of the point, and the point is west of where it crosses
+            if ( ( a.getLat() > lat ) != ( b.getLat() > lat ) && lon < ( b.getLon() - a.getLon() ) * ( lat - a
+                    .getLat() ) / ( b.getLat() - a.getLat() ) + a.getLon() ) {
+                inside = !inside;
+            }
+        }
+
+        return inside;
+    }
+}
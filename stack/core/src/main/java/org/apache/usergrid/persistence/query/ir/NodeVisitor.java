@@ -48,6 +48,13 @@ public interface NodeVisitor {
      */
     public void visit( SliceNode node ) throws Exception;
 
+    /**
+     *
+     * @param node
+     * @throws Exception
+     */
+    public void visit( TermsNode node ) throws Exception;
+
     /**
      *
      * @param node
@@ -55,6 +62,13 @@ public interface NodeVisitor {
      */
     public void visit( WithinNode node ) throws Exception;
 
+    /**
+     *
+     * @param node
+     * @throws Exception
+     */
+    public void visit( WithinShapeNode node ) throws Exception;
+
     /**
      *
      * @param node
@@ -243,6 +243,28 @@ public abstract class SearchVisitor implements NodeVisitor {
     }
 
 
+    /**
+     * Intersect the keyword index slices of all terms. Subclasses that can read a posting list per term should override
+     * this
+     */
+    @Override
+    public void visit( TermsNode node ) throws Exception {
+        IntersectionIterator intersections = new IntersectionIterator( queryProcessor.getPageSizeHint( node ) );
+
+        for ( QuerySlice slice : node.getAllSlices() ) {
+            intersections.addIterator( keywordSliceIterator( node, slice ) );
+        }
+
+        results.push( intersections );
+    }
+
+
+    /** Scan the keyword index for the term of the slice */
+    protected SliceIterator keywordSliceIterator( QueryNode node, QuerySlice slice ) throws Exception {
+        return new SliceIterator( slice, secondaryIndexScan( node, slice ), COLLECTION_PARSER );
+    }
+
+
     /**
      * Create a secondary index scan for the given slice node. DOES NOT apply to the "all" case. This should only
      * generate a slice for secondary property scanning
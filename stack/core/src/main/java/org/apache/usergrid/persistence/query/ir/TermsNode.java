@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.query.ir;
+
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.usergrid.persistence.query.ir.QuerySlice.RangeValue;
+
+import static org.apache.usergrid.persistence.cassandra.IndexUpdate.indexValueCode;
+import static org.apache.usergrid.persistence.cassandra.IndexUpdate.toIndexableValue;
+
+
+/**
+ * A node for the whole words of one or more 'contains' operations on the same full text indexed property. Every term
+ * must match, I.E. an && of all terms. Each term has its own slice so that it can be scanned and paged independently,
+ * the visitor decides which index to read and in which order to join the terms
+ */
+public class TermsNode extends QueryNode {
+
+    /** Suffix of the property name of posting list slices, so their cursors are kept apart from the keyword ones */
+    public static final String POSTINGS_SUFFIX = ":postings";
+
+    private final Map<String, QuerySlice> terms = new LinkedHashMap<String, QuerySlice>();
+
+    private final Map<String, QuerySlice> postings = new LinkedHashMap<String, QuerySlice>();
+
+    private final String propertyName;
+
+    private final int id;
+
+
+    /**
+     * @param id The context id of this node
+     * @param propertyName The indexed name of the property, I.E. the keywords of the property
+     */
+    public TermsNode( int id, String propertyName ) {
+        this.id = id;
+        this.propertyName = propertyName;
+    }
+
+
+    /** Add a term that must match. Terms are kept as they are indexed, adding the same term twice has no effect */
+    public void addTerm( String term ) {
+        String indexedTerm = ( String ) toIndexableValue( term );
+
+        if ( terms.containsKey( indexedTerm ) ) {
+            return;
+        }
+
+        byte code = indexValueCode( indexedTerm );
+
+        QuerySlice slice = new QuerySlice( propertyName, id );
+        slice.setStart( new RangeValue( code, indexedTerm, true ) );
+        slice.setFinish( new RangeValue( code, indexedTerm, true ) );
+
+        terms.put( indexedTerm, slice );
+
+        QuerySlice postingSlice = new QuerySlice( propertyName + POSTINGS_SUFFIX, id );
+        postingSlice.setStart( new RangeValue( code, indexedTerm, true ) );
+        postingSlice.setFinish( new RangeValue( code, indexedTerm, true ) );
+
+        postings.put( indexedTerm, postingSlice );
+    }
+
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+
+    /** Get all terms in the order they were added */
+    public Set<String> getTerms() {
+        return terms.keySet();
+    }
+
+
+    /** Get the slice that scans the keyword index for the term */
+    public QuerySlice getSlice( String term ) {
+        return terms.get( term );
+    }
+
+
+    /**
+     * Get the slice that scans the posting list of the term. It has its own cursor, so a cursor tells by its slice
+     * which index it was created from
+     */
+    public QuerySlice getPostingSlice( String term ) {
+        return postings.get( term );
+    }
+
+
+    /** Get the keyword index slices of all terms in the order they were added */
+    public Collection<QuerySlice> getAllSlices() {
+        return terms.values();
+    }
+
+
+    @Override
+    public int getCount() {
+        return terms.size();
+    }
+
+
+    @Override
+    public boolean ignoreHintSize() {
+        return terms.size() > 1;
+    }
+
+
+    @Override
+    public void visit( NodeVisitor visitor ) throws Exception {
+        visitor.visit( this );
+    }
+
+
+    @Override
+    public String toString() {
+        return "TermsNode [propertyName=" + propertyName + ", terms=" + terms.keySet() + ", id=" + id + "]";
+    }
+}
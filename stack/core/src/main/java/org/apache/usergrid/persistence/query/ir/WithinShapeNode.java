@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.query.ir;
+
+
+import org.apache.usergrid.persistence.geo.model.BoundingBox;
+import org.apache.usergrid.persistence.geo.model.Polygon;
+
+
+/**
+ * Intermediate representation of the within operator for a box or a polygon
+ */
+public class WithinShapeNode extends QueryNode {
+
+    private final String propertyName;
+    private final BoundingBox boundingBox;
+    private final Polygon polygon;
+    private final QuerySlice slice;
+
+
+    /**
+     * @param propertyName The indexed property name
+     * @param boundingBox The box to search
+     * @param polygon The polygon inside the box to match, or null if the whole box matches
+     */
+    public WithinShapeNode( String propertyName, BoundingBox boundingBox, Polygon polygon, int nodeId ) {
+        this.propertyName = propertyName;
+        this.boundingBox = boundingBox;
+        this.polygon = polygon;
+        this.slice = new QuerySlice( "location", nodeId );
+    }
+
+
+    /** @return the propertyName */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+
+    /** @return the bounding box */
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+
+    /** @return the polygon, or null */
+    public Polygon getPolygon() {
+        return polygon;
+    }
+
+
+    /** @return the slice */
+    public QuerySlice getSlice() {
+        return slice;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.usergrid.persistence.query.ir.QueryNode#visit(org.apache.usergrid.persistence
+     * .query.ir.NodeVisitor)
+     */
+    @Override
+    public void visit( NodeVisitor visitor ) throws Exception {
+        visitor.visit( this );
+    }
+
+
+    @Override
+    public int getCount() {
+        return 1;
+    }
+
+
+    @Override
+    public boolean ignoreHintSize() {
+        return false;
+    }
+
+
+    @Override
+    public String toString() {
+        return "WithinShapeNode [propertyName=" + propertyName + ", north=" + boundingBox.getNorth() + ", east="
+                + boundingBox.getEast() + ", south=" + boundingBox.getSouth() + ", west=" + boundingBox.getWest()
+                + ", polygon=" + ( polygon != null ) + "]";
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.query.ir.result;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.cassandra.CursorCache;
+import org.apache.usergrid.persistence.geo.EntityLocationRef;
+import org.apache.usergrid.persistence.geo.GeoIndexSearcher;
+import org.apache.usergrid.persistence.geo.model.BoundingBox;
+import org.apache.usergrid.persistence.geo.model.Polygon;
+import org.apache.usergrid.persistence.query.ir.QuerySlice;
+import org.apache.usergrid.persistence.query.ir.result.UUIDIndexSliceParser.UUIDColumn;
+
+import static org.apache.usergrid.persistence.cassandra.Serializers.*;
+
+
+/**
+ * Iterates the entities inside a box or polygon. Unlike proximity results these are returned in uuid order, so the
+ * cursor is only the last uuid returned and this iterator can be intersected with other index scans.
+ */
+public class GeoAreaIterator implements ResultIterator {
+
+    private final GeoIndexSearcher searcher;
+    private final int resultSize;
+    private final QuerySlice slice;
+    private final String propertyName;
+    private final BoundingBox boundingBox;
+    private final Polygon polygon;
+
+    private Set<ScanColumn> toReturn;
+    private Set<ScanColumn> lastLoaded;
+
+    /** True once a page shorter than the result size was loaded */
+    private boolean done = false;
+
+    /** The uuid to start after, from the cursor or the last page */
+    private UUID startId;
+    private UUID cursorStart;
+
+    /** counter that's incremented as we load pages. If pages loaded = 1 when reset, we don't have to reload */
+    private int pagesLoaded = 0;
+
+
+    public GeoAreaIterator( GeoIndexSearcher searcher, int resultSize, QuerySlice slice, String propertyName,
+                            BoundingBox boundingBox, Polygon polygon ) {
+        this.searcher = searcher;
+        this.resultSize = resultSize;
+        this.slice = slice;
+        this.propertyName = propertyName;
+        this.boundingBox = boundingBox;
+        this.polygon = polygon;
+        this.lastLoaded = new LinkedHashSet<ScanColumn>( resultSize );
+
+        if ( slice.hasCursor() ) {
+            cursorStart = ue.fromByteBuffer( slice.getCursor() );
+        }
+
+        startId = cursorStart;
+    }
+
+
+    @Override
+    public Iterator<Set<ScanColumn>> iterator() {
+        return this;
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        advance();
+        return toReturn != null;
+    }
+
+
+    private void advance() {
+        if ( done || toReturn != null ) {
+            return;
+        }
+
+        List<EntityLocationRef> locations;
+
+        try {
+            locations = searcher.areaSearch( boundingBox, polygon, startId, propertyName, resultSize );
+        }
+        catch ( Exception e ) {
+            throw new RuntimeException( "Unable to search geo locations", e );
+        }
+
+        lastLoaded = new LinkedHashSet<ScanColumn>( locations.size() );
+
+        for ( EntityLocationRef location : locations ) {
+            lastLoaded.add( new UUIDColumn( location.getUuid(), ue.toByteBuffer( location.getUuid() ) ) );
+            startId = location.getUuid();
+        }
+
+        pagesLoaded++;
+
+        if ( locations.size() < resultSize ) {
+            done = true;
+        }
+
+        if ( lastLoaded.size() > 0 ) {
+            toReturn = lastLoaded;
+        }
+    }
+
+
+    @Override
+    public Set<ScanColumn> next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+
+        Set<ScanColumn> temp = toReturn;
+
+        toReturn = null;
+
+        return temp;
+    }
+
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException( "You cannot remove elements from this iterator" );
+    }
+
+
+    @Override
+    public void reset() {
+        //only 1 iteration was invoked.  Just reset the pointer rather than re-search
+        if ( pagesLoaded == 1 ) {
+            toReturn = lastLoaded;
+            return;
+        }
+
+        toReturn = null;
+        done = false;
+        pagesLoaded = 0;
+        startId = cursorStart;
+    }
+
+
+    @Override
+    public void finalizeCursor( CursorCache cache, UUID lastValue ) {
+        cache.setNextCursor( slice.hashCode(), ue.toByteBuffer( lastValue ) );
+    }
+}
@@ -65,6 +65,11 @@ public interface QueryVisitor {
      */
     public void visit( WithinOperand op );
 
+    /**
+     * @param op
+     */
+    public void visit( WithinShapeOperand op );
+
     /**
      * @param op
      * @throws NoIndexException
@@ -28,6 +28,7 @@ public class StringLiteral extends Literal<String> {
 
     private String value;
     private String finishValue;
+    private boolean prefix;
 
 
     /**
@@ -63,6 +64,7 @@ public class StringLiteral extends Literal<String> {
             this.value = removeEnd( value.toString(), "*" );
 
             finishValue = this.value + "\uFFFF";
+            prefix = true;
         }
         // set the end value to the same as the start value
         else {
@@ -80,4 +82,10 @@ public class StringLiteral extends Literal<String> {
     public String getValue() {
         return this.value;
     }
+
+
+    /** True if the literal ended with a wildcard, it then matches every value that starts with its value */
+    public boolean isPrefix() {
+        return this.prefix;
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.query.tree;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.runtime.Token;
+
+
+/**
+ * The within operator for an area rather than a distance, "location within box 37.7, -122.5, 37.8, -122.3" or
+ * "location within polygon lat, lon, lat, lon, lat, lon, ...".  The token is the name of the shape.
+ */
+public class WithinShapeOperand extends Operand {
+
+    public static final String BOX = "box";
+
+    public static final String POLYGON = "polygon";
+
+
+    public WithinShapeOperand( Token t ) {
+        super( t );
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.usergrid.persistence.query.tree.Operand#visit(org.apache.usergrid.persistence
+     * .query.tree.QueryVisitor)
+     */
+    @Override
+    public void visit( QueryVisitor visitor ) {
+        visitor.visit( this );
+    }
+
+
+    /** @return the name of the shape, in lower case */
+    public String getShape() {
+        return getText().toLowerCase();
+    }
+
+
+    public WithinProperty getProperty() {
+        return ( WithinProperty ) this.children.get( 0 );
+    }
+
+
+    /** @return the coordinates as they were given, alternating latitude and longitude */
+    public List<NumericLiteral> getCoordinates() {
+        List<NumericLiteral> coordinates = new ArrayList<NumericLiteral>( getChildCount() - 1 );
+        for ( int i = 1; i < getChildCount(); i++ ) {
+            coordinates.add( ( NumericLiteral ) getChild( i ) );
+        }
+        return coordinates;
+    }
+}
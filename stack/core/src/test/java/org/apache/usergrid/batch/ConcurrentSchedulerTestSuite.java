@@ -22,6 +22,7 @@ import org.junit.runners.Suite;
 import org.apache.usergrid.batch.AppArgsTest;
 import org.apache.usergrid.batch.BulkJobExecutionUnitTest;
 import org.apache.usergrid.batch.UsergridJobFactoryTest;
+import org.apache.usergrid.batch.service.JobSchedulerServiceTest;
 import org.apache.usergrid.cassandra.Concurrent;
 import org.apache.usergrid.cassandra.ConcurrentSuite;
 
@@ -30,6 +31,7 @@ import org.apache.usergrid.cassandra.ConcurrentSuite;
 @Suite.SuiteClasses(
         {
                 AppArgsTest.class, UsergridJobFactoryTest.class, BulkJobExecutionUnitTest.class,
+                JobSchedulerServiceTest.class,
         })
 @Concurrent()
 public class ConcurrentSchedulerTestSuite {}
@@ -22,6 +22,7 @@ import org.junit.runners.Suite;
 import org.apache.usergrid.batch.AppArgsTest;
 import org.apache.usergrid.batch.BulkJobExecutionUnitTest;
 import org.apache.usergrid.batch.UsergridJobFactoryTest;
+import org.apache.usergrid.batch.service.JobSchedulerServiceTest;
 import org.apache.usergrid.cassandra.Concurrent;
 
 
@@ -29,6 +30,7 @@ import org.apache.usergrid.cassandra.Concurrent;
 @Suite.SuiteClasses(
         {
                 AppArgsTest.class, UsergridJobFactoryTest.class, BulkJobExecutionUnitTest.class,
+                JobSchedulerServiceTest.class,
         })
 @Concurrent()
 public class SchedulerTestSuite {}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch.service;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.apache.usergrid.batch.Job;
+import org.apache.usergrid.batch.JobExecution;
+import org.apache.usergrid.batch.JobFactory;
+import org.apache.usergrid.batch.repository.JobAccessor;
+import org.apache.usergrid.batch.repository.JobDescriptor;
+import org.apache.usergrid.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.entities.JobData;
+import org.apache.usergrid.persistence.entities.JobStat;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/** Dispatch of the scheduler with jobs prefetched ahead of the workers */
+public class JobSchedulerServiceTest {
+
+    private static final long INTERVAL = 1000;
+
+    private final CountDownLatch release = new CountDownLatch( 1 );
+
+    private JobSchedulerService scheduler;
+
+
+    @After
+    public void shutDown() throws Exception {
+        release.countDown();
+        if ( scheduler != null ) {
+            scheduler.shutDown();
+        }
+    }
+
+
+    @Test
+    public void saturatedWorkersWaitForInterval() throws Exception {
+        QueueAccessor accessor = new QueueAccessor( 10 );
+        CountDownLatch finished = new CountDownLatch( 3 );
+
+        scheduler = scheduler( 1, 2, accessor, finished );
+
+        // one job for the worker and two for the prefetch buffer, the fetch was full
+        scheduler.runOneIteration();
+        assertEquals( Arrays.asList( 3 ), accessor.requests );
+        assertEquals( JobSchedulerService.BACKLOG_DELAY, scheduler.getNextDelay() );
+
+        // nothing is fetched while the worker and the buffer are taken, and the next poll waits for the interval
+        scheduler.runOneIteration();
+        assertEquals( Arrays.asList( 3 ), accessor.requests );
+        assertEquals( INTERVAL, scheduler.getNextDelay() );
+
+        // the prefetched jobs start as the worker frees up
+        release.countDown();
+        assertTrue( finished.await( 10, TimeUnit.SECONDS ) );
+    }
+
+
+    @Test
+    public void partialFetchWaitsForInterval() throws Exception {
+        QueueAccessor accessor = new QueueAccessor( 1 );
+        CountDownLatch finished = new CountDownLatch( 1 );
+
+        scheduler = scheduler( 2, 2, accessor, finished );
+
+        scheduler.runOneIteration();
+        assertEquals( Arrays.asList( 4 ), accessor.requests );
+        assertEquals( INTERVAL, scheduler.getNextDelay() );
+
+        release.countDown();
+        assertTrue( finished.await( 10, TimeUnit.SECONDS ) );
+    }
+
+
+    private JobSchedulerService scheduler( int workers, int prefetch, JobAccessor accessor,
+                                           final CountDownLatch finished ) throws Exception {
+        JobSchedulerService service = new JobSchedulerService();
+        service.setInterval( INTERVAL );
+        service.setWorkerSize( workers );
+        service.setPrefetchSize( prefetch );
+        service.setJobAccessor( accessor );
+        service.setMetricsFactory( new TestMetricsFactory() );
+        service.setJobFactory( new JobFactory() {
+            @Override
+            public Job jobsFrom( JobDescriptor descriptor ) {
+                return new Job() {
+                    @Override
+                    public void execute( JobExecution execution ) throws Exception {
+                        release.await();
+                        finished.countDown();
+                    }
+
+
+                    @Override
+                    public void dead( JobExecution execution ) {
+                    }
+                };
+            }
+        } );
+        service.startUp();
+        return service;
+    }
+
+
+    /** Hands out up to a fixed number of jobs and records the size of every fetch */
+    private static class QueueAccessor implements JobAccessor {
+
+        private final List<Integer> requests = new ArrayList<Integer>();
+
+        private int available;
+
+
+        private QueueAccessor( int available ) {
+            this.available = available;
+        }
+
+
+        @Override
+        public synchronized List<JobDescriptor> getJobs( int size ) {
+            requests.add( size );
+
+            List<JobDescriptor> jobs = new ArrayList<JobDescriptor>();
+            for ( ; available > 0 && jobs.size() < size; available-- ) {
+                jobs.add( new JobDescriptor( "test", UUID.randomUUID(), UUID.randomUUID(), new JobData(),
+                        new JobStat(), null ) );
+            }
+            return jobs;
+        }
+
+
+        @Override
+        public void save( JobExecution bulkJobExecution ) {
+        }
+
+
+        @Override
+        public void delayRetry( JobExecution execution, long delay ) {
+        }
+    }
+
+
+    /** Metrics without a registry or reporters */
+    private static class TestMetricsFactory extends MetricsFactory {
+
+        @Override
+        public Timer getTimer( Class<?> klass, String name ) {
+            return new Timer();
+        }
+
+
+        @Override
+        public Histogram getHistogram( Class<?> klass, String name ) {
+            return new Histogram( new UniformReservoir() );
+        }
+
+
+        @Override
+        public Counter getCounter( Class<?> klass, String name ) {
+            return new Counter();
+        }
+    }
+}
@@ -17,7 +17,9 @@
 package org.apache.usergrid.mq;
 
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -162,6 +164,68 @@ public class MessagesIT extends AbstractCoreIT {
     }
 
 
+    @Test
+    public void testPostListToSubscribers() throws Exception {
+        QueueManager qm = app.getQm();
+
+        qm.subscribeToQueue( "/batchpub/", "/batchsub/" );
+
+        List<Message> posted = new ArrayList<Message>();
+
+        for ( int i = 0; i < 5; i++ ) {
+            Message message = new Message();
+            message.setStringProperty( "foo", "bar" + i );
+            posted.add( message );
+        }
+
+        qm.postToQueue( "/batchpub/", posted );
+
+        for ( String queuePath : new String[] { "/batchpub/", "/batchsub/" } ) {
+            QueueQuery query = new QueueQuery().withConsumer( "batchconsumer" );
+            query.setLimit( 10 );
+
+            QueueResults messages = qm.getFromQueue( queuePath, query );
+            LOG.info( JsonUtils.mapToFormattedJsonString( messages ) );
+
+            assertEquals( 5, messages.size() );
+
+            for ( int i = 0; i < 5; i++ ) {
+                assertEquals( posted.get( i ).getUuid(), messages.getMessages().get( i ).getUuid() );
+                assertEquals( "bar" + i, messages.getMessages().get( i ).getStringProperty( "foo" ) );
+            }
+        }
+    }
+
+
+    @Test
+    public void testFilterOnTwoProperties() throws Exception {
+        QueueManager qm = app.getQm();
+
+        List<Message> posted = new ArrayList<Message>();
+
+        for ( int i = 0; i < 10; i++ ) {
+            Message message = new Message();
+            message.setStringProperty( "color", i % 2 == 0 ? "red" : "blue" );
+            message.setLongProperty( "size", i );
+            posted.add( message );
+        }
+
+        qm.postToQueue( "/filtered/", posted );
+
+        QueueQuery query = new QueueQuery();
+        query.addEqualityFilter( "color", "red" );
+        query.addFilter( "size", Query.FilterOperator.GREATER_THAN_OR_EQUAL, 4L );
+        query.setLimit( 2 );
+
+        QueueResults messages = qm.getFromQueue( "/filtered/", query );
+        LOG.info( JsonUtils.mapToFormattedJsonString( messages ) );
+
+        assertEquals( 2, messages.size() );
+        assertEquals( posted.get( 4 ).getUuid(), messages.getMessages().get( 0 ).getUuid() );
+        assertEquals( posted.get( 6 ).getUuid(), messages.getMessages().get( 1 ).getUuid() );
+    }
+
+
     @Test
     public void testConsumer() throws Exception {
         LOG.info( "Creating messages" );
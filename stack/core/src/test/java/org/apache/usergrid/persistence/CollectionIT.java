@@ -33,17 +33,26 @@ import org.apache.usergrid.Application;
 import org.apache.usergrid.CoreApplication;
 import org.apache.usergrid.cassandra.Concurrent;
 import org.apache.usergrid.persistence.Results.Level;
+import org.apache.usergrid.persistence.cassandra.ApplicationCF;
+import org.apache.usergrid.persistence.cassandra.CassandraService;
+import org.apache.usergrid.persistence.cassandra.Serializers;
 import org.apache.usergrid.persistence.entities.User;
 import org.apache.usergrid.persistence.exceptions.DuplicateUniquePropertyExistsException;
 import org.apache.usergrid.persistence.exceptions.NoIndexException;
 import org.apache.usergrid.utils.JsonUtils;
 import org.apache.usergrid.utils.UUIDUtils;
 
+import me.prettyprint.hector.api.beans.HCounterColumn;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static me.prettyprint.hector.api.factory.HFactory.createCounterColumnQuery;
+import static org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils.key;
+import static org.apache.usergrid.utils.ConversionUtils.bytebuffer;
 import static org.apache.usergrid.utils.MapUtils.hashMap;
 
 
@@ -678,6 +687,156 @@ public class CollectionIT extends AbstractCoreIT {
     }
 
 
+    @Test
+    public void containsWordsQuery() throws Exception {
+        UUID applicationId = setup.createApplication( "testOrganization", "containsWordsQuery" );
+        assertNotNull( applicationId );
+
+        EntityManager em = setup.getEmf().getEntityManager( applicationId );
+        assertNotNull( em );
+
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "title", "The quick brown fox" );
+
+        Entity game1 = em.create( "game", properties );
+        assertNotNull( game1 );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "title", "A quick red fox" );
+
+        Entity game2 = em.create( "game", properties );
+        assertNotNull( game2 );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "title", "The lazy brown dog" );
+
+        Entity game3 = em.create( "game", properties );
+        assertNotNull( game3 );
+
+        // every word must match, in any order
+        Query query = Query.fromQL( "select * where title contains 'fox quick'" );
+        Results r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 2, r.size() );
+        assertEquals( game1.getUuid(), r.getEntities().get( 0 ).getUuid() );
+        assertEquals( game2.getUuid(), r.getEntities().get( 1 ).getUuid() );
+
+        query = Query.fromQL( "select * where title contains 'brown fox'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 1, r.size() );
+        assertEquals( game1.getUuid(), r.getEntities().get( 0 ).getUuid() );
+
+        query = Query.fromQL( "select * where title contains 'quick' and title contains 'dog'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 0, r.size() );
+
+        // a word no entity contains
+        query = Query.fromQL( "select * where title contains 'brown cat'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 0, r.size() );
+
+        // words removed by an update no longer match, the new ones do
+        em.setProperty( game1, "title", "The slow brown turtle" );
+
+        query = Query.fromQL( "select * where title contains 'quick fox'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 1, r.size() );
+        assertEquals( game2.getUuid(), r.getEntities().get( 0 ).getUuid() );
+
+        query = Query.fromQL( "select * where title contains 'brown'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 2, r.size() );
+        assertEquals( game1.getUuid(), r.getEntities().get( 0 ).getUuid() );
+        assertEquals( game3.getUuid(), r.getEntities().get( 1 ).getUuid() );
+
+        query = Query.fromQL( "select * where title contains 'turtle'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 1, r.size() );
+        assertEquals( game1.getUuid(), r.getEntities().get( 0 ).getUuid() );
+
+        // words and prefixes can be mixed
+        query = Query.fromQL( "select * where title contains 'brown' and title contains 'tur*'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 1, r.size() );
+        assertEquals( game1.getUuid(), r.getEntities().get( 0 ).getUuid() );
+    }
+
+
+    @Test
+    public void containsWordsBackfilled() throws Exception {
+        UUID applicationId = setup.createApplication( "testOrganization", "containsWordsBackfilled" );
+        assertNotNull( applicationId );
+
+        EntityManager em = setup.getEmf().getEntityManager( applicationId );
+        assertNotNull( em );
+
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "title", "The quick brown fox" );
+
+        Entity game1 = em.create( "game", properties );
+        assertNotNull( game1 );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "title", "A quick red fox" );
+
+        Entity game2 = em.create( "game", properties );
+        assertNotNull( game2 );
+
+        // what IndexRebuild does, re-save the entities, mark the collection and count its terms
+        em.update( game1 );
+        em.update( game2 );
+
+        RelationManager relations = em.getRelationManager( em.getApplicationRef() );
+        relations.setCollectionTermsBackfilled( "games" );
+        relations.rebuildCollectionTermCounts( "games" );
+
+        // counting again doesn't change anything
+        relations.rebuildCollectionTermCounts( "games" );
+
+        assertEquals( 2, getTermCount( applicationId, "games", "title.keywords", "quick" ) );
+        assertEquals( 1, getTermCount( applicationId, "games", "title.keywords", "brown" ) );
+
+        Query query = Query.fromQL( "select * where title contains 'fox quick'" );
+        Results r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 2, r.size() );
+        assertEquals( game1.getUuid(), r.getEntities().get( 0 ).getUuid() );
+        assertEquals( game2.getUuid(), r.getEntities().get( 1 ).getUuid() );
+
+        query = Query.fromQL( "select * where title contains 'brown fox'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 1, r.size() );
+        assertEquals( game1.getUuid(), r.getEntities().get( 0 ).getUuid() );
+
+        // a word no entity contains
+        query = Query.fromQL( "select * where title contains 'quick cat'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 0, r.size() );
+
+        em.setProperty( game1, "title", "The slow brown turtle" );
+
+        query = Query.fromQL( "select * where title contains 'quick fox'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 1, r.size() );
+        assertEquals( game2.getUuid(), r.getEntities().get( 0 ).getUuid() );
+
+        query = Query.fromQL( "select * where title contains 'turtle brown'" );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 1, r.size() );
+        assertEquals( game1.getUuid(), r.getEntities().get( 0 ).getUuid() );
+    }
+
+
+    private long getTermCount( UUID applicationId, String collectionName, String path, String term )
+            throws Exception {
+        CassandraService cass = setup.getCassSvc();
+
+        HCounterColumn<String> count = createCounterColumnQuery( cass.getApplicationKeyspace( applicationId ),
+                Serializers.be, Serializers.se ).setColumnFamily( ApplicationCF.ENTITY_TERM_COUNTS.toString() )
+                .setKey( bytebuffer( key( applicationId, collectionName, path ) ) ).setName( term ).execute().get();
+
+        return count != null ? count.getValue() : 0;
+    }
+
+
     @Test
     public void notQuery() throws Exception {
         UUID applicationId = setup.createApplication( "testOrganization", "notQuery" );
@@ -1696,4 +1855,44 @@ public class CollectionIT extends AbstractCoreIT {
 
         em.create( "restaurant", restaurant2.getProperties() );
     }
+
+
+    @Test
+    public void countQuery() throws Exception {
+        UUID applicationId = setup.createApplication( "testOrganization", "countQuery" );
+        assertNotNull( applicationId );
+
+        EntityManager em = setup.getEmf().getEntityManager( applicationId );
+        assertNotNull( em );
+
+        for ( int i = 0; i < 25; i++ ) {
+            Map<String, Object> properties = new LinkedHashMap<String, Object>();
+            properties.put( "name", "game" + i );
+            properties.put( "level", i % 5 );
+            em.create( "game", properties );
+        }
+
+        Results r = em.searchCollection( em.getApplicationRef(), "games", Query.fromQL( "select count(*)" ) );
+        assertEquals( 25, r.getCount().intValue() );
+        assertEquals( 0, r.size() );
+        assertFalse( r.isCountApproximate() );
+
+        r = em.searchCollection( em.getApplicationRef(), "games",
+                Query.fromQL( "select count(*) where level = 2 or level = 3 order by name" ) );
+        assertEquals( 10, r.getCount().intValue() );
+
+        //a count limit stops the scan early, the cursor continues the count
+        Query query = Query.fromQL( "select count(*) where level > 0" ).withCountLimit( 7 );
+        r = em.searchCollection( em.getApplicationRef(), "games", query );
+        assertEquals( 7, r.getCount().intValue() );
+        assertTrue( r.isCountApproximate() );
+
+        int total = r.getCount();
+        while ( r.hasCursor() ) {
+            r = r.getNextPageResults();
+            total += r.getCount();
+        }
+
+        assertEquals( 20, total );
+    }
 }
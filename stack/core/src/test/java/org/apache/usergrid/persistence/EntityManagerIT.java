@@ -18,6 +18,7 @@ package org.apache.usergrid.persistence;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -35,11 +36,13 @@ import org.apache.usergrid.cassandra.Concurrent;
 import org.apache.usergrid.persistence.Results.Level;
 import org.apache.usergrid.persistence.entities.Group;
 import org.apache.usergrid.persistence.entities.User;
+import org.apache.usergrid.persistence.exceptions.DuplicateUniquePropertyExistsException;
 import org.apache.usergrid.utils.UUIDUtils;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.apache.usergrid.persistence.cassandra.CassandraService.MANAGEMENT_APPLICATION_ID;
 
@@ -561,4 +564,126 @@ public class EntityManagerIT extends AbstractCoreIT {
         //Not an owner
         assertFalse( em.isCollectionMember( createdUser2, "devices", createdDevice ) );
     }
+
+
+    @Test
+    public void testCreateBatch() throws Exception {
+        LOG.info( "EntityManagerIT.testCreateBatch" );
+
+        UUID applicationId = setup.createApplication( "testOrganization", "testCreateBatch" );
+        assertNotNull( applicationId );
+
+        EntityManager em = setup.getEmf().getEntityManager( applicationId );
+        assertNotNull( em );
+
+        UUID importId = UUIDUtils.newTimeUUID();
+
+        List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
+
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "username", "batchuser1" );
+        properties.put( "email", "batchuser1@foo.bar" );
+        batch.add( properties );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "username", "batchuser2" );
+        properties.put( "email", "batchuser2@foo.bar" );
+        properties.put( "uuid", importId.toString() );
+        batch.add( properties );
+
+        //duplicates the first user within the batch
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "username", "batchuser1" );
+        properties.put( "email", "batchuser3@foo.bar" );
+        batch.add( properties );
+
+        Map<Integer, Exception> errors = em.createBatch( "user", batch );
+
+        assertEquals( 1, errors.size() );
+        assertTrue( errors.get( 2 ) instanceof DuplicateUniquePropertyExistsException );
+
+        Entity imported = em.get( importId );
+        assertNotNull( imported );
+        assertEquals( "batchuser2", imported.getProperty( "username" ) );
+
+        Results r = em.searchCollection( em.getApplicationRef(), "users",
+                new Query().addEqualityFilter( "username", "batchuser1" ) );
+        assertEquals( 1, r.size() );
+        assertEquals( "batchuser1@foo.bar", r.getEntity().getProperty( "email" ) );
+
+        //a duplicate of a user that was already written is rejected as well
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "username", "batchuser2" );
+        properties.put( "email", "batchuser4@foo.bar" );
+
+        errors = em.createBatch( "user", Collections.singletonList( properties ) );
+
+        assertEquals( 1, errors.size() );
+        assertTrue( errors.get( 0 ) instanceof DuplicateUniquePropertyExistsException );
+
+        //a rejected entity doesn't keep the unique values it would have claimed
+        batch = new ArrayList<Map<String, Object>>();
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "username", "batchuser5" );
+        properties.put( "email", "batchuser1@foo.bar" );
+        batch.add( properties );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "username", "batchuser5" );
+        properties.put( "email", "batchuser5@foo.bar" );
+        batch.add( properties );
+
+        errors = em.createBatch( "user", batch );
+
+        assertEquals( 1, errors.size() );
+        assertTrue( errors.get( 0 ) instanceof DuplicateUniquePropertyExistsException );
+
+        r = em.searchCollection( em.getApplicationRef(), "users",
+                new Query().addEqualityFilter( "username", "batchuser5" ) );
+        assertEquals( 1, r.size() );
+        assertEquals( "batchuser5@foo.bar", r.getEntity().getProperty( "email" ) );
+    }
+
+
+    @Test
+    public void testUpdateBatch() throws Exception {
+        LOG.info( "EntityManagerIT.testUpdateBatch" );
+
+        UUID applicationId = setup.createApplication( "testOrganization", "testUpdateBatch" );
+        assertNotNull( applicationId );
+
+        EntityManager em = setup.getEmf().getEntityManager( applicationId );
+        assertNotNull( em );
+
+        List<Entity> entities = new ArrayList<Entity>();
+
+        for ( int i = 0; i < 3; i++ ) {
+            Map<String, Object> properties = new LinkedHashMap<String, Object>();
+            properties.put( "username", "updatebatch" + i );
+            entities.add( em.create( "user", properties ) );
+        }
+
+        Map<String, Object> update = new LinkedHashMap<String, Object>();
+        update.put( "color", "blue" );
+
+        Map<Integer, Exception> errors = em.updateBatch( entities, update );
+        assertTrue( errors.isEmpty() );
+
+        for ( Entity entity : entities ) {
+            assertEquals( "blue", em.get( entity.getUuid() ).getProperty( "color" ) );
+        }
+
+        //only the first entity of the batch can claim a unique value
+        update = new LinkedHashMap<String, Object>();
+        update.put( "email", "updatebatch@foo.bar" );
+
+        errors = em.updateBatch( entities, update );
+
+        assertEquals( 2, errors.size() );
+        assertTrue( errors.get( 1 ) instanceof DuplicateUniquePropertyExistsException );
+        assertTrue( errors.get( 2 ) instanceof DuplicateUniquePropertyExistsException );
+        assertEquals( "updatebatch@foo.bar", em.get( entities.get( 0 ).getUuid() ).getProperty( "email" ) );
+        assertNull( em.get( entities.get( 1 ).getUuid() ).getProperty( "email" ) );
+    }
 }
@@ -19,9 +19,11 @@ package org.apache.usergrid.persistence;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.junit.Test;
@@ -40,6 +42,7 @@ import org.apache.usergrid.utils.MapUtils;
 import static junit.framework.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 
 @Concurrent()
@@ -498,6 +501,81 @@ public class GeoIT extends AbstractCoreIT {
     }
 
 
+    @Test
+    public void testWithinBoxAndPolygon() throws Exception {
+
+        UUID applicationId = setup.createApplication( "testOrganization", "testWithinBoxAndPolygon" );
+        assertNotNull( applicationId );
+
+        EntityManager em = setup.getEmf().getEntityManager( applicationId );
+        assertNotNull( em );
+
+        // a 10 x 10 grid of stores 0.01 degrees apart, named by their row and column
+        for ( int row = 0; row < 10; row++ ) {
+            for ( int column = 0; column < 10; column++ ) {
+                Map<String, Object> data = new HashMap<String, Object>( 2 );
+                data.put( "name", row + "-" + column );
+                setPos( data, 37.70 + row * 0.01, -122.50 + column * 0.01 );
+
+                em.create( "store", data );
+            }
+        }
+
+        // the box holds rows 2 to 5 of columns 2 to 4
+        Set<String> expected = new HashSet<String>();
+
+        for ( int row = 2; row <= 5; row++ ) {
+            for ( int column = 2; column <= 4; column++ ) {
+                expected.add( row + "-" + column );
+            }
+        }
+
+        assertEquals( expected,
+                searchStores( em, "select * where location within box 37.715, -122.485, 37.755, -122.455" ) );
+
+        // the triangle holds the stores whose row and column add up to at most 8, the others in its bounding box
+        // don't match
+        expected.clear();
+
+        for ( int row = 0; row < 10; row++ ) {
+            for ( int column = 0; row + column <= 8; column++ ) {
+                expected.add( row + "-" + column );
+            }
+        }
+
+        Set<String> found = searchStores( em,
+                "select * where location within polygon 37.695, -122.505, 37.790, -122.505, 37.695, -122.410" );
+
+        assertEquals( 45, expected.size() );
+        assertEquals( expected, found );
+        assertFalse( found.contains( "5-5" ) );
+    }
+
+
+    /** Page through the stores matching the query, a few at a time, and return their names */
+    private Set<String> searchStores( EntityManager em, String ql ) throws Exception {
+        Query query = Query.fromQL( ql );
+        query.setLimit( 10 );
+
+        Set<String> names = new HashSet<String>();
+        Results results;
+
+        do {
+            results = em.searchCollection( em.getApplicationRef(), "stores", query );
+
+            for ( Entity entity : results.getEntities() ) {
+                // an entity shows up once however many cells of the area it's indexed in
+                assertTrue( names.add( entity.getName() ) );
+            }
+
+            query.setCursor( results.getCursor() );
+        }
+        while ( results.hasCursor() );
+
+        return names;
+    }
+
+
     public Map<String, Object> getLocation( double latitude, double longitude ) throws Exception {
         Map<String, Object> latlong = new LinkedHashMap<String, Object>();
         latlong.put( "latitude", latitude );
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.apache.usergrid.AbstractCoreIT;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.beans.Rows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_DICTIONARIES;
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+import static org.apache.usergrid.persistence.cassandra.Serializers.se;
+import static org.apache.usergrid.persistence.cassandra.Serializers.ue;
+import static org.apache.usergrid.utils.ConversionUtils.bytebuffer;
+import static org.apache.usergrid.utils.ConversionUtils.bytes;
+import static org.apache.usergrid.utils.ConversionUtils.string;
+import static org.apache.usergrid.utils.MapUtils.hashMap;
+
+
+@Concurrent()
+public class CassandraServiceIT extends AbstractCoreIT {
+
+    @Test
+    public void asyncWritesAndReads() throws Exception {
+        UUID applicationId = setup.createApplication( "testOrganization", "asyncWritesAndReads" );
+        assertNotNull( applicationId );
+
+        CassandraService cass = setup.getCassSvc();
+        Keyspace ko = cass.getApplicationKeyspace( applicationId );
+
+        UUID first = UUIDUtils.newTimeUUID();
+        UUID second = UUIDUtils.newTimeUUID();
+
+        cass.setColumnsAsync( ko, ENTITY_DICTIONARIES, bytes( first ), hashMap( "a", "1" ).map( "b", "2" ), 0 ).get();
+        cass.setColumnsAsync( ko, ENTITY_DICTIONARIES, bytes( second ), hashMap( "c", "3" ), 0 ).get();
+
+        List<HColumn<ByteBuffer, ByteBuffer>> columns =
+                cass.getColumnsAsync( ko, ENTITY_DICTIONARIES, first, null, null, 10, false ).get();
+
+        assertEquals( 2, columns.size() );
+        assertEquals( "a", string( columns.get( 0 ).getName() ) );
+        assertEquals( "2", string( columns.get( 1 ).getValue() ) );
+
+        Map<ByteBuffer, List<HColumn<ByteBuffer, ByteBuffer>>> multi =
+                cass.multiGetColumnsAsync( ko, ENTITY_DICTIONARIES, Arrays.asList( first, second ), null, null, 10,
+                        false ).get();
+
+        assertEquals( 2, multi.get( bytebuffer( first ) ).size() );
+        assertEquals( 1, multi.get( bytebuffer( second ) ).size() );
+
+        Rows<UUID, String, ByteBuffer> rows =
+                cass.getRowsAsync( ko, ENTITY_DICTIONARIES, Arrays.asList( first, second ), ue, se, be ).get();
+
+        assertEquals( 2, rows.getCount() );
+        assertEquals( "3", string( rows.getByKey( second ).getColumnSlice().getColumnByName( "c" ).getValue() ) );
+
+        rows = cass.getRowsAsync( ko, ENTITY_DICTIONARIES, Arrays.asList( first ), Arrays.asList( "b" ), ue, se, be )
+                   .get();
+
+        assertEquals( 1, rows.getByKey( first ).getColumnSlice().getColumns().size() );
+
+        cass.deleteRowAsync( ko, ENTITY_DICTIONARIES, first ).get();
+
+        assertTrue( cass.getColumnsAsync( ko, ENTITY_DICTIONARIES, first, null, null, 10, false ).get().isEmpty() );
+        assertEquals( 1, cass.getColumnsAsync( ko, ENTITY_DICTIONARIES, second, null, null, 10, false ).get().size() );
+    }
+
+
+    @Test
+    public void rejectedRequestsRunOnCallerUntilShutdown() throws Exception {
+        final CassandraService.CallerRunsUnlessShutdown policy = new CassandraService.CallerRunsUnlessShutdown();
+
+        ThreadPoolExecutor pool =
+                new ThreadPoolExecutor( 1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( 1 ), policy );
+
+        final AtomicBoolean ran = new AtomicBoolean();
+
+        Runnable request = new Runnable() {
+            @Override
+            public void run() {
+                ran.set( true );
+            }
+        };
+
+        policy.rejectedExecution( request, pool );
+        assertTrue( ran.get() );
+
+        pool.shutdown();
+
+        try {
+            pool.execute( request );
+            fail( "A request made after shutdown should be rejected" );
+        }
+        catch ( RejectedExecutionException e ) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.apache.commons.codec.binary.Base64.encodeBase64URLSafeString;
+import static org.apache.usergrid.utils.ConversionUtils.bytebuffer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class CursorCacheTest {
+
+    @Test
+    public void roundTrip() {
+        UUID first = UUIDUtils.newTimeUUID();
+        UUID second = UUIDUtils.newTimeUUID();
+
+        CursorCache cache = new CursorCache();
+        cache.setNextCursor( 1, bytebuffer( first ) );
+        cache.setNextCursor( -300, bytebuffer( second ) );
+        cache.setNextCursor( Integer.MIN_VALUE, ByteBuffer.allocate( 0 ) );
+
+        CursorCache parsed = new CursorCache( cache.asString() );
+
+        assertEquals( bytebuffer( first ), parsed.getCursorBytes( 1 ) );
+        assertEquals( bytebuffer( second ), parsed.getCursorBytes( -300 ) );
+        assertEquals( 0, parsed.getCursorBytes( Integer.MIN_VALUE ).remaining() );
+        assertNull( parsed.getCursorBytes( 2 ) );
+    }
+
+
+    @Test
+    public void allEmpty() {
+        CursorCache cache = new CursorCache();
+        assertNull( cache.asString() );
+
+        cache.setNextCursor( 1, ByteBuffer.allocate( 0 ) );
+        cache.setNextCursor( 2, ByteBuffer.allocate( 0 ) );
+        assertNull( cache.asString() );
+    }
+
+
+    @Test
+    public void compressedRoundTrip() {
+        UUID id = UUIDUtils.newTimeUUID();
+
+        CursorCache cache = new CursorCache();
+
+        for ( int i = 0; i < 100; i++ ) {
+            cache.setNextCursor( i * 31, bytebuffer( id ) );
+        }
+
+        String cursor = cache.asString();
+
+        // 100 slices of 16 bytes each, the repeated uuid must deflate
+        assertTrue( cursor.length() < 1600 );
+
+        CursorCache parsed = new CursorCache( cursor );
+
+        for ( int i = 0; i < 100; i++ ) {
+            assertEquals( bytebuffer( id ), parsed.getCursorBytes( i * 31 ) );
+        }
+    }
+
+
+    @Test
+    public void legacyCursor() {
+        UUID first = UUIDUtils.newTimeUUID();
+
+        String legacy = "12:" + encodeBase64URLSafeString( bytebuffer( first ).array() ) + "|-7:";
+
+        CursorCache parsed = new CursorCache( encodeBase64URLSafeString( legacy.getBytes() ) );
+
+        assertEquals( bytebuffer( first ), parsed.getCursorBytes( 12 ) );
+        assertEquals( 0, parsed.getCursorBytes( -7 ).remaining() );
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedCursor() {
+        CursorCache cache = new CursorCache();
+        cache.setNextCursor( 1, bytebuffer( UUIDUtils.newTimeUUID() ) );
+
+        String cursor = cache.asString();
+
+        new CursorCache( cursor.substring( 0, cursor.length() - 8 ) );
+    }
+}
@@ -44,6 +44,7 @@ import org.apache.usergrid.persistence.cassandra.util.TraceTagReporter;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -93,6 +94,24 @@ public class EntityManagerFactoryImplIT extends AbstractCoreIT {
     }
 
 
+    @Test
+    public void lookupApplicationAfterInvalidate() throws Exception {
+        UUID applicationId = emf.createApplication( "testOrganization", "lookupAfterInvalidate" );
+
+        assertEquals( applicationId, emf.lookupApplication( "testOrganization/lookupAfterInvalidate" ) );
+        assertEquals( applicationId, emf.lookupApplication( "TESTORGANIZATION/lookupAfterInvalidate" ) );
+
+        EntityManager em = emf.getEntityManager( applicationId );
+        assertTrue( em == emf.getEntityManager( applicationId ) );
+
+        emf.invalidateApplication( applicationId );
+
+        assertFalse( em == emf.getEntityManager( applicationId ) );
+        assertEquals( applicationId, emf.lookupApplication( "testOrganization/lookupAfterInvalidate" ) );
+        assertNull( emf.lookupApplication( "testOrganization/lookupAfterInvalidateMissing" ) );
+    }
+
+
     @Test
     @Ignore("Fix this EntityManagerFactoryImplIT.testCreateAndGet:105->createApplication:90 » ApplicationAlreadyExists")
     public void testCreateAndGet() throws Exception {
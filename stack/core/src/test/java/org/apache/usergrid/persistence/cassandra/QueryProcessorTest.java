@@ -18,6 +18,7 @@ package org.apache.usergrid.persistence.cassandra;
 
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.UUID;
 
@@ -35,10 +36,12 @@ import org.apache.usergrid.persistence.query.ir.OrderByNode;
 import org.apache.usergrid.persistence.query.ir.QueryNode;
 import org.apache.usergrid.persistence.query.ir.QuerySlice;
 import org.apache.usergrid.persistence.query.ir.SliceNode;
+import org.apache.usergrid.persistence.query.ir.TermsNode;
 import org.apache.usergrid.persistence.query.ir.WithinNode;
 import org.apache.usergrid.persistence.query.tree.QueryFilterLexer;
 import org.apache.usergrid.persistence.query.tree.QueryFilterParser;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -194,11 +197,12 @@ public class QueryProcessorTest {
 
         QueryProcessor processor = new QueryProcessor( query, null, null, null );
 
-        SliceNode node = ( SliceNode ) processor.getFirstNode();
+        TermsNode node = ( TermsNode ) processor.getFirstNode();
 
-        Iterator<QuerySlice> slices = node.getAllSlices().iterator();
+        assertEquals( "a.keywords", node.getPropertyName() );
+        assertEquals( asList( "foo" ), new ArrayList<String>( node.getTerms() ) );
 
-        QuerySlice slice = slices.next();
+        QuerySlice slice = node.getSlice( "foo" );
 
         assertEquals( "a.keywords", slice.getPropertyName() );
 
@@ -223,11 +227,12 @@ public class QueryProcessorTest {
 
         QueryProcessor processor = new QueryProcessor( query, null, null, null );
 
-        SliceNode node = ( SliceNode ) processor.getFirstNode();
+        TermsNode node = ( TermsNode ) processor.getFirstNode();
 
-        Iterator<QuerySlice> slices = node.getAllSlices().iterator();
+        assertEquals( "a.keywords", node.getPropertyName() );
+        assertEquals( asList( "foo" ), new ArrayList<String>( node.getTerms() ) );
 
-        QuerySlice slice = slices.next();
+        QuerySlice slice = node.getSlice( "foo" );
 
         assertEquals( "a.keywords", slice.getPropertyName() );
 
@@ -239,6 +244,87 @@ public class QueryProcessorTest {
     }
 
 
+    @Test
+    public void containsWords() throws Exception {
+        String queryString = "select * where a contains 'Quick brown foxes'";
+
+        ANTLRStringStream in = new ANTLRStringStream( queryString );
+        QueryFilterLexer lexer = new QueryFilterLexer( in );
+        TokenRewriteStream tokens = new TokenRewriteStream( lexer );
+        QueryFilterParser parser = new QueryFilterParser( tokens );
+
+        Query query = parser.ql().query;
+
+        QueryProcessor processor = new QueryProcessor( query, null, null, null );
+
+        TermsNode node = ( TermsNode ) processor.getFirstNode();
+
+        assertEquals( "a.keywords", node.getPropertyName() );
+        assertEquals( asList( "quick", "brown", "foxes" ), new ArrayList<String>( node.getTerms() ) );
+        assertEquals( 3, node.getCount() );
+
+        QuerySlice slice = node.getSlice( "brown" );
+
+        assertEquals( "a.keywords", slice.getPropertyName() );
+        assertEquals( "brown", slice.getStart().getValue() );
+        assertEquals( "brown", slice.getFinish().getValue() );
+    }
+
+
+    @Test
+    public void containsAndSameProperty() throws Exception {
+        String queryString = "select * where a contains 'foo' and a contains 'bar' and b contains 'foo'";
+
+        ANTLRStringStream in = new ANTLRStringStream( queryString );
+        QueryFilterLexer lexer = new QueryFilterLexer( in );
+        TokenRewriteStream tokens = new TokenRewriteStream( lexer );
+        QueryFilterParser parser = new QueryFilterParser( tokens );
+
+        Query query = parser.ql().query;
+
+        QueryProcessor processor = new QueryProcessor( query, null, null, null );
+
+        AndNode node = ( AndNode ) processor.getFirstNode();
+
+        TermsNode left = ( TermsNode ) node.getLeft();
+
+        assertEquals( "a.keywords", left.getPropertyName() );
+        assertEquals( asList( "foo", "bar" ), new ArrayList<String>( left.getTerms() ) );
+
+        TermsNode right = ( TermsNode ) node.getRight();
+
+        assertEquals( "b.keywords", right.getPropertyName() );
+        assertEquals( asList( "foo" ), new ArrayList<String>( right.getTerms() ) );
+    }
+
+
+    @Test
+    public void containsOrNot() throws Exception {
+        String queryString = "select * where a contains 'foo' or not a contains 'bar'";
+
+        ANTLRStringStream in = new ANTLRStringStream( queryString );
+        QueryFilterLexer lexer = new QueryFilterLexer( in );
+        TokenRewriteStream tokens = new TokenRewriteStream( lexer );
+        QueryFilterParser parser = new QueryFilterParser( tokens );
+
+        Query query = parser.ql().query;
+
+        QueryProcessor processor = new QueryProcessor( query, null, null, null );
+
+        OrNode node = ( OrNode ) processor.getFirstNode();
+
+        TermsNode left = ( TermsNode ) node.getLeft();
+
+        assertEquals( asList( "foo" ), new ArrayList<String>( left.getTerms() ) );
+
+        NotNode not = ( NotNode ) node.getRight();
+
+        TermsNode subtract = ( TermsNode ) not.getSubtractNode();
+
+        assertEquals( asList( "bar" ), new ArrayList<String>( subtract.getTerms() ) );
+    }
+
+
     @Test
     public void containsRange() throws Exception, PersistenceException {
         String queryString = "select * where a contains 'foo*'";
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.geo;
+
+
+import java.util.List;
+
+import org.junit.Test;
+import org.apache.usergrid.persistence.geo.model.BoundingBox;
+import org.apache.usergrid.persistence.geo.model.Point;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class GeocellUtilsTest {
+
+    private static final Point SAN_FRANCISCO = new Point( 37.774277, -122.404744 );
+
+
+    @Test
+    public void minAndMaxDistance() {
+        String cell = GeocellUtils.compute( SAN_FRANCISCO, 6 );
+
+        assertEquals( 0, GeocellUtils.minDistance( cell, SAN_FRANCISCO ), 0 );
+
+        // every corner of the cell is within the max distance
+        BoundingBox bbox = GeocellUtils.computeBox( cell );
+        double max = GeocellUtils.maxDistance( cell, SAN_FRANCISCO );
+        assertTrue( GeocellUtils.distance( SAN_FRANCISCO, bbox.getNorthEast() ) <= max );
+        assertTrue( GeocellUtils.distance( SAN_FRANCISCO, bbox.getSouthWest() ) <= max );
+
+        // a cell on the other side of the world is at least as far as its nearest corner
+        Point shanghai = new Point( 31.1, 121.2 );
+        String farCell = GeocellUtils.compute( shanghai, 6 );
+        double min = GeocellUtils.minDistance( farCell, SAN_FRANCISCO );
+        assertTrue( min > 0 );
+        assertTrue( min <= GeocellUtils.distance( SAN_FRANCISCO, shanghai ) );
+        assertTrue( GeocellUtils.maxDistance( farCell, SAN_FRANCISCO ) >= GeocellUtils
+                .distance( SAN_FRANCISCO, shanghai ) );
+    }
+
+
+    @Test
+    public void minDistanceBesideHighLatitudeCell() {
+        String cell = GeocellUtils.compute( new Point( 70, 20 ), 4 );
+        BoundingBox bbox = GeocellUtils.computeBox( cell );
+
+        // east of the cell within its latitudes, the nearest point of the cell is poleward of the point's latitude
+        Point point = new Point( ( bbox.getNorth() + bbox.getSouth() ) / 2, bbox.getEast() + 5 );
+        double min = GeocellUtils.minDistance( cell, point );
+        assertTrue( min > 0 );
+
+        double nearest = Double.MAX_VALUE;
+        for ( int i = 0; i <= 100; i++ ) {
+            double lat = bbox.getSouth() + ( bbox.getNorth() - bbox.getSouth() ) * i / 100;
+            double distance = GeocellUtils.distance( point.getLat(), point.getLon(), lat, bbox.getEast() );
+            assertTrue( min <= distance + 1 );
+            nearest = Math.min( nearest, distance );
+        }
+
+        assertEquals( nearest, min, 1 );
+        assertTrue( min < GeocellUtils.distance( point.getLat(), point.getLon(), point.getLat(), bbox.getEast() ) );
+    }
+
+
+    @Test
+    public void boundingBox() {
+        BoundingBox bbox = GeocellUtils.boundingBox( SAN_FRANCISCO, 1000 );
+
+        assertTrue( bbox.getNorth() > SAN_FRANCISCO.getLat() );
+        assertTrue( bbox.getSouth() < SAN_FRANCISCO.getLat() );
+        assertTrue( bbox.getEast() > SAN_FRANCISCO.getLon() );
+        assertTrue( bbox.getWest() < SAN_FRANCISCO.getLon() );
+
+        Point north = new Point( bbox.getNorth(), SAN_FRANCISCO.getLon() );
+        assertEquals( 1000, GeocellUtils.distance( SAN_FRANCISCO, north ), 1 );
+
+        // crosses the antimeridian
+        BoundingBox fiji = GeocellUtils.boundingBox( new Point( -17.7, 179.99 ), 10000 );
+        assertTrue( fiji.getEast() < fiji.getWest() );
+
+        // contains the pole
+        assertNull( GeocellUtils.boundingBox( new Point( 89.99, 0 ), 10000 ) );
+        assertNull( GeocellUtils.boundingBox( SAN_FRANCISCO, Integer.MAX_VALUE ) );
+    }
+
+
+    @Test
+    public void children() {
+        List<String> top = GeocellUtils.children( "" );
+        assertEquals( 16, top.size() );
+
+        String cell = GeocellUtils.compute( SAN_FRANCISCO, 4 );
+        List<String> children = GeocellUtils.children( cell );
+        assertEquals( 16, children.size() );
+        assertTrue( children.contains( GeocellUtils.compute( SAN_FRANCISCO, 5 ) ) );
+    }
+}
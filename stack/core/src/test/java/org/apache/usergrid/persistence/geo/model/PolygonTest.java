@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.geo.model;
+
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class PolygonTest {
+
+    @Test
+    public void containsConcave() {
+        // an L shape
+        Polygon polygon = new Polygon( Arrays.asList( new Point( 0, 0 ), new Point( 0, 10 ), new Point( 5, 10 ),
+                new Point( 5, 5 ), new Point( 10, 5 ), new Point( 10, 0 ) ) );
+
+        assertTrue( polygon.contains( 2, 2 ) );
+        assertTrue( polygon.contains( 2, 8 ) );
+        assertTrue( polygon.contains( 8, 2 ) );
+        assertFalse( polygon.contains( 8, 8 ) );
+        assertFalse( polygon.contains( -1, 2 ) );
+        assertFalse( polygon.contains( 2, 11 ) );
+
+        BoundingBox bbox = polygon.getBoundingBox();
+
+        assertEquals( 10, bbox.getNorth(), 0 );
+        assertEquals( 10, bbox.getEast(), 0 );
+        assertEquals( 0, bbox.getSouth(), 0 );
+        assertEquals( 0, bbox.getWest(), 0 );
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooFewVertices() {
+        new Polygon( Arrays.asList( new Point( 0, 0 ), new Point( 0, 10 ) ) );
+    }
+
+
+    @Test
+    public void boxContains() {
+        BoundingBox bbox = new BoundingBox( 37.8, -122.3, 37.7, -122.5 );
+
+        assertTrue( bbox.contains( 37.75, -122.4 ) );
+        assertTrue( bbox.contains( 37.8, -122.3 ) );
+        assertFalse( bbox.contains( 37.85, -122.4 ) );
+        assertFalse( bbox.contains( 37.75, -122.2 ) );
+    }
+
+
+    @Test
+    public void boxContainsAcrossAntimeridian() {
+        BoundingBox bbox = new BoundingBox( 10, -170, -10, 170 );
+
+        assertTrue( bbox.contains( 0, 175 ) );
+        assertTrue( bbox.contains( 0, -175 ) );
+        assertFalse( bbox.contains( 0, 0 ) );
+        assertFalse( bbox.contains( 20, 175 ) );
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.usergrid.persistence.query.ir.OrNode;
 import antlr.NoViableAltException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -394,6 +395,51 @@ public class GrammarTreeTest {
     }
 
 
+    @Test
+    public void selectGeoBox() throws RecognitionException {
+        String queryString = "select * where a within box 37.7, -122.5, 37.8, -122";
+
+        ANTLRStringStream in = new ANTLRStringStream( queryString );
+        QueryFilterLexer lexer = new QueryFilterLexer( in );
+        TokenRewriteStream tokens = new TokenRewriteStream( lexer );
+        QueryFilterParser parser = new QueryFilterParser( tokens );
+
+        Query query = parser.ql().query;
+
+        WithinShapeOperand operand = ( WithinShapeOperand ) query.getRootOperand();
+
+        assertEquals( "a", operand.getProperty().getValue() );
+        assertEquals( WithinShapeOperand.BOX, operand.getShape() );
+        assertEquals( 4, operand.getCoordinates().size() );
+        assertEquals( 37.7f, operand.getCoordinates().get( 0 ).getFloatValue(), 0 );
+        assertEquals( -122.5f, operand.getCoordinates().get( 1 ).getFloatValue(), 0 );
+        assertEquals( 37.8f, operand.getCoordinates().get( 2 ).getFloatValue(), 0 );
+        assertEquals( -122, operand.getCoordinates().get( 3 ).getFloatValue(), 0 );
+    }
+
+
+    @Test
+    public void selectGeoPolygon() throws RecognitionException {
+        String queryString = "select * where a within polygon 0, 0, 10, 0, 10, 10, 0, 10 and b = 1";
+
+        ANTLRStringStream in = new ANTLRStringStream( queryString );
+        QueryFilterLexer lexer = new QueryFilterLexer( in );
+        TokenRewriteStream tokens = new TokenRewriteStream( lexer );
+        QueryFilterParser parser = new QueryFilterParser( tokens );
+
+        Query query = parser.ql().query;
+
+        AndOperand and = ( AndOperand ) query.getRootOperand();
+
+        WithinShapeOperand operand = ( WithinShapeOperand ) and.getLeft();
+
+        assertEquals( "a", operand.getProperty().getValue() );
+        assertEquals( WithinShapeOperand.POLYGON, operand.getShape() );
+        assertEquals( 8, operand.getCoordinates().size() );
+        assertEquals( 10, operand.getCoordinates().get( 2 ).getFloatValue(), 0 );
+    }
+
+
     @Test
     public void selectDistance() throws RecognitionException {
         String queryString = "select * where a contains 'foo'";
@@ -430,6 +476,41 @@ public class GrammarTreeTest {
     }
 
 
+    @Test
+    public void selectCount() throws RecognitionException {
+
+        String queryString = "select count(*) where a = 1 or b > 2";
+
+        ANTLRStringStream in = new ANTLRStringStream( queryString );
+        QueryFilterLexer lexer = new QueryFilterLexer( in );
+        TokenRewriteStream tokens = new TokenRewriteStream( lexer );
+        QueryFilterParser parser = new QueryFilterParser( tokens );
+
+        Query query = parser.ql().query;
+
+        assertTrue( query.isCountOnly() );
+        assertTrue( query.getSelectSubjects().isEmpty() );
+        assertTrue( query.getRootOperand() instanceof OrOperand );
+    }
+
+
+    @Test
+    public void selectCountProperty() throws RecognitionException {
+
+        String queryString = "select count where count > 2";
+
+        ANTLRStringStream in = new ANTLRStringStream( queryString );
+        QueryFilterLexer lexer = new QueryFilterLexer( in );
+        TokenRewriteStream tokens = new TokenRewriteStream( lexer );
+        QueryFilterParser parser = new QueryFilterParser( tokens );
+
+        Query query = parser.ql().query;
+
+        assertFalse( query.isCountOnly() );
+        assertTrue( query.getSelectSubjects().contains( "count" ) );
+    }
+
+
     @Test
     public void selectRename() throws RecognitionException {
 
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo;
+
+
+import java.util.Map;
+
+
+/**
+ * The errors of the documents of a bulk insert or multi update that failed validation and were not written, reported
+ * back to the client by getLastError. A failure writing the batch itself is reported as is.
+ */
+public class BulkWriteException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int written;
+    private final Map<Integer, Exception> errors;
+
+
+    public BulkWriteException( int written, Map<Integer, Exception> errors ) {
+        super( errors.size() + " of " + ( written + errors.size() ) + " documents could not be written: "
+                + errors.values().iterator().next().getMessage() );
+        this.written = written;
+        this.errors = errors;
+    }
+
+
+    /** @return the number of documents that were written */
+    public int getWritten() {
+        return written;
+    }
+
+
+    /** @return the errors of the documents that were not written, keyed by their position in the batch */
+    public Map<Integer, Exception> getErrors() {
+        return errors;
+    }
+}
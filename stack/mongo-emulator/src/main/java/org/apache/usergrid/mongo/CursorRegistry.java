@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo;
+
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.persistence.Query;
+
+
+/**
+ * The open cursors of a connection. A cursor keeps the query and the native cursor of its next page, so OP_GET_MORE
+ * can continue where the last reply stopped. Cursors that are not read for the idle timeout are dropped.
+ */
+public class CursorRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger( CursorRegistry.class );
+
+    /** Mongo drops idle cursors after 10 minutes */
+    public static final long DEFAULT_IDLE_TIMEOUT = 10 * 60 * 1000;
+
+    private final Map<Long, ServerCursor> cursors = new ConcurrentHashMap<Long, ServerCursor>();
+    private final Random random = new Random();
+    private final long idleTimeout;
+
+
+    public CursorRegistry() {
+        this( DEFAULT_IDLE_TIMEOUT );
+    }
+
+
+    public CursorRegistry( long idleTimeout ) {
+        this.idleTimeout = idleTimeout;
+    }
+
+
+    /**
+     * Open a cursor for the rest of the query's results
+     *
+     * @param query the query, with the native cursor of the next page set
+     * @param returned the number of documents already returned
+     *
+     * @return the id of the cursor, never 0
+     */
+    public long register( UUID applicationId, String collectionName, Query query, int returned ) {
+        expireIdle();
+
+        long cursorId;
+
+        do {
+            cursorId = random.nextLong() & Long.MAX_VALUE;
+        }
+        while ( cursorId == 0 || cursors.containsKey( cursorId ) );
+
+        cursors.put( cursorId, new ServerCursor( applicationId, collectionName, query, returned ) );
+
+        return cursorId;
+    }
+
+
+    /** @return the cursor, or null when it was exhausted, killed or expired */
+    public ServerCursor get( long cursorId ) {
+        expireIdle();
+
+        ServerCursor cursor = cursors.get( cursorId );
+
+        if ( cursor != null ) {
+            cursor.touch();
+        }
+
+        return cursor;
+    }
+
+
+    public void remove( long cursorId ) {
+        cursors.remove( cursorId );
+    }
+
+
+    public void kill( Collection<Long> cursorIds ) {
+        for ( Long cursorId : cursorIds ) {
+            cursors.remove( cursorId );
+        }
+    }
+
+
+    public void clear() {
+        cursors.clear();
+    }
+
+
+    public int size() {
+        return cursors.size();
+    }
+
+
+    private void expireIdle() {
+        long now = System.currentTimeMillis();
+
+        for ( Iterator<Map.Entry<Long, ServerCursor>> i = cursors.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<Long, ServerCursor> entry = i.next();
+
+            if ( now - entry.getValue().lastAccess > idleTimeout ) {
+                logger.debug( "Dropping idle cursor {}", entry.getKey() );
+                i.remove();
+            }
+        }
+    }
+
+
+    /** The state of a query between its pages */
+    public static class ServerCursor {
+
+        private final UUID applicationId;
+        private final String collectionName;
+        private final Query query;
+        private int returned;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+
+        ServerCursor( UUID applicationId, String collectionName, Query query, int returned ) {
+            this.applicationId = applicationId;
+            this.collectionName = collectionName;
+            this.query = query;
+            this.returned = returned;
+        }
+
+
+        public UUID getApplicationId() {
+            return applicationId;
+        }
+
+
+        public String getCollectionName() {
+            return collectionName;
+        }
+
+
+        /** @return the query, with the native cursor of the next page set */
+        public Query getQuery() {
+            return query;
+        }
+
+
+        /** @return the number of documents returned so far */
+        public int getReturned() {
+            return returned;
+        }
+
+
+        /** Move past a page of results */
+        public void advance( int count, String nextCursor ) {
+            returned += count;
+            query.setCursor( nextCursor );
+        }
+
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+}
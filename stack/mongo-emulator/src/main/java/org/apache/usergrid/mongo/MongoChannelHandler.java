@@ -18,6 +18,7 @@ package org.apache.usergrid.mongo;
 
 
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
@@ -26,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.management.ManagementService;
 import org.apache.usergrid.mongo.protocol.Message;
 import org.apache.usergrid.mongo.protocol.OpCrud;
+import org.apache.usergrid.mongo.protocol.OpKillCursors;
 import org.apache.usergrid.mongo.protocol.OpReply;
 import org.apache.usergrid.persistence.EntityManagerFactory;
 import org.apache.usergrid.services.ServiceManagerFactory;
@@ -45,6 +47,9 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
     private final ManagementService management;
     private final SessionsSecurityManager securityManager;
 
+    /** The cursors this connection opened */
+    private final CursorRegistry cursors = new CursorRegistry();
+
     Subject subject = null;
 
 
@@ -84,6 +89,11 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
     }
 
 
+    public CursorRegistry getCursors() {
+        return cursors;
+    }
+
+
     @Override
     public void messageReceived( ChannelHandlerContext ctx, MessageEvent e ) {
 
@@ -102,9 +112,15 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
             }
 
             if ( message != null ) {
-                logger.info( ">>> {}\n", message );
+                if ( logger.isDebugEnabled() ) {
+                    logger.debug( ">>> {}\n", message );
+                }
+
                 OpReply reply = handleMessage( ctx, e, message );
-                logger.info( "<<< {}\n", reply );
+
+                if ( logger.isDebugEnabled() ) {
+                    logger.debug( "<<< {}\n", reply );
+                }
 
                 if ( reply != null ) {
                     e.getChannel().write( reply );
@@ -126,6 +142,13 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
     }
 
 
+    @Override
+    public void channelClosed( ChannelHandlerContext ctx, ChannelStateEvent e ) throws Exception {
+        cursors.clear();
+        super.channelClosed( ctx, e );
+    }
+
+
     @Override
     public void exceptionCaught( ChannelHandlerContext ctx, ExceptionEvent e ) {
         logger.warn( "Unexpected exception from downstream.", e.getCause() );
@@ -139,6 +162,12 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
             return ( ( OpCrud ) message ).doOp( this, ctx, e );
         }
 
+        // the client is done with the cursors, mongo doesn't reply to this
+        if ( message instanceof OpKillCursors ) {
+            cursors.kill( ( ( OpKillCursors ) message ).getCursorIDs() );
+            return null;
+        }
+
         OpReply reply = new OpReply( message );
         return reply;
     }
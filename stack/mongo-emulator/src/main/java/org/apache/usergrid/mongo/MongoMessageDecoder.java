@@ -43,7 +43,7 @@ public class MongoMessageDecoder extends FrameDecoder {
     protected Object decode( ChannelHandlerContext ctx, Channel channel, ChannelBuffer buf ) throws Exception {
 
         if ( buf.readableBytes() < 4 ) {
-            logger.info( "Needed at least 4 bytes, only " + buf.readableBytes() + " available" );
+            logger.debug( "Needed at least 4 bytes, only {} available", buf.readableBytes() );
             return null;
         }
 
@@ -57,7 +57,7 @@ public class MongoMessageDecoder extends FrameDecoder {
         }
 
         if ( buf.readableBytes() < length ) {
-            logger.info( "Needed " + length + " bytes, only " + buf.readableBytes() + " available" );
+            logger.debug( "Needed {} bytes, only {} available", length, buf.readableBytes() );
             return null;
         }
 
@@ -17,7 +17,10 @@
 package org.apache.usergrid.mongo;
 
 
+import java.nio.ByteOrder;
+
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.MessageEvent;
@@ -25,6 +28,7 @@ import org.jboss.netty.channel.SimpleChannelHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.usergrid.mongo.protocol.Message;
+import org.apache.usergrid.mongo.protocol.OpReply;
 
 
 public class MongoMessageEncoder extends SimpleChannelHandler {
@@ -32,15 +36,24 @@ public class MongoMessageEncoder extends SimpleChannelHandler {
     @SuppressWarnings("unused")
     private static final Logger logger = LoggerFactory.getLogger( MongoMessageEncoder.class );
 
+    /** Initial capacity of a reply buffer, enough for a handful of small documents */
+    private static final int REPLY_BUFFER_SIZE = 4096;
+
 
     @Override
     public void writeRequested( ChannelHandlerContext ctx, MessageEvent e ) {
 
-        // logger.info("Mongo message encoding...");
-
         Message message = ( Message ) e.getMessage();
 
-        ChannelBuffer buf = message.encode( null );
+        ChannelBuffer buf = null;
+
+        // replies are written in place, so hand them a buffer from the channel's factory that grows as they are
+        if ( message instanceof OpReply ) {
+            buf = ChannelBuffers.dynamicBuffer( ByteOrder.LITTLE_ENDIAN, REPLY_BUFFER_SIZE,
+                    ctx.getChannel().getConfig().getBufferFactory() );
+        }
+
+        buf = message.encode( buf );
 
         Channels.write( ctx, e.getFuture(), buf );
     }
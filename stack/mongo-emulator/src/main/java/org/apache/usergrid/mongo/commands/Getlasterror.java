@@ -17,8 +17,13 @@
 package org.apache.usergrid.mongo.commands;
 
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
+import org.apache.usergrid.mongo.BulkWriteException;
 import org.apache.usergrid.mongo.MongoChannelHandler;
 import org.apache.usergrid.mongo.protocol.OpQuery;
 import org.apache.usergrid.mongo.protocol.OpReply;
@@ -33,8 +38,22 @@ public class Getlasterror extends MongoCommand {
     public OpReply execute( MongoChannelHandler handler, ChannelHandlerContext ctx, MessageEvent e, OpQuery opQuery ) {
         OpReply reply = new OpReply( opQuery );
 
+        // some documents of a bulk write failed, report each of them
+        if ( ctx.getAttachment() instanceof BulkWriteException ) {
+            BulkWriteException bwe = ( BulkWriteException ) ctx.getAttachment();
+
+            List<Map<?, ?>> writeErrors = new ArrayList<Map<?, ?>>();
+
+            for ( Map.Entry<Integer, Exception> error : bwe.getErrors().entrySet() ) {
+                writeErrors.add(
+                        map( entry( "index", error.getKey() ), entry( "errmsg", error.getValue().getMessage() ) ) );
+            }
+
+            reply.addDocument( map( entry( "n", bwe.getWritten() ), entry( "connectionId", 20 ), entry( "wtime", 0 ),
+                    entry( "err", bwe.getMessage() ), entry( "writeErrors", writeErrors ), entry( "ok", 0.0 ) ) );
+        }
         // there's an error in the attachment
-        if ( ctx.getAttachment() instanceof Exception ) {
+        else if ( ctx.getAttachment() instanceof Exception ) {
             reply.addDocument( map( entry( "n", 0 ), entry( "connectionId", 20 ), entry( "wtime", 0 ),
                     entry( "err", ( ( Exception ) ctx.getAttachment() ).getMessage() ), entry( "ok", 0.0 ) ) );
         }
@@ -25,7 +25,6 @@ import java.util.UUID;
 import org.bson.BSONObject;
 import org.bson.BasicBSONObject;
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
 import org.slf4j.Logger;
@@ -33,7 +32,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.management.ApplicationInfo;
 import org.apache.usergrid.mongo.MongoChannelHandler;
 import org.apache.usergrid.mongo.query.MongoQueryParser;
-import org.apache.usergrid.mongo.utils.BSONUtils;
+import org.apache.usergrid.mongo.utils.BSONBuffer;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.Identifier;
 import org.apache.usergrid.persistence.Query;
@@ -90,7 +89,7 @@ public class OpDelete extends OpCrud {
         buffer.readInt();
         fullCollectionName = readCString( buffer );
         flags = buffer.readInt();
-        selector = BSONUtils.decoder().readObject( new ChannelBufferInputStream( buffer ) );
+        selector = BSONBuffer.readObject( buffer );
     }
 
 
@@ -23,11 +23,20 @@ import java.nio.ByteBuffer;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.mongo.CursorRegistry.ServerCursor;
 import org.apache.usergrid.mongo.MongoChannelHandler;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.persistence.Results;
+import org.apache.usergrid.security.shiro.utils.SubjectUtils;
 
 
 public class OpGetMore extends OpCrud {
 
+    private static final Logger logger = LoggerFactory.getLogger( OpGetMore.class );
+
     int numberToReturn;
     long cursorID;
 
@@ -97,7 +106,44 @@ public class OpGetMore extends OpCrud {
      */
     @Override
     public OpReply doOp( MongoChannelHandler handler, ChannelHandlerContext ctx, MessageEvent messageEvent ) {
-        return new OpReply( this );
+        OpReply reply = new OpReply( this );
+
+        ServerCursor cursor = handler.getCursors().get( cursorID );
+
+        if ( cursor == null || !SubjectUtils.getSubject().isAuthenticated() ) {
+            reply.setResponseFlags( reply.getResponseFlags() | OpReply.CURSOR_NOT_FOUND );
+            return reply;
+        }
+
+        Query query = cursor.getQuery();
+
+        if ( numberToReturn != 0 ) {
+            query.setLimit( Math.abs( numberToReturn ) );
+        }
+
+        reply.setStartingFrom( cursor.getReturned() );
+
+        try {
+            EntityManager em = handler.getEmf().getEntityManager( cursor.getApplicationId() );
+
+            Results results = em.searchCollection( em.getApplicationRef(), cursor.getCollectionName(), query );
+
+            OpQuery.addDocuments( reply, results );
+
+            if ( results.getCursor() == null ) {
+                handler.getCursors().remove( cursorID );
+            }
+            else {
+                cursor.advance( results.size(), results.getCursor() );
+                reply.setCursorID( cursorID );
+            }
+        }
+        catch ( Exception ex ) {
+            logger.error( "Unable to read the next page of cursor " + cursorID, ex );
+            handler.getCursors().remove( cursorID );
+        }
+
+        return reply;
     }
 
 
@@ -27,14 +27,14 @@ import org.bson.BSONObject;
 import org.bson.BasicBSONObject;
 import org.bson.types.ObjectId;
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.usergrid.management.ApplicationInfo;
+import org.apache.usergrid.mongo.BulkWriteException;
 import org.apache.usergrid.mongo.MongoChannelHandler;
-import org.apache.usergrid.mongo.utils.BSONUtils;
+import org.apache.usergrid.mongo.utils.BSONBuffer;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.Identifier;
 import org.apache.usergrid.security.shiro.utils.SubjectUtils;
@@ -96,7 +96,7 @@ public class OpInsert extends OpCrud {
         fullCollectionName = readCString( buffer );
 
         while ( buffer.readable() ) {
-            documents.add( BSONUtils.decoder().readObject( new ChannelBufferInputStream( buffer ) ) );
+            documents.add( BSONBuffer.readObject( buffer ) );
         }
     }
 
@@ -146,23 +146,32 @@ public class OpInsert extends OpCrud {
 
         EntityManager em = handler.getEmf().getEntityManager( application.getId() );
 
+        List<Map<String, Object>> entities = new ArrayList<Map<String, Object>>( documents.size() );
 
         for ( BSONObject document : documents ) {
-            try {
-                //special case to serialize mongo ObjectId if required
-                Object id = document.get( "_id" );
+            //special case to serialize mongo ObjectId if required
+            Object id = document.get( "_id" );
 
-                if ( id instanceof ObjectId ) {
-                    document.put( "_id", ( ( ObjectId ) id ).toStringMongod() );
-                }
-
-                em.create( getCollectionName(), document.toMap() );
+            if ( id instanceof ObjectId ) {
+                document.put( "_id", ( ( ObjectId ) id ).toStringMongod() );
             }
-            catch ( Exception e ) {
-                logger.error( "Unable to insert mongo document {}", document, e );
-                ctx.setAttachment( e );
+
+            entities.add( document.toMap() );
+        }
+
+        try {
+            //the whole message is written with one mutator, documents that fail are reported by getLastError
+            Map<Integer, Exception> errors = em.createBatch( getCollectionName(), entities );
+
+            if ( !errors.isEmpty() ) {
+                logger.error( "Unable to insert {} of {} mongo documents", errors.size(), documents.size() );
+                ctx.setAttachment( new BulkWriteException( documents.size() - errors.size(), errors ) );
             }
         }
+        catch ( Exception e ) {
+            logger.error( "Unable to insert mongo documents {}", documents, e );
+            ctx.setAttachment( e );
+        }
 
         //insert never returns a response in mongo
         return null;
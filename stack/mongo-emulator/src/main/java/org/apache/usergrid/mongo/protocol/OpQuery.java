@@ -20,16 +20,17 @@ package org.apache.usergrid.mongo.protocol;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
 
 import org.bson.BSONObject;
 import org.bson.BasicBSONObject;
 import org.bson.types.ObjectId;
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
 import org.slf4j.Logger;
@@ -39,7 +40,7 @@ import org.apache.usergrid.management.UserInfo;
 import org.apache.usergrid.mongo.MongoChannelHandler;
 import org.apache.usergrid.mongo.commands.MongoCommand;
 import org.apache.usergrid.mongo.query.MongoQueryParser;
-import org.apache.usergrid.mongo.utils.BSONUtils;
+import org.apache.usergrid.mongo.utils.BSONBuffer;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.Identifier;
@@ -68,6 +69,9 @@ public class OpQuery extends OpCrud {
     BSONObject query;
     BSONObject returnFieldSelector;
 
+    /** The batch size when the client doesn't ask for one */
+    static final int DEFAULT_BATCH_SIZE = 30;
+
     static Set<String> operators = new HashSet<String>();
 
 
@@ -168,10 +172,10 @@ public class OpQuery extends OpCrud {
         fullCollectionName = readCString( buffer );
         numberToSkip = buffer.readInt();
         numberToReturn = buffer.readInt();
-        query = BSONUtils.decoder().readObject( new ChannelBufferInputStream( buffer ) );
+        query = BSONBuffer.readObject( buffer );
         if ( buffer.readable() ) {
-            returnFieldSelector = BSONUtils.decoder().readObject( new ChannelBufferInputStream( buffer ) );
-            logger.info( "found fieldSeclector: {}", returnFieldSelector );
+            returnFieldSelector = BSONBuffer.readObject( buffer );
+            logger.debug( "found fieldSeclector: {}", returnFieldSelector );
         }
     }
 
@@ -239,7 +243,7 @@ public class OpQuery extends OpCrud {
             MongoCommand command = MongoCommand.getCommand( commandName );
 
             if ( command != null ) {
-                logger.info( "found command {} from name {}", command.getClass().getName(), commandName );
+                logger.debug( "found command {} from name {}", command.getClass().getName(), commandName );
                 return command.execute( handler, ctx, messageEvent, this );
             }
             else {
@@ -378,7 +382,7 @@ public class OpQuery extends OpCrud {
 
 
     private OpReply handleQuery( MongoChannelHandler handler ) {
-        logger.info( "Handling a query... " );
+        logger.debug( "Handling a query... " );
         OpReply reply = new OpReply( this );
 
         ApplicationInfo application = SubjectUtils.getApplication( Identifier.from( getDatabaseName() ) );
@@ -386,46 +390,30 @@ public class OpQuery extends OpCrud {
             return reply;
         }
 
-        int count = getNumberToReturn();
-        if ( count <= 0 ) {
-            count = 30;
+        // a negative or single document batch asks for the results without a cursor
+        boolean singleBatch = numberToReturn < 0 || numberToReturn == 1;
+
+        int count = Math.abs( getNumberToReturn() );
+        if ( count == 0 ) {
+            count = DEFAULT_BATCH_SIZE;
         }
 
         EntityManager em = handler.getEmf().getEntityManager( application.getId() );
 
         try {
-            Results results = null;
-            Query q = MongoQueryParser.toNativeQuery( query, returnFieldSelector, numberToReturn );
-            if ( q != null ) {
-                results = em.searchCollection( em.getApplicationRef(), getCollectionName(), q );
+            Query q = MongoQueryParser.toNativeQuery( query, returnFieldSelector, count );
+            if ( q == null ) {
+                q = new Query().withLimit( count );
             }
-            else {
-                results = em.getCollection( em.getApplicationRef(), getCollectionName(), null, count,
-                        Results.Level.ALL_PROPERTIES, false );
-            }
-            if ( !results.isEmpty() ) {
-                for ( Entity entity : results.getEntities() ) {
-
-                    Object savedId = entity.getProperty( "_id" );
-                    Object mongoId = null;
-
-                    //try to parse it into an ObjectId
-                    if ( savedId == null ) {
-                        mongoId = entity.getUuid();
-                    }
-                    else {
-                        try {
-                            mongoId = new ObjectId( savedId.toString() );
-                            //it's not a mongo Id, use it as is
-                        }
-                        catch ( IllegalArgumentException iae ) {
-                            mongoId = savedId;
-                        }
-                    }
-
-                    reply.addDocument( map( entry( "_id", mongoId ), toJsonMap( entity ),
-                            entry( Schema.PROPERTY_UUID, entity.getUuid().toString() ) ) );
-                }
+
+            Results results = em.searchCollection( em.getApplicationRef(), getCollectionName(), q );
+
+            addDocuments( reply, results );
+
+            if ( !singleBatch && results.getCursor() != null ) {
+                q.setCursor( results.getCursor() );
+                reply.setCursorID( handler.getCursors()
+                                          .register( application.getId(), getCollectionName(), q, results.size() ) );
             }
         }
         catch ( Exception ex ) {
@@ -435,6 +423,63 @@ public class OpQuery extends OpCrud {
     }
 
 
+    /** Add the entities of the results to the reply as documents */
+    static void addDocuments( OpReply reply, Results results ) {
+        if ( results.isEmpty() ) {
+            return;
+        }
+
+        for ( Entity entity : results.getEntities() ) {
+
+            Object savedId = entity.getProperty( "_id" );
+            Object mongoId = null;
+
+            //try to parse it into an ObjectId
+            if ( savedId == null ) {
+                mongoId = entity.getUuid();
+            }
+            else {
+                try {
+                    mongoId = new ObjectId( savedId.toString() );
+                    //it's not a mongo Id, use it as is
+                }
+                catch ( IllegalArgumentException iae ) {
+                    mongoId = savedId;
+                }
+            }
+
+            // copy the properties straight into the document instead of round tripping the entity through json
+            BSONObject document = new BasicBSONObject( "_id", mongoId );
+
+            for ( Map.Entry<String, Object> property : entity.getProperties().entrySet() ) {
+                document.put( property.getKey(), toDocumentValue( property.getValue() ) );
+            }
+
+            document.put( Schema.PROPERTY_UUID, entity.getUuid().toString() );
+
+            reply.addDocument( document );
+        }
+    }
+
+
+    /**
+     * @return the value the json mapping of the entity produced for a property. Strings, numbers and booleans are
+     *         used as they are, uuids become strings, and anything else, such as a date or a map or list that may
+     *         hold uuids and dates, still goes through the json mapping, so clients see the types they saw before.
+     */
+    static Object toDocumentValue( Object value ) {
+        if ( value == null || value instanceof String || value instanceof Number || value instanceof Boolean ) {
+            return value;
+        }
+
+        if ( value instanceof UUID ) {
+            return value.toString();
+        }
+
+        return toJsonMap( Collections.singletonMap( "value", value ) ).get( "value" );
+    }
+
+
     /* (non-Javadoc)
      * @see java.lang.Object#toString()
      */
@@ -18,7 +18,7 @@ package org.apache.usergrid.mongo.protocol;
 
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -26,12 +26,15 @@ import java.util.Map;
 import org.bson.BSONObject;
 import org.bson.BasicBSONObject;
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBufferInputStream;
-import org.apache.usergrid.mongo.utils.BSONUtils;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.apache.usergrid.mongo.utils.BSONBuffer;
 
 
 public class OpReply extends Message {
 
+    /** Response flag of a get more for a cursor the server doesn't have */
+    public static final int CURSOR_NOT_FOUND = 1;
+
     int responseFlags = 8;
     long cursorID;
     int startingFrom;
@@ -128,20 +131,23 @@ public class OpReply extends Message {
         numberReturned = buffer.readInt();
 
         while ( buffer.readable() ) {
-            documents.add( BSONUtils.decoder().readObject( new ChannelBufferInputStream( buffer ) ) );
+            documents.add( BSONBuffer.readObject( buffer ) );
         }
     }
 
 
+    /**
+     * Writes the documents straight into the buffer and fills in the message length afterwards, so a reply is never
+     * serialized into intermediate byte arrays. A buffer passed in must be dynamic.
+     */
     @Override
     public ChannelBuffer encode( ChannelBuffer buffer ) {
-        int l = 36; // (9 ints * 4 bytes)
-
-        List<ByteBuffer> encodedDocuments = encodeDocuments( documents );
-        l += buffersSize( encodedDocuments );
-        numberReturned = encodedDocuments.size();
+        if ( buffer == null ) {
+            buffer = ChannelBuffers.dynamicBuffer( ByteOrder.LITTLE_ENDIAN, 256 );
+        }
 
-        messageLength = l;
+        int start = buffer.writerIndex();
+        numberReturned = documents.size();
 
         buffer = super.encode( buffer );
 
@@ -150,10 +156,13 @@ public class OpReply extends Message {
         buffer.writeInt( startingFrom );
         buffer.writeInt( numberReturned );
 
-        for ( ByteBuffer d : encodedDocuments ) {
-            buffer.writeBytes( d );
+        for ( BSONObject d : documents ) {
+            BSONBuffer.writeObject( buffer, d );
         }
 
+        messageLength = buffer.writerIndex() - start;
+        buffer.setInt( start, messageLength );
+
         return buffer;
     }
 
@@ -19,21 +19,21 @@ package org.apache.usergrid.mongo.protocol;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.bson.BSONObject;
 import org.bson.BasicBSONObject;
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.usergrid.management.ApplicationInfo;
+import org.apache.usergrid.mongo.BulkWriteException;
 import org.apache.usergrid.mongo.MongoChannelHandler;
 import org.apache.usergrid.mongo.query.MongoQueryParser;
-import org.apache.usergrid.mongo.utils.BSONUtils;
-import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.mongo.utils.BSONBuffer;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.Identifier;
 import org.apache.usergrid.persistence.Query;
@@ -102,8 +102,8 @@ public class OpUpdate extends OpCrud {
         buffer.readInt();
         fullCollectionName = readCString( buffer );
         flags = buffer.readInt();
-        selector = BSONUtils.decoder().readObject( new ChannelBufferInputStream( buffer ) );
-        update = BSONUtils.decoder().readObject( new ChannelBufferInputStream( buffer ) );
+        selector = BSONBuffer.readObject( buffer );
+        update = BSONBuffer.readObject( buffer );
     }
 
 
@@ -167,6 +167,9 @@ public class OpUpdate extends OpCrud {
             return null;
         }
 
+        Map<Integer, Exception> errors = new LinkedHashMap<Integer, Exception>();
+        int updated = 0;
+
         try {
             do {
                 if ( results != null ) {
@@ -175,13 +178,23 @@ public class OpUpdate extends OpCrud {
 
                 results = em.searchCollection( em.getApplicationRef(), getCollectionName(), q );
 
-                // apply the update
+                // apply the update to the whole page with one mutator
+
+                Map<Integer, Exception> pageErrors = em.updateBatch( results.getEntities(), update.toMap() );
 
-                for ( Entity entity : results.getEntities() ) {
-                    em.updateProperties( entity, update.toMap() );
+                for ( Map.Entry<Integer, Exception> error : pageErrors.entrySet() ) {
+                    errors.put( updated + error.getKey(), error.getValue() );
                 }
+
+                updated += results.size();
             }
             while ( results != null && results.getCursor() != null );
+
+            if ( !errors.isEmpty() ) {
+                logger.error( "Unable to update {} of {} entities with update {}",
+                        new Object[] { errors.size(), updated, update } );
+                ctx.setAttachment( new BulkWriteException( updated - errors.size(), errors ) );
+            }
         }
         catch ( Exception e ) {
             logger.error( "Unable to perform update with query {} and update {}",
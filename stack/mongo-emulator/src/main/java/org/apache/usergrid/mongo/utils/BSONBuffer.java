@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo.utils;
+
+
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.bson.BSON;
+import org.bson.BSONObject;
+import org.bson.BasicBSONObject;
+import org.bson.types.BSONTimestamp;
+import org.bson.types.BasicBSONList;
+import org.bson.types.Binary;
+import org.bson.types.Code;
+import org.bson.types.CodeWScope;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.bson.types.ObjectId;
+import org.bson.types.Symbol;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+
+/**
+ * Reads and writes BSON documents in place on a little endian ChannelBuffer, instead of going through the driver's
+ * stream based decoder and the byte arrays of its encoder. Documents are read into the same BasicBSONObject and
+ * BasicBSONList trees the driver's decoder builds.
+ */
+public class BSONBuffer {
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+
+    private BSONBuffer() {
+    }
+
+
+    /** Read the document at the reader index of the buffer and move the reader index past it */
+    public static BSONObject readObject( ChannelBuffer buffer ) {
+        BasicBSONObject document = new BasicBSONObject();
+        readElements( buffer, document );
+        return document;
+    }
+
+
+    private static void readElements( ChannelBuffer buffer, BSONObject document ) {
+        int start = buffer.readerIndex();
+        int length = buffer.readInt();
+
+        if ( length < 5 || length > buffer.readableBytes() + 4 ) {
+            throw new IllegalArgumentException( "Invalid BSON document length " + length );
+        }
+
+        byte type;
+        while ( ( type = buffer.readByte() ) != BSON.EOO ) {
+            String name = readCString( buffer );
+            document.put( name, readValue( buffer, type ) );
+        }
+
+        if ( buffer.readerIndex() - start != length ) {
+            throw new IllegalArgumentException( "BSON document of length " + length + " ended after "
+                    + ( buffer.readerIndex() - start ) + " bytes" );
+        }
+    }
+
+
+    private static Object readValue( ChannelBuffer buffer, byte type ) {
+        switch ( type ) {
+            case BSON.NUMBER:
+                return Double.longBitsToDouble( buffer.readLong() );
+            case BSON.STRING:
+                return readString( buffer );
+            case BSON.OBJECT:
+                return readObject( buffer );
+            case BSON.ARRAY:
+                BasicBSONList list = new BasicBSONList();
+                readElements( buffer, list );
+                return list;
+            case BSON.BINARY:
+                return readBinary( buffer );
+            case BSON.UNDEFINED:
+            case BSON.NULL:
+                return null;
+            case BSON.OID:
+                byte[] oid = new byte[12];
+                buffer.readBytes( oid );
+                return new ObjectId( oid );
+            case BSON.BOOLEAN:
+                return buffer.readByte() != 0;
+            case BSON.DATE:
+                return new Date( buffer.readLong() );
+            case BSON.REGEX:
+                String pattern = readCString( buffer );
+                return Pattern.compile( pattern, BSON.regexFlags( readCString( buffer ) ) );
+            case BSON.CODE:
+                return new Code( readString( buffer ) );
+            case BSON.SYMBOL:
+                return new Symbol( readString( buffer ) );
+            case BSON.CODE_W_SCOPE:
+                buffer.skipBytes( 4 );
+                String code = readString( buffer );
+                return new CodeWScope( code, readObject( buffer ) );
+            case BSON.NUMBER_INT:
+                return buffer.readInt();
+            case BSON.TIMESTAMP:
+                int inc = buffer.readInt();
+                return new BSONTimestamp( buffer.readInt(), inc );
+            case BSON.NUMBER_LONG:
+                return buffer.readLong();
+            case BSON.MINKEY:
+                return new MinKey();
+            case BSON.MAXKEY:
+                return new MaxKey();
+            default:
+                throw new IllegalArgumentException( "Unsupported BSON type " + type );
+        }
+    }
+
+
+    private static Object readBinary( ChannelBuffer buffer ) {
+        int length = buffer.readInt();
+        byte subtype = buffer.readByte();
+
+        if ( subtype == BSON.B_UUID && length == 16 ) {
+            return new UUID( buffer.readLong(), buffer.readLong() );
+        }
+
+        if ( subtype == BSON.B_BINARY ) {
+            // the old binary subtype repeats the length
+            length = buffer.readInt();
+        }
+
+        byte[] data = new byte[length];
+        buffer.readBytes( data );
+
+        if ( subtype == BSON.B_GENERAL || subtype == BSON.B_BINARY ) {
+            return data;
+        }
+
+        return new Binary( subtype, data );
+    }
+
+
+    private static String readCString( ChannelBuffer buffer ) {
+        int length = buffer.bytesBefore( ( byte ) 0 );
+
+        if ( length < 0 ) {
+            throw new IllegalArgumentException( "Unterminated BSON cstring" );
+        }
+
+        String s = buffer.toString( buffer.readerIndex(), length, UTF8 );
+        buffer.skipBytes( length + 1 );
+        return s;
+    }
+
+
+    private static String readString( ChannelBuffer buffer ) {
+        int length = buffer.readInt();
+
+        if ( length < 1 || length > buffer.readableBytes() ) {
+            throw new IllegalArgumentException( "Invalid BSON string length " + length );
+        }
+
+        String s = buffer.toString( buffer.readerIndex(), length - 1, UTF8 );
+        buffer.skipBytes( length );
+        return s;
+    }
+
+
+    /**
+     * Write a document at the writer index of the buffer. The buffer has to be dynamic since the document length is
+     * only known once it is written.
+     */
+    public static void writeObject( ChannelBuffer buffer, BSONObject document ) {
+        int start = buffer.writerIndex();
+        buffer.writeInt( 0 );
+
+        for ( String name : document.keySet() ) {
+            writeValue( buffer, name, document.get( name ) );
+        }
+
+        buffer.writeByte( BSON.EOO );
+        buffer.setInt( start, buffer.writerIndex() - start );
+    }
+
+
+    private static void writeMap( ChannelBuffer buffer, Map<Object, Object> map ) {
+        int start = buffer.writerIndex();
+        buffer.writeInt( 0 );
+
+        for ( Map.Entry<Object, Object> entry : map.entrySet() ) {
+            writeValue( buffer, entry.getKey().toString(), entry.getValue() );
+        }
+
+        buffer.writeByte( BSON.EOO );
+        buffer.setInt( start, buffer.writerIndex() - start );
+    }
+
+
+    private static void writeArray( ChannelBuffer buffer, Iterable<?> values ) {
+        int start = buffer.writerIndex();
+        buffer.writeInt( 0 );
+
+        int i = 0;
+        for ( Object value : values ) {
+            writeValue( buffer, Integer.toString( i++ ), value );
+        }
+
+        buffer.writeByte( BSON.EOO );
+        buffer.setInt( start, buffer.writerIndex() - start );
+    }
+
+
+    private static void writeArray( ChannelBuffer buffer, Object array ) {
+        int start = buffer.writerIndex();
+        buffer.writeInt( 0 );
+
+        int length = Array.getLength( array );
+        for ( int i = 0; i < length; i++ ) {
+            writeValue( buffer, Integer.toString( i ), Array.get( array, i ) );
+        }
+
+        buffer.writeByte( BSON.EOO );
+        buffer.setInt( start, buffer.writerIndex() - start );
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue( ChannelBuffer buffer, String name, Object value ) {
+
+        if ( value == null ) {
+            writeHeader( buffer, BSON.NULL, name );
+        }
+        else if ( value instanceof String || value instanceof Character ) {
+            writeHeader( buffer, BSON.STRING, name );
+            writeString( buffer, value.toString() );
+        }
+        else if ( value instanceof Integer || value instanceof Short || value instanceof Byte
+                || value instanceof AtomicInteger ) {
+            writeHeader( buffer, BSON.NUMBER_INT, name );
+            buffer.writeInt( ( ( Number ) value ).intValue() );
+        }
+        else if ( value instanceof Long || value instanceof AtomicLong ) {
+            writeHeader( buffer, BSON.NUMBER_LONG, name );
+            buffer.writeLong( ( ( Number ) value ).longValue() );
+        }
+        else if ( value instanceof Number ) {
+            writeHeader( buffer, BSON.NUMBER, name );
+            buffer.writeLong( Double.doubleToRawLongBits( ( ( Number ) value ).doubleValue() ) );
+        }
+        else if ( value instanceof Boolean ) {
+            writeHeader( buffer, BSON.BOOLEAN, name );
+            buffer.writeByte( ( Boolean ) value ? 1 : 0 );
+        }
+        else if ( value instanceof Date ) {
+            writeHeader( buffer, BSON.DATE, name );
+            buffer.writeLong( ( ( Date ) value ).getTime() );
+        }
+        else if ( value instanceof ObjectId ) {
+            writeHeader( buffer, BSON.OID, name );
+            buffer.writeBytes( ( ( ObjectId ) value ).toByteArray() );
+        }
+        else if ( value instanceof UUID ) {
+            writeHeader( buffer, BSON.BINARY, name );
+            buffer.writeInt( 16 );
+            buffer.writeByte( BSON.B_UUID );
+            buffer.writeLong( ( ( UUID ) value ).getMostSignificantBits() );
+            buffer.writeLong( ( ( UUID ) value ).getLeastSignificantBits() );
+        }
+        else if ( value instanceof byte[] ) {
+            writeHeader( buffer, BSON.BINARY, name );
+            writeBinary( buffer, BSON.B_GENERAL, ( byte[] ) value );
+        }
+        else if ( value instanceof Binary ) {
+            writeHeader( buffer, BSON.BINARY, name );
+            writeBinary( buffer, ( ( Binary ) value ).getType(), ( ( Binary ) value ).getData() );
+        }
+        else if ( value instanceof BSONObject ) {
+            writeHeader( buffer, value instanceof BasicBSONList ? BSON.ARRAY : BSON.OBJECT, name );
+            writeObject( buffer, ( BSONObject ) value );
+        }
+        else if ( value instanceof Map ) {
+            writeHeader( buffer, BSON.OBJECT, name );
+            writeMap( buffer, ( Map<Object, Object> ) value );
+        }
+        else if ( value instanceof Iterable ) {
+            writeHeader( buffer, BSON.ARRAY, name );
+            writeArray( buffer, ( Iterable<?> ) value );
+        }
+        else if ( value.getClass().isArray() ) {
+            writeHeader( buffer, BSON.ARRAY, name );
+            writeArray( buffer, value );
+        }
+        else if ( value instanceof Pattern ) {
+            writeHeader( buffer, BSON.REGEX, name );
+            writeCString( buffer, ( ( Pattern ) value ).pattern() );
+            writeCString( buffer, BSON.regexFlags( ( ( Pattern ) value ).flags() ) );
+        }
+        else if ( value instanceof CodeWScope ) {
+            writeHeader( buffer, BSON.CODE_W_SCOPE, name );
+            int start = buffer.writerIndex();
+            buffer.writeInt( 0 );
+            writeString( buffer, ( ( CodeWScope ) value ).getCode() );
+            writeObject( buffer, ( ( CodeWScope ) value ).getScope() );
+            buffer.setInt( start, buffer.writerIndex() - start );
+        }
+        else if ( value instanceof Code ) {
+            writeHeader( buffer, BSON.CODE, name );
+            writeString( buffer, ( ( Code ) value ).getCode() );
+        }
+        else if ( value instanceof Symbol ) {
+            writeHeader( buffer, BSON.SYMBOL, name );
+            writeString( buffer, ( ( Symbol ) value ).getSymbol() );
+        }
+        else if ( value instanceof BSONTimestamp ) {
+            writeHeader( buffer, BSON.TIMESTAMP, name );
+            buffer.writeInt( ( ( BSONTimestamp ) value ).getInc() );
+            buffer.writeInt( ( ( BSONTimestamp ) value ).getTime() );
+        }
+        else if ( value instanceof MinKey ) {
+            writeHeader( buffer, BSON.MINKEY, name );
+        }
+        else if ( value instanceof MaxKey ) {
+            writeHeader( buffer, BSON.MAXKEY, name );
+        }
+        else {
+            throw new IllegalArgumentException( "can't serialize " + value.getClass() );
+        }
+    }
+
+
+    private static void writeHeader( ChannelBuffer buffer, byte type, String name ) {
+        buffer.writeByte( type );
+        writeCString( buffer, name );
+    }
+
+
+    private static void writeBinary( ChannelBuffer buffer, byte subtype, byte[] data ) {
+        if ( subtype == BSON.B_BINARY ) {
+            // the old binary subtype repeats the length inside the data
+            buffer.writeInt( data.length + 4 );
+            buffer.writeByte( subtype );
+            buffer.writeInt( data.length );
+        }
+        else {
+            buffer.writeInt( data.length );
+            buffer.writeByte( subtype );
+        }
+        buffer.writeBytes( data );
+    }
+
+
+    private static void writeCString( ChannelBuffer buffer, String s ) {
+        buffer.writeBytes( s.getBytes( UTF8 ) );
+        buffer.writeByte( 0 );
+    }
+
+
+    private static void writeString( ChannelBuffer buffer, String s ) {
+        byte[] bytes = s.getBytes( UTF8 );
+        buffer.writeInt( bytes.length + 1 );
+        buffer.writeBytes( bytes );
+        buffer.writeByte( 0 );
+    }
+}
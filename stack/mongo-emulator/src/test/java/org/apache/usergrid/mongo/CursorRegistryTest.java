@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo;
+
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.apache.usergrid.mongo.CursorRegistry.ServerCursor;
+import org.apache.usergrid.persistence.Query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class CursorRegistryTest {
+
+    @Test
+    public void registerAndAdvance() {
+        CursorRegistry registry = new CursorRegistry();
+        UUID appId = UUID.randomUUID();
+
+        long id = registry.register( appId, "users", new Query(), 30 );
+        assertTrue( id > 0 );
+
+        ServerCursor cursor = registry.get( id );
+        assertNotNull( cursor );
+        assertEquals( appId, cursor.getApplicationId() );
+        assertEquals( "users", cursor.getCollectionName() );
+        assertEquals( 30, cursor.getReturned() );
+
+        cursor.advance( 20, "next" );
+        assertEquals( 50, registry.get( id ).getReturned() );
+        assertEquals( "next", registry.get( id ).getQuery().getCursor() );
+    }
+
+
+    @Test
+    public void killAndClear() {
+        CursorRegistry registry = new CursorRegistry();
+
+        long first = registry.register( UUID.randomUUID(), "users", new Query(), 30 );
+        long second = registry.register( UUID.randomUUID(), "users", new Query(), 30 );
+        long third = registry.register( UUID.randomUUID(), "users", new Query(), 30 );
+        assertEquals( 3, registry.size() );
+
+        registry.kill( Arrays.asList( first, second ) );
+        assertNull( registry.get( first ) );
+        assertNull( registry.get( second ) );
+        assertNotNull( registry.get( third ) );
+
+        registry.clear();
+        assertEquals( 0, registry.size() );
+    }
+
+
+    @Test
+    public void idleCursorsExpire() throws Exception {
+        CursorRegistry registry = new CursorRegistry( 50 );
+
+        long id = registry.register( UUID.randomUUID(), "users", new Query(), 30 );
+        Thread.sleep( 100 );
+
+        assertNull( registry.get( id ) );
+    }
+}
@@ -516,4 +516,36 @@ public class MongoQueryTest extends AbstractMongoTest {
 
         assertTrue( cur.hasNext() );
     }
+
+
+    @Test
+    public void pagesWithGetMore() throws Exception {
+        UUID appId = emf.lookupApplication( "test-organization/test-app" );
+        EntityManager em = emf.getEntityManager( appId );
+
+        for ( int i = 0; i < 75; i++ ) {
+            Map<String, Object> properties = new LinkedHashMap<String, Object>();
+            properties.put( "name", "band" + i );
+            properties.put( "ordinal", i );
+            em.create( "pageswithgetmore", properties );
+        }
+
+        Mongo m = new Mongo( "localhost", 27017 );
+
+        DB db = m.getDB( "test-organization/test-app" );
+        db.authenticate( "test", "test".toCharArray() );
+
+        DBCollection coll = db.getCollection( "pageswithgetmores" );
+
+        // a batch size smaller than the result set forces the driver to issue OP_GET_MORE
+        DBCursor cur = coll.find().batchSize( 20 );
+
+        int count = 0;
+        while ( cur.hasNext() ) {
+            assertEquals( "band" + count, cur.next().get( "name" ) );
+            count++;
+        }
+
+        assertEquals( 75, count );
+    }
 }
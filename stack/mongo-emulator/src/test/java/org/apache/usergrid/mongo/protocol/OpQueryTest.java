@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo.protocol;
+
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bson.BSONObject;
+import org.junit.Test;
+import org.apache.usergrid.persistence.DynamicEntity;
+import org.apache.usergrid.persistence.Results;
+import org.apache.usergrid.persistence.Schema;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.apache.usergrid.utils.JsonUtils.toJsonMap;
+import static org.apache.usergrid.utils.MapUtils.hashMap;
+
+
+public class OpQueryTest {
+
+    @Test
+    public void documentsKeepTheJsonTypes() {
+        UUID id = UUIDUtils.newTimeUUID();
+        UUID owner = UUIDUtils.newTimeUUID();
+        Date when = new Date( 1234567890000L );
+
+        DynamicEntity entity = new DynamicEntity( "thing", id );
+        entity.setProperty( "name", "widget" );
+        entity.setProperty( "count", 3 );
+        entity.setProperty( "owner", owner );
+        entity.setProperty( "when", when );
+        entity.setProperty( "details", hashMap( "owner", ( Object ) owner ).map( "when", when ) );
+        entity.setProperty( "owners", Arrays.asList( owner, id ) );
+
+        OpReply reply = new OpReply();
+        OpQuery.addDocuments( reply, Results.fromEntity( entity ) );
+
+        assertEquals( 1, reply.getDocuments().size() );
+
+        BSONObject document = reply.getDocuments().get( 0 );
+        Map<String, Object> json = toJsonMap( entity );
+
+        for ( String property : entity.getProperties().keySet() ) {
+            assertEquals( property, json.get( property ), document.get( property ) );
+        }
+
+        assertEquals( id, document.get( "_id" ) );
+        assertEquals( id.toString(), document.get( Schema.PROPERTY_UUID ) );
+
+        // uuids and dates, nested or not, are strings and longs as in the json of the entity
+        assertEquals( owner.toString(), document.get( "owner" ) );
+        assertEquals( when.getTime(), document.get( "when" ) );
+
+        Map<?, ?> details = ( Map<?, ?> ) document.get( "details" );
+        assertEquals( owner.toString(), details.get( "owner" ) );
+        assertEquals( when.getTime(), details.get( "when" ) );
+        assertEquals( Arrays.asList( owner.toString(), id.toString() ), document.get( "owners" ) );
+    }
+}
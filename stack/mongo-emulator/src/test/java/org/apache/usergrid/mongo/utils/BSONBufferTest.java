@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo.utils;
+
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bson.BSON;
+import org.bson.BSONObject;
+import org.bson.BasicBSONObject;
+import org.bson.types.BasicBSONList;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+import org.apache.usergrid.mongo.MongoMessageDecoder;
+import org.apache.usergrid.mongo.protocol.OpReply;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+
+public class BSONBufferTest {
+
+    private static BSONObject document() {
+        BasicBSONList tags = new BasicBSONList();
+        tags.add( "rock" );
+        tags.add( 1973 );
+
+        Map<String, Object> address = new LinkedHashMap<String, Object>();
+        address.put( "city", "San Francisco" );
+        address.put( "zip", 94107L );
+
+        BSONObject document = new BasicBSONObject();
+        document.put( "_id", new ObjectId() );
+        document.put( "name", "Journey é" );
+        document.put( "founded", 1973 );
+        document.put( "created", 1388534400000L );
+        document.put( "rating", 4.5 );
+        document.put( "active", true );
+        document.put( "updated", new Date( 1388534400000L ) );
+        document.put( "uuid", UUID.randomUUID() );
+        document.put( "missing", null );
+        document.put( "tags", tags );
+        document.put( "address", new BasicBSONObject( address ) );
+        return document;
+    }
+
+
+    @Test
+    public void readsDriverEncodedDocuments() {
+        BSONObject document = document();
+
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer( ByteOrder.LITTLE_ENDIAN,
+                BSONUtils.encoder().encode( document ), BSONUtils.encoder().encode( document ) );
+
+        assertEquals( document, BSONBuffer.readObject( buffer ) );
+        assertEquals( document, BSONBuffer.readObject( buffer ) );
+        assertFalse( buffer.readable() );
+    }
+
+
+    @Test
+    public void writesWhatTheDriverWrites() {
+        BSONObject document = document();
+
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( ByteOrder.LITTLE_ENDIAN, 16 );
+        BSONBuffer.writeObject( buffer, document );
+
+        byte[] written = new byte[buffer.readableBytes()];
+        buffer.readBytes( written );
+
+        assertArrayEquals( BSONUtils.encoder().encode( document ), written );
+        assertEquals( document, BSONUtils.decoder().readObject( written ) );
+    }
+
+
+    @Test
+    public void writesPlainMapsAndLists() {
+        Map<String, Object> address = new LinkedHashMap<String, Object>();
+        address.put( "city", "San Francisco" );
+
+        BSONObject document = new BasicBSONObject();
+        document.put( "address", address );
+        document.put( "tags", Arrays.asList( "rock", "pop" ) );
+
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( ByteOrder.LITTLE_ENDIAN, 16 );
+        BSONBuffer.writeObject( buffer, document );
+
+        assertArrayEquals( BSONUtils.encoder().encode( document ),
+                Arrays.copyOf( buffer.array(), buffer.writerIndex() ) );
+    }
+
+
+    @Test
+    public void binaryRoundTrip() {
+        byte[] data = { 1, 2, 3, 4, 5 };
+
+        BSONObject document = new BasicBSONObject();
+        document.put( "general", data );
+        document.put( "old", new Binary( BSON.B_BINARY, data ) );
+        document.put( "custom", new Binary( ( byte ) 0x80, data ) );
+
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( ByteOrder.LITTLE_ENDIAN, 16 );
+        BSONBuffer.writeObject( buffer, document );
+
+        byte[] written = Arrays.copyOf( buffer.array(), buffer.writerIndex() );
+        assertArrayEquals( BSONUtils.encoder().encode( document ), written );
+
+        BSONObject read = BSONBuffer.readObject( buffer );
+        assertFalse( buffer.readable() );
+        assertArrayEquals( data, ( byte[] ) read.get( "general" ) );
+        assertArrayEquals( data, ( byte[] ) read.get( "old" ) );
+
+        Binary custom = ( Binary ) read.get( "custom" );
+        assertEquals( ( byte ) 0x80, custom.getType() );
+        assertArrayEquals( data, custom.getData() );
+    }
+
+
+    @Test
+    public void replyRoundTrip() throws Exception {
+        OpReply reply = new OpReply();
+        reply.setResponseTo( 7 );
+        reply.setCursorID( 42 );
+        reply.addDocument( document() );
+        reply.addDocument( document() );
+
+        ChannelBuffer buffer = reply.encode( null );
+        assertEquals( buffer.readableBytes(), buffer.getInt( 0 ) );
+
+        OpReply decoded = ( OpReply ) MongoMessageDecoder.decode( buffer );
+
+        assertEquals( 7, decoded.getResponseTo() );
+        assertEquals( 42, decoded.getCursorID() );
+        assertEquals( 2, decoded.getNumberReturned() );
+        assertEquals( reply.getDocuments(), decoded.getDocuments() );
+    }
+}
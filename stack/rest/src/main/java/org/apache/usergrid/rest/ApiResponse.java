@@ -74,6 +74,7 @@ public class ApiResponse {
     private UUID next;
     private String cursor;
     private Integer count;
+    private Boolean countApproximate;
     private String action;
     private List<Object> list;
     private Object data;
@@ -372,6 +373,14 @@ public class ApiResponse {
             next = results.getNextResult();
             cursor = results.getCursor();
             counters = results.getCounters();
+
+            // a count only query has no entities, just its count
+            if ( results.getCount() != null ) {
+                count = results.getCount();
+            }
+
+            // only said when a count limit stopped the count short
+            countApproximate = results.isCountApproximate() ? Boolean.TRUE : null;
         }
         else {
             entities = new ArrayList<Entity>();
@@ -427,6 +436,18 @@ public class ApiResponse {
     }
 
 
+    /** @return true when the count is a lower bound, because a count limit stopped the count, or null */
+    @JsonSerialize( include = Inclusion.NON_NULL )
+    public Boolean getCountApproximate() {
+        return countApproximate;
+    }
+
+
+    public void setCountApproximate( Boolean countApproximate ) {
+        this.countApproximate = countApproximate;
+    }
+
+
     public ApiResponse withEntity( Entity entity ) {
         entities = new ArrayList<Entity>();
         entities.add( entity );
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest;
+
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.Providers;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
+import org.apache.usergrid.persistence.Entity;
+
+
+/**
+ * Writes an ApiResponse as json one entity at a time. The envelope is serialized with the configured mapper exactly as
+ * before, but the entities are written to the response as they're serialized, rather than building the complete
+ * document first, and the output is flushed to the client every {@link #FLUSH_INTERVAL} entities. When the client
+ * accepts it, the response is gzipped. A GZIPOutputStream can't flush the data it has compressed so far on Java 6, so
+ * a gzipped response is only flushed once it's complete.
+ */
+@Provider
+@Produces( MediaType.APPLICATION_JSON )
+public class ApiResponseWriter implements MessageBodyWriter<ApiResponse> {
+
+    /** The number of entities written between flushes to the client */
+    public static final int FLUSH_INTERVAL = 100;
+
+    private static final String ENTITIES = "entities";
+    private static final String GZIP = "gzip";
+    private static final String VARY = "Vary";
+
+    @Context
+    Providers providers;
+
+    @Context
+    HttpHeaders requestHeaders;
+
+
+    @Override
+    public boolean isWriteable( final Class<?> type, final Type genericType, final Annotation[] annotations,
+                                final MediaType mediaType ) {
+        return ApiResponse.class.isAssignableFrom( type ) && MediaType.APPLICATION_JSON_TYPE
+                .isCompatible( mediaType );
+    }
+
+
+    @Override
+    public long getSize( final ApiResponse response, final Class<?> type, final Type genericType,
+                         final Annotation[] annotations, final MediaType mediaType ) {
+        return -1;
+    }
+
+
+    @Override
+    public void writeTo( final ApiResponse response, final Class<?> type, final Type genericType,
+                         final Annotation[] annotations, final MediaType mediaType,
+                         final MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream )
+            throws IOException, WebApplicationException {
+
+        ObjectMapper mapper = getMapper( type, mediaType );
+
+        // serialize the envelope without its entities, the empty list keeps their place in the property order
+        List<Entity> entities = response.getEntities();
+        JsonNode envelope;
+
+        if ( entities == null ) {
+            envelope = mapper.valueToTree( response );
+        }
+        else {
+            try {
+                response.setEntities( null );
+                envelope = mapper.valueToTree( response );
+            }
+            finally {
+                response.setEntities( entities );
+            }
+        }
+
+        OutputStream out = entityStream;
+        GZIPOutputStream gzip = null;
+
+        // the encoding depends on the request, caches must not serve a gzipped response to other clients
+        httpHeaders.add( VARY, HttpHeaders.ACCEPT_ENCODING );
+
+        if ( acceptsGzip( requestHeaders.getRequestHeader( HttpHeaders.ACCEPT_ENCODING ) ) ) {
+            httpHeaders.putSingle( HttpHeaders.CONTENT_ENCODING, GZIP );
+            gzip = new GZIPOutputStream( entityStream );
+            out = gzip;
+        }
+
+        // the mapper flushes after every value it writes, we only flush the client every FLUSH_INTERVAL entities
+        JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator( new NoFlushOutputStream( out ),
+                JsonEncoding.UTF8 );
+        generator.setCodec( mapper );
+
+        if ( mapper.getSerializationConfig().isEnabled( SerializationConfig.Feature.INDENT_OUTPUT ) ) {
+            generator.useDefaultPrettyPrinter();
+        }
+
+        generator.writeStartObject();
+
+        Iterator<Map.Entry<String, JsonNode>> fields = envelope.getFields();
+
+        while ( fields.hasNext() ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+
+            generator.writeFieldName( field.getKey() );
+
+            if ( entities == null || !ENTITIES.equals( field.getKey() ) ) {
+                generator.writeTree( field.getValue() );
+                continue;
+            }
+
+            generator.writeStartArray();
+
+            int written = 0;
+
+            for ( Entity entity : entities ) {
+                mapper.writeValue( generator, entity );
+
+                // flushing the gzip stream would only send what the deflater has already emitted
+                if ( ++written % FLUSH_INTERVAL == 0 && gzip == null ) {
+                    generator.flush();
+                    out.flush();
+                }
+            }
+
+            generator.writeEndArray();
+        }
+
+        generator.writeEndObject();
+        generator.flush();
+
+        if ( gzip != null ) {
+            gzip.finish();
+        }
+
+        out.flush();
+    }
+
+
+    private ObjectMapper getMapper( Class<?> type, MediaType mediaType ) {
+        ContextResolver<ObjectMapper> resolver = providers.getContextResolver( ObjectMapper.class, mediaType );
+
+        ObjectMapper mapper = resolver != null ? resolver.getContext( type ) : null;
+
+        return mapper != null ? mapper : new ObjectMapper();
+    }
+
+
+    /** True if the Accept-Encoding headers list gzip with a quality above zero, gzip;q=0 refuses it */
+    static boolean acceptsGzip( List<String> encodings ) {
+        if ( encodings == null ) {
+            return false;
+        }
+
+        for ( String encoding : encodings ) {
+            for ( String accepted : encoding.split( "," ) ) {
+                String[] parts = accepted.split( ";" );
+
+                if ( GZIP.equalsIgnoreCase( parts[0].trim() ) ) {
+                    return getQuality( parts ) > 0;
+                }
+            }
+        }
+
+        return false;
+    }
+
+
+    /** The q parameter of an encoding, 1 when there is none and 0 when it can't be read */
+    private static float getQuality( String[] parts ) {
+        for ( int i = 1; i < parts.length; i++ ) {
+            String parameter = parts[i].trim();
+
+            if ( parameter.length() > 1 && Character.toLowerCase( parameter.charAt( 0 ) ) == 'q'
+                    && parameter.substring( 1 ).trim().startsWith( "=" ) ) {
+                try {
+                    return Float.parseFloat( parameter.substring( parameter.indexOf( '=' ) + 1 ).trim() );
+                }
+                catch ( NumberFormatException e ) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+
+
+    /** Keeps the flushes of the generator and the mapper from reaching the client */
+    private static class NoFlushOutputStream extends FilterOutputStream {
+
+        public NoFlushOutputStream( OutputStream out ) {
+            super( out );
+        }
+
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            out.write( b, off, len );
+        }
+
+
+        @Override
+        public void flush() {
+            // flushed explicitly by the writer
+        }
+
+
+        @Override
+        public void close() {
+            // the container closes the entity stream
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+
+import org.codehaus.jackson.jaxrs.JacksonJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.jersey.api.json.JSONWithPadding;
+
+
+/**
+ * Reads and writes request and response bodies as Smile, the binary json format entity properties are stored in, for
+ * clients that send or accept {@link #APPLICATION_SMILE}. The mapper is configured like the json one in {@link
+ * JacksonCustomMapperProvider}, and a callback wrapping the response is dropped since binary output can't be padded.
+ */
+@Provider
+@Consumes( JacksonSmileProvider.APPLICATION_SMILE )
+@Produces( JacksonSmileProvider.APPLICATION_SMILE )
+public class JacksonSmileProvider extends JacksonJsonProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger( JacksonSmileProvider.class );
+
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf( APPLICATION_SMILE );
+
+
+    public JacksonSmileProvider() {
+        super( createMapper(), JacksonCustomMapperProvider.BASIC_ANNOTATIONS );
+        logger.info( "JacksonSmileProvider installed" );
+    }
+
+
+    private static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper( new SmileFactory() );
+        mapper.configure( SerializationConfig.Feature.WRITE_DATES_AS_TIMESTAMPS, false );
+        return mapper;
+    }
+
+
+    @Override
+    protected boolean hasMatchingMediaType( MediaType mediaType ) {
+        return mediaType != null && APPLICATION_SMILE_TYPE.getSubtype().equalsIgnoreCase( mediaType.getSubtype() );
+    }
+
+
+    @Override
+    public boolean isWriteable( Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType ) {
+        if ( JSONWithPadding.class.isAssignableFrom( type ) ) {
+            return hasMatchingMediaType( mediaType );
+        }
+        return super.isWriteable( type, genericType, annotations, mediaType );
+    }
+
+
+    @Override
+    public void writeTo( Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                         MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream ) throws IOException {
+
+        if ( value instanceof JSONWithPadding ) {
+            value = ( ( JSONWithPadding ) value ).getJsonSource();
+            type = value.getClass();
+            genericType = type;
+        }
+
+        super.writeTo( value, type, genericType, annotations, mediaType, httpHeaders, entityStream );
+    }
+}
@@ -139,6 +139,14 @@ public class ApplicationResource extends ServiceResource {
     }
 
 
+    /** The underscore keeps the path from hiding a collection named batch */
+    @RequireApplicationAccess
+    @Path("_batch")
+    public BatchResource getBatchResource() throws Exception {
+        return getSubResource( BatchResource.class ).init( services );
+    }
+
+
     @RequireApplicationAccess
     @Path("events")
     public EventsResource getEventsResource( @Context UriInfo ui ) throws Exception {
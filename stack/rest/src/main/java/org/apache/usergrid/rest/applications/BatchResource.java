@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.applications;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.rest.AbstractContextResource;
+import org.apache.usergrid.rest.ApiResponse;
+import org.apache.usergrid.rest.JacksonCustomMapperProvider;
+import org.apache.usergrid.rest.security.annotations.RequireApplicationAccess;
+import org.apache.usergrid.services.ServiceAction;
+import org.apache.usergrid.services.ServiceManager;
+import org.apache.usergrid.services.ServiceParameter;
+import org.apache.usergrid.services.ServicePayload;
+import org.apache.usergrid.services.ServiceRequest;
+import org.apache.usergrid.services.ServiceResults;
+
+import static org.apache.usergrid.services.ServiceParameter.addParameter;
+import static org.apache.usergrid.utils.UUIDUtils.tryGetUUID;
+
+
+/**
+ * Executes a list of service operations posted to /{org}/{app}/_batch. The request is authenticated once, the
+ * operations run concurrently on the service request executor, at most the request fan out at a time, and their
+ * results are written to the response in the order of the operations as they complete. An operation looks like
+ * <pre>
+ * { "method" : "POST", "path" : "/users/fred/likes/restaurants", "body" : { "name" : "Brickhouse" } }
+ * </pre>
+ * where the path may have a query string, such as "/users?ql=select * where age > 20&limit=50".
+ */
+@Component("org.apache.usergrid.rest.applications.BatchResource")
+@Scope("prototype")
+@Produces(MediaType.APPLICATION_JSON)
+public class BatchResource extends AbstractContextResource {
+
+    private static final Logger logger = LoggerFactory.getLogger( BatchResource.class );
+
+    /** The maximum number of operations in one batch */
+    public static final int MAX_OPERATIONS = 1000;
+
+    private static final String LIST = "list";
+
+    @Autowired
+    private JacksonCustomMapperProvider mapperProvider;
+
+    private ServiceManager services;
+
+
+    public BatchResource() {
+    }
+
+
+    public BatchResource init( ServiceManager services ) {
+        this.services = services;
+        return this;
+    }
+
+
+    @POST
+    @RequireApplicationAccess
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response executeBatch( @Context UriInfo ui, List<Map<String, Object>> operations ) throws Exception {
+
+        logger.debug( "BatchResource.executeBatch" );
+
+        if ( operations == null || operations.isEmpty() ) {
+            throw new IllegalArgumentException( "A batch needs a list of operations" );
+        }
+
+        if ( operations.size() > MAX_OPERATIONS ) {
+            throw new IllegalArgumentException(
+                    "A batch can have at most " + MAX_OPERATIONS + " operations, not " + operations.size() );
+        }
+
+        // parse every operation before running any of them
+        List<Callable<ApiResponse>> calls = new ArrayList<Callable<ApiResponse>>( operations.size() );
+
+        for ( Map<String, Object> operation : operations ) {
+            calls.add( newOperation( operation ) );
+        }
+
+        ApiResponse response = createApiResponse();
+        response.setAction( "batch" );
+        response.setApplication( services.getApplication() );
+        response.setParams( ui.getQueryParameters() );
+        response.setCount( calls.size() );
+
+        httpServletRequest.setAttribute( "applicationId", services.getApplicationId() );
+
+        List<Future<ApiResponse>> results = services.invokeAll( calls, new Semaphore( services.getRequestFanOut() ) );
+
+        return Response.ok( new BatchOutput( response, results ) ).type( MediaType.APPLICATION_JSON_TYPE ).build();
+    }
+
+
+    private Callable<ApiResponse> newOperation( Map<String, Object> operation ) throws Exception {
+
+        Object method = operation.get( "method" );
+        Object path = operation.get( "path" );
+
+        if ( !( path instanceof String ) ) {
+            throw new IllegalArgumentException( "Every batch operation needs a path" );
+        }
+
+        final ServiceAction action;
+
+        try {
+            action = method == null ? ServiceAction.GET : ServiceAction.valueOf( method.toString().toUpperCase() );
+        }
+        catch ( IllegalArgumentException e ) {
+            throw new IllegalArgumentException( "Unsupported batch operation method " + method );
+        }
+
+        final String operationPath = ( String ) path;
+        final List<ServiceParameter> parameters = getParameters( operationPath );
+        final ServicePayload payload = operation.containsKey( "body" ) ?
+                                       ( ( ServiceResource ) parent ).getPayload( operation.get( "body" ) ) : null;
+
+        return new Callable<ApiResponse>() {
+            @Override
+            public ApiResponse call() {
+                return execute( action, operationPath, parameters, payload );
+            }
+        };
+    }
+
+
+    /** Parse the path of an operation, with an optional query string, into service parameters */
+    private List<ServiceParameter> getParameters( String path ) throws Exception {
+
+        List<ServiceParameter> parameters = new ArrayList<ServiceParameter>();
+
+        int queryStart = path.indexOf( '?' );
+        String segments = queryStart < 0 ? path : path.substring( 0, queryStart );
+
+        for ( String segment : segments.split( "/" ) ) {
+            if ( segment.length() == 0 ) {
+                continue;
+            }
+
+            segment = URLDecoder.decode( segment, "UTF-8" );
+
+            if ( tryGetUUID( segment ) != null ) {
+                addParameter( parameters, tryGetUUID( segment ) );
+            }
+            else {
+                addParameter( parameters, segment );
+            }
+        }
+
+        if ( parameters.isEmpty() ) {
+            throw new IllegalArgumentException( "Batch operation path " + path + " has no service" );
+        }
+
+        if ( queryStart >= 0 ) {
+            Map<String, List<String>> params = new LinkedHashMap<String, List<String>>();
+
+            for ( String param : path.substring( queryStart + 1 ).split( "&" ) ) {
+                if ( param.length() == 0 ) {
+                    continue;
+                }
+
+                int equals = param.indexOf( '=' );
+                String name = URLDecoder.decode( equals < 0 ? param : param.substring( 0, equals ), "UTF-8" );
+                String value = equals < 0 ? "" : URLDecoder.decode( param.substring( equals + 1 ), "UTF-8" );
+
+                if ( !params.containsKey( name ) ) {
+                    params.put( name, new ArrayList<String>() );
+                }
+                params.get( name ).add( value );
+            }
+
+            Query query = Query.fromQueryParams( params );
+            if ( query != null ) {
+                addParameter( parameters, query );
+            }
+        }
+
+        return parameters;
+    }
+
+
+    /** Execute one operation, a failure is returned as the error of its response rather than failing the batch */
+    private ApiResponse execute( ServiceAction action, String path, List<ServiceParameter> parameters,
+                                 ServicePayload payload ) {
+
+        ApiResponse response = createApiResponse();
+        response.setAction( action.name().toLowerCase() );
+        response.setPath( path );
+
+        try {
+            ServiceRequest r = services.newRequest( action, parameters, payload );
+            response.setServiceRequest( r );
+
+            ServiceResults results = r.execute();
+
+            if ( results != null ) {
+                if ( results.hasData() ) {
+                    response.setData( results.getData() );
+                }
+                if ( results.getServiceMetadata() != null ) {
+                    response.setMetadata( results.getServiceMetadata() );
+                }
+                response.setResults( results );
+            }
+        }
+        catch ( Exception e ) {
+            logger.debug( "Batch operation {} {} failed", action, path );
+            response.setError( e );
+        }
+
+        return response;
+    }
+
+
+    /**
+     * Writes the batch response, with the result of each operation in the list of the envelope, as soon as the result
+     * and those of the operations before it are available.
+     */
+    private class BatchOutput implements StreamingOutput {
+
+        private final ApiResponse response;
+        private final List<Future<ApiResponse>> results;
+
+
+        public BatchOutput( ApiResponse response, List<Future<ApiResponse>> results ) {
+            this.response = response;
+            this.results = results;
+        }
+
+
+        @Override
+        public void write( OutputStream output ) throws IOException, WebApplicationException {
+
+            ObjectMapper mapper = mapperProvider.getContext( ApiResponse.class );
+
+            // the empty list keeps the place of the results in the property order of the envelope
+            response.setList( null );
+            JsonNode envelope = mapper.valueToTree( response );
+
+            JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator( output, JsonEncoding.UTF8 );
+            generator.setCodec( mapper );
+
+            if ( mapper.getSerializationConfig().isEnabled( SerializationConfig.Feature.INDENT_OUTPUT ) ) {
+                generator.useDefaultPrettyPrinter();
+            }
+
+            generator.writeStartObject();
+
+            Iterator<Map.Entry<String, JsonNode>> fields = envelope.getFields();
+
+            while ( fields.hasNext() ) {
+                Map.Entry<String, JsonNode> field = fields.next();
+
+                generator.writeFieldName( field.getKey() );
+
+                if ( !LIST.equals( field.getKey() ) ) {
+                    generator.writeTree( field.getValue() );
+                    continue;
+                }
+
+                generator.writeStartArray();
+
+                for ( Future<ApiResponse> result : results ) {
+                    // flushes each result to the client
+                    mapper.writeValue( generator, getResult( result ) );
+                }
+
+                generator.writeEndArray();
+            }
+
+            generator.writeEndObject();
+            generator.flush();
+        }
+
+
+        private ApiResponse getResult( Future<ApiResponse> result ) throws IOException {
+            try {
+                return result.get();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted waiting for a batch operation", e );
+            }
+            catch ( ExecutionException e ) {
+                // operations return their failures, only an error ends up here
+                throw new WebApplicationException( e.getCause() );
+            }
+        }
+    }
+}
@@ -55,6 +55,7 @@ import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.Query;
 import org.apache.usergrid.rest.AbstractContextResource;
 import org.apache.usergrid.rest.ApiResponse;
+import org.apache.usergrid.rest.JacksonSmileProvider;
 import org.apache.usergrid.rest.applications.assets.AssetsResource;
 import org.apache.usergrid.rest.security.annotations.RequireApplicationAccess;
 import org.apache.usergrid.security.oauth.AccessInfo;
@@ -85,7 +86,7 @@ import static org.apache.usergrid.utils.JsonUtils.normalizeJsonTree;
 @Scope("prototype")
 @Produces({
         MediaType.APPLICATION_JSON, "application/javascript", "application/x-javascript", "text/ecmascript",
-        "application/ecmascript", "text/jscript"
+        "application/ecmascript", "text/jscript", JacksonSmileProvider.APPLICATION_SMILE
 })
 public class ServiceResource extends AbstractContextResource {
 
@@ -276,7 +277,7 @@ public class ServiceResource extends AbstractContextResource {
 
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_HTML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_HTML, JacksonSmileProvider.APPLICATION_SMILE})
     @RequireApplicationAccess
     public JSONWithPadding executeGet( @Context UriInfo ui,
                                        @QueryParam("callback") @DefaultValue("callback") String callback )
@@ -324,7 +325,7 @@ public class ServiceResource extends AbstractContextResource {
 
     @POST
     @RequireApplicationAccess
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, JacksonSmileProvider.APPLICATION_SMILE})
     public JSONWithPadding executePost( @Context UriInfo ui, EntityHolder<Object> body,
                                         @QueryParam("callback") @DefaultValue("callback") String callback )
             throws Exception {
@@ -350,7 +351,7 @@ public class ServiceResource extends AbstractContextResource {
 
     @PUT
     @RequireApplicationAccess
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, JacksonSmileProvider.APPLICATION_SMILE})
     public JSONWithPadding executePut( @Context UriInfo ui, Map<String, Object> json,
                                        @QueryParam("callback") @DefaultValue("callback") String callback )
             throws Exception {
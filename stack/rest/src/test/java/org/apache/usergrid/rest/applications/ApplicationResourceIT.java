@@ -17,7 +17,9 @@
 package org.apache.usergrid.rest.applications;
 
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.ws.rs.core.MediaType;
@@ -561,4 +563,52 @@ public class ApplicationResourceIT extends AbstractRestIT {
 
         assertNotNull( node.get( "entities" ) );
     }
+
+
+    @Test
+    public void batchOperations() throws Exception {
+
+        List<Map<String, Object>> operations = new ArrayList<Map<String, Object>>();
+
+        // more operations than the request fan out, so the batch reuses the permits of completed operations
+        int size = 25;
+
+        for ( int i = 0; i < size; i++ ) {
+            operations.add( hashMap( "method", ( Object ) "POST" ).map( "path", "/batchthings" )
+                                                                  .map( "body", hashMap( "name", "thing" + i ) ) );
+        }
+
+        operations.add( hashMap( "method", ( Object ) "GET" ).map( "path", "/batchthings/missing" ) );
+
+        JsonNode node = appPath( "_batch" ).post( JsonNode.class, operations );
+
+        assertEquals( "batch", node.get( "action" ).asText() );
+
+        JsonNode results = node.get( "list" );
+
+        assertEquals( size + 1, results.size() );
+
+        for ( int i = 0; i < size; i++ ) {
+            assertEquals( "thing" + i, results.get( i ).get( "entities" ).get( 0 ).get( "name" ).asText() );
+        }
+
+        assertNotNull( results.get( size ).get( "error" ) );
+
+        // the entities were created and can be queried in one operation
+        operations = new ArrayList<Map<String, Object>>();
+        operations.add( hashMap( "path", ( Object ) "/batchthings?ql=select * where name = 'thing1'" ) );
+
+        node = appPath( "_batch" ).post( JsonNode.class, operations );
+
+        results = node.get( "list" );
+
+        assertEquals( 1, results.size() );
+        assertEquals( 1, results.get( 0 ).get( "entities" ).size() );
+        assertEquals( "thing1", results.get( 0 ).get( "entities" ).get( 0 ).get( "name" ).asText() );
+
+        // batch is still a collection name
+        node = appPath( "batch" ).post( JsonNode.class, hashMap( "name", "notabatch" ) );
+
+        assertEquals( "notabatch", node.get( "entities" ).get( 0 ).get( "name" ).asText() );
+    }
 }
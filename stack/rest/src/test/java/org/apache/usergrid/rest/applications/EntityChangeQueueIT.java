@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.applications;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.codehaus.jackson.JsonNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.mq.EntityChangeQueue;
+import org.apache.usergrid.persistence.EntityChangeEvent;
+import org.apache.usergrid.rest.AbstractRestIT;
+import org.apache.usergrid.rest.RestITSuite;
+import org.apache.usergrid.rest.TestContextSetup;
+import org.apache.usergrid.rest.test.resource.CustomCollection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.apache.usergrid.utils.MapUtils.hashMap;
+
+
+/** Entity changes written through the rest tier reach the change queue the websocket server reads */
+@Concurrent()
+public class EntityChangeQueueIT extends AbstractRestIT {
+
+    @Rule
+    public TestContextSetup context = new TestContextSetup( this );
+
+
+    @Test
+    public void changesWrittenThroughRest() throws Exception {
+
+        CustomCollection things = context.application().collection( "things" );
+
+        JsonNode response = things.create( hashMap( "name", "changed" ) );
+        UUID entityId = getEntityId( response, 0 );
+        assertNotNull( entityId );
+
+        things.entity( entityId ).put( hashMap( "color", "red" ) );
+
+        EntityChangeQueue queue = RestITSuite.cassandraResource.getBean( EntityChangeQueue.class );
+
+        // a new consumer starts at the oldest change, skip those written by other tests
+        String consumer = "change-queue-it-" + UUID.randomUUID();
+        List<EntityChangeEvent> changes = new ArrayList<EntityChangeEvent>();
+
+        for ( int i = 0; i < 1000 && changes.size() < 2; i++ ) {
+            List<EntityChangeEvent> events = queue.read( consumer, EntityChangeQueue.DEFAULT_READ_LIMIT );
+
+            for ( EntityChangeEvent event : events ) {
+                if ( entityId.equals( event.getEntityId() ) ) {
+                    changes.add( event );
+                }
+            }
+
+            if ( events.isEmpty() ) {
+                Thread.sleep( 100 );
+            }
+        }
+
+        assertEquals( 2, changes.size() );
+
+        assertEquals( EntityChangeEvent.Type.CREATE, changes.get( 0 ).getType() );
+        assertEquals( context.getAppUuid(), changes.get( 0 ).getApplicationId() );
+        assertEquals( "thing", changes.get( 0 ).getEntityType() );
+        assertEquals( "changed", changes.get( 0 ).getProperties().get( "name" ) );
+
+        assertEquals( EntityChangeEvent.Type.UPDATE, changes.get( 1 ).getType() );
+        assertEquals( "red", changes.get( 1 ).getProperties().get( "color" ) );
+    }
+}
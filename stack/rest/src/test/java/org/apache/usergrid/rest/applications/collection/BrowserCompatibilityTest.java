@@ -21,10 +21,13 @@ import java.util.Map;
 import java.util.UUID;
 
 import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
 import org.junit.Rule;
 import org.junit.Test;
 import org.apache.usergrid.cassandra.Concurrent;
 import org.apache.usergrid.rest.AbstractRestIT;
+import org.apache.usergrid.rest.JacksonSmileProvider;
 import org.apache.usergrid.rest.TestContextSetup;
 import org.apache.usergrid.rest.test.resource.CustomCollection;
 
@@ -62,6 +65,34 @@ public class BrowserCompatibilityTest extends AbstractRestIT {
     }
 
 
+    @Test
+    public void testSmileTypes() throws Exception {
+
+        ObjectMapper smileMapper = new ObjectMapper( new SmileFactory() );
+
+        String path = context.getOrgName() + "/" + context.getAppName() + "/things";
+
+        byte[] created = resource().path( path ).queryParam( "access_token", context.getActiveUser().getToken() )
+                .type( JacksonSmileProvider.APPLICATION_SMILE ).accept( JacksonSmileProvider.APPLICATION_SMILE )
+                .post( byte[].class, smileMapper.writeValueAsBytes( hashMap( "name", "smiley" ) ) );
+
+        JsonNode response = smileMapper.readTree( created );
+
+        UUID entityId = getEntityId( response, 0 );
+
+        assertNotNull( entityId );
+
+        byte[] retrieved = resource().path( path + "/" + entityId )
+                .queryParam( "access_token", context.getActiveUser().getToken() )
+                .accept( JacksonSmileProvider.APPLICATION_SMILE ).get( byte[].class );
+
+        response = smileMapper.readTree( retrieved );
+
+        assertEquals( entityId, getEntityId( response, 0 ) );
+        assertEquals( "smiley", getEntityName( response, 0 ) );
+    }
+
+
     private void testBrowserAccept( String acceptHeader ) {
 
 
@@ -22,6 +22,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -31,10 +35,13 @@ import org.apache.usergrid.cassandra.Concurrent;
 import org.usergrid.java.client.entities.Entity;
 import org.usergrid.java.client.response.ApiResponse;
 import org.apache.usergrid.rest.AbstractRestIT;
+import org.apache.usergrid.rest.ApiResponseWriter;
 import org.apache.usergrid.rest.TestContextSetup;
 import org.apache.usergrid.rest.test.resource.CustomCollection;
 import org.apache.usergrid.rest.test.resource.EntityResource;
 
+import com.sun.jersey.api.client.ClientResponse;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -210,6 +217,50 @@ public class PagingResourceIT extends AbstractRestIT {
     }
 
 
+    @Test
+    public void collectionGzipped() throws Exception {
+
+        CustomCollection things = context.application().collection( "things" );
+
+        // cross the flush interval of the writer more than once
+        int size = ApiResponseWriter.FLUSH_INTERVAL * 2 + 5;
+
+        for ( int i = 0; i < size; i++ ) {
+            things.create( hashMap( "name", String.valueOf( i ) ) );
+        }
+
+        ClientResponse response = resource().path( context.getOrgName() + "/" + context.getAppName() + "/things" )
+                .queryParam( "access_token", context.getActiveUser().getToken() )
+                .queryParam( "limit", String.valueOf( size ) ).accept( MediaType.APPLICATION_JSON )
+                .header( HttpHeaders.ACCEPT_ENCODING, "gzip" ).get( ClientResponse.class );
+
+        assertEquals( "gzip", response.getHeaders().getFirst( HttpHeaders.CONTENT_ENCODING ) );
+        assertEquals( HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst( "Vary" ) );
+
+        JsonNode node = mapper.readTree( new GZIPInputStream( response.getEntityInputStream() ) );
+
+        assertEquals( "get", node.get( "action" ).asText() );
+        assertEquals( size, node.get( "entities" ).size() );
+
+        for ( int i = 0; i < size; i++ ) {
+            assertEquals( String.valueOf( i ), node.get( "entities" ).get( i ).get( "name" ).asText() );
+        }
+
+        // a zero quality refuses the encoding
+        response = resource().path( context.getOrgName() + "/" + context.getAppName() + "/things" )
+                .queryParam( "access_token", context.getActiveUser().getToken() )
+                .queryParam( "limit", String.valueOf( size ) ).accept( MediaType.APPLICATION_JSON )
+                .header( HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity" ).get( ClientResponse.class );
+
+        assertNull( response.getHeaders().getFirst( HttpHeaders.CONTENT_ENCODING ) );
+        assertEquals( HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst( "Vary" ) );
+
+        node = mapper.readTree( response.getEntityInputStream() );
+
+        assertEquals( size, node.get( "entities" ).size() );
+    }
+
+
     private static ObjectMapper mapper = new ObjectMapper();
 
 
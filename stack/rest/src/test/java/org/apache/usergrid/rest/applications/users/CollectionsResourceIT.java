@@ -37,6 +37,7 @@ import com.sun.jersey.api.client.UniformInterfaceException;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.apache.usergrid.utils.MapUtils.hashMap;
 
 
@@ -197,4 +198,33 @@ public class CollectionsResourceIT extends AbstractRestIT {
             Assert.assertEquals( "Should not be more than one name property", -1, secondFred );
         }
     }
+
+
+    @Test
+    public void countApproximate() throws Exception {
+
+        for ( int i = 0; i < 25; i++ ) {
+            Map<String, Object> payload = hashMap( "name", ( Object ) ( "game" + i ) ).map( "level", i % 5 );
+
+            resource().path( "/test-organization/test-app/countedgames" ).queryParam( "access_token", access_token )
+                    .accept( MediaType.APPLICATION_JSON ).type( MediaType.APPLICATION_JSON_TYPE )
+                    .post( JsonNode.class, payload );
+        }
+
+        JsonNode node = resource().path( "/test-organization/test-app/countedgames" )
+                .queryParam( "access_token", access_token ).queryParam( "ql", "select count(*) where level > 0" )
+                .accept( MediaType.APPLICATION_JSON ).get( JsonNode.class );
+
+        assertEquals( 20, node.get( "count" ).asInt() );
+        assertNull( node.get( "countApproximate" ) );
+
+        // a count limit stops the count early, the count is then a lower bound
+        node = resource().path( "/test-organization/test-app/countedgames" ).queryParam( "access_token", access_token )
+                .queryParam( "ql", "select count(*) where level > 0" ).queryParam( "count_limit", "7" )
+                .accept( MediaType.APPLICATION_JSON ).get( JsonNode.class );
+
+        assertEquals( 7, node.get( "count" ).asInt() );
+        assertTrue( node.get( "countApproximate" ).asBoolean() );
+        assertNotNull( node.get( "cursor" ) );
+    }
 }
@@ -27,6 +27,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -96,6 +97,8 @@ import org.apache.usergrid.utils.MailUtils;
 import org.apache.usergrid.utils.StringUtils;
 import org.apache.usergrid.utils.UUIDUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 
@@ -104,6 +107,8 @@ import static java.lang.Boolean.parseBoolean;
 import static org.apache.commons.codec.binary.Base64.encodeBase64URLSafeString;
 import static org.apache.commons.codec.digest.DigestUtils.sha;
 import static org.apache.commons.lang.StringUtils.isBlank;
+import static org.apache.commons.lang.math.NumberUtils.toInt;
+import static org.apache.commons.lang.math.NumberUtils.toLong;
 import static org.apache.usergrid.locking.LockHelper.getUniqueUpdateLock;
 import static org.apache.usergrid.management.AccountCreationProps.PROPERTIES_ADMIN_ACTIVATION_URL;
 import static org.apache.usergrid.management.AccountCreationProps.PROPERTIES_ADMIN_CONFIRMATION_URL;
@@ -148,6 +153,10 @@ import static org.apache.usergrid.persistence.Schema.PROPERTY_PATH;
 import static org.apache.usergrid.persistence.Schema.PROPERTY_SECRET;
 import static org.apache.usergrid.persistence.Schema.PROPERTY_UUID;
 import static org.apache.usergrid.persistence.cassandra.CassandraService.MANAGEMENT_APPLICATION_ID;
+import static org.apache.usergrid.persistence.cassandra.EntityManagerFactoryImpl.DEFAULT_APPLICATION_CACHE_SIZE;
+import static org.apache.usergrid.persistence.cassandra.EntityManagerFactoryImpl.DEFAULT_APPLICATION_CACHE_TTL;
+import static org.apache.usergrid.persistence.cassandra.EntityManagerFactoryImpl.PROPERTIES_APPLICATION_CACHE_SIZE;
+import static org.apache.usergrid.persistence.cassandra.EntityManagerFactoryImpl.PROPERTIES_APPLICATION_CACHE_TTL;
 import static org.apache.usergrid.persistence.entities.Activity.PROPERTY_ACTOR;
 import static org.apache.usergrid.persistence.entities.Activity.PROPERTY_ACTOR_NAME;
 import static org.apache.usergrid.persistence.entities.Activity.PROPERTY_CATEGORY;
@@ -231,6 +240,13 @@ public class ManagementServiceImpl implements ManagementService {
 
     protected EncryptionService encryptionService;
 
+    /**
+     * The organization owning each application, cached as the organization's uuid and path. Sized like the application
+     * caches of the entity manager factory.
+     */
+    private volatile Cache<UUID, OrganizationInfo> applicationOrganizations =
+            applicationOrganizationsCache( DEFAULT_APPLICATION_CACHE_SIZE, DEFAULT_APPLICATION_CACHE_TTL );
+
 
     /** Must be constructed with a CassandraClientPool. */
     public ManagementServiceImpl() {
@@ -247,6 +263,15 @@ public class ManagementServiceImpl implements ManagementService {
     @Autowired
     public void setProperties( Properties properties ) {
         this.properties = new AccountCreationPropsImpl( properties );
+
+        applicationOrganizations = applicationOrganizationsCache(
+                toInt( properties.getProperty( PROPERTIES_APPLICATION_CACHE_SIZE ), DEFAULT_APPLICATION_CACHE_SIZE ),
+                toLong( properties.getProperty( PROPERTIES_APPLICATION_CACHE_TTL ), DEFAULT_APPLICATION_CACHE_TTL ) );
+    }
+
+
+    private static Cache<UUID, OrganizationInfo> applicationOrganizationsCache( int size, long ttl ) {
+        return CacheBuilder.newBuilder().maximumSize( size ).expireAfterWrite( ttl, TimeUnit.SECONDS ).build();
     }
 
 
@@ -1672,11 +1697,19 @@ public class ManagementServiceImpl implements ManagementService {
             return null;
         }
 
+        // callers may set properties on the returned info, so hand out a copy
+        OrganizationInfo cached = applicationOrganizations.getIfPresent( applicationId );
+        if ( cached != null ) {
+            return new OrganizationInfo( cached.getUuid(), cached.getName() );
+        }
+
         EntityManager em = emf.getEntityManager( MANAGEMENT_APPLICATION_ID );
         Results r = em.getConnectingEntities( applicationId, "owns", "group", Level.ALL_PROPERTIES );
         Entity entity = r.getEntity();
         if ( entity != null ) {
-            return new OrganizationInfo( entity.getUuid(), ( String ) entity.getProperty( "path" ) );
+            String path = ( String ) entity.getProperty( "path" );
+            applicationOrganizations.put( applicationId, new OrganizationInfo( entity.getUuid(), path ) );
+            return new OrganizationInfo( entity.getUuid(), path );
         }
 
         return null;
@@ -1740,21 +1773,24 @@ public class ManagementServiceImpl implements ManagementService {
         em.createConnection( new SimpleEntityRef( "group", organizationId ), "owns",
                 new SimpleEntityRef( APPLICATION_INFO, applicationId ) );
 
+        applicationOrganizations.invalidate( applicationId );
+
         return applicationId;
     }
 
 
     @Override
     public void deleteOrganizationApplication( UUID organizationId, UUID applicationId ) throws Exception {
-        // TODO Auto-generated method stub
-
+        // TODO delete the application, for now only what is cached for it is dropped
+        applicationOrganizations.invalidate( applicationId );
+        emf.invalidateApplication( applicationId );
     }
 
 
     @Override
     public void removeOrganizationApplication( UUID organizationId, UUID applicationId ) throws Exception {
-        // TODO Auto-generated method stub
-
+        // TODO remove the application, for now only what is cached for it is dropped
+        applicationOrganizations.invalidate( applicationId );
     }
 
 
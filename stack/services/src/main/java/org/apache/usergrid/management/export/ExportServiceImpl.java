@@ -18,15 +18,27 @@ package org.apache.usergrid.management.export;
 
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
 
 import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.util.DefaultPrettyPrinter;
 import org.slf4j.Logger;
@@ -76,8 +88,13 @@ public class ExportServiceImpl implements ExportService {
     //Amount of time that has passed before sending another heart beat in millis
     public static final int TIMESTAMP_DELTA = 5000;
 
+    //Number of collections exported concurrently
+    public static final int DEFAULT_EXPORT_THREADS = 4;
+
     private JsonFactory jsonFactory = new JsonFactory();
 
+    private int exportThreads = DEFAULT_EXPORT_THREADS;
+
 
     @Override
     public UUID schedule( final Map<String, Object> config ) throws Exception {
@@ -299,6 +316,16 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
+    public int getExportThreads() {
+        return exportThreads;
+    }
+
+
+    public void setExportThreads( final int exportThreads ) {
+        this.exportThreads = exportThreads;
+    }
+
+
     public ManagementService getManagementService() {
 
         return managementService;
@@ -338,7 +365,7 @@ public class ExportServiceImpl implements ExportService {
                 continue;
             }
 
-            appFileName = prepareOutputFileName( "application", application.getValue(), null );
+            appFileName = prepareOutputFileName( "application", application.getValue(), null, config );
 
             File ephemeral = collectionExportAndQuery( application.getKey(), config, export, jobExecution );
 
@@ -371,7 +398,7 @@ public class ExportServiceImpl implements ExportService {
         Export export = getExportEntity( jobExecution );
 
         ApplicationInfo application = managementService.getApplicationInfo( applicationId );
-        String appFileName = prepareOutputFileName( "application", application.getName(), null );
+        String appFileName = prepareOutputFileName( "application", application.getName(), null, config );
 
         File ephemeral = collectionExportAndQuery( applicationId, config, export, jobExecution );
 
@@ -391,7 +418,7 @@ public class ExportServiceImpl implements ExportService {
         ApplicationInfo application = managementService.getApplicationInfo( applicationUUID );
 
         String appFileName = prepareOutputFileName( "application", application.getName(),
-                ( String ) config.get( "collectionName" ) );
+                ( String ) config.get( "collectionName" ), config );
 
 
         File ephemeral = collectionExportAndQuery( applicationUUID, config, export, jobExecution );
@@ -443,28 +470,23 @@ public class ExportServiceImpl implements ExportService {
                 jg.writeFieldName( collectionName );
                 jg.writeStartArray();
 
-                //is 100000 an arbitary number?
-                Results collectionMembers =
-                        em.getCollection( entity, collectionName, null, 100000, Results.Level.IDS, false );
+                //page through the members so large collections are never held in memory at once
+                Query query = new Query();
+                query.setLimit( MAX_ENTITY_FETCH );
+                query.setResultsLevel( Results.Level.IDS );
 
-                List<UUID> entityIds = collectionMembers.getIds();
+                Results collectionMembers =
+                        em.getCollection( entity.getUuid(), collectionName, query, Results.Level.IDS );
 
-                if ( ( entityIds != null ) && !entityIds.isEmpty() ) {
-                    for ( UUID childEntityUUID : entityIds ) {
-                        jg.writeObject( childEntityUUID.toString() );
-                    }
+                PagingResultsIterator itr = new PagingResultsIterator( collectionMembers, Results.Level.IDS );
+                for ( Object childEntityUUID : itr ) {
+                    jg.writeObject( childEntityUUID.toString() );
                 }
 
                 // End collection array.
                 jg.writeEndArray();
             }
         }
-
-        // Write connections
-        saveConnections( entity, em, jg );
-
-        // Write dictionaries
-        saveDictionaries( entity, em, jg );
     }
 
 
@@ -538,6 +560,32 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
+    /**
+     * Same as {@link #getJsonGenerator(java.io.File)}, but gzips the output when <code>compress</code> is set. The
+     * stream is finished when the generator is closed.
+     */
+    protected JsonGenerator getJsonGenerator( File ephermal, boolean compress ) throws IOException {
+        if ( !compress ) {
+            return getJsonGenerator( ephermal );
+        }
+
+        JsonGenerator jg = jsonFactory
+                .createJsonGenerator( new GZIPOutputStream( new FileOutputStream( ephermal ) ), JsonEncoding.UTF8 );
+        jg.setPrettyPrinter( new DefaultPrettyPrinter() );
+        jg.setCodec( new ObjectMapper() );
+        return jg;
+    }
+
+
+    /**
+     * @return true if the export configuration asks for a gzipped file
+     */
+    protected boolean isCompressed( final Map<String, Object> config ) {
+        Object compress = config.get( "compress" );
+        return compress != null && Boolean.parseBoolean( compress.toString() );
+    }
+
+
     /**
      * @param type just a label such us: organization, application.
      *
@@ -561,22 +609,34 @@ public class ExportServiceImpl implements ExportService {
 
 
     /**
-     * handles the query and export of collections
+     * Same as {@link #prepareOutputFileName(String, String, String)}, with a .gz suffix when the export is compressed.
+     */
+    protected String prepareOutputFileName( String type, String name, String CollectionName,
+                                            final Map<String, Object> config ) {
+        String outputFileName = prepareOutputFileName( type, name, CollectionName );
+
+        if ( isCompressed( config ) ) {
+            outputFileName += ".gz";
+        }
+
+        return outputFileName;
+    }
+
+
+    /**
+     * handles the query and export of collections. Each collection is paged through on the export pool and written to
+     * its own part file, the parts are then stitched in order into a single JSON array.
      */
-    //TODO:Needs further refactoring.
     protected File collectionExportAndQuery( UUID applicationUUID, final Map<String, Object> config, Export export,
                                              final JobExecution jobExecution ) throws Exception {
 
-        EntityManager em = emf.getEntityManager( applicationUUID );
+        final EntityManager em = emf.getEntityManager( applicationUUID );
         Map<String, Object> metadata = em.getApplicationCollectionMetadata();
         long starting_time = System.currentTimeMillis();
         File ephemeral = new File( "tempExport" + UUID.randomUUID() );
         ephemeral.deleteOnExit();
 
-
-        JsonGenerator jg = getJsonGenerator( ephemeral );
-
-        jg.writeStartArray();
+        List<String> collectionNames = new ArrayList<String>();
 
         for ( String collectionName : metadata.keySet() ) {
             if ( collectionName.equals( "exports" ) ) {
@@ -586,43 +646,128 @@ public class ExportServiceImpl implements ExportService {
 
             if ( ( config.get( "collectionName" ) == null ) || collectionName
                     .equals( config.get( "collectionName" ) ) ) {
-                //Query entity manager for the entities in a collection
-                Query query = null;
-                if ( config.get( "query" ) == null ) {
-                    query = new Query();
-                }
-                else {
-                    try {
-                        query = Query.fromQL( ( String ) config.get( "query" ) );
+                collectionNames.add( collectionName );
+            }
+        }
+
+        int threads = Math.max( 1, Math.min( exportThreads, collectionNames.size() ) );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+
+        try {
+            List<Future<File>> parts = new ArrayList<Future<File>>( collectionNames.size() );
+
+            for ( final String collectionName : collectionNames ) {
+                parts.add( executor.submit( new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        return exportCollection( em, collectionName, config );
                     }
-                    catch ( Exception e ) {
-                        export.setErrorMessage( e.getMessage() );
+                } ) );
+            }
+
+            JsonGenerator jg = getJsonGenerator( ephemeral, isCompressed( config ) );
+
+            jg.writeStartArray();
+
+            //the job execution is only touched from this thread, heart beat while the workers are still running
+            for ( Future<File> part : parts ) {
+                File partFile = awaitPart( part, jobExecution );
+
+                JsonParser jp = jsonFactory.createJsonParser( partFile );
+                try {
+                    if ( jp.nextToken() == JsonToken.START_ARRAY ) {
+                        while ( jp.nextToken() == JsonToken.START_OBJECT ) {
+                            starting_time = checkTimeDelta( starting_time, jobExecution );
+                            jg.copyCurrentStructure( jp );
+                        }
                     }
                 }
-                query.setLimit( MAX_ENTITY_FETCH );
-                query.setResultsLevel( Results.Level.ALL_PROPERTIES );
-                query.setCollection( collectionName );
-
-                Results entities = em.searchCollection( em.getApplicationRef(), collectionName, query );
-
-                //pages through the query and backs up all results.
-                PagingResultsIterator itr = new PagingResultsIterator( entities );
-                for ( Object e : itr ) {
-                    starting_time = checkTimeDelta( starting_time, jobExecution );
-                    Entity entity = ( Entity ) e;
-                    jg.writeStartObject();
-                    jg.writeFieldName( "Metadata" );
-                    jg.writeObject( entity );
-                    saveCollectionMembers( jg, em, ( String ) config.get( "collectionName" ), entity );
-                    jg.writeEndObject();
-                    jg.flush();
+                finally {
+                    jp.close();
+                    partFile.delete();
                 }
+
+                jg.flush();
             }
+
+            jg.writeEndArray();
+            jg.flush();
+            jg.close();
+        }
+        finally {
+            executor.shutdownNow();
         }
-        jg.writeEndArray();
-        jg.flush();
-        jg.close();
 
         return ephemeral;
     }
+
+
+    /**
+     * Pages through a single collection and writes its entities to a part file.
+     */
+    protected File exportCollection( EntityManager em, String collectionName, final Map<String, Object> config )
+            throws Exception {
+
+        File part = new File( "tempExport" + UUID.randomUUID() + "." + collectionName );
+        part.deleteOnExit();
+
+        //Query entity manager for the entities in a collection
+        Query query = null;
+        if ( config.get( "query" ) == null ) {
+            query = new Query();
+        }
+        else {
+            query = Query.fromQL( ( String ) config.get( "query" ) );
+        }
+        query.setLimit( MAX_ENTITY_FETCH );
+        query.setResultsLevel( Results.Level.ALL_PROPERTIES );
+        query.setCollection( collectionName );
+
+        JsonGenerator jg = getJsonGenerator( part );
+
+        try {
+            jg.writeStartArray();
+
+            Results entities = em.searchCollection( em.getApplicationRef(), collectionName, query );
+
+            //pages through the query and backs up all results.
+            PagingResultsIterator itr = new PagingResultsIterator( entities );
+            for ( Object e : itr ) {
+                Entity entity = ( Entity ) e;
+                jg.writeStartObject();
+                jg.writeFieldName( "Metadata" );
+                jg.writeObject( entity );
+                saveCollectionMembers( jg, em, ( String ) config.get( "collectionName" ), entity );
+                jg.writeEndObject();
+            }
+
+            jg.writeEndArray();
+        }
+        finally {
+            jg.close();
+        }
+
+        return part;
+    }
+
+
+    /**
+     * Waits for a collection part to finish, sending a heart beat every {@link #TIMESTAMP_DELTA} millis.
+     */
+    private File awaitPart( Future<File> part, final JobExecution jobExecution ) throws Exception {
+        while ( true ) {
+            try {
+                return part.get( TIMESTAMP_DELTA, TimeUnit.MILLISECONDS );
+            }
+            catch ( TimeoutException e ) {
+                jobExecution.heartbeat();
+            }
+            catch ( ExecutionException e ) {
+                if ( e.getCause() instanceof Exception ) {
+                    throw ( Exception ) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
 }
@@ -19,8 +19,15 @@ package org.apache.usergrid.services;
 
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +46,8 @@ import org.apache.usergrid.services.exceptions.UndefinedServiceEntityTypeExcepti
 import org.apache.usergrid.utils.ListUtils;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -424,4 +433,167 @@ public class ServiceManager {
     public Properties getProperties() {
         return properties;
     }
+
+
+    /** @return the executor for the branches of multi-request paths, null if branches run serially */
+    public ExecutorService getRequestExecutor() {
+        return smf != null ? smf.getRequestExecutor() : null;
+    }
+
+
+    /** @return the number of branches of one request, including its nested paths, that run at the same time */
+    public int getRequestFanOut() {
+        return smf != null ? smf.getRequestFanOut() : 1;
+    }
+
+
+    /**
+     * Hand the calls to the request executor and return their futures in the same order. Each call that runs on the
+     * executor holds one of the permits until it completes, and each completed call starts the next waiting call
+     * while a permit is free, so the calls keep the executor busy up to the permits. A call the executor rejects is
+     * run by the thread that gets its future. So is a call that hasn't started when its future is read, which keeps
+     * a thread waiting on calls queued behind it from blocking for good. Calls run as the Shiro subject of the calling
+     * thread.
+     */
+    public <T> List<Future<T>> invokeAll( List<Callable<T>> calls, Semaphore permits ) {
+
+        List<Future<T>> futures = new ArrayList<Future<T>>( calls.size() );
+
+        ExecutorService executor = getRequestExecutor();
+
+        if ( executor == null ) {
+            for ( Callable<T> call : calls ) {
+                futures.add( new CallerRunsFuture<T>( call, null ) );
+            }
+
+            return futures;
+        }
+
+        Subject subject = ThreadContext.getSubject();
+        Dispatcher<T> dispatcher = new Dispatcher<T>( executor, permits );
+
+        for ( Callable<T> call : calls ) {
+            CallerRunsFuture<T> future =
+                    new CallerRunsFuture<T>( subject != null ? subject.associateWith( call ) : call, dispatcher );
+
+            futures.add( future );
+            dispatcher.add( future );
+        }
+
+        dispatcher.dispatch();
+
+        return futures;
+    }
+
+
+    /** Starts the waiting calls of one invokeAll on the executor, one per free permit, in order */
+    private static class Dispatcher<T> {
+
+        private final ExecutorService executor;
+        private final Semaphore permits;
+        private final Queue<CallerRunsFuture<T>> waiting = new LinkedList<CallerRunsFuture<T>>();
+
+
+        public Dispatcher( ExecutorService executor, Semaphore permits ) {
+            this.executor = executor;
+            this.permits = permits;
+        }
+
+
+        public synchronized void add( CallerRunsFuture<T> future ) {
+            waiting.add( future );
+        }
+
+
+        /** Start waiting calls until the permits or the room on the executor run out */
+        public synchronized void dispatch() {
+            CallerRunsFuture<T> future;
+
+            while ( ( future = waiting.peek() ) != null ) {
+
+                // already run by the thread that read it, or cancelled
+                if ( future.isDone() ) {
+                    waiting.poll();
+                    continue;
+                }
+
+                if ( !permits.tryAcquire() ) {
+                    return;
+                }
+
+                waiting.poll();
+
+                try {
+                    executor.execute( new PermitRun( future ) );
+                }
+                catch ( RejectedExecutionException e ) {
+                    // the call runs on the thread that reads its future
+                    permits.release();
+                    logger.debug( "Request executor is full, running call on the requesting thread" );
+                    return;
+                }
+            }
+        }
+
+
+        /** Runs a call on the executor, then hands its permit to the next waiting call */
+        private class PermitRun implements Runnable {
+
+            private final CallerRunsFuture<T> future;
+
+
+            public PermitRun( CallerRunsFuture<T> future ) {
+                this.future = future;
+            }
+
+
+            @Override
+            public void run() {
+                try {
+                    future.run();
+                }
+                finally {
+                    permits.release();
+                    dispatch();
+                }
+            }
+        }
+    }
+
+
+    /** A future that runs its call on the thread waiting for it, unless an executor thread already started it */
+    private static class CallerRunsFuture<T> extends FutureTask<T> {
+
+        private final Dispatcher<T> dispatcher;
+
+
+        public CallerRunsFuture( Callable<T> callable, Dispatcher<T> dispatcher ) {
+            super( callable );
+            this.dispatcher = dispatcher;
+        }
+
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            runHere();
+            return super.get();
+        }
+
+
+        @Override
+        public T get( long timeout, TimeUnit unit ) throws InterruptedException, ExecutionException, TimeoutException {
+            runHere();
+            return super.get( timeout, unit );
+        }
+
+
+        /** Start the calls that have a free permit by now, then run this one if no thread has started it */
+        private void runHere() {
+            if ( dispatcher != null && !isDone() ) {
+                dispatcher.dispatch();
+            }
+
+            run();
+        }
+    }
 }
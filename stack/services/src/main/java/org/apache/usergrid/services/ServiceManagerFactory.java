@@ -20,6 +20,10 @@ package org.apache.usergrid.services;
 import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -31,9 +35,19 @@ import org.apache.usergrid.mq.QueueManagerFactory;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static org.apache.commons.collections.MapUtils.getIntValue;
+
 
 public class ServiceManagerFactory implements ApplicationContextAware {
 
+    public static final String REQUEST_THREADS = "usergrid.services.request.threads";
+    public static final String REQUEST_FANOUT = "usergrid.services.request.fanout";
+
+    public static final int DEFAULT_REQUEST_THREADS = 32;
+    public static final int DEFAULT_REQUEST_FANOUT = 8;
+
     private ApplicationContext applicationContext;
 
     private EntityManagerFactory emf;
@@ -45,6 +59,9 @@ public class ServiceManagerFactory implements ApplicationContextAware {
     private List<ServiceExecutionEventListener> eventListeners;
     private List<ServiceCollectionEventListener> collectionListeners;
 
+    private final int requestFanOut;
+    private final ExecutorService requestExecutor;
+
 
     public ServiceManagerFactory( EntityManagerFactory emf, Properties properties, SchedulerService schedulerService,
                                   LockManager lockManager, QueueManagerFactory qmf ) {
@@ -53,6 +70,25 @@ public class ServiceManagerFactory implements ApplicationContextAware {
         this.schedulerService = schedulerService;
         this.lockManager = lockManager;
         this.qmf = qmf;
+
+        int requestThreads = getIntValue( properties, REQUEST_THREADS, DEFAULT_REQUEST_THREADS );
+        this.requestFanOut = getIntValue( properties, REQUEST_FANOUT, DEFAULT_REQUEST_FANOUT );
+        this.requestExecutor = requestThreads > 0 && requestFanOut > 1 ? newRequestExecutor( requestThreads ) : null;
+    }
+
+
+    /**
+     * A bounded pool for the branches of multi-request paths, E.G. /users/a;b;c/activities. Branches the pool can't
+     * queue are run by their requesting thread
+     */
+    private static ExecutorService newRequestExecutor( int threads ) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>( threads * 4 ),
+                new ThreadFactoryBuilder().setNameFormat( "service-request-%d" ).setDaemon( true ).build() );
+
+        pool.allowCoreThreadTimeOut( true );
+
+        return pool;
     }
 
 
@@ -129,4 +165,23 @@ public class ServiceManagerFactory implements ApplicationContextAware {
     public LockManager getLockManager() {
         return lockManager;
     }
+
+
+    /** @return the executor for the branches of multi-request paths, null if branches run serially */
+    public ExecutorService getRequestExecutor() {
+        return requestExecutor;
+    }
+
+
+    /** @return the number of branches of one request, including its nested paths, that run at the same time */
+    public int getRequestFanOut() {
+        return requestFanOut;
+    }
+
+
+    public void destroy() {
+        if ( requestExecutor != null ) {
+            requestExecutor.shutdown();
+        }
+    }
 }
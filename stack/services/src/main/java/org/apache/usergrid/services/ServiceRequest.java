@@ -22,6 +22,10 @@ import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +62,9 @@ public class ServiceRequest {
     private final ServicePayload payload;
     private final List<ServiceParameter> originalParameters;
 
+    /** Permits for branches on the request executor, shared by all the requests of a tree */
+    private final Semaphore fanOut;
+
     // return results_set, result_entity, new_service, param_list, properties
 
 
@@ -78,6 +85,7 @@ public class ServiceRequest {
         }
 
         this.payload = payload;
+        this.fanOut = new Semaphore( services.getRequestFanOut() );
     }
 
 
@@ -103,12 +111,27 @@ public class ServiceRequest {
         this.originalParameters = Collections.unmodifiableList( new ArrayList<ServiceParameter>( parameters ) );
         this.path = path;
         this.childPath = childPath;
+        this.fanOut = parent.fanOut;
     }
 
 
     public ServiceRequest( ServiceManager services, ServiceAction action, ServiceRequest parent, EntityRef owner,
                            String path, String childPath, String serviceName, List<ServiceParameter> parameters,
                            ServicePayload payload, boolean returnsTree ) {
+        this( services, action, parent, owner, path, childPath, serviceName, parameters, payload, returnsTree,
+                parent != null ? parent.fanOut : new Semaphore( services.getRequestFanOut() ) );
+    }
+
+
+    private ServiceRequest( ServiceRequest r, String path, String childPath ) {
+        this( r.services, r.action, r.parent, r.owner, path, childPath, r.serviceName, r.parameters, r.payload,
+                r.returnsTree, r.fanOut );
+    }
+
+
+    private ServiceRequest( ServiceManager services, ServiceAction action, ServiceRequest parent, EntityRef owner,
+                            String path, String childPath, String serviceName, List<ServiceParameter> parameters,
+                            ServicePayload payload, boolean returnsTree, Semaphore fanOut ) {
         this.services = services;
         this.action = action;
         this.parent = parent;
@@ -120,18 +143,17 @@ public class ServiceRequest {
         this.childPath = childPath;
         this.returnsTree = returnsTree;
         this.payload = payload;
+        this.fanOut = fanOut;
     }
 
 
     public static ServiceRequest withPath( ServiceRequest r, String path ) {
-        return new ServiceRequest( r.services, r.action, r.parent, r.owner, path, r.childPath, r.serviceName,
-                r.parameters, r.payload, r.returnsTree );
+        return new ServiceRequest( r, path, r.childPath );
     }
 
 
     public static ServiceRequest withChildPath( ServiceRequest r, String childPath ) {
-        return new ServiceRequest( r.services, r.action, r.parent, r.owner, r.path, childPath, r.serviceName,
-                r.parameters, r.payload, r.returnsTree );
+        return new ServiceRequest( r, r.path, childPath );
     }
 
 
@@ -240,13 +262,11 @@ public class ServiceRequest {
 
     private ServiceResults invokeMultiple( ServiceResults previousResults ) throws Exception {
 
-        List<ServiceRequest> requests = previousResults.getNextRequests();
+        List<ServiceResults> branchResults = executeBranches( previousResults );
 
         if ( returnsTree ) {
 
-            for ( ServiceRequest request : requests ) {
-
-                ServiceResults rs = request.execute( previousResults );
+            for ( ServiceResults rs : branchResults ) {
                 if ( rs != null ) {
                     previousResults.setChildResults( rs );
                 }
@@ -257,9 +277,7 @@ public class ServiceRequest {
         else {
             ServiceResults aggregate_results = null;
 
-            for ( ServiceRequest request : requests ) {
-
-                ServiceResults rs = request.execute( previousResults );
+            for ( ServiceResults rs : branchResults ) {
                 if ( rs != null ) {
                     if ( aggregate_results == null ) {
                         aggregate_results = rs;
@@ -275,6 +293,51 @@ public class ServiceRequest {
     }
 
 
+    /**
+     * Execute the next requests of the results and return their results in the same order. Branches run on the request
+     * executor while the request tree has permits left, and on this thread otherwise.
+     */
+    private List<ServiceResults> executeBranches( final ServiceResults previousResults ) throws Exception {
+
+        List<ServiceRequest> requests = previousResults.getNextRequests();
+        List<Callable<ServiceResults>> branches = new ArrayList<Callable<ServiceResults>>( requests.size() );
+
+        for ( final ServiceRequest request : requests ) {
+            branches.add( new Callable<ServiceResults>() {
+                @Override
+                public ServiceResults call() throws Exception {
+                    return request.execute( previousResults );
+                }
+            } );
+        }
+
+        List<Future<ServiceResults>> futures = services.invokeAll( branches, fanOut );
+        List<ServiceResults> results = new ArrayList<ServiceResults>( futures.size() );
+
+        try {
+            for ( Future<ServiceResults> future : futures ) {
+                results.add( future.get() );
+            }
+        }
+        catch ( ExecutionException e ) {
+            for ( Future<ServiceResults> future : futures ) {
+                future.cancel( false );
+            }
+
+            if ( e.getCause() instanceof Exception ) {
+                throw ( Exception ) e.getCause();
+            }
+            if ( e.getCause() instanceof Error ) {
+                throw ( Error ) e.getCause();
+            }
+
+            throw e;
+        }
+
+        return results;
+    }
+
+
     public List<ServiceParameter> getParameters() {
         return parameters;
     }
@@ -19,12 +19,15 @@ package org.apache.usergrid.management.cassandra;
 
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 import org.jclouds.ContextBuilder;
 import org.jclouds.blobstore.BlobStore;
@@ -974,6 +977,68 @@ public class ExportServiceIT {
         blobStore.deleteContainer( bucketName );
     }
 
+    @Test
+    public void testExportCompressedApplication() throws Exception {
+
+        File f = new File( "exportCompressedApp.json.gz" );
+        f.deleteOnExit();
+
+        UUID appId = setup.getEmf().createApplication( "george-organization", "testAppCompressedExport" );
+
+        EntityManager em = setup.getEmf().getEntityManager( appId );
+        //creates entities in more than one collection so they are exported concurrently
+        for ( int i = 0; i < 5; i++ ) {
+            Map<String, Object> properties = new LinkedHashMap<String, Object>();
+            properties.put( "username", "compressed" + i );
+            properties.put( "email", "compressed" + i + "@anuff.com" );
+            em.create( "user", properties );
+
+            properties = new LinkedHashMap<String, Object>();
+            properties.put( "name", "thing" + i );
+            em.create( "thing", properties );
+        }
+
+        S3Export s3Export = new MockS3ExportImpl( "exportCompressedApp.json.gz" );
+        ExportService exportService = setup.getExportService();
+        HashMap<String, Object> payload = payloadBuilder();
+
+        payload.put( "organizationId", organization.getUuid() );
+        payload.put( "applicationId", appId );
+        payload.put( "compress", true );
+
+        UUID exportUUID = exportService.schedule( payload );
+
+        JobData jobData = jobDataCreator( payload, exportUUID, s3Export );
+
+        JobExecution jobExecution = mock( JobExecution.class );
+        when( jobExecution.getJobData() ).thenReturn( jobData );
+
+        exportService.doExport( jobExecution );
+
+        JSONParser parser = new JSONParser();
+
+        org.json.simple.JSONArray a = ( org.json.simple.JSONArray ) parser
+                .parse( new InputStreamReader( new GZIPInputStream( new FileInputStream( f ) ), "UTF-8" ) );
+
+        int users = 0;
+        int things = 0;
+        for ( int i = 0; i < a.size(); i++ ) {
+            org.json.simple.JSONObject data = ( org.json.simple.JSONObject ) a.get( i );
+            org.json.simple.JSONObject entityData = ( JSONObject ) data.get( "Metadata" );
+            String type = ( String ) entityData.get( "type" );
+            if ( "user".equals( type ) ) {
+                users++;
+            }
+            else if ( "thing".equals( type ) ) {
+                things++;
+            }
+        }
+
+        assertEquals( 5, users );
+        assertEquals( 5, things );
+    }
+
+
     public JobData jobDataCreator(HashMap<String, Object> payload,UUID exportUUID,S3Export s3Export) {
         JobData jobData = new JobData();
 
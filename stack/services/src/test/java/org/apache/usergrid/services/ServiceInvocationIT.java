@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.Query;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 
@@ -144,6 +145,26 @@ public class ServiceInvocationIT extends AbstractServiceIT {
         assertNotNull( user );
     }
     
+    @Test
+    public void testMultipleRequests() throws Exception {
+        for ( int i = 1; i <= 3; i++ ) {
+            app.put( "username", "multi_user_" + i );
+            Entity user = app.testRequest( ServiceAction.POST, 1, "users" ).getEntity();
+
+            Entity restaurant = app.doCreate( "restaurant", "restaurant " + i );
+            app.createConnection( user, "likes", restaurant );
+        }
+
+        // each user is a branch of the request, the merged results keep the order of the users
+        List<Entity> liked = app.testRequest( ServiceAction.GET, 3, "users",
+                Query.fromQL( "select * where username = 'multi_user*'" ), "likes" ).getEntities();
+
+        for ( int i = 0; i < 3; i++ ) {
+            assertEquals( "restaurant " + ( i + 1 ), liked.get( i ).getName() );
+        }
+    }
+
+
     /* Written to test fix for https://issues.apache.org/jira/browse/USERGRID-94
      * (Null pointer was returned when querying names with spaces.)
      * e.x.: http://localhost:8080/test-organization/test-app/contributors/Malaka Mahanama
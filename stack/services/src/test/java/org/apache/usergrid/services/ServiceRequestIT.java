@@ -17,11 +17,16 @@
 package org.apache.usergrid.services;
 
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,6 +38,9 @@ import org.apache.usergrid.ServiceITSuite;
 import org.apache.usergrid.cassandra.ClearShiroSubject;
 import org.apache.usergrid.cassandra.Concurrent;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.apache.usergrid.persistence.cassandra.CassandraService.DEFAULT_APPLICATION_ID;
 import static org.apache.usergrid.services.ServiceParameter.filter;
 import static org.apache.usergrid.services.ServiceParameter.parameters;
@@ -76,4 +84,65 @@ public class ServiceRequestIT {
         p = filter( path.getParameters(), replaceParameters );
         logger.info( "" + p );
     }
+
+
+    @Test
+    public void invokeAllRefillsTheFanOut() throws Exception {
+
+        ServiceManager services = setup.getSmf().getServiceManager( DEFAULT_APPLICATION_ID );
+        assertNotNull( services.getRequestExecutor() );
+
+        int fanOut = services.getRequestFanOut();
+        int size = fanOut * 4;
+
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger onExecutor = new AtomicInteger();
+
+        List<Callable<Integer>> calls = new ArrayList<Callable<Integer>>( size );
+
+        for ( int i = 0; i < size; i++ ) {
+            final int index = i;
+
+            calls.add( new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int now = running.incrementAndGet();
+
+                    int max;
+                    while ( now > ( max = maxRunning.get() ) && !maxRunning.compareAndSet( max, now ) ) {
+                        // retry
+                    }
+
+                    if ( Thread.currentThread() != caller ) {
+                        onExecutor.incrementAndGet();
+                    }
+
+                    try {
+                        Thread.sleep( 50 );
+                    }
+                    finally {
+                        running.decrementAndGet();
+                    }
+
+                    return index;
+                }
+            } );
+        }
+
+        List<Future<Integer>> futures = services.invokeAll( calls, new Semaphore( fanOut ) );
+
+        assertEquals( size, futures.size() );
+
+        for ( int i = 0; i < size; i++ ) {
+            assertEquals( Integer.valueOf( i ), futures.get( i ).get() );
+        }
+
+        // completed calls start the next ones, so the executor runs more calls than the fan out
+        assertTrue( "Only " + onExecutor.get() + " calls ran on the executor", onExecutor.get() > fanOut );
+
+        // the executor runs at most the fan out, the caller at most one more
+        assertTrue( "Ran " + maxRunning.get() + " calls at once", maxRunning.get() <= fanOut + 1 );
+    }
 }
@@ -18,12 +18,17 @@ package org.apache.usergrid.tools;
 
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonParser;
@@ -65,8 +70,18 @@ public class Import extends ToolBase {
 
     static final String DEFAULT_INPUT_DIR = "export";
 
+    /** Number of entities written per batch, enables the bulk load mode */
+    static final String BATCH_SIZE = "batchSize";
+
+    /** Number of batches written concurrently in bulk load mode */
+    static final String WORKERS = "workers";
+
     JsonFactory jsonFactory = new JsonFactory();
 
+    int batchSize = 0;
+
+    int workers = 1;
+
 
     @Override
     @SuppressWarnings("static-access")
@@ -81,10 +96,20 @@ public class Import extends ToolBase {
                 OptionBuilder.withDescription( "Print on the console an echo of the content written to the file" )
                              .create( VERBOSE );
 
+        Option batchSizeOption =
+                OptionBuilder.hasArg().withDescription( "bulk load entities in batches of this size -batchSize" )
+                             .create( BATCH_SIZE );
+
+        Option workersOption = OptionBuilder.hasArg()
+                                            .withDescription( "batches written concurrently in bulk load -workers" )
+                                            .create( WORKERS );
+
         Options options = new Options();
         options.addOption( hostOption );
         options.addOption( inputDir );
         options.addOption( verbose );
+        options.addOption( batchSizeOption );
+        options.addOption( workersOption );
 
         return options;
     }
@@ -98,6 +123,14 @@ public class Import extends ToolBase {
 
         openImportDirectory( line );
 
+        if ( line.hasOption( BATCH_SIZE ) ) {
+            batchSize = Integer.parseInt( line.getOptionValue( BATCH_SIZE ) );
+        }
+
+        if ( line.hasOption( WORKERS ) ) {
+            workers = Integer.parseInt( line.getOptionValue( WORKERS ) );
+        }
+
         importOrganizations();
 
         importApplications();
@@ -229,6 +262,20 @@ public class Import extends ToolBase {
         }
 
 
+        if ( batchSize > 0 ) {
+            importEntitiesInBatches( jp, em );
+        }
+        else {
+            importEntities( jp, em );
+        }
+
+        logger.info( "----- End of application:" + application.getName() );
+        jp.close();
+    }
+
+
+    /** Creates the entities of an application file one at a time */
+    private void importEntities( JsonParser jp, EntityManager em ) throws Exception {
         while ( jp.nextValue() != JsonToken.END_ARRAY ) {
             @SuppressWarnings("unchecked") Map<String, Object> entityProps = jp.readValueAs( HashMap.class );
             // Import/create the entity
@@ -253,9 +300,92 @@ public class Import extends ToolBase {
 
             echo( entityProps );
         }
+    }
 
-        logger.info( "----- End of application:" + application.getName() );
-        jp.close();
+
+    /**
+     * Streams the entities of an application file into batches that are each written with a single mutator. Batches are
+     * written by the workers, when they all are busy the reading thread writes the next batch itself so the input is
+     * never read faster than it can be stored.
+     */
+    private void importEntitiesInBatches( JsonParser jp, final EntityManager em ) throws Exception {
+
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor( workers, workers, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<Runnable>( workers ), new ThreadPoolExecutor.CallerRunsPolicy() );
+
+        final AtomicLong imported = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+
+        List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>( batchSize );
+
+        try {
+            while ( jp.nextValue() != JsonToken.END_ARRAY ) {
+                @SuppressWarnings("unchecked") Map<String, Object> entityProps = jp.readValueAs( HashMap.class );
+
+                echo( entityProps );
+
+                batch.add( entityProps );
+
+                if ( batch.size() == batchSize ) {
+                    executor.execute( new BatchWriter( em, batch, imported, failed ) );
+                    batch = new ArrayList<Map<String, Object>>( batchSize );
+                }
+            }
+
+            if ( !batch.isEmpty() ) {
+                executor.execute( new BatchWriter( em, batch, imported, failed ) );
+            }
+        }
+        finally {
+            executor.shutdown();
+            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+        }
+
+        logger.info( "Imported {} entities, {} failed", imported.get(), failed.get() );
+    }
+
+
+    /** Writes a batch of entities of an application */
+    private class BatchWriter implements Runnable {
+
+        private final EntityManager em;
+        private final List<Map<String, Object>> batch;
+        private final AtomicLong imported;
+        private final AtomicLong failed;
+
+
+        private BatchWriter( EntityManager em, List<Map<String, Object>> batch, AtomicLong imported,
+                             AtomicLong failed ) {
+            this.em = em;
+            this.batch = batch;
+            this.imported = imported;
+            this.failed = failed;
+        }
+
+
+        @Override
+        public void run() {
+            try {
+                Map<Integer, Exception> errors = em.createBatch( null, batch );
+
+                for ( Entry<Integer, Exception> error : errors.entrySet() ) {
+                    Map<String, Object> entityProps = batch.get( error.getKey() );
+                    logger.error( "Unable to create entity with id {} and type {}", new Object[] {
+                            entityProps.get( PROPERTY_UUID ), getType( entityProps ), error.getValue()
+                    } );
+                }
+
+                imported.addAndGet( batch.size() - errors.size() );
+                failed.addAndGet( errors.size() );
+
+                logger.info( "Imported {} entities", imported.get() );
+            }
+            catch ( Exception e ) {
+                failed.addAndGet( batch.size() );
+                logger.error( "Unable to write batch of {} entities", batch.size(), e );
+            }
+        }
     }
 
 
@@ -17,12 +17,27 @@
 package org.apache.usergrid.tools;
 
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +45,7 @@ import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.Query;
 import org.apache.usergrid.persistence.Results;
+import org.apache.usergrid.persistence.cassandra.RelationManagerImpl;
 import org.apache.usergrid.persistence.entities.Application;
 import org.apache.usergrid.persistence.exceptions.DuplicateUniquePropertyExistsException;
 import org.apache.usergrid.utils.UUIDUtils;
@@ -39,11 +55,17 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 
+import com.google.common.util.concurrent.RateLimiter;
 
 
 /**
  * This is a utility to load all entities in an application and re-save them, this forces the secondary indexing to be
  * updated.
+ * <p/>
+ * Each page of a collection is re-saved by a pool of workers while the next page is read. After a page completes, its
+ * cursor is written to the checkpoint file (if one is given) so an interrupted rebuild resumes where it stopped. Once
+ * a collection is complete its full text posting lists are marked as backfilled. Once every writer has seen the marks,
+ * the term counts of those collections are computed from the keyword index.
  *
  * @author tnine
  */
@@ -64,6 +86,41 @@ public class IndexRebuild extends ToolBase {
      */
     private static final int PAGE_SIZE = 100;
 
+    /**
+     *
+     */
+    private static final String WORKERS_ARG = "workers";
+
+    /**
+     *
+     */
+    private static final String RATE_ARG = "rate";
+
+    /**
+     *
+     */
+    private static final String CHECKPOINT_ARG = "checkpoint";
+
+    /** Checkpoint value of a collection that has been fully reindexed */
+    private static final String COMPLETE = "complete";
+
+    private ExecutorService workers;
+
+    private RateLimiter rateLimiter;
+
+    private File checkpointFile;
+
+    private final Properties checkpoints = new Properties();
+
+    private final AtomicLong reindexed = new AtomicLong();
+
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /** Collections marked as backfilled by this run, keyed by application */
+    private final Map<UUID, List<String>> backfilled = new LinkedHashMap<UUID, List<String>>();
+
+    private long started;
+
 
     private static final Logger logger = LoggerFactory.getLogger( IndexRebuild.class );
 
@@ -83,10 +140,26 @@ public class IndexRebuild extends ToolBase {
                                                .withDescription( "colleciton name" ).create( COLLECTION_ARG );
 
 
+        Option workersOption = OptionBuilder.withArgName( WORKERS_ARG ).hasArg().isRequired( false )
+                                            .withDescription( "number of concurrent workers, defaults to 1" )
+                                            .create( WORKERS_ARG );
+
+        Option rateOption = OptionBuilder.withArgName( RATE_ARG ).hasArg().isRequired( false )
+                                         .withDescription( "maximum entities reindexed per second" )
+                                         .create( RATE_ARG );
+
+        Option checkpointOption = OptionBuilder.withArgName( CHECKPOINT_ARG ).hasArg().isRequired( false )
+                                               .withDescription( "file to record and resume progress from" )
+                                               .create( CHECKPOINT_ARG );
+
+
         Options options = new Options();
         options.addOption( hostOption );
         options.addOption( appOption );
         options.addOption( collectionOption );
+        options.addOption( workersOption );
+        options.addOption( rateOption );
+        options.addOption( checkpointOption );
 
         return options;
     }
@@ -104,20 +177,42 @@ public class IndexRebuild extends ToolBase {
 
         logger.info( "Starting index rebuild" );
 
-        /**
-         * Goes through each app id specified
-         */
-        for ( UUID appId : getAppIds( line ) ) {
+        int workerCount = Integer.parseInt( line.getOptionValue( WORKERS_ARG, "1" ) );
+        workers = Executors.newFixedThreadPool( workerCount );
 
-            logger.info( "Reindexing for app id: {}", appId );
+        if ( line.hasOption( RATE_ARG ) ) {
+            rateLimiter = RateLimiter.create( Double.parseDouble( line.getOptionValue( RATE_ARG ) ) );
+        }
+
+        if ( line.hasOption( CHECKPOINT_ARG ) ) {
+            loadCheckpoints( new File( line.getOptionValue( CHECKPOINT_ARG ) ) );
+        }
 
-            Set<String> collections = getCollections( line, appId );
+        started = System.currentTimeMillis();
 
-            for ( String collection : collections ) {
+        try {
+            /**
+             * Goes through each app id specified
+             */
+            for ( UUID appId : getAppIds( line ) ) {
 
-                reindex( appId, collection );
+                logger.info( "Reindexing for app id: {}", appId );
+
+                Set<String> collections = getCollections( line, appId );
+
+                for ( String collection : collections ) {
+
+                    reindex( appId, collection );
+                }
             }
         }
+        finally {
+            workers.shutdownNow();
+        }
+
+        logProgress();
+
+        rebuildTermCounts();
 
         logger.info( "Finished index rebuild" );
     }
@@ -166,40 +261,194 @@ public class IndexRebuild extends ToolBase {
 
 
     /** The application id. The collection name. */
-    private void reindex( UUID appId, String collectionName ) throws Exception {
-        logger.info( "Reindexing collection: {} for app id: {}", collectionName, appId );
+    private void reindex( final UUID appId, String collectionName ) throws Exception {
 
-        EntityManager em = emf.getEntityManager( appId );
+        String checkpointKey = appId + "/" + collectionName;
+        String cursor = checkpoints.getProperty( checkpointKey );
+
+        final EntityManager em = emf.getEntityManager( appId );
         Application app = em.getApplication();
 
+        if ( COMPLETE.equals( cursor ) ) {
+            logger.info( "Skipping collection: {} for app id: {}, already reindexed", collectionName, appId );
+            setBackfilled( em, appId, collectionName );
+            return;
+        }
+
+        logger.info( "Reindexing collection: {} for app id: {}", collectionName, appId );
+
         // search for all orgs
 
         Query query = new Query();
         query.setLimit( PAGE_SIZE );
-        Results r = null;
 
-        do {
+        if ( cursor != null ) {
+            logger.info( "Resuming collection: {} for app id: {} from checkpoint", collectionName, appId );
+            query.setCursor( cursor );
+        }
 
-            r = em.searchCollection( app, collectionName, query );
+        Results r = em.searchCollection( app, collectionName, query );
 
-            for ( Entity entity : r.getEntities() ) {
-                logger.info( "Updating entity type: {} with id: {} for app id: {}", new Object[] {
-                        entity.getType(), entity.getUuid(), appId
-                } );
+        while ( r != null ) {
 
-                try {
-                    em.update( entity );
-                }
-                catch ( DuplicateUniquePropertyExistsException dupee ) {
-                    logger.error( "duplicate property for type: {} with id: {} for app id: {}.  Property name: {} , "
-                            + "value: {}", new Object[] {
-                            entity.getType(), entity.getUuid(), appId, dupee.getPropertyName(), dupee.getPropertyValue()
-                    } );
-                }
+            List<Future<Void>> updates = new ArrayList<Future<Void>>( r.size() );
+
+            for ( final Entity entity : r.getEntities() ) {
+                updates.add( workers.submit( new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        update( em, appId, entity );
+                        return null;
+                    }
+                } ) );
+            }
+
+            // read the next page while the workers re-save this one
+            Results next = null;
+
+            if ( r.size() == PAGE_SIZE && r.hasCursor() ) {
+                query.setCursor( r.getCursor() );
+                next = em.searchCollection( app, collectionName, query );
+            }
+
+            for ( Future<Void> update : updates ) {
+                update.get();
+            }
+
+            if ( next == null ) {
+                // every entity now has its full text postings, contains queries can read them
+                setBackfilled( em, appId, collectionName );
+            }
+
+            checkpoint( checkpointKey, next == null ? COMPLETE : r.getCursor() );
+
+            logProgress();
+
+            r = next;
+        }
+    }
+
+
+    private void setBackfilled( EntityManager em, UUID appId, String collectionName ) throws Exception {
+        em.getRelationManager( em.getApplicationRef() ).setCollectionTermsBackfilled( collectionName );
+
+        List<String> collections = backfilled.get( appId );
+
+        if ( collections == null ) {
+            collections = new ArrayList<String>();
+            backfilled.put( appId, collections );
+        }
+
+        collections.add( collectionName );
+    }
+
+
+    /**
+     * Compute the term counts of the backfilled collections. Writers cache a missing backfill mark for a while and
+     * don't count terms until they see it, so wait for their caches to expire first
+     */
+    private void rebuildTermCounts() throws Exception {
+        if ( backfilled.isEmpty() ) {
+            return;
+        }
+
+        logger.info( "Waiting {} seconds for writers to see the backfilled collections",
+                RelationManagerImpl.TERMS_MARKER_CACHE_SECONDS );
+
+        Thread.sleep( TimeUnit.SECONDS.toMillis( RelationManagerImpl.TERMS_MARKER_CACHE_SECONDS ) );
+
+        for ( Entry<UUID, List<String>> entry : backfilled.entrySet() ) {
+            EntityManager em = emf.getEntityManager( entry.getKey() );
+
+            for ( String collectionName : entry.getValue() ) {
+                logger.info( "Rebuilding term counts of collection: {} for app id: {}", collectionName,
+                        entry.getKey() );
+
+                em.getRelationManager( em.getApplicationRef() ).rebuildCollectionTermCounts( collectionName );
             }
+        }
+    }
+
+
+    /** Re-save a single entity, throttled by the rate limit if one was given */
+    private void update( EntityManager em, UUID appId, Entity entity ) throws Exception {
+
+        if ( rateLimiter != null ) {
+            rateLimiter.acquire();
+        }
+
+        logger.debug( "Updating entity type: {} with id: {} for app id: {}", new Object[] {
+                entity.getType(), entity.getUuid(), appId
+        } );
 
-            query.setCursor( r.getCursor() );
+        try {
+            em.update( entity );
+        }
+        catch ( DuplicateUniquePropertyExistsException dupee ) {
+            duplicates.incrementAndGet();
+            logger.error( "duplicate property for type: {} with id: {} for app id: {}.  Property name: {} , "
+                    + "value: {}", new Object[] {
+                    entity.getType(), entity.getUuid(), appId, dupee.getPropertyName(), dupee.getPropertyValue()
+            } );
+        }
+
+        reindexed.incrementAndGet();
+    }
+
+
+    private void logProgress() {
+        long count = reindexed.get();
+        long elapsed = Math.max( 1, System.currentTimeMillis() - started );
+
+        logger.info( "Reindexed {} entities ({} duplicates) in {} ms, {} entities/sec", new Object[] {
+                count, duplicates.get(), elapsed, count * 1000 / elapsed
+        } );
+    }
+
+
+    /** Load the checkpoints of a previous run, if the file exists */
+    private void loadCheckpoints( File file ) throws Exception {
+        checkpointFile = file;
+
+        if ( !file.exists() ) {
+            return;
+        }
+
+        InputStream in = new FileInputStream( file );
+        try {
+            checkpoints.load( in );
+        }
+        finally {
+            in.close();
+        }
+
+        logger.info( "Loaded {} checkpoints from {}", checkpoints.size(), file );
+    }
+
+
+    /** Record the position of a collection, written to a temp file first so a crash never leaves it truncated */
+    private void checkpoint( String key, String value ) throws Exception {
+        checkpoints.setProperty( key, value );
+
+        if ( checkpointFile == null ) {
+            return;
+        }
+
+        File temp = new File( checkpointFile.getPath() + ".tmp" );
+
+        OutputStream out = new FileOutputStream( temp );
+        try {
+            checkpoints.store( out, "IndexRebuild checkpoints" );
+        }
+        finally {
+            out.close();
+        }
+
+        if ( !temp.renameTo( checkpointFile ) ) {
+            checkpointFile.delete();
+            if ( !temp.renameTo( checkpointFile ) ) {
+                throw new IllegalStateException( "Unable to write checkpoint file " + checkpointFile );
+            }
         }
-        while ( r != null && r.size() == PAGE_SIZE );
     }
 }
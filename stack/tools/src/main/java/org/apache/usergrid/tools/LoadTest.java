@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools;
+
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.usergrid.mq.QueueManagerFactory;
+import org.apache.usergrid.tools.load.LoadContext;
+import org.apache.usergrid.tools.load.LoadOperation;
+import org.apache.usergrid.tools.load.LoadReport;
+import org.apache.usergrid.utils.JsonUtils;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.io.FileUtils;
+
+import static org.apache.commons.lang.StringUtils.split;
+import static org.apache.commons.lang.StringUtils.trim;
+
+
+/**
+ * Replays a weighted mix of entity, query, connection, queue and counter operations against an application and reports
+ * the throughput and latency percentiles of each. The results can be written to a file and compared with those of an
+ * earlier run.
+ */
+public class LoadTest extends ToolBase {
+
+    private static final Logger logger = LoggerFactory.getLogger( LoadTest.class );
+
+    public static final String DEFAULT_MIX =
+            "create=15,read=35,update=10,delete=5,query=15,connect=5,queue_post=5,queue_get=5,counter=5";
+
+    private QueueManagerFactory qmf;
+
+    /** The report the workers record in, replaced once the warmup is over */
+    private volatile LoadReport report = new LoadReport();
+
+
+    @Autowired
+    public void setQueueManagerFactory( QueueManagerFactory qmf ) {
+        this.qmf = qmf;
+    }
+
+
+    @Override
+    @SuppressWarnings("static-access")
+    public Options createOptions() {
+
+        Option hostOption =
+                OptionBuilder.withArgName( "host" ).hasArg().withDescription( "Cassandra host" ).create( "host" );
+
+        Option embeddedOption =
+                OptionBuilder.withDescription( "Start an embedded Cassandra to run against" ).create( "embedded" );
+
+        Option workerOption = OptionBuilder.withArgName( "workers" ).hasArg()
+                                           .withDescription( "Number of workers to use, 10 by default" )
+                                           .create( "workers" );
+
+        Option durationOption = OptionBuilder.withArgName( "seconds" ).hasArg()
+                                             .withDescription( "Seconds to measure for, 60 by default" )
+                                             .create( "duration" );
+
+        Option warmupOption = OptionBuilder.withArgName( "seconds" ).hasArg()
+                                           .withDescription( "Seconds to run before measuring, 10 by default" )
+                                           .create( "warmup" );
+
+        Option mixOption = OptionBuilder.withArgName( "mix" ).hasArg()
+                                        .withDescription( "Weights of the operations, " + DEFAULT_MIX + " by default" )
+                                        .create( "mix" );
+
+        Option appOption = OptionBuilder.withArgName( "org/app" ).hasArg()
+                                        .withDescription( "Application to run against, loadtest/loadtest by default" )
+                                        .create( "app" );
+
+        Option outputOption = OptionBuilder.withArgName( "file" ).hasArg()
+                                           .withDescription( "Write the results to this file as json" )
+                                           .create( "output" );
+
+        Option baselineOption = OptionBuilder.withArgName( "file" ).hasArg()
+                                             .withDescription( "Compare the results with those of an earlier run" )
+                                             .create( "baseline" );
+
+        Options options = new Options();
+        options.addOption( hostOption );
+        options.addOption( embeddedOption );
+        options.addOption( workerOption );
+        options.addOption( durationOption );
+        options.addOption( warmupOption );
+        options.addOption( mixOption );
+        options.addOption( appOption );
+        options.addOption( outputOption );
+        options.addOption( baselineOption );
+
+        return options;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.usergrid.tools.ToolBase#runTool(org.apache.commons.cli.CommandLine)
+     */
+    @Override
+    public void runTool( CommandLine line ) throws Exception {
+        boolean embedded = line.hasOption( "embedded" );
+
+        if ( embedded ) {
+            startEmbedded();
+        }
+
+        startSpring();
+
+        if ( embedded ) {
+            setupCassandra();
+        }
+
+        int workers = Integer.parseInt( line.getOptionValue( "workers", "10" ) );
+        long duration = Long.parseLong( line.getOptionValue( "duration", "60" ) );
+        long warmup = Long.parseLong( line.getOptionValue( "warmup", "10" ) );
+        LoadOperation[] mix = parseMix( line.getOptionValue( "mix", DEFAULT_MIX ) );
+
+        UUID appId = getApplication( line.getOptionValue( "app", "loadtest/loadtest" ) );
+
+        LoadContext context = new LoadContext( emf.getEntityManager( appId ), qmf.getQueueManager( appId ) );
+
+        logger.info( "Running {} workers for {} seconds after a {} second warmup",
+                new Object[] { workers, duration, warmup } );
+
+        ExecutorService executor = Executors.newFixedThreadPool( workers );
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos( warmup + duration );
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>( workers );
+
+        for ( int i = 0; i < workers; i++ ) {
+            futures.add( executor.submit( new LoadWorker( context, mix, end ) ) );
+        }
+
+        Thread.sleep( TimeUnit.SECONDS.toMillis( warmup ) );
+
+        // only what runs from now on is measured
+        LoadReport measured = new LoadReport();
+        report = measured;
+
+        long start = System.currentTimeMillis();
+
+        for ( Future<Void> future : futures ) {
+            future.get();
+        }
+
+        measured.setElapsedMillis( System.currentTimeMillis() - start );
+
+        executor.shutdown();
+
+        Map<String, Object> results = measured.toMap();
+
+        LoadReport.print( results, System.out );
+
+        if ( line.hasOption( "output" ) ) {
+            FileUtils.writeStringToFile( new File( line.getOptionValue( "output" ) ),
+                    JsonUtils.mapToFormattedJsonString( results ) );
+        }
+
+        if ( line.hasOption( "baseline" ) ) {
+            @SuppressWarnings("unchecked") Map<String, Object> baseline = ( Map<String, Object> ) JsonUtils
+                    .parse( FileUtils.readFileToString( new File( line.getOptionValue( "baseline" ) ) ) );
+
+            System.out.println();
+            LoadReport.compare( baseline, results, System.out );
+        }
+
+        if ( embedded ) {
+            teardownEmbedded();
+        }
+    }
+
+
+    private UUID getApplication( String name ) throws Exception {
+        UUID appId = emf.lookupApplication( name );
+
+        if ( appId != null ) {
+            return appId;
+        }
+
+        String[] parts = split( name, '/' );
+
+        if ( parts.length != 2 ) {
+            throw new IllegalArgumentException( "The application must be given as org/app, not " + name );
+        }
+
+        return emf.createApplication( parts[0], parts[1] );
+    }
+
+
+    /** Expand the weights into a table of operations to pick from at random */
+    static LoadOperation[] parseMix( String mix ) {
+        List<LoadOperation> table = new ArrayList<LoadOperation>();
+
+        for ( String weight : split( mix, ',' ) ) {
+            String[] parts = split( weight, '=' );
+
+            if ( parts.length != 2 ) {
+                throw new IllegalArgumentException( "Invalid operation weight " + weight );
+            }
+
+            LoadOperation operation = LoadOperation.valueOf( trim( parts[0] ).toUpperCase() );
+
+            for ( int i = Integer.parseInt( trim( parts[1] ) ); i > 0; i-- ) {
+                table.add( operation );
+            }
+        }
+
+        if ( table.isEmpty() ) {
+            throw new IllegalArgumentException( "No operations in the mix " + mix );
+        }
+
+        return table.toArray( new LoadOperation[table.size()] );
+    }
+
+
+    private class LoadWorker implements Callable<Void> {
+
+        private final LoadContext context;
+        private final LoadOperation[] mix;
+        private final long end;
+
+
+        private LoadWorker( LoadContext context, LoadOperation[] mix, long end ) {
+            this.context = context;
+            this.mix = mix;
+            this.end = end;
+        }
+
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public Void call() throws Exception {
+            while ( System.nanoTime() < end ) {
+                LoadOperation operation = mix[context.getRandom().nextInt( mix.length )];
+
+                // read it once so the operation is recorded where it started
+                LoadReport current = report;
+
+                long start = System.nanoTime();
+
+                try {
+                    if ( operation.execute( context ) ) {
+                        current.record( operation, TimeUnit.NANOSECONDS.toMicros( System.nanoTime() - start ) );
+                    }
+                }
+                catch ( Exception e ) {
+                    logger.debug( "Operation {} failed", operation, e );
+                    current.error( operation );
+                }
+            }
+
+            return null;
+        }
+    }
+}
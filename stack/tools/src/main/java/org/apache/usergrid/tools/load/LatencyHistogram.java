@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.load;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A lock free histogram of latencies in the style of HdrHistogram. Values below 128 are counted exactly, larger values
+ * fall in buckets that are 1/64th of their power of two wide, so any recorded value is reported within 1.6% of itself.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    /** The shift of the largest long, 63 - ( SUB_BUCKET_BITS - 1 ) */
+    private static final int MAX_SHIFT = 64 - SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray( SUB_BUCKETS + MAX_SHIFT * HALF_SUB_BUCKETS );
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong( Long.MAX_VALUE );
+    private final AtomicLong max = new AtomicLong();
+
+
+    /** Record a value, negative values are counted as 0 */
+    public void record( long value ) {
+        if ( value < 0 ) {
+            value = 0;
+        }
+
+        counts.incrementAndGet( index( value ) );
+        count.incrementAndGet();
+        sum.addAndGet( value );
+
+        long current = min.get();
+        while ( value < current && !min.compareAndSet( current, value ) ) {
+            current = min.get();
+        }
+
+        current = max.get();
+        while ( value > current && !max.compareAndSet( current, value ) ) {
+            current = max.get();
+        }
+    }
+
+
+    public long getCount() {
+        return count.get();
+    }
+
+
+    public long getMin() {
+        return count.get() == 0 ? 0 : min.get();
+    }
+
+
+    public long getMax() {
+        return max.get();
+    }
+
+
+    public double getMean() {
+        long total = count.get();
+        return total == 0 ? 0 : ( double ) sum.get() / total;
+    }
+
+
+    /**
+     * Get the value at the percentile, the highest value of the bucket holding it
+     *
+     * @param percentile between 0 and 100
+     */
+    public long getValueAtPercentile( double percentile ) {
+        long total = count.get();
+
+        if ( total == 0 ) {
+            return 0;
+        }
+
+        long rank = Math.max( 1, ( long ) Math.ceil( percentile / 100 * total ) );
+        long seen = 0;
+
+        for ( int i = 0; i < counts.length(); i++ ) {
+            seen += counts.get( i );
+
+            if ( seen >= rank ) {
+                return Math.min( highestValue( i ), getMax() );
+            }
+        }
+
+        return getMax();
+    }
+
+
+    static int index( long value ) {
+        if ( value < SUB_BUCKETS ) {
+            return ( int ) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - ( SUB_BUCKET_BITS - 1 );
+        int subBucket = ( int ) ( value >>> shift );
+
+        return SUB_BUCKETS + ( shift - 1 ) * HALF_SUB_BUCKETS + ( subBucket - HALF_SUB_BUCKETS );
+    }
+
+
+    static long highestValue( int index ) {
+        if ( index < SUB_BUCKETS ) {
+            return index;
+        }
+
+        int shift = ( index - SUB_BUCKETS ) / HALF_SUB_BUCKETS + 1;
+        long subBucket = ( index - SUB_BUCKETS ) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+
+        return ( ( subBucket + 1 ) << shift ) - 1;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.load;
+
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.usergrid.mq.QueueManager;
+import org.apache.usergrid.persistence.EntityManager;
+
+
+/** The application a load test runs against and the entities it created so far */
+public class LoadContext {
+
+    /** The number of recently created entities kept to read, update and connect */
+    private static final int RECENT_SIZE = 10000;
+
+    /** The number of created entities kept for deletion, they're never in the recent entities */
+    private static final int DELETABLE_SIZE = 1000;
+
+    private final EntityManager em;
+    private final QueueManager qm;
+
+    private final AtomicReferenceArray<UUID> recent = new AtomicReferenceArray<UUID>( RECENT_SIZE );
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong kept = new AtomicLong();
+
+    private final Queue<UUID> deletable = new ConcurrentLinkedQueue<UUID>();
+    private final AtomicInteger deletableCount = new AtomicInteger();
+
+    private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+
+    public LoadContext( EntityManager em, QueueManager qm ) {
+        this.em = em;
+        this.qm = qm;
+    }
+
+
+    public EntityManager getEntityManager() {
+        return em;
+    }
+
+
+    public QueueManager getQueueManager() {
+        return qm;
+    }
+
+
+    public Random getRandom() {
+        return random.get();
+    }
+
+
+    /**
+     * Keep the id of a created entity for the operations that need an existing one. Every other entity is kept for
+     * deletion while there is room for it, the rest are kept to read, update and connect, so those operations never
+     * pick a deleted entity.
+     */
+    public void created( UUID id ) {
+        long position = created.getAndIncrement();
+
+        if ( position % 2 == 1 && deletableCount.get() < DELETABLE_SIZE ) {
+            deletableCount.incrementAndGet();
+            deletable.offer( id );
+            return;
+        }
+
+        recent.set( ( int ) ( kept.getAndIncrement() % RECENT_SIZE ), id );
+    }
+
+
+    /** @return a recently created entity, or null when none was created yet */
+    public UUID randomId() {
+        long size = Math.min( kept.get(), RECENT_SIZE );
+
+        if ( size == 0 ) {
+            return null;
+        }
+
+        return recent.get( getRandom().nextInt( ( int ) size ) );
+    }
+
+
+    /** @return a created entity that no other operation will delete, or null when there is none */
+    public UUID takeDeletable() {
+        UUID id = deletable.poll();
+
+        if ( id != null ) {
+            deletableCount.decrementAndGet();
+        }
+
+        return id;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.load;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.usergrid.mq.Message;
+import org.apache.usergrid.mq.QueueQuery;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.persistence.SimpleEntityRef;
+
+
+/** The operations a load test mixes. Each returns false when it had nothing to work on and should not be counted */
+public enum LoadOperation {
+
+    CREATE {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put( "value", context.getRandom().nextInt( 1000 ) );
+            properties.put( "tag", "tag" + context.getRandom().nextInt( TAGS ) );
+
+            Entity entity = context.getEntityManager().create( TYPE, properties );
+            context.created( entity.getUuid() );
+
+            return true;
+        }
+    },
+
+    READ {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            UUID id = context.randomId();
+
+            if ( id == null ) {
+                return false;
+            }
+
+            context.getEntityManager().get( id );
+
+            return true;
+        }
+    },
+
+    UPDATE {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            UUID id = context.randomId();
+
+            if ( id == null ) {
+                return false;
+            }
+
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put( "value", context.getRandom().nextInt( 1000 ) );
+
+            context.getEntityManager().updateProperties( new SimpleEntityRef( TYPE, id ), properties );
+
+            return true;
+        }
+    },
+
+    DELETE {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            UUID id = context.takeDeletable();
+
+            if ( id == null ) {
+                return false;
+            }
+
+            context.getEntityManager().delete( new SimpleEntityRef( TYPE, id ) );
+
+            return true;
+        }
+    },
+
+    QUERY {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            EntityManager em = context.getEntityManager();
+
+            Query query = Query.fromQL( "select * where tag = 'tag" + context.getRandom().nextInt( TAGS ) + "'" );
+            query.setLimit( 10 );
+
+            em.searchCollection( em.getApplicationRef(), COLLECTION, query );
+
+            return true;
+        }
+    },
+
+    CONNECT {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            UUID from = context.randomId();
+            UUID to = context.randomId();
+
+            if ( from == null || to == null ) {
+                return false;
+            }
+
+            context.getEntityManager()
+                   .createConnection( new SimpleEntityRef( TYPE, from ), "likes", new SimpleEntityRef( TYPE, to ) );
+
+            return true;
+        }
+    },
+
+    QUEUE_POST {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            Message message = new Message();
+            message.setLongProperty( "value", context.getRandom().nextInt( 1000 ) );
+
+            context.getQueueManager().postToQueue( QUEUE, message );
+
+            return true;
+        }
+    },
+
+    QUEUE_GET {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            context.getQueueManager().getFromQueue( QUEUE, new QueueQuery().withConsumer( "loadtest" ) );
+
+            return true;
+        }
+    },
+
+    COUNTER {
+        @Override
+        public boolean execute( LoadContext context ) throws Exception {
+            context.getEntityManager().incrementAggregateCounters( null, null, null, "loadtest.hits", 1 );
+
+            return true;
+        }
+    };
+
+    public static final String TYPE = "loadtest";
+    public static final String COLLECTION = "loadtests";
+    public static final String QUEUE = "/loadtest/";
+
+    /** The number of distinct tags the queries select on */
+    private static final int TAGS = 100;
+
+
+    public abstract boolean execute( LoadContext context ) throws Exception;
+}
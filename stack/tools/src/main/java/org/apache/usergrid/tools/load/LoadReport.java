@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.load;
+
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/** The latencies, in microseconds, and the errors of each operation of a load test run */
+public class LoadReport {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private final Map<LoadOperation, LatencyHistogram> latencies =
+            new EnumMap<LoadOperation, LatencyHistogram>( LoadOperation.class );
+    private final Map<LoadOperation, AtomicLong> errors = new EnumMap<LoadOperation, AtomicLong>( LoadOperation.class );
+
+    private volatile long elapsedMillis;
+
+
+    public LoadReport() {
+        for ( LoadOperation operation : LoadOperation.values() ) {
+            latencies.put( operation, new LatencyHistogram() );
+            errors.put( operation, new AtomicLong() );
+        }
+    }
+
+
+    public void record( LoadOperation operation, long micros ) {
+        latencies.get( operation ).record( micros );
+    }
+
+
+    public void error( LoadOperation operation ) {
+        errors.get( operation ).incrementAndGet();
+    }
+
+
+    public void setElapsedMillis( long elapsedMillis ) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+
+    /** @return the results of each operation that ran, keyed by operation name */
+    public Map<String, Object> toMap() {
+        Map<String, Object> results = new LinkedHashMap<String, Object>();
+
+        for ( LoadOperation operation : LoadOperation.values() ) {
+            LatencyHistogram histogram = latencies.get( operation );
+
+            if ( histogram.getCount() == 0 && errors.get( operation ).get() == 0 ) {
+                continue;
+            }
+
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            result.put( "count", histogram.getCount() );
+            result.put( "errors", errors.get( operation ).get() );
+            result.put( "throughput", elapsedMillis == 0 ? 0 : histogram.getCount() * 1000.0 / elapsedMillis );
+            result.put( "mean", histogram.getMean() );
+            result.put( "min", histogram.getMin() );
+
+            for ( double percentile : PERCENTILES ) {
+                result.put( "p" + formatPercentile( percentile ), histogram.getValueAtPercentile( percentile ) );
+            }
+
+            result.put( "max", histogram.getMax() );
+
+            results.put( operation.name().toLowerCase(), result );
+        }
+
+        return results;
+    }
+
+
+    /** Print the throughput and latency percentiles of each operation, in milliseconds */
+    public static void print( Map<String, Object> results, PrintStream out ) {
+        out.println( String.format( "%-12s %10s %8s %12s %9s %9s %9s %9s %9s %9s", "operation", "count", "errors",
+                "ops/s", "mean", "p50", "p90", "p99", "p99.9", "max" ) );
+
+        for ( Map.Entry<String, Object> entry : results.entrySet() ) {
+            Map<?, ?> result = ( Map<?, ?> ) entry.getValue();
+
+            out.println( String.format( "%-12s %10d %8d %12.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f", entry.getKey(),
+                    number( result, "count" ).longValue(), number( result, "errors" ).longValue(),
+                    number( result, "throughput" ).doubleValue(), millis( result, "mean" ), millis( result, "p50" ),
+                    millis( result, "p90" ), millis( result, "p99" ), millis( result, "p99.9" ),
+                    millis( result, "max" ) ) );
+        }
+    }
+
+
+    /** Print the change in throughput and latency of each operation from the baseline run to this one */
+    public static void compare( Map<String, Object> baseline, Map<String, Object> results, PrintStream out ) {
+        out.println( String.format( "%-12s %12s %12s %8s %9s %9s %8s %9s %9s %8s", "operation", "base ops/s",
+                "ops/s", "change", "base p50", "p50", "change", "base p99", "p99", "change" ) );
+
+        for ( Map.Entry<String, Object> entry : results.entrySet() ) {
+            Map<?, ?> before = ( Map<?, ?> ) baseline.get( entry.getKey() );
+
+            if ( before == null ) {
+                continue;
+            }
+
+            Map<?, ?> after = ( Map<?, ?> ) entry.getValue();
+
+            out.println( String.format( "%-12s %12.1f %12.1f %+7.1f%% %9.2f %9.2f %+7.1f%% %9.2f %9.2f %+7.1f%%",
+                    entry.getKey(), number( before, "throughput" ).doubleValue(),
+                    number( after, "throughput" ).doubleValue(), change( before, after, "throughput" ),
+                    millis( before, "p50" ), millis( after, "p50" ), change( before, after, "p50" ),
+                    millis( before, "p99" ), millis( after, "p99" ), change( before, after, "p99" ) ) );
+        }
+    }
+
+
+    private static String formatPercentile( double percentile ) {
+        return percentile == Math.floor( percentile ) ? String.valueOf( ( long ) percentile ) :
+               String.valueOf( percentile );
+    }
+
+
+    private static Number number( Map<?, ?> result, String name ) {
+        Object value = result.get( name );
+        return value instanceof Number ? ( Number ) value : 0;
+    }
+
+
+    private static double millis( Map<?, ?> result, String name ) {
+        return number( result, name ).doubleValue() / 1000;
+    }
+
+
+    private static double change( Map<?, ?> before, Map<?, ?> after, String name ) {
+        double base = number( before, name ).doubleValue();
+
+        if ( base == 0 ) {
+            return 0;
+        }
+
+        return ( number( after, name ).doubleValue() - base ) * 100 / base;
+    }
+}
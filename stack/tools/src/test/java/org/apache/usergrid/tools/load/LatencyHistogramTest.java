@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.load;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getMin() );
+        assertEquals( 0, histogram.getValueAtPercentile( 99 ) );
+    }
+
+
+    @Test
+    public void exactBelowSubBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for ( int i = 1; i <= 100; i++ ) {
+            histogram.record( i );
+        }
+
+        assertEquals( 50, histogram.getValueAtPercentile( 50 ) );
+        assertEquals( 99, histogram.getValueAtPercentile( 99 ) );
+        assertEquals( 100, histogram.getValueAtPercentile( 100 ) );
+        assertEquals( 1, histogram.getMin() );
+        assertEquals( 50.5, histogram.getMean(), 0.001 );
+    }
+
+
+    @Test
+    public void boundedError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for ( int i = 1; i <= 100000; i++ ) {
+            histogram.record( i );
+        }
+
+        long p50 = histogram.getValueAtPercentile( 50 );
+        long p99 = histogram.getValueAtPercentile( 99 );
+
+        assertTrue( p50 >= 50000 && p50 <= 50000 * 1.016 );
+        assertTrue( p99 >= 99000 && p99 <= 99000 * 1.016 );
+        assertEquals( 100000, histogram.getValueAtPercentile( 100 ) );
+    }
+
+
+    @Test
+    public void bucketsCoverValues() {
+        for ( long value : new long[] { 0, 127, 128, 129, 255, 256, 1000, 123456789L, Long.MAX_VALUE } ) {
+            int index = LatencyHistogram.index( value );
+
+            assertTrue( LatencyHistogram.highestValue( index ) >= value );
+
+            if ( index > 0 ) {
+                assertTrue( LatencyHistogram.highestValue( index - 1 ) < value );
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.jboss.netty.util.CharsetUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.persistence.EntityChangeEvent;
+
+import static org.apache.usergrid.utils.JsonUtils.mapToJsonString;
+
+
+/**
+ * Bounded buffer of the entity changes waiting to be written to one websocket channel. An update to an entity that
+ * is still waiting is merged into the pending change, any other change replaces it, and everything pending is written
+ * as a single frame once the previous frame has been flushed, so a slow consumer gets fewer, larger frames instead of
+ * an unbounded queue.
+ * <p/>
+ * Nothing is written while the channel is above its write buffer high water mark, the handler calls {@link #resume()}
+ * once it drains below the low water mark. A consumer that stays unwritable until the buffer is full is shed by
+ * closing its channel.
+ * <p/>
+ * When compression is enabled, frames larger than {@link #COMPRESS_THRESHOLD} are sent as binary frames holding the
+ * zlib deflated json, smaller frames are always sent as text.
+ */
+public class EntityChangeBuffer {
+
+    private static final Logger LOG = LoggerFactory.getLogger( EntityChangeBuffer.class );
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    public static final int COMPRESS_THRESHOLD = 512;
+
+    private final Channel channel;
+
+    private final int capacity;
+
+    private final LinkedHashMap<String, EntityChangeEvent> pending = new LinkedHashMap<String, EntityChangeEvent>();
+
+    private boolean writing = false;
+
+    private long dropped = 0;
+
+    private boolean shed = false;
+
+    private volatile boolean compress = false;
+
+
+    public EntityChangeBuffer( Channel channel, int capacity ) {
+        this.channel = channel;
+        this.capacity = capacity;
+    }
+
+
+    public void setCompress( boolean compress ) {
+        this.compress = compress;
+    }
+
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+
+    public void offer( EntityChangeEvent event ) {
+        synchronized ( this ) {
+            if ( shed ) {
+                return;
+            }
+
+            String key = coalesceKey( event );
+
+            EntityChangeEvent previous = pending.get( key );
+
+            // an update only carries the changed properties, fold it into the pending create or update
+            if ( ( previous != null ) && ( event.getType() == EntityChangeEvent.Type.UPDATE ) && (
+                    ( previous.getType() == EntityChangeEvent.Type.CREATE ) || ( previous.getType()
+                            == EntityChangeEvent.Type.UPDATE ) ) ) {
+                event = previous.mergeUpdate( event );
+            }
+
+            if ( ( previous == null ) && ( pending.size() >= capacity ) ) {
+                if ( !channel.isWritable() ) {
+                    // the consumer stopped reading altogether, don't hold on to it
+                    shed = true;
+                    pending.clear();
+                }
+                else {
+                    // the consumer can't keep up, drop its oldest change
+                    Iterator<String> oldest = pending.keySet().iterator();
+                    oldest.next();
+                    oldest.remove();
+                    dropped++;
+                }
+            }
+
+            if ( !shed ) {
+                pending.put( key, event );
+
+                if ( writing ) {
+                    return;
+                }
+
+                writing = true;
+            }
+        }
+
+        if ( shed ) {
+            LOG.info( "Closing websocket channel {}, unable to keep up with entity changes", channel.getId() );
+            channel.close();
+            return;
+        }
+
+        writeNext();
+    }
+
+
+    /** Start writing again after the channel has drained below its low water mark */
+    public void resume() {
+        synchronized ( this ) {
+            if ( writing || shed || pending.isEmpty() ) {
+                return;
+            }
+            writing = true;
+        }
+
+        writeNext();
+    }
+
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+
+    /** Write everything pending as one frame, the write listener picks up whatever arrives in the meantime */
+    private void writeNext() {
+        List<Map<String, Object>> changes;
+
+        synchronized ( this ) {
+            // above the high water mark we wait for resume() rather than queue more in netty
+            if ( pending.isEmpty() || !channel.isConnected() || !channel.isWritable() ) {
+                writing = false;
+                return;
+            }
+
+            changes = new ArrayList<Map<String, Object>>( pending.size() );
+            for ( EntityChangeEvent event : pending.values() ) {
+                changes.add( toJsonMap( event ) );
+            }
+            pending.clear();
+        }
+
+        channel.write( toFrame( mapToJsonString( changes ) ) )
+               .addListener( new ChannelFutureListener() {
+                   @Override
+                   public void operationComplete( ChannelFuture future ) throws Exception {
+                       if ( future.isSuccess() ) {
+                           writeNext();
+                           return;
+                       }
+
+                       LOG.debug( "Unable to write entity changes to {}", channel, future.getCause() );
+
+                       synchronized ( EntityChangeBuffer.this ) {
+                           writing = false;
+                       }
+                   }
+               } );
+    }
+
+
+    private WebSocketFrame toFrame( String json ) {
+        if ( !compress || ( json.length() < COMPRESS_THRESHOLD ) ) {
+            return new TextWebSocketFrame( json );
+        }
+        byte[] deflated = deflate( json.getBytes( CharsetUtil.UTF_8 ) );
+        return new BinaryWebSocketFrame( ChannelBuffers.wrappedBuffer( deflated ) );
+    }
+
+
+    static byte[] deflate( byte[] bytes ) {
+        Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+        try {
+            deflater.setInput( bytes );
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream( bytes.length / 4 + 64 );
+            byte[] chunk = new byte[4096];
+            while ( !deflater.finished() ) {
+                out.write( chunk, 0, deflater.deflate( chunk ) );
+            }
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+
+    /** Changes to the same entity, or to the same connection of an entity, are coalesced */
+    private static String coalesceKey( EntityChangeEvent event ) {
+        if ( event.getConnectionType() == null ) {
+            return event.getEntityId().toString();
+        }
+        return event.getEntityId() + "/" + event.getConnectionType() + "/" + event.getConnectedEntityId();
+    }
+
+
+    static Map<String, Object> toJsonMap( EntityChangeEvent event ) {
+        Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put( "action", event.getType().toString().toLowerCase() );
+        json.put( "application", event.getApplicationId() );
+        json.put( "type", event.getEntityType() );
+        json.put( "uuid", event.getEntityId() );
+        json.put( "timestamp", event.getTimestamp() );
+
+        if ( event.getProperties() != null ) {
+            json.put( "properties", event.getProperties() );
+        }
+
+        if ( event.getConnectionType() != null ) {
+            json.put( "connection", event.getConnectionType() );
+            json.put( "connectedType", event.getConnectedEntityType() );
+            json.put( "connectedUuid", event.getConnectedEntityId() );
+        }
+
+        return json;
+    }
+}
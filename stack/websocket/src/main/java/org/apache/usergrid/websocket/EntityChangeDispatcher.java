@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.persistence.EntityChangeEvent;
+import org.apache.usergrid.persistence.EntityChangeListener;
+import org.apache.usergrid.persistence.Schema;
+
+
+/**
+ * Fans the entity changes published by the entity manager factory out to the websocket channels subscribed to the
+ * changed entity or its collection. Each channel has its own {@link EntityChangeBuffer}, so a slow channel never holds
+ * up the writer or the other subscribers.
+ */
+public class EntityChangeDispatcher implements EntityChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger( EntityChangeDispatcher.class );
+
+    private final ConcurrentHashMap<String, ChannelGroup> subscribers = new ConcurrentHashMap<String, ChannelGroup>();
+
+    private final ConcurrentHashMap<Integer, EntityChangeBuffer> buffers =
+            new ConcurrentHashMap<Integer, EntityChangeBuffer>();
+
+    private final int bufferCapacity;
+
+
+    public EntityChangeDispatcher() {
+        this( EntityChangeBuffer.DEFAULT_CAPACITY );
+    }
+
+
+    public EntityChangeDispatcher( int bufferCapacity ) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+
+    /** @return the subscription path of an entity, or of the whole collection when the entity id is null */
+    public static String getSubscriptionPath( UUID applicationId, String collectionName, UUID entityId ) {
+        return applicationId + "/" + collectionName.toLowerCase() + ( entityId != null ? "/" + entityId : "" );
+    }
+
+
+    @Override
+    public void entityChanged( EntityChangeEvent event ) {
+        if ( subscribers.isEmpty() || ( event.getEntityType() == null ) ) {
+            return;
+        }
+
+        String collectionName = Schema.defaultCollectionName( event.getEntityType() );
+
+        dispatch( getSubscriptionPath( event.getApplicationId(), collectionName, event.getEntityId() ), event );
+        dispatch( getSubscriptionPath( event.getApplicationId(), collectionName, null ), event );
+    }
+
+
+    private void dispatch( String path, EntityChangeEvent event ) {
+        ChannelGroup group = subscribers.get( path );
+
+        if ( group == null ) {
+            return;
+        }
+
+        for ( Channel channel : group ) {
+            EntityChangeBuffer buffer = buffers.get( channel.getId() );
+            if ( buffer != null ) {
+                buffer.offer( event );
+            }
+        }
+    }
+
+
+    /**
+     * Create the change buffer of a channel, it's removed along with the channel's subscriptions when the channel
+     * closes.
+     */
+    public EntityChangeBuffer register( final Channel channel, boolean compress ) {
+        EntityChangeBuffer buffer = new EntityChangeBuffer( channel, bufferCapacity );
+        buffer.setCompress( compress );
+
+        EntityChangeBuffer existing = buffers.putIfAbsent( channel.getId(), buffer );
+        if ( existing != null ) {
+            return existing;
+        }
+
+        channel.getCloseFuture().addListener( new ChannelFutureListener() {
+            @Override
+            public void operationComplete( ChannelFuture future ) throws Exception {
+                removeSubscriptions( channel );
+            }
+        } );
+
+        return buffer;
+    }
+
+
+    public void addSubscription( String path, Channel channel ) {
+        if ( !buffers.containsKey( channel.getId() ) ) {
+            register( channel, false );
+        }
+
+        while ( true ) {
+            ChannelGroup group = subscribers.get( path );
+
+            if ( group == null ) {
+                subscribers.putIfAbsent( path, new DefaultChannelGroup( path ) );
+                continue;
+            }
+
+            synchronized ( group ) {
+                // the group may have been emptied and removed since we looked it up
+                if ( subscribers.get( path ) != group ) {
+                    continue;
+                }
+                group.add( channel );
+            }
+
+            LOG.debug( "Channel {} subscribed to {}", channel.getId(), path );
+            return;
+        }
+    }
+
+
+    public void removeSubscription( String path, Channel channel ) {
+        ChannelGroup group = subscribers.get( path );
+
+        if ( group == null ) {
+            return;
+        }
+
+        synchronized ( group ) {
+            group.remove( channel );
+            if ( group.isEmpty() ) {
+                subscribers.remove( path, group );
+            }
+        }
+    }
+
+
+    /** Remove a channel from every subscription, closed channels are removed automatically */
+    public void removeSubscriptions( Channel channel ) {
+        for ( String path : subscribers.keySet() ) {
+            removeSubscription( path, channel );
+        }
+        buffers.remove( channel.getId() );
+    }
+
+
+    public ChannelGroup getSubscriptionGroup( String path ) {
+        return subscribers.get( path );
+    }
+
+
+    public EntityChangeBuffer getBuffer( Channel channel ) {
+        return buffers.get( channel.getId() );
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.mq.EntityChangeQueue;
+import org.apache.usergrid.persistence.EntityChangeEvent;
+import org.apache.usergrid.persistence.EntityChangeListener;
+
+
+/**
+ * Reads the entity changes the nodes taking writes post to the {@link EntityChangeQueue} and hands them to a listener
+ * on its own thread. The queue is read again straight away while it's behind, and after the poll interval once it has
+ * caught up.
+ */
+public class EntityChangeQueueReader implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger( EntityChangeQueueReader.class );
+
+    public static final long DEFAULT_POLL_INTERVAL = 250;
+
+    private final EntityChangeQueue queue;
+    private final String consumer;
+    private final EntityChangeListener listener;
+    private final long pollInterval;
+
+    private volatile boolean running;
+    private Thread thread;
+
+
+    public EntityChangeQueueReader( EntityChangeQueue queue, String consumer, EntityChangeListener listener,
+                                    long pollInterval ) {
+        this.queue = queue;
+        this.consumer = consumer;
+        this.listener = listener;
+        this.pollInterval = pollInterval;
+    }
+
+
+    public synchronized void start() {
+        if ( thread != null ) {
+            return;
+        }
+
+        running = true;
+        thread = new Thread( this, "entity-change-reader-" + consumer );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+
+    public synchronized void stop() {
+        running = false;
+
+        if ( thread != null ) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+
+    /** Read the next changes and hand them to the listener, public for tests */
+    public int readChanges() {
+        List<EntityChangeEvent> events = queue.read( consumer, EntityChangeQueue.DEFAULT_READ_LIMIT );
+
+        for ( EntityChangeEvent event : events ) {
+            try {
+                listener.entityChanged( event );
+            }
+            catch ( RuntimeException e ) {
+                LOG.error( "Entity change listener failed for {}", event, e );
+            }
+        }
+
+        return events.size();
+    }
+
+
+    @Override
+    public void run() {
+        LOG.info( "Reading entity changes from {} as {}", EntityChangeQueue.QUEUE_PATH, consumer );
+
+        while ( running ) {
+            try {
+                if ( readChanges() < EntityChangeQueue.DEFAULT_READ_LIMIT ) {
+                    Thread.sleep( pollInterval );
+                }
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch ( RuntimeException e ) {
+                LOG.error( "Unable to read entity changes from {}", EntityChangeQueue.QUEUE_PATH, e );
+
+                try {
+                    Thread.sleep( pollInterval );
+                }
+                catch ( InterruptedException ie ) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
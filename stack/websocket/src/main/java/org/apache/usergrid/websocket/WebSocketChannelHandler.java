@@ -17,9 +17,9 @@
 package org.apache.usergrid.websocket;
 
 
-import java.security.MessageDigest;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.UUID;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -27,85 +27,116 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.channel.group.ChannelGroup;
-import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
-import org.jboss.netty.handler.codec.http.HttpHeaders.Names;
-import org.jboss.netty.handler.codec.http.HttpHeaders.Values;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.QueryStringDecoder;
-import org.jboss.netty.handler.codec.http.websocket.DefaultWebSocketFrame;
-import org.jboss.netty.handler.codec.http.websocket.WebSocketFrame;
-import org.jboss.netty.handler.codec.http.websocket.WebSocketFrameDecoder;
-import org.jboss.netty.handler.codec.http.websocket.WebSocketFrameEncoder;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
+import org.jboss.netty.handler.timeout.IdleState;
+import org.jboss.netty.handler.timeout.IdleStateAwareChannelUpstreamHandler;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
 import org.jboss.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.usergrid.management.ApplicationInfo;
 import org.apache.usergrid.management.ManagementService;
+import org.apache.usergrid.management.OrganizationInfo;
+import org.apache.usergrid.management.UserInfo;
 import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.persistence.EntityRef;
+import org.apache.usergrid.persistence.Schema;
+import org.apache.usergrid.security.AuthPrincipalInfo;
+import org.apache.usergrid.security.AuthPrincipalType;
+import org.apache.usergrid.security.shiro.PrincipalCredentialsToken;
+import org.apache.usergrid.security.tokens.TokenService;
+import org.apache.usergrid.security.tokens.exceptions.TokenException;
 import org.apache.usergrid.services.ServiceManagerFactory;
+import org.apache.usergrid.utils.UUIDUtils;
 
+import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.mgt.SessionsSecurityManager;
 import org.apache.shiro.subject.Subject;
 
 import static org.apache.commons.lang.StringUtils.isEmpty;
 import static org.apache.commons.lang.StringUtils.removeEnd;
+import static org.apache.commons.lang.StringUtils.removeStartIgnoreCase;
 import static org.apache.commons.lang.StringUtils.split;
+import static org.apache.usergrid.security.shiro.utils.SubjectUtils.getPermissionFromPath;
+import static org.apache.usergrid.utils.JsonUtils.mapToJsonString;
+import static org.apache.usergrid.utils.JsonUtils.parse;
+import static org.apache.usergrid.utils.MapUtils.hashMap;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.AUTHORIZATION;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.CONNECTION;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.ORIGIN;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.SEC_WEBSOCKET_KEY1;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.SEC_WEBSOCKET_KEY2;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.SEC_WEBSOCKET_LOCATION;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.SEC_WEBSOCKET_ORIGIN;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.SEC_WEBSOCKET_PROTOCOL;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.WEBSOCKET_LOCATION;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.WEBSOCKET_ORIGIN;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.WEBSOCKET_PROTOCOL;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.Values.WEBSOCKET;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.isKeepAlive;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.setContentLength;
 import static org.jboss.netty.handler.codec.http.HttpMethod.GET;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.UNAUTHORIZED;
 import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 
-public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
+/**
+ * Serves RFC 6455 websockets (and the older hixie-76 and hybi drafts, which the netty handshaker factory still
+ * negotiates).
+ * <p/>
+ * The websocket url may name an application collection or entity to subscribe to on connect, further subscriptions
+ * are made by sending {"subscribe":"app/collection[/entity]"} and {"unsubscribe":...} text or binary frames. An access
+ * token is read from the access_token query parameter or a bearer Authorization header, and every subscription is
+ * checked against the permissions of the authenticated subject.
+ * <p/>
+ * The server pings an idle connection and closes connections that have been silent for longer than the reader idle
+ * time of the pipeline's idle state handler.
+ */
+public class WebSocketChannelHandler extends IdleStateAwareChannelUpstreamHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger( WebSocketChannelHandler.class );
 
+    public static final long MAX_FRAME_PAYLOAD_LENGTH = 65536;
+
     private final EntityManagerFactory emf;
     private final ServiceManagerFactory smf;
     private final ManagementService management;
     private final SessionsSecurityManager securityManager;
+    private final TokenService tokens;
     private final boolean ssl;
+    private final EntityChangeDispatcher dispatcher;
 
     boolean websocket = false;
 
-    Subject subject = null;
+    WebSocketServerHandshaker handshaker;
 
-    private static ConcurrentHashMap<String, ChannelGroup> subscribers = new ConcurrentHashMap<String, ChannelGroup>();
+    Subject subject = null;
 
     List<String> subscriptions;
 
 
     public WebSocketChannelHandler( EntityManagerFactory emf, ServiceManagerFactory smf, ManagementService management,
-                                    SessionsSecurityManager securityManager, boolean ssl ) {
+                                    SessionsSecurityManager securityManager, TokenService tokens,
+                                    EntityChangeDispatcher dispatcher, boolean ssl ) {
         super();
 
         this.emf = emf;
         this.smf = smf;
         this.management = management;
         this.securityManager = securityManager;
+        this.tokens = tokens;
+        this.dispatcher = dispatcher;
         this.ssl = ssl;
 
         if ( securityManager != null ) {
@@ -135,7 +166,7 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
 
 
     private String getWebSocketLocation( HttpRequest req ) {
-        String path = req.getUri();
+        String path = new QueryStringDecoder( req.getUri() ).getPath();
         if ( path.equals( "/" ) ) {
             path = null;
         }
@@ -185,6 +216,38 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
     }
 
 
+    @Override
+    public void channelInterestChanged( ChannelHandlerContext ctx, ChannelStateEvent e ) throws Exception {
+        super.channelInterestChanged( ctx, e );
+
+        // back below the low water mark, write whatever changes were held back
+        if ( websocket && ctx.getChannel().isWritable() ) {
+            EntityChangeBuffer buffer = dispatcher.getBuffer( ctx.getChannel() );
+            if ( buffer != null ) {
+                buffer.resume();
+            }
+        }
+    }
+
+
+    @Override
+    public void channelIdle( ChannelHandlerContext ctx, IdleStateEvent e ) throws Exception {
+        if ( e.getState() == IdleState.READER_IDLE ) {
+            LOG.info( "Closing idle connection {}", ctx.getChannel().getId() );
+            if ( websocket ) {
+                handshaker.close( ctx.getChannel(), new CloseWebSocketFrame( 1001, "idle" ) )
+                          .addListener( ChannelFutureListener.CLOSE );
+            }
+            else {
+                ctx.getChannel().close();
+            }
+        }
+        else if ( websocket && ( e.getState() == IdleState.ALL_IDLE ) ) {
+            ctx.getChannel().write( new PingWebSocketFrame() );
+        }
+    }
+
+
     @Override
     public void messageReceived( ChannelHandlerContext ctx, MessageEvent e ) throws Exception {
         Object msg = e.getMessage();
@@ -204,8 +267,8 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
             return;
         }
 
-        boolean is_ws_request = Values.UPGRADE.equalsIgnoreCase( req.getHeader( CONNECTION ) ) && WEBSOCKET
-                .equalsIgnoreCase( req.getHeader( Names.UPGRADE ) );
+        boolean is_ws_request = HttpHeaders.Values.UPGRADE.equalsIgnoreCase( req.getHeader( CONNECTION ) ) && WEBSOCKET
+                .equalsIgnoreCase( req.getHeader( HttpHeaders.Names.UPGRADE ) );
 
         // Send the demo page.
         if ( !is_ws_request && req.getUri().equals( "/" ) ) {
@@ -221,138 +284,336 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
 
             return;
         }
-        else if ( is_ws_request ) {
-            // Serve the WebSocket handshake request.
+        else if ( !is_ws_request ) {
+            // Send an error page otherwise.
+            sendHttpResponse( ctx, req, FORBIDDEN );
+            return;
+        }
+
+        // Serve the WebSocket handshake request.
+        LOG.info( "Starting new websocket connection..." );
+
+        QueryStringDecoder qs = new QueryStringDecoder( req.getUri() );
+        String path = qs.getPath();
+        LOG.info( path );
 
-            LOG.info( "Starting new websocket connection..." );
-            websocket = true;
+        if ( !authenticate( getAccessToken( req, qs ) ) ) {
+            sendHttpResponse( ctx, req, UNAUTHORIZED );
+            return;
+        }
 
-            // Create the WebSocket handshake response.
-            HttpResponse res =
-                    new DefaultHttpResponse( HTTP_1_1, new HttpResponseStatus( 101, "Web Socket Protocol Handshake" ) );
-            res.addHeader( Names.UPGRADE, WEBSOCKET );
-            res.addHeader( CONNECTION, Values.UPGRADE );
+        String subscriptionPath = null;
 
-            QueryStringDecoder qs = new QueryStringDecoder( req.getUri() );
-            String path = qs.getPath();
-            LOG.info( path );
+        if ( split( path, '/' ).length > 0 ) {
+            subscriptionPath = resolveSubscriptionPath( path );
 
-            // Fill in the headers and contents depending on handshake method.
-            if ( req.containsHeader( SEC_WEBSOCKET_KEY1 ) && req.containsHeader( SEC_WEBSOCKET_KEY2 ) ) {
+            if ( subscriptionPath == null ) {
+                LOG.info( "Unable to subscribe to " + path );
+                sendHttpResponse( ctx, req, FORBIDDEN );
+                return;
+            }
+        }
 
-                String[] segments = split( path, '/' );
+        WebSocketServerHandshakerFactory wsFactory =
+                new WebSocketServerHandshakerFactory( getWebSocketLocation( req ), null, false,
+                        MAX_FRAME_PAYLOAD_LENGTH );
+        handshaker = wsFactory.newHandshaker( req );
 
-                if ( segments.length != 3 ) {
-                    LOG.info( "Wrong number of path segments, expected 3, found " + segments.length );
-                    sendHttpResponse( ctx, req, FORBIDDEN );
-                    return;
-                }
+        if ( handshaker == null ) {
+            WebSocketServerHandshakerFactory.sendUnsupportedWebSocketVersionResponse( ctx.getChannel() );
+            return;
+        }
 
-                String nsStr = segments[0];
-                String collStr = segments[1];
-                String idStr = segments[2];
+        websocket = true;
 
-                LOG.info( nsStr + "/" + collStr + "/" + idStr );
+        final Channel channel = ctx.getChannel();
+        final String initialSubscription = subscriptionPath;
+        final boolean compress = Boolean.parseBoolean( getQueryParameter( qs, "compress" ) );
 
-                if ( isEmpty( nsStr ) || isEmpty( collStr ) || isEmpty( idStr ) ) {
-                    sendHttpResponse( ctx, req, FORBIDDEN );
+        handshaker.handshake( channel, req ).addListener( new ChannelFutureListener() {
+            @Override
+            public void operationComplete( ChannelFuture future ) throws Exception {
+                if ( !future.isSuccess() ) {
+                    LOG.info( "Websocket handshake failed", future.getCause() );
+                    channel.close();
                     return;
                 }
 
-                // New handshake method with a challenge:
-                res.addHeader( SEC_WEBSOCKET_ORIGIN, req.getHeader( ORIGIN ) );
-                res.addHeader( SEC_WEBSOCKET_LOCATION, getWebSocketLocation( req ) );
-                String protocol = req.getHeader( SEC_WEBSOCKET_PROTOCOL );
-                if ( protocol != null ) {
-                    res.addHeader( SEC_WEBSOCKET_PROTOCOL, protocol );
-                }
+                dispatcher.register( channel, compress );
 
-                // Calculate the answer of the challenge.
-                String key1 = req.getHeader( SEC_WEBSOCKET_KEY1 );
-                String key2 = req.getHeader( SEC_WEBSOCKET_KEY2 );
-                int a = ( int ) ( Long.parseLong( key1.replaceAll( "[^0-9]", "" ) ) / key1.replaceAll( "[^ ]", "" )
-                                                                                          .length() );
-                int b = ( int ) ( Long.parseLong( key2.replaceAll( "[^0-9]", "" ) ) / key2.replaceAll( "[^ ]", "" )
-                                                                                          .length() );
-                long c = req.getContent().readLong();
-                ChannelBuffer input = ChannelBuffers.buffer( 16 );
-                input.writeInt( a );
-                input.writeInt( b );
-                input.writeLong( c );
-                ChannelBuffer output =
-                        ChannelBuffers.wrappedBuffer( MessageDigest.getInstance( "MD5" ).digest( input.array() ) );
-                res.setContent( output );
-            }
-            else {
-                // Old handshake method with no challenge:
-                res.addHeader( WEBSOCKET_ORIGIN, req.getHeader( ORIGIN ) );
-                res.addHeader( WEBSOCKET_LOCATION, getWebSocketLocation( req ) );
-                String protocol = req.getHeader( WEBSOCKET_PROTOCOL );
-                if ( protocol != null ) {
-                    res.addHeader( WEBSOCKET_PROTOCOL, protocol );
+                if ( initialSubscription != null ) {
+                    addSubscription( initialSubscription, channel );
                 }
             }
+        } );
+    }
 
-            // Upgrade the connection and send the handshake response.
-            ChannelPipeline p = ctx.getChannel().getPipeline();
-            p.remove( "aggregator" );
-            p.replace( "decoder", "wsdecoder", new WebSocketFrameDecoder() );
 
-            ctx.getChannel().write( res );
+    private void handleWebSocketFrame( ChannelHandlerContext ctx, WebSocketFrame frame ) throws Exception {
+        Channel channel = ctx.getChannel();
 
-            p.replace( "encoder", "wsencoder", new WebSocketFrameEncoder() );
+        if ( frame instanceof CloseWebSocketFrame ) {
+            handshaker.close( channel, ( CloseWebSocketFrame ) frame );
+            return;
+        }
+
+        if ( frame instanceof PingWebSocketFrame ) {
+            channel.write( new PongWebSocketFrame( frame.getBinaryData() ) );
+            return;
+        }
 
+        // receiving anything resets the idle timer, there's nothing else to do for a pong
+        if ( frame instanceof PongWebSocketFrame ) {
             return;
         }
 
-        // Send an error page otherwise.
-        sendHttpResponse( ctx, req, FORBIDDEN );
+        String text = null;
+        if ( frame instanceof TextWebSocketFrame ) {
+            text = ( ( TextWebSocketFrame ) frame ).getText();
+        }
+        else if ( frame instanceof BinaryWebSocketFrame ) {
+            text = frame.getBinaryData().toString( CharsetUtil.UTF_8 );
+        }
+
+        if ( text != null ) {
+            handleCommand( channel, text );
+        }
+    }
+
+
+    /** Handle a {"subscribe":path} or {"unsubscribe":path} request sent over the websocket */
+    @SuppressWarnings("unchecked")
+    private void handleCommand( Channel channel, String text ) throws Exception {
+        Object json = null;
+        try {
+            json = parse( text );
+        }
+        catch ( Exception e ) {
+            LOG.debug( "Unable to parse websocket command", e );
+        }
+
+        if ( !( json instanceof Map ) ) {
+            sendReply( channel, "error", "unrecognized command" );
+            return;
+        }
+
+        Map<String, Object> command = ( Map<String, Object> ) json;
+
+        if ( command.get( "subscribe" ) instanceof String ) {
+            String path = ( String ) command.get( "subscribe" );
+            String subscriptionPath = resolveSubscriptionPath( path );
+
+            if ( subscriptionPath == null ) {
+                sendReply( channel, "error", "unable to subscribe to " + path );
+                return;
+            }
+
+            addSubscription( subscriptionPath, channel );
+            sendReply( channel, "subscribed", path );
+        }
+        else if ( command.get( "unsubscribe" ) instanceof String ) {
+            String path = ( String ) command.get( "unsubscribe" );
+            String subscriptionPath = resolveSubscriptionPath( path );
+
+            if ( subscriptionPath != null ) {
+                removeSubscription( subscriptionPath, channel );
+            }
+
+            sendReply( channel, "unsubscribed", path );
+        }
+        else {
+            sendReply( channel, "error", "unrecognized command" );
+        }
+    }
+
+
+    private void sendReply( Channel channel, String key, String value ) {
+        channel.write( new TextWebSocketFrame( mapToJsonString( hashMap( key, value ) ) ) );
     }
 
 
-    private void handleWebSocketFrame( ChannelHandlerContext ctx, WebSocketFrame frame ) {
-        // Send the uppercased string back.
-        ctx.getChannel().write( new DefaultWebSocketFrame( frame.getTextData().toUpperCase() ) );
+    private static String getQueryParameter( QueryStringDecoder qs, String name ) {
+        List<String> values = qs.getParameters().get( name );
+        return ( ( values != null ) && !values.isEmpty() ) ? values.get( 0 ) : null;
+    }
+
+
+    /** The browser websocket api can't set headers, so the token is usually in the query string */
+    private static String getAccessToken( HttpRequest req, QueryStringDecoder qs ) {
+        String accessToken = getQueryParameter( qs, "access_token" );
+
+        if ( accessToken == null ) {
+            String authorization = req.getHeader( AUTHORIZATION );
+            if ( ( authorization != null ) && authorization.regionMatches( true, 0, "Bearer ", 0, 7 ) ) {
+                accessToken = removeStartIgnoreCase( authorization, "Bearer " ).trim();
+            }
+        }
+
+        return isEmpty( accessToken ) ? null : accessToken;
     }
 
-    // TODO Review this for concurrency safety
-    // Note: subscriptions are added and removed relatively infrequently
-    // during the lifecycle of a connection i.e. typical minimum lifespan
-    // would be 10 seconds when someone opens an app, it connects, then
-    // they close the app.
 
+    /**
+     * Log the connection's subject in with an access token. A connection without a token stays anonymous and is
+     * logged in as the guest of the first application it subscribes to.
+     *
+     * @return false if the token isn't valid
+     */
+    private boolean authenticate( String accessToken ) {
+        if ( ( subject == null ) || ( accessToken == null ) ) {
+            return true;
+        }
+
+        if ( tokens == null ) {
+            LOG.error( "No token service, unable to verify websocket access token" );
+            return false;
+        }
+
+        try {
+            PrincipalCredentialsToken token = getCredentialsForAccessToken( accessToken );
 
-    private ChannelGroup getChannelGroupWithDefault( String path ) {
-        ChannelGroup group = subscribers.get( path );
+            if ( token == null ) {
+                return false;
+            }
 
-        if ( group == null ) {
-            group = subscribers.putIfAbsent( path, new DefaultChannelGroup() );
+            subject.login( token );
+            return true;
+        }
+        catch ( TokenException e ) {
+            LOG.info( "Rejected websocket access token: {}", e.getMessage() );
+        }
+        catch ( AuthenticationException e ) {
+            LOG.info( "Rejected websocket access token: {}", e.getMessage() );
+        }
+        catch ( Exception e ) {
+            LOG.error( "Unable to verify websocket access token", e );
         }
 
-        return group;
+        return false;
     }
 
 
-    public void addSubscription( String path, Channel channel ) {
-        ChannelGroup group = subscribers.get( path );
-        synchronized ( group ) {
-            group.add( channel );
+    private PrincipalCredentialsToken getCredentialsForAccessToken( String accessToken ) throws Exception {
+        AuthPrincipalInfo principal = tokens.getTokenInfo( accessToken ).getPrincipal();
+
+        if ( principal == null ) {
+            return null;
+        }
+
+        if ( AuthPrincipalType.ADMIN_USER.equals( principal.getType() ) ) {
+            UserInfo user = management.getAdminUserInfoFromAccessToken( accessToken );
+            return user != null ? PrincipalCredentialsToken.getFromAdminUserInfoAndAccessToken( user, accessToken ) :
+                   null;
+        }
+        else if ( AuthPrincipalType.APPLICATION_USER.equals( principal.getType() ) ) {
+            UserInfo user = management.getAppUserFromAccessToken( accessToken );
+            return user != null ? PrincipalCredentialsToken.getFromAppUserInfoAndAccessToken( user, accessToken ) :
+                   null;
         }
+        else if ( AuthPrincipalType.ORGANIZATION.equals( principal.getType() ) ) {
+            OrganizationInfo organization = management.getOrganizationInfoFromAccessToken( accessToken );
+            return organization != null ?
+                   PrincipalCredentialsToken.getFromOrganizationInfoAndAccessToken( organization, accessToken ) : null;
+        }
+        else if ( AuthPrincipalType.APPLICATION.equals( principal.getType() ) ) {
+            ApplicationInfo application = management.getApplicationInfoFromAccessToken( accessToken );
+            return application != null ?
+                   PrincipalCredentialsToken.getFromApplicationInfoAndAccessToken( application, accessToken ) : null;
+        }
+
+        return null;
     }
 
 
-    public void removeSubscription( String path, Channel channel ) {
-        ChannelGroup group = subscribers.get( path );
-        synchronized ( group ) {
-            group.remove( channel );
-            if ( group.isEmpty() ) {
-                subscribers.remove( path, group );
+    private boolean isPermitted( UUID applicationId, String path ) throws Exception {
+        if ( subject == null ) {
+            return true;
+        }
+
+        if ( !subject.isAuthenticated() ) {
+            ApplicationInfo application = management.getApplicationInfo( applicationId );
+            if ( application == null ) {
+                return false;
+            }
+            try {
+                subject.login( PrincipalCredentialsToken.getGuestCredentialsFromApplicationInfo( application ) );
+            }
+            catch ( AuthenticationException e ) {
+                LOG.info( "Guest login to application {} failed: {}", applicationId, e.getMessage() );
+                return false;
             }
         }
+
+        return subject.isPermitted( getPermissionFromPath( applicationId, "get", path ) );
+    }
+
+
+    /**
+     * Resolve the subscription path of an application collection, or of one of its entities, from a path of the form
+     * app/collection[/entity]. The application and the entity can be given by name or uuid, the collection by its
+     * name or its entity type.
+     *
+     * @return the path, or null if the application or entity doesn't exist or the subject may not read it
+     */
+    private String resolveSubscriptionPath( String path ) throws Exception {
+        String[] segments = split( path, '/' );
+
+        if ( ( segments.length != 2 ) && ( segments.length != 3 ) ) {
+            LOG.info( "Wrong number of path segments, expected 2 or 3, found " + segments.length );
+            return null;
+        }
+
+        String nsStr = segments[0];
+        // changes are dispatched to the default collection of their entity type, so users/User/user all match
+        String collStr = Schema.defaultCollectionName( segments[1] );
+        String idStr = segments.length == 3 ? segments[2] : null;
+
+        UUID applicationId = UUIDUtils.tryExtractUUID( nsStr );
+
+        if ( applicationId == null ) {
+            applicationId = emf.lookupApplication( nsStr );
+        }
+
+        if ( applicationId == null ) {
+            return null;
+        }
+
+        UUID entityId = null;
+
+        if ( idStr != null ) {
+            entityId = UUIDUtils.tryExtractUUID( idStr );
+
+            if ( entityId == null ) {
+                EntityRef ref = emf.getEntityManager( applicationId ).getAlias( applicationId, collStr, idStr );
+
+                if ( ref == null ) {
+                    return null;
+                }
+
+                entityId = ref.getUuid();
+            }
+        }
+
+        if ( !isPermitted( applicationId, "/" + collStr + ( entityId != null ? "/" + entityId : "" ) ) ) {
+            LOG.info( "Subscription to " + path + " not permitted" );
+            return null;
+        }
+
+        return EntityChangeDispatcher.getSubscriptionPath( applicationId, collStr, entityId );
+    }
+
+
+    public void addSubscription( String path, Channel channel ) {
+        dispatcher.addSubscription( path, channel );
+    }
+
+
+    public void removeSubscription( String path, Channel channel ) {
+        dispatcher.removeSubscription( path, channel );
     }
 
 
     public ChannelGroup getSubscriptionGroup( String path ) {
-        return subscribers.get( path );
+        return dispatcher.getSubscriptionGroup( path );
     }
 }
@@ -17,7 +17,9 @@
 package org.apache.usergrid.websocket;
 
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.util.Properties;
 import java.util.concurrent.Executors;
 
@@ -26,6 +28,7 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.netty.handler.execution.ExecutionHandler;
 import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.jboss.netty.util.HashedWheelTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,8 +36,10 @@ import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.apache.usergrid.management.ManagementService;
+import org.apache.usergrid.mq.EntityChangeQueue;
 import org.apache.usergrid.persistence.EntityManagerFactory;
 import org.apache.usergrid.persistence.cassandra.EntityManagerFactoryImpl;
+import org.apache.usergrid.security.tokens.TokenService;
 import org.apache.usergrid.services.ServiceManagerFactory;
 
 import org.apache.shiro.mgt.DefaultSecurityManager;
@@ -57,14 +62,25 @@ public class WebSocketServer {
 
     private static final Logger logger = LoggerFactory.getLogger( WebSocketServer.class );
 
+    public static final int DEFAULT_PING_INTERVAL_SECONDS = 30;
+
+    public static final int DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 64 * 1024;
+
+    public static final int DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 32 * 1024;
+
     EntityManagerFactory emf;
     ServiceManagerFactory smf;
     ManagementService management;
+    TokenService tokens;
     Realm realm;
     SessionsSecurityManager securityManager;
     boolean ssl = false;
     Channel channel;
     Properties properties;
+    EntityChangeQueue changeQueue;
+    EntityChangeDispatcher dispatcher;
+    EntityChangeQueueReader changeReader;
+    HashedWheelTimer timer;
 
 
     public static void main( String[] args ) throws Exception {
@@ -96,6 +112,18 @@ public class WebSocketServer {
     }
 
 
+    @Autowired
+    public void setTokenService( TokenService tokens ) {
+        this.tokens = tokens;
+    }
+
+
+    @Autowired
+    public void setEntityChangeQueue( EntityChangeQueue changeQueue ) {
+        this.changeQueue = changeQueue;
+    }
+
+
     public void setSsl( boolean ssl ) {
         this.ssl = ssl;
     }
@@ -155,13 +183,31 @@ public class WebSocketServer {
         ServerBootstrap bootstrap = new ServerBootstrap(
                 new NioServerSocketChannelFactory( Executors.newCachedThreadPool(), Executors.newCachedThreadPool() ) );
 
+        // A channel above the high water mark stops receiving entity changes until it drains below the low one.
+        bootstrap.setOption( "child.writeBufferHighWaterMark",
+                getIntProperty( "usergrid.websocket.write.high", DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK ) );
+        bootstrap.setOption( "child.writeBufferLowWaterMark",
+                getIntProperty( "usergrid.websocket.write.low", DEFAULT_WRITE_BUFFER_LOW_WATER_MARK ) );
+
+        timer = new HashedWheelTimer();
+
         // Set up the pipeline factory.
         ExecutionHandler executionHandler =
                 new ExecutionHandler( new OrderedMemoryAwareThreadPoolExecutor( 16, 1048576, 1048576 ) );
 
+        // Entity changes are written by the other nodes, they're read from the change queue and pushed to the
+        // subscribed channels.
+        dispatcher = new EntityChangeDispatcher();
+        changeReader = new EntityChangeQueueReader( changeQueue, getChangeConsumer(), dispatcher,
+                getIntProperty( "usergrid.websocket.changes.poll",
+                        ( int ) EntityChangeQueueReader.DEFAULT_POLL_INTERVAL ) );
+        changeReader.start();
+
         // Set up the event pipeline factory.
         bootstrap.setPipelineFactory(
-                new WebSocketServerPipelineFactory( emf, smf, management, securityManager, executionHandler, ssl ) );
+                new WebSocketServerPipelineFactory( emf, smf, management, securityManager, tokens, dispatcher,
+                        executionHandler, timer,
+                        getIntProperty( "usergrid.websocket.ping.interval", DEFAULT_PING_INTERVAL_SECONDS ), ssl ) );
 
         // Bind and start to accept incoming connections.
         channel = bootstrap.bind( new InetSocketAddress( 8088 ) );
@@ -170,12 +216,46 @@ public class WebSocketServer {
     }
 
 
+    /** Each server reads every change, so each has its own consumer of the change queue */
+    private String getChangeConsumer() {
+        String consumer = properties != null ? properties.getProperty( "usergrid.websocket.changes.consumer" ) : null;
+
+        if ( consumer != null && consumer.length() > 0 ) {
+            return consumer;
+        }
+
+        try {
+            return "websocket-" + InetAddress.getLocalHost().getHostName();
+        }
+        catch ( UnknownHostException e ) {
+            return "websocket";
+        }
+    }
+
+
+    private int getIntProperty( String name, int defaultValue ) {
+        if ( properties == null ) {
+            return defaultValue;
+        }
+        return Integer.parseInt( properties.getProperty( name, Integer.toString( defaultValue ) ) );
+    }
+
+
     public void stopServer() {
         logger.info( "Stopping WebSocket Server" );
         if ( channel != null ) {
             channel.close();
             channel = null;
         }
+        if ( changeReader != null ) {
+            changeReader.stop();
+            changeReader = null;
+        }
+        dispatcher = null;
+        if ( timer != null ) {
+            timer.stop();
+            timer = null;
+        }
         logger.info( "Usergrid WebSocket Server stopped..." );
     }
 }
@@ -26,8 +26,11 @@ import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
 import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
 import org.jboss.netty.handler.execution.ExecutionHandler;
 import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.timeout.IdleStateHandler;
+import org.jboss.netty.util.Timer;
 import org.apache.usergrid.management.ManagementService;
 import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.security.tokens.TokenService;
 import org.apache.usergrid.services.ServiceManagerFactory;
 
 import org.apache.shiro.mgt.SessionsSecurityManager;
@@ -42,17 +45,32 @@ public class WebSocketServerPipelineFactory implements ChannelPipelineFactory {
     private final ServiceManagerFactory smf;
     private final ManagementService management;
     private final SessionsSecurityManager securityManager;
+    private final TokenService tokens;
+    private final EntityChangeDispatcher dispatcher;
+    private final Timer timer;
+    private final int pingIntervalSeconds;
     private final boolean ssl;
 
 
+    /**
+     * @param timer the timer driving the idle state handler
+     * @param pingIntervalSeconds an idle connection is pinged after this long, and closed if nothing is received for
+     * three times as long
+     */
     public WebSocketServerPipelineFactory( EntityManagerFactory emf, ServiceManagerFactory smf,
                                            ManagementService management, SessionsSecurityManager securityManager,
-                                           ExecutionHandler executionHandler, boolean ssl ) {
+                                           TokenService tokens, EntityChangeDispatcher dispatcher,
+                                           ExecutionHandler executionHandler, Timer timer, int pingIntervalSeconds,
+                                           boolean ssl ) {
         this.emf = emf;
         this.smf = smf;
         this.management = management;
         this.securityManager = securityManager;
+        this.tokens = tokens;
+        this.dispatcher = dispatcher;
         this.executionHandler = executionHandler;
+        this.timer = timer;
+        this.pingIntervalSeconds = pingIntervalSeconds;
         this.ssl = ssl;
     }
 
@@ -69,8 +87,10 @@ public class WebSocketServerPipelineFactory implements ChannelPipelineFactory {
         pipeline.addLast( "decoder", new HttpRequestDecoder() );
         pipeline.addLast( "aggregator", new HttpChunkAggregator( 65536 ) );
         pipeline.addLast( "encoder", new HttpResponseEncoder() );
+        pipeline.addLast( "idle", new IdleStateHandler( timer, pingIntervalSeconds * 3, 0, pingIntervalSeconds ) );
         pipeline.addLast( "execution", executionHandler );
-        pipeline.addLast( "handler", new WebSocketChannelHandler( emf, smf, management, securityManager, ssl ) );
+        pipeline.addLast( "handler",
+                new WebSocketChannelHandler( emf, smf, management, securityManager, tokens, dispatcher, ssl ) );
         return pipeline;
     }
 }
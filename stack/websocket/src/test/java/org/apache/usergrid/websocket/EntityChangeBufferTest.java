@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.Inflater;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.DefaultChannelFuture;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.apache.usergrid.persistence.EntityChangeEvent;
+import org.apache.usergrid.persistence.SimpleEntityRef;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.apache.usergrid.utils.ClassUtils.cast;
+import static org.apache.usergrid.utils.JsonUtils.parse;
+import static org.apache.usergrid.utils.MapUtils.hashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class EntityChangeBufferTest {
+
+    private static final UUID APPLICATION_ID = UUIDUtils.newTimeUUID();
+
+    private Channel channel;
+
+    private List<WebSocketFrame> frames;
+
+    private List<DefaultChannelFuture> futures;
+
+
+    @Before
+    public void setup() {
+        frames = new ArrayList<WebSocketFrame>();
+        futures = new ArrayList<DefaultChannelFuture>();
+
+        channel = mock( Channel.class );
+        when( channel.isConnected() ).thenReturn( true );
+        when( channel.isWritable() ).thenReturn( true );
+        when( channel.write( any() ) ).thenAnswer( new Answer<ChannelFuture>() {
+            @Override
+            public ChannelFuture answer( InvocationOnMock invocation ) {
+                frames.add( ( WebSocketFrame ) invocation.getArguments()[0] );
+                DefaultChannelFuture future = new DefaultChannelFuture( channel, false );
+                futures.add( future );
+                return future;
+            }
+        } );
+    }
+
+
+    @Test
+    public void updateFoldsIntoCreate() {
+        EntityChangeBuffer buffer = new EntityChangeBuffer( channel, EntityChangeBuffer.DEFAULT_CAPACITY );
+
+        // the first change is written right away, the next ones wait for it
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, UUIDUtils.newTimeUUID(), null ) );
+
+        UUID id = UUIDUtils.newTimeUUID();
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, id, hashMap( "name", ( Object ) "thing" ) ) );
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, id, hashMap( "color", ( Object ) "red" ) ) );
+
+        assertEquals( 1, buffer.getPending() );
+
+        List<Map<String, Object>> changes = flush( 1 );
+        assertEquals( 1, changes.size() );
+        assertEquals( "create", changes.get( 0 ).get( "action" ) );
+
+        Map<String, Object> properties = cast( changes.get( 0 ).get( "properties" ) );
+        assertEquals( "thing", properties.get( "name" ) );
+        assertEquals( "red", properties.get( "color" ) );
+    }
+
+
+    @Test
+    public void updatesMerge() {
+        EntityChangeBuffer buffer = new EntityChangeBuffer( channel, EntityChangeBuffer.DEFAULT_CAPACITY );
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, UUIDUtils.newTimeUUID(), null ) );
+
+        UUID id = UUIDUtils.newTimeUUID();
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, id,
+                hashMap( "name", ( Object ) "thing" ).map( "color", "red" ) ) );
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, id, hashMap( "color", ( Object ) "blue" ) ) );
+
+        List<Map<String, Object>> changes = flush( 1 );
+        assertEquals( 1, changes.size() );
+        assertEquals( "update", changes.get( 0 ).get( "action" ) );
+
+        Map<String, Object> properties = cast( changes.get( 0 ).get( "properties" ) );
+        assertEquals( "thing", properties.get( "name" ) );
+        assertEquals( "blue", properties.get( "color" ) );
+    }
+
+
+    @Test
+    public void deleteReplacesUpdate() {
+        EntityChangeBuffer buffer = new EntityChangeBuffer( channel, EntityChangeBuffer.DEFAULT_CAPACITY );
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, UUIDUtils.newTimeUUID(), null ) );
+
+        UUID id = UUIDUtils.newTimeUUID();
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, id, hashMap( "color", ( Object ) "red" ) ) );
+        buffer.offer( change( EntityChangeEvent.Type.DELETE, id, null ) );
+
+        List<Map<String, Object>> changes = flush( 1 );
+        assertEquals( 1, changes.size() );
+        assertEquals( "delete", changes.get( 0 ).get( "action" ) );
+        assertFalse( changes.get( 0 ).containsKey( "properties" ) );
+    }
+
+
+    @Test
+    public void fullBufferDropsOldest() {
+        EntityChangeBuffer buffer = new EntityChangeBuffer( channel, 2 );
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, UUIDUtils.newTimeUUID(), null ) );
+
+        UUID first = UUIDUtils.newTimeUUID();
+        UUID second = UUIDUtils.newTimeUUID();
+        UUID third = UUIDUtils.newTimeUUID();
+
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, first, null ) );
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, second, null ) );
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, third, null ) );
+
+        assertEquals( 2, buffer.getPending() );
+        assertEquals( 1, buffer.getDropped() );
+
+        List<Map<String, Object>> changes = flush( 1 );
+        assertEquals( 2, changes.size() );
+        assertEquals( second.toString(), changes.get( 0 ).get( "uuid" ) );
+        assertEquals( third.toString(), changes.get( 1 ).get( "uuid" ) );
+    }
+
+
+    @Test
+    public void unwritableConsumerIsShed() {
+        EntityChangeBuffer buffer = new EntityChangeBuffer( channel, 2 );
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, UUIDUtils.newTimeUUID(), null ) );
+
+        when( channel.isWritable() ).thenReturn( false );
+
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, UUIDUtils.newTimeUUID(), null ) );
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, UUIDUtils.newTimeUUID(), null ) );
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, UUIDUtils.newTimeUUID(), null ) );
+
+        verify( channel ).close();
+        assertEquals( 0, buffer.getPending() );
+
+        // nothing more is taken, or written, once the consumer is shed
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, UUIDUtils.newTimeUUID(), null ) );
+        buffer.resume();
+
+        assertEquals( 0, buffer.getPending() );
+        verify( channel, times( 1 ) ).close();
+        assertEquals( 1, frames.size() );
+    }
+
+
+    @Test
+    public void waitsForResumeAboveHighWaterMark() {
+        EntityChangeBuffer buffer = new EntityChangeBuffer( channel, EntityChangeBuffer.DEFAULT_CAPACITY );
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, UUIDUtils.newTimeUUID(), null ) );
+
+        when( channel.isWritable() ).thenReturn( false );
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, UUIDUtils.newTimeUUID(), null ) );
+        futures.get( 0 ).setSuccess();
+
+        assertEquals( 1, frames.size() );
+        assertEquals( 1, buffer.getPending() );
+
+        when( channel.isWritable() ).thenReturn( true );
+        buffer.resume();
+
+        assertEquals( 2, frames.size() );
+        assertEquals( 0, buffer.getPending() );
+    }
+
+
+    @Test
+    public void compressesLargeFrames() throws Exception {
+        EntityChangeBuffer buffer = new EntityChangeBuffer( channel, EntityChangeBuffer.DEFAULT_CAPACITY );
+        buffer.setCompress( true );
+
+        // small frames stay text
+        buffer.offer( change( EntityChangeEvent.Type.UPDATE, UUIDUtils.newTimeUUID(), null ) );
+        assertTrue( frames.get( 0 ) instanceof TextWebSocketFrame );
+
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < EntityChangeBuffer.COMPRESS_THRESHOLD; i++ ) {
+            text.append( 'x' );
+        }
+
+        UUID id = UUIDUtils.newTimeUUID();
+        buffer.offer( change( EntityChangeEvent.Type.CREATE, id, hashMap( "text", ( Object ) text.toString() ) ) );
+        futures.get( 0 ).setSuccess();
+
+        assertEquals( 2, frames.size() );
+        assertTrue( frames.get( 1 ) instanceof BinaryWebSocketFrame );
+
+        List<Map<String, Object>> changes = cast( parse( inflate( frames.get( 1 ).getBinaryData() ) ) );
+        assertEquals( 1, changes.size() );
+        assertEquals( id.toString(), changes.get( 0 ).get( "uuid" ) );
+    }
+
+
+    /** Complete the last write and return the changes of the frame written after it */
+    private List<Map<String, Object>> flush( int written ) {
+        futures.get( written - 1 ).setSuccess();
+        assertEquals( written + 1, frames.size() );
+        return cast( parse( ( ( TextWebSocketFrame ) frames.get( written ) ).getText() ) );
+    }
+
+
+    private static EntityChangeEvent change( EntityChangeEvent.Type type, UUID id, Map<String, Object> properties ) {
+        return EntityChangeEvent.entityChange( type, APPLICATION_ID, new SimpleEntityRef( "thing", id ), properties );
+    }
+
+
+    private static String inflate( ChannelBuffer data ) throws Exception {
+        byte[] deflated = new byte[data.readableBytes()];
+        data.getBytes( data.readerIndex(), deflated );
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput( deflated );
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            while ( !inflater.finished() ) {
+                out.write( chunk, 0, inflater.inflate( chunk ) );
+            }
+            return new String( out.toByteArray(), CharsetUtil.UTF_8 );
+        }
+        finally {
+            inflater.end();
+        }
+    }
+}
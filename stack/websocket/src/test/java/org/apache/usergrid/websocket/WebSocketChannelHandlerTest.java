@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.Inflater;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultChannelFuture;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.apache.usergrid.persistence.EntityChangeEvent;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.persistence.SimpleEntityRef;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import org.apache.shiro.subject.Subject;
+
+import static org.apache.usergrid.utils.ClassUtils.cast;
+import static org.apache.usergrid.utils.JsonUtils.mapToJsonString;
+import static org.apache.usergrid.utils.JsonUtils.parse;
+import static org.apache.usergrid.utils.MapUtils.hashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/** Subscription commands sent over an open websocket, and the changes written back */
+public class WebSocketChannelHandlerTest {
+
+    private static final UUID APPLICATION_ID = UUIDUtils.newTimeUUID();
+
+    private static final UUID USER_ID = UUIDUtils.newTimeUUID();
+
+    private EntityChangeDispatcher dispatcher;
+
+    private WebSocketChannelHandler handler;
+
+    private Channel channel;
+
+    private ChannelHandlerContext ctx;
+
+    private List<WebSocketFrame> frames;
+
+
+    @Before
+    public void setup() throws Exception {
+        EntityManager em = mock( EntityManager.class );
+        when( em.getAlias( APPLICATION_ID, "users", "fred" ) ).thenReturn( new SimpleEntityRef( "user", USER_ID ) );
+
+        EntityManagerFactory emf = mock( EntityManagerFactory.class );
+        when( emf.lookupApplication( "test-app" ) ).thenReturn( APPLICATION_ID );
+        when( emf.getEntityManager( APPLICATION_ID ) ).thenReturn( em );
+
+        dispatcher = new EntityChangeDispatcher();
+
+        // without a security manager the handler has no subject and every subscription is permitted
+        handler = new WebSocketChannelHandler( emf, null, null, null, null, dispatcher, false );
+
+        frames = new ArrayList<WebSocketFrame>();
+
+        channel = mock( Channel.class );
+        when( channel.getId() ).thenReturn( 1 );
+        when( channel.isConnected() ).thenReturn( true );
+        when( channel.isWritable() ).thenReturn( true );
+        when( channel.getCloseFuture() ).thenReturn( new DefaultChannelFuture( channel, false ) );
+        when( channel.write( any() ) ).thenAnswer( new Answer<ChannelFuture>() {
+            @Override
+            public ChannelFuture answer( InvocationOnMock invocation ) {
+                frames.add( ( WebSocketFrame ) invocation.getArguments()[0] );
+                return Channels.succeededFuture( channel );
+            }
+        } );
+
+        ctx = mock( ChannelHandlerContext.class );
+        when( ctx.getChannel() ).thenReturn( channel );
+    }
+
+
+    @Test
+    public void subscribeByEntityType() throws Exception {
+        send( new TextWebSocketFrame( "{\"subscribe\":\"test-app/User\"}" ) );
+        assertEquals( "test-app/User", lastReply().get( "subscribed" ) );
+
+        // the type is normalized to the collection the changes are dispatched to
+        ChannelGroup group =
+                dispatcher.getSubscriptionGroup( EntityChangeDispatcher.getSubscriptionPath( APPLICATION_ID, "users",
+                        null ) );
+        assertTrue( group.contains( channel ) );
+
+        dispatcher.entityChanged( change( UUIDUtils.newTimeUUID(), "fred" ) );
+
+        List<Map<String, Object>> changes = cast( parse( text( frames.get( frames.size() - 1 ) ) ) );
+        assertEquals( 1, changes.size() );
+        assertEquals( "create", changes.get( 0 ).get( "action" ) );
+    }
+
+
+    @Test
+    public void subscribeAndUnsubscribeEntity() throws Exception {
+        String path = EntityChangeDispatcher.getSubscriptionPath( APPLICATION_ID, "users", USER_ID );
+
+        send( new TextWebSocketFrame( "{\"subscribe\":\"test-app/users/fred\"}" ) );
+        assertEquals( "test-app/users/fred", lastReply().get( "subscribed" ) );
+        assertTrue( dispatcher.getSubscriptionGroup( path ).contains( channel ) );
+
+        send( new TextWebSocketFrame( "{\"unsubscribe\":\"test-app/users/fred\"}" ) );
+        assertEquals( "test-app/users/fred", lastReply().get( "unsubscribed" ) );
+        assertNull( dispatcher.getSubscriptionGroup( path ) );
+    }
+
+
+    @Test
+    public void binaryCommand() throws Exception {
+        byte[] command = mapToJsonString( hashMap( "subscribe", APPLICATION_ID + "/users" ) )
+                .getBytes( CharsetUtil.UTF_8 );
+        send( new BinaryWebSocketFrame( ChannelBuffers.wrappedBuffer( command ) ) );
+
+        assertEquals( APPLICATION_ID + "/users", lastReply().get( "subscribed" ) );
+    }
+
+
+    @Test
+    public void unresolvedSubscriptions() throws Exception {
+        send( new TextWebSocketFrame( "{\"subscribe\":\"other-app/users\"}" ) );
+        assertEquals( "unable to subscribe to other-app/users", lastReply().get( "error" ) );
+
+        send( new TextWebSocketFrame( "{\"subscribe\":\"test-app/users/wilma\"}" ) );
+        assertEquals( "unable to subscribe to test-app/users/wilma", lastReply().get( "error" ) );
+
+        send( new TextWebSocketFrame( "{\"subscribe\":\"test-app\"}" ) );
+        assertEquals( "unable to subscribe to test-app", lastReply().get( "error" ) );
+
+        send( new TextWebSocketFrame( "{\"publish\":\"test-app/users\"}" ) );
+        assertEquals( "unrecognized command", lastReply().get( "error" ) );
+
+        send( new TextWebSocketFrame( "not json" ) );
+        assertEquals( "unrecognized command", lastReply().get( "error" ) );
+    }
+
+
+    @Test
+    public void subscriptionsCheckPermissions() throws Exception {
+        Subject subject = mock( Subject.class );
+        when( subject.isAuthenticated() ).thenReturn( true );
+        when( subject.isPermitted( anyString() ) ).thenAnswer( new Answer<Boolean>() {
+            @Override
+            public Boolean answer( InvocationOnMock invocation ) {
+                String permission = ( String ) invocation.getArguments()[0];
+                return permission.equals( "applications:get:" + APPLICATION_ID + ":/users" );
+            }
+        } );
+        handler.subject = subject;
+
+        send( new TextWebSocketFrame( "{\"subscribe\":\"test-app/users\"}" ) );
+        assertEquals( "test-app/users", lastReply().get( "subscribed" ) );
+
+        send( new TextWebSocketFrame( "{\"subscribe\":\"test-app/users/fred\"}" ) );
+        assertEquals( "unable to subscribe to test-app/users/fred", lastReply().get( "error" ) );
+        assertNull( dispatcher.getSubscriptionGroup(
+                EntityChangeDispatcher.getSubscriptionPath( APPLICATION_ID, "users", USER_ID ) ) );
+
+        send( new TextWebSocketFrame( "{\"subscribe\":\"test-app/secrets\"}" ) );
+        assertEquals( "unable to subscribe to test-app/secrets", lastReply().get( "error" ) );
+    }
+
+
+    @Test
+    public void compressedChanges() throws Exception {
+        // as registered by a handshake with compress=true
+        dispatcher.register( channel, true );
+
+        send( new TextWebSocketFrame( "{\"subscribe\":\"test-app/users\"}" ) );
+        assertEquals( "test-app/users", lastReply().get( "subscribed" ) );
+
+        // a small change stays text
+        dispatcher.entityChanged( change( UUIDUtils.newTimeUUID(), "fred" ) );
+        assertTrue( frames.get( frames.size() - 1 ) instanceof TextWebSocketFrame );
+
+        StringBuilder name = new StringBuilder();
+        for ( int i = 0; i < EntityChangeBuffer.COMPRESS_THRESHOLD; i++ ) {
+            name.append( 'f' );
+        }
+
+        UUID id = UUIDUtils.newTimeUUID();
+        dispatcher.entityChanged( change( id, name.toString() ) );
+
+        WebSocketFrame frame = frames.get( frames.size() - 1 );
+        assertTrue( frame instanceof BinaryWebSocketFrame );
+
+        List<Map<String, Object>> changes = cast( parse( inflate( frame.getBinaryData() ) ) );
+        assertEquals( 1, changes.size() );
+        assertEquals( id.toString(), changes.get( 0 ).get( "uuid" ) );
+
+        Map<String, Object> properties = cast( changes.get( 0 ).get( "properties" ) );
+        assertEquals( name.toString(), properties.get( "name" ) );
+    }
+
+
+    private void send( WebSocketFrame frame ) throws Exception {
+        MessageEvent event = mock( MessageEvent.class );
+        when( event.getChannel() ).thenReturn( channel );
+        when( event.getMessage() ).thenReturn( frame );
+        handler.messageReceived( ctx, event );
+    }
+
+
+    private Map<String, Object> lastReply() {
+        return cast( parse( text( frames.get( frames.size() - 1 ) ) ) );
+    }
+
+
+    private static String text( WebSocketFrame frame ) {
+        return ( ( TextWebSocketFrame ) frame ).getText();
+    }
+
+
+    private static EntityChangeEvent change( UUID id, String name ) {
+        return EntityChangeEvent.entityChange( EntityChangeEvent.Type.CREATE, APPLICATION_ID,
+                new SimpleEntityRef( "user", id ), hashMap( "name", ( Object ) name ) );
+    }
+
+
+    private static String inflate( ChannelBuffer data ) throws Exception {
+        byte[] deflated = new byte[data.readableBytes()];
+        data.getBytes( data.readerIndex(), deflated );
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput( deflated );
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            while ( !inflater.finished() ) {
+                out.write( chunk, 0, inflater.inflate( chunk ) );
+            }
+            return new String( out.toByteArray(), CharsetUtil.UTF_8 );
+        }
+        finally {
+            inflater.end();
+        }
+    }
+}